@@ -0,0 +1,30 @@
+package br.com.teste.benchmark;
+
+/**
+ * Valores pseudoaleatórios derivados apenas de (semente, id, canal), sem estado: o mesmo registro recebe
+ * sempre os mesmos valores, em qualquer ordem e com qualquer quantidade de threads (função de mistura SplitMix64).
+ */
+final class Aleatorio {
+
+    private static final long OURO = 0x9E3779B97F4A7C15L;
+
+    private Aleatorio() {
+    }
+
+    /** Valor uniforme em [0, 1) para o registro e o canal (cada atributo do registro usa um canal). */
+    static double uniforme(long semente, long id, int canal) {
+        return (misturar(misturar(semente ^ (canal * OURO)) + id * OURO) >>> 11) * 0x1.0p-53;
+    }
+
+    /** Inteiro uniforme em [0, limite). */
+    static int inteiro(long semente, long id, int canal, int limite) {
+        return (int) (uniforme(semente, id, canal) * limite);
+    }
+
+    /** Finalizador do SplitMix64: bits de saída bem distribuídos a partir de entradas próximas. */
+    static long misturar(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,112 @@
+package br.com.teste.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vazão (requisições/s, 4 clientes simultâneos) da primeira página da consulta "Medicamentos por Paciente"
+ * (5 receitas, ordem de ID) contra a aplicação implantada:
+ * - jsfConsulta: a tela JSF, como fazem as integrações que a raspam (sessão e estado de view novos a cada
+ *   requisição, HTML completo);
+ * - api: a mesma página por GET /api/receitas?limite=5;
+ * - apiNaoModificado: a mesma chamada com If-None-Match da ETag atual (304, sem consulta ao banco).
+ * Executado somente com -Dteste.benchmark.servidor=http://localhost:8080/teste (URL base da aplicação);
+ * o corpo é lido até o fim, como faria um cliente.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class ApiHttpBenchmark {
+
+    public static final String PROP_SERVIDOR = "teste.benchmark.servidor";
+
+    private static final String CONSULTA_JSF = "/consulta/medicamentos-por-paciente.xhtml";
+    private static final String CONSULTA_API = "/api/receitas?limite=5";
+
+    private String servidor;
+    private String etag;
+
+    /** true quando a URL da aplicação foi informada (sem ela o benchmark não é executado). */
+    public static boolean configurado() {
+        return System.getProperty(PROP_SERVIDOR) != null;
+    }
+
+    @Setup
+    public void preparar() throws IOException {
+        if (!configurado()) {
+            throw new IllegalStateException("Informe a aplicação com -D" + PROP_SERVIDOR + "=http://localhost:8080/teste");
+        }
+        servidor = System.getProperty(PROP_SERVIDOR).replaceAll("/+$", "");
+        HttpURLConnection c = abrir(CONSULTA_API, null);
+        etag = c.getHeaderField("ETag");
+        if (consumir(c) != 200 || etag == null) {
+            throw new IllegalStateException("GET " + CONSULTA_API + " não respondeu 200 com ETag"
+                    + " (réplica com escrita recente?)");
+        }
+    }
+
+    @Benchmark
+    public int jsfConsulta() throws IOException {
+        return exigir(200, abrir(CONSULTA_JSF, null));
+    }
+
+    @Benchmark
+    public int api() throws IOException {
+        return exigir(200, abrir(CONSULTA_API, null));
+    }
+
+    @Benchmark
+    public int apiNaoModificado() throws IOException {
+        return exigir(304, abrir(CONSULTA_API, etag));
+    }
+
+    private HttpURLConnection abrir(String caminho, String seNaoCoincidir) throws IOException {
+        HttpURLConnection c = (HttpURLConnection) new URL(servidor + caminho).openConnection();
+        c.setUseCaches(false);
+        if (seNaoCoincidir != null) {
+            c.setRequestProperty("If-None-Match", seNaoCoincidir);
+        }
+        return c;
+    }
+
+    /** Lê o corpo até o fim (a conexão volta ao keep-alive) e devolve o status. */
+    private static int consumir(HttpURLConnection c) throws IOException {
+        int status = c.getResponseCode();
+        try (InputStream in = status < 400 ? c.getInputStream() : c.getErrorStream()) {
+            if (in != null) {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) >= 0) {
+                    // descarta
+                }
+            }
+        }
+        return status;
+    }
+
+    private static int exigir(int esperado, HttpURLConnection c) throws IOException {
+        int status = consumir(c);
+        if (status != esperado) {
+            throw new IllegalStateException(c.getURL() + " respondeu " + status + " (esperado " + esperado + ")");
+        }
+        return status;
+    }
+}
@@ -0,0 +1,100 @@
+package br.com.teste.benchmark;
+
+import br.com.teste.busca.EsquemaBusca;
+import br.com.teste.migracao.MigracaoEsquema;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.postgresql.ds.PGSimpleDataSource;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * PostgreSQL local dos benchmarks de ponta a ponta, configurado por propriedades de sistema:
+ * teste.benchmark.url (ex.: jdbc:postgresql://localhost:5432/teste_benchmark), teste.benchmark.usuario
+ * e teste.benchmark.senha.
+ *
+ * Use um banco exclusivo: as migrações da aplicação são aplicadas e, se o banco não tiver o volume da escala
+ * pedida (-p escala=...), os dados são substituídos pelos do {@link GeradorDados}. Execuções seguintes com a
+ * mesma escala reaproveitam os dados.
+ */
+@State(Scope.Benchmark)
+public class BancoLocal {
+
+    public static final String PROP_URL = "teste.benchmark.url";
+    public static final String PROP_USUARIO = "teste.benchmark.usuario";
+    public static final String PROP_SENHA = "teste.benchmark.senha";
+
+    /** Fator de escala dos dados (ver GeradorDados) */
+    @Param({"1"})
+    public int escala;
+
+    /** Semente dos dados gerados (usada somente quando os dados precisam ser gerados) */
+    @Param({"42"})
+    public long semente;
+
+    /** Data de referência dos dados (fim do período de emissão, aaaa-mm-dd; ver GeradorDados.REFERENCIA_PADRAO) */
+    @Param({"2026-10-01"})
+    public String referencia;
+
+    SessionFactory sessionFactory;
+    EsquemaBusca esquemaBusca;
+
+    /** true quando a URL do banco foi informada (sem ela os benchmarks de banco não são executados). */
+    public static boolean configurado() {
+        return System.getProperty(PROP_URL) != null;
+    }
+
+    /** DataSource do banco informado nas propriedades de sistema. */
+    static PGSimpleDataSource dataSource() {
+        if (!configurado()) {
+            throw new IllegalStateException("Informe o banco dos benchmarks com -D" + PROP_URL + "=jdbc:postgresql://...");
+        }
+        PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setUrl(System.getProperty(PROP_URL));
+        dataSource.setUser(System.getProperty(PROP_USUARIO, "postgres"));
+        dataSource.setPassword(System.getProperty(PROP_SENHA, ""));
+        return dataSource;
+    }
+
+    /** Aplica as migrações da aplicação e prepara a busca por nome (mesmo esquema do servidor). */
+    static EsquemaBusca prepararEsquema(DataSource dataSource) {
+        MigracaoEsquema migracao = new MigracaoEsquema();
+        Componentes.injetar(migracao, "dataSource", dataSource);
+        migracao.init();
+        EsquemaBusca busca = new EsquemaBusca();
+        Componentes.injetar(busca, "dataSource", dataSource);
+        busca.init();
+        return busca;
+    }
+
+    @Setup(Level.Trial)
+    public void preparar() throws SQLException, InterruptedException {
+        PGSimpleDataSource dataSource = dataSource();
+        esquemaBusca = prepararEsquema(dataSource);
+        sessionFactory = Componentes.sessionFactory(dataSource);
+        GeradorDados gerador = new GeradorDados(dataSource, escala, semente, dataReferencia(),
+                GeradorDados.threadsPadrao());
+        if (!gerador.carregado()) {
+            gerador.gerar(sessionFactory, esquemaBusca);
+        }
+    }
+
+    /** Data de referência dos dados carregados. */
+    LocalDate dataReferencia() {
+        return LocalDate.parse(referencia);
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package br.com.teste.benchmark;
+
+import br.com.teste.bean.ConsultaMedicamentosBean;
+import br.com.teste.busca.EsquemaBusca;
+import br.com.teste.datamodel.PacienteLazyDataModel;
+import br.com.teste.datamodel.ReceitaResumoLazyDataModel;
+import br.com.teste.dto.ReceitaResumoDTO;
+import br.com.teste.model.Paciente;
+import br.com.teste.repository.PacienteRepository;
+import br.com.teste.repository.ReceitaRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.primefaces.model.FilterMeta;
+import org.primefaces.model.SortOrder;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filtros por nome contra o PostgreSQL local ({@link BancoLocal}), com a busca por trigramas (unaccent + índices
+ * GIN do pg_trgm) e com o {@code lower(nome) like '%termo%'} anterior a ela (-p trigrama=false), no mesmo banco.
+ * Cada chamada é uma carga da tela com o filtro digitado: página e contagem dos pacientes, e primeira página
+ * da consulta filtrada pelo nome do paciente.
+ * Sem trigramas a comparação é sensível a acentos: os termos padrão não têm acentos, para que os dois modos
+ * encontrem as mesmas linhas.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BuscaNomeBenchmark {
+
+    private static final int TAMANHO_PAGINA = 10;
+
+    /** Busca por trigramas (true) ou lower(nome) like (false) */
+    @Param({"false", "true"})
+    public boolean trigrama;
+
+    /** Trecho do nome digitado no filtro (sobrenome e nome próprio comuns) */
+    @Param({"silva", "maria"})
+    public String termo;
+
+    private EntityManager em;
+    private PacienteRepository pacientes;
+    private ReceitaRepository receitas;
+    private Map<String, FilterMeta> filtroNome;
+
+    @Setup
+    public void preparar(BancoLocal banco) {
+        em = banco.sessionFactory.createEntityManager();
+        EsquemaBusca busca = Componentes.esquemaBusca(trigrama);
+        pacientes = Componentes.pacienteRepository(em, busca);
+        receitas = Componentes.receitaRepository(em, busca);
+        filtroNome = Collections.singletonMap("nome", new FilterMeta("nome", termo));
+    }
+
+    @TearDown
+    public void encerrar() {
+        em.close();
+    }
+
+    @Benchmark
+    public List<Paciente> pacientesPorNome() {
+        PacienteLazyDataModel model = Componentes.pacienteModel(pacientes);
+        List<Paciente> pagina = model.load(0, TAMANHO_PAGINA, "nome", SortOrder.ASCENDING, filtroNome);
+        em.clear();
+        return pagina;
+    }
+
+    @Benchmark
+    public List<ReceitaResumoDTO> resumoPorNomePaciente() {
+        ConsultaMedicamentosBean filtros = new ConsultaMedicamentosBean();
+        filtros.setPacienteNomeFiltro(termo);
+        ReceitaResumoLazyDataModel model = Componentes.receitaResumoModel(receitas, filtros);
+        return model.load(0, TAMANHO_PAGINA, "receitaId", SortOrder.DESCENDING, Collections.emptyMap());
+    }
+}
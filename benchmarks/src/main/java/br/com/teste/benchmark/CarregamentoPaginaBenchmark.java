@@ -0,0 +1,208 @@
+package br.com.teste.benchmark;
+
+import br.com.teste.bean.ConsultaMedicamentosBean;
+import br.com.teste.datamodel.PacienteLazyDataModel;
+import br.com.teste.datamodel.ReceitaResumoLazyDataModel;
+import br.com.teste.dto.NomeQuantidadeDTO;
+import br.com.teste.dto.PacienteTotalDTO;
+import br.com.teste.dto.ReceitaResumoDTO;
+import br.com.teste.model.MedicamentoReceitado;
+import br.com.teste.model.Paciente;
+import br.com.teste.repository.PacienteRepository;
+import br.com.teste.repository.PeriodoEmissao;
+import br.com.teste.repository.ReceitaRepository;
+import br.com.teste.sql.ContagemSql;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.primefaces.model.FilterMeta;
+import org.primefaces.model.SortOrder;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Carregamento de páginas de ponta a ponta contra o PostgreSQL local ({@link BancoLocal}): LazyDataModel.load
+ * com consulta da página e contagem, como na primeira exibição da tabela, a página N da lista de pacientes por
+ * OFFSET e por keyset ({@link Paginacao}, -p profundidade=...), além da consulta com filtros, da consulta e do
+ * ranking de medicamentos dos últimos 30 dias (só as partições do período) e do relatório por paciente.
+ * Tamanho dos dados: -p escala=100 (padrão 1; ver GeradorDados); as profundidades padrão precisam da escala 100.
+ *
+ * Antes das medições, o preparo verifica quantos comandos SQL cada carga das telas executa (ContagemSql):
+ * uma associação lazy lida em laço (N+1) faz o benchmark falhar em vez de só ficar mais lento.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CarregamentoPaginaBenchmark {
+
+    private static final int TAMANHO_PAGINA = 10;
+
+    private static final Map<String, FilterMeta> SEM_FILTROS = Collections.emptyMap();
+
+    private EntityManager em;
+    private PacienteRepository pacientes;
+    private ReceitaRepository receitas;
+
+    /** Início dos últimos 30 dias antes da data de referência dos dados (fim das emissões geradas) */
+    private Date ultimos30Dias;
+
+    @Setup
+    public void preparar(BancoLocal banco) throws Exception {
+        em = banco.sessionFactory.createEntityManager();
+        pacientes = Componentes.pacienteRepository(em, banco.esquemaBusca);
+        receitas = Componentes.receitaRepository(em, banco.esquemaBusca);
+        ultimos30Dias = PeriodoEmissao.desde(banco.dataReferencia().minusDays(30).toString());
+        verificarComandosSql();
+    }
+
+    /** Página + COUNT nas listagens, uma consulta nos itens da receita e no relatório. */
+    private void verificarComandosSql() throws Exception {
+        ContagemSql.noMaximo(2, "paciente/lista: primeira página", this::pacientesPrimeiraPagina);
+        List<ReceitaResumoDTO> resumo = ContagemSql.noMaximo(2, "consulta: primeira página do resumo",
+                this::resumoPrimeiraPagina);
+        ContagemSql.noMaximo(2, "consulta: resumo com filtros", this::resumoComFiltros);
+        if (!resumo.isEmpty()) {
+            Long idReceita = resumo.get(0).getReceitaId();
+            List<MedicamentoReceitado> itens = ContagemSql.noMaximo(1, "consulta: itens da receita",
+                    () -> receitas.listItensByReceita(idReceita));
+            // Lidos pela tela (consulta e cadastro de receita): já vêm no join fetch
+            ContagemSql.noMaximo(0, "consulta: nomes dos medicamentos dos itens", () -> {
+                itens.forEach(i -> i.getMedicamento().getNome());
+                return itens;
+            });
+        }
+        ContagemSql.noMaximo(1, "relatorio: totais por paciente", this::relatorioTotaisPorPaciente);
+        em.clear();
+    }
+
+    @TearDown
+    public void encerrar() {
+        em.close();
+    }
+
+    @Benchmark
+    public List<Paciente> pacientesPrimeiraPagina() {
+        PacienteLazyDataModel model = Componentes.pacienteModel(pacientes);
+        return descartarContexto(model.load(0, TAMANHO_PAGINA, "nome", SortOrder.ASCENDING, SEM_FILTROS));
+    }
+
+    /** Página N recarregada (salto para uma página não adjacente): OFFSET. */
+    @Benchmark
+    public List<Paciente> pacientesPaginaOffset(Paginacao paginacao) {
+        return paginacao.descartarContexto(paginacao.offset.load(paginacao.first(), TAMANHO_PAGINA, "nome",
+                SortOrder.ASCENDING, SEM_FILTROS));
+    }
+
+    /** Alterna entre as páginas N+1 e N (avança e volta uma página): keyset a partir da página anterior. */
+    @Benchmark
+    public List<Paciente> pacientesPaginaKeyset(Paginacao paginacao) {
+        int first = paginacao.first() + (paginacao.avancar ? TAMANHO_PAGINA : 0);
+        paginacao.avancar = !paginacao.avancar;
+        return paginacao.descartarContexto(paginacao.keyset.load(first, TAMANHO_PAGINA, "nome",
+                SortOrder.ASCENDING, SEM_FILTROS));
+    }
+
+    @Benchmark
+    public List<ReceitaResumoDTO> resumoPrimeiraPagina() {
+        ReceitaResumoLazyDataModel model = Componentes.receitaResumoModel(receitas, new ConsultaMedicamentosBean());
+        return model.load(0, TAMANHO_PAGINA, "receitaId", SortOrder.DESCENDING, SEM_FILTROS);
+    }
+
+    @Benchmark
+    public List<ReceitaResumoDTO> resumoComFiltros() {
+        ConsultaMedicamentosBean filtros = new ConsultaMedicamentosBean();
+        filtros.setPacienteNomeFiltro("conceição");
+        filtros.setMedicamentoNomeFiltro("dipirona");
+        ReceitaResumoLazyDataModel model = Componentes.receitaResumoModel(receitas, filtros);
+        return model.load(0, TAMANHO_PAGINA, "pacienteNome", SortOrder.ASCENDING, SEM_FILTROS);
+    }
+
+    @Benchmark
+    public List<ReceitaResumoDTO> resumoUltimos30Dias() {
+        ConsultaMedicamentosBean filtros = new ConsultaMedicamentosBean();
+        filtros.setEmissaoDesdeFiltro(ultimos30Dias);
+        ReceitaResumoLazyDataModel model = Componentes.receitaResumoModel(receitas, filtros);
+        return model.load(0, TAMANHO_PAGINA, "pacienteNome", SortOrder.ASCENDING, SEM_FILTROS);
+    }
+
+    @Benchmark
+    public List<NomeQuantidadeDTO> topMedicamentosUltimos30Dias() {
+        return receitas.topMedicamentos(10, ultimos30Dias, null);
+    }
+
+    @Benchmark
+    public List<PacienteTotalDTO> relatorioTotaisPorPaciente() {
+        return receitas.totalMedicamentosPorPaciente();
+    }
+
+    /** Entidades lidas não se acumulam no contexto de persistência entre as chamadas (como em cada request). */
+    private <T> T descartarContexto(T resultado) {
+        em.clear();
+        return resultado;
+    }
+
+    /**
+     * Página N (profundidade, em páginas) da lista de pacientes ordenada por nome. Os dois modelos ficam abertos
+     * entre as chamadas, como a view de uma tela já exibida: a contagem é feita no preparo e guardada, então
+     * nenhuma das duas estratégias repete o COUNT e a medição compara só a consulta da página.
+     */
+    @State(Scope.Thread)
+    public static class Paginacao {
+
+        @Param({"1", "100", "1000", "9000"})
+        public int profundidade;
+
+        private EntityManager em;
+        private PacienteLazyDataModel offset;
+        private PacienteLazyDataModel keyset;
+        private boolean avancar = true;
+
+        @Setup
+        public void preparar(BancoLocal banco) {
+            em = banco.sessionFactory.createEntityManager();
+            PacienteRepository pacientes = Componentes.pacienteRepository(em, banco.esquemaBusca);
+            long total = pacientes.count(SEM_FILTROS);
+            if (first() + 2L * TAMANHO_PAGINA > total) {
+                throw new IllegalStateException("Página " + profundidade + " além do fim da lista (" + total
+                        + " pacientes): use uma escala maior (-p escala=100) ou outra profundidade");
+            }
+            offset = Componentes.pacienteModel(pacientes);
+            keyset = Componentes.pacienteModel(pacientes);
+            // Chegada à página N por OFFSET (salto), com a contagem
+            offset.load(first(), TAMANHO_PAGINA, "nome", SortOrder.ASCENDING, SEM_FILTROS);
+            keyset.load(first(), TAMANHO_PAGINA, "nome", SortOrder.ASCENDING, SEM_FILTROS);
+            em.clear();
+        }
+
+        @TearDown
+        public void encerrar() {
+            em.close();
+        }
+
+        int first() {
+            return profundidade * TAMANHO_PAGINA;
+        }
+
+        private <T> T descartarContexto(T resultado) {
+            em.clear();
+            return resultado;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package br.com.teste.benchmark;
+
+import br.com.teste.analitico.ItensColunares;
+import br.com.teste.bean.ConsultaMedicamentosBean;
+import br.com.teste.busca.EsquemaBusca;
+import br.com.teste.cache.VersaoTabelas;
+import br.com.teste.datamodel.PacienteLazyDataModel;
+import br.com.teste.datamodel.ReceitaResumoLazyDataModel;
+import br.com.teste.estatistica.ContadoresPrescricao;
+import br.com.teste.job.AtualizacaoRelatorio;
+import br.com.teste.model.Medicamento;
+import br.com.teste.model.MedicamentoReceitado;
+import br.com.teste.model.MedicamentoTotal;
+import br.com.teste.model.Paciente;
+import br.com.teste.model.PacienteTotal;
+import br.com.teste.model.Receita;
+import br.com.teste.replica.ReplicaLeitura;
+import br.com.teste.repository.PacienteRepository;
+import br.com.teste.repository.ReceitaRepository;
+import br.com.teste.repository.ReceitaResumoRepository;
+import br.com.teste.repository.TotaisPrescricaoRepository;
+import br.com.teste.sql.InspetorSql;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.postgresql.ds.PGSimpleDataSource;
+
+import javax.persistence.EntityManager;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Montagem dos repositórios e LazyDataModels fora do servidor de aplicação.
+ * O que o WildFly injetaria (EntityManager, EsquemaBusca, VersaoTabelas, bean de filtros) é atribuído
+ * diretamente nos campos, para que o código medido seja exatamente o da aplicação.
+ */
+final class Componentes {
+
+    /** Mesmas entidades do testePU (persistence.xml da aplicação) */
+    private static final Class<?>[] ENTIDADES = {
+            Paciente.class, Medicamento.class, Receita.class, MedicamentoReceitado.class,
+            MedicamentoTotal.class, PacienteTotal.class
+    };
+
+    private Componentes() {
+    }
+
+    /**
+     * SessionFactory (também EntityManagerFactory) com o mapeamento da aplicação, sem cache de segundo nível,
+     * com os lotes JDBC e o InspetorSql do persistence.xml (ContagemSql funciona como na aplicação). Sem URL de conexão nas propriedades nenhuma conexão é aberta: serve para montar consultas sem banco.
+     */
+    static SessionFactory sessionFactory(Map<String, Object> propriedades) {
+        StandardServiceRegistry registro = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.DIALECT, PostgreSQLDialect.class.getName())
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "none")
+                .applySetting(AvailableSettings.USE_SECOND_LEVEL_CACHE, false)
+                .applySetting(AvailableSettings.USE_QUERY_CACHE, false)
+                .applySetting("hibernate.temp.use_jdbc_metadata_defaults", false)
+                .applySetting(AvailableSettings.STATEMENT_INSPECTOR, InspetorSql.class.getName())
+                .applySetting(AvailableSettings.STATEMENT_BATCH_SIZE, 50)
+                .applySetting(AvailableSettings.ORDER_INSERTS, true)
+                .applySetting(AvailableSettings.ORDER_UPDATES, true)
+                .applySetting(AvailableSettings.BATCH_VERSIONED_DATA, true)
+                .applySettings(propriedades)
+                .build();
+        MetadataSources fontes = new MetadataSources(registro);
+        for (Class<?> entidade : ENTIDADES) {
+            fontes.addAnnotatedClass(entidade);
+        }
+        return fontes.buildMetadata().buildSessionFactory();
+    }
+
+    /** SessionFactory conectada ao mesmo banco do DataSource (pool do próprio Hibernate). */
+    static SessionFactory sessionFactory(PGSimpleDataSource dataSource) {
+        Map<String, Object> propriedades = new HashMap<>();
+        propriedades.put(AvailableSettings.URL, dataSource.getUrl());
+        propriedades.put(AvailableSettings.USER, dataSource.getUser());
+        propriedades.put(AvailableSettings.PASS, dataSource.getPassword());
+        propriedades.put(AvailableSettings.POOL_SIZE, 8);
+        return sessionFactory(propriedades);
+    }
+
+    /** EsquemaBusca com a busca por trigramas fixada (sem executar o DDL do init). */
+    static EsquemaBusca esquemaBusca(boolean trigrama) {
+        EsquemaBusca busca = new EsquemaBusca();
+        injetar(busca, "trigramaDisponivel", trigrama);
+        return busca;
+    }
+
+    static PacienteRepository pacienteRepository(EntityManager em, EsquemaBusca busca) {
+        PacienteRepository repository = new PacienteRepository();
+        injetar(repository, "em", em);
+        injetar(repository, "esquemaBusca", busca);
+        injetar(repository, "versoes", new VersaoTabelas());
+        return repository;
+    }
+
+    static ReceitaRepository receitaRepository(EntityManager em, EsquemaBusca busca) {
+        ReceitaRepository repository = new ReceitaRepository();
+        injetar(repository, "em", em);
+        injetar(repository, "esquemaBusca", busca);
+        injetar(repository, "versoes", new VersaoTabelas());
+        return repository;
+    }
+
+    /**
+     * ReceitaRepository com tudo o que as escritas de itens atualizam: contadores agregados e resumo no banco,
+     * contadores e itens em colunas na memória (vazios; sem transação JTA as alterações são aplicadas na hora).
+     * A atualização do relatório fica inerte: nenhuma geração é agendada.
+     */
+    static ReceitaRepository receitaRepositoryEscrita(EntityManager em, EsquemaBusca busca) {
+        ReceitaRepository repository = receitaRepository(em, busca);
+        injetar(repository, "totaisRepository", totaisRepository(em));
+        injetar(repository, "resumoRepository", receitaResumoRepository(em, busca));
+        injetar(repository, "contadores", new ContadoresPrescricao());
+        injetar(repository, "itensColunares", new ItensColunares());
+        AtualizacaoRelatorio atualizacao = new AtualizacaoRelatorio();
+        // Geração "já agendada": registrarEscrita não chega ao executor (ausente fora do servidor)
+        ((AtomicBoolean) ler(atualizacao, "agendada")).set(true);
+        injetar(repository, "atualizacaoRelatorio", atualizacao);
+        return repository;
+    }
+
+    static ReceitaResumoRepository receitaResumoRepository(EntityManager em, EsquemaBusca busca) {
+        ReceitaResumoRepository repository = new ReceitaResumoRepository();
+        injetar(repository, "em", em);
+        injetar(repository, "esquemaBusca", busca);
+        return repository;
+    }
+
+    static TotaisPrescricaoRepository totaisRepository(EntityManager em) {
+        TotaisPrescricaoRepository repository = new TotaisPrescricaoRepository();
+        injetar(repository, "em", em);
+        return repository;
+    }
+
+    static PacienteLazyDataModel pacienteModel(PacienteRepository repository) {
+        PacienteLazyDataModel model = new PacienteLazyDataModel();
+        injetar(model, "repository", repository);
+        injetar(model, "versoes", new VersaoTabelas());
+        return model;
+    }
+
+    static ReceitaResumoLazyDataModel receitaResumoModel(ReceitaRepository repository, ConsultaMedicamentosBean filtros) {
+        ReceitaResumoLazyDataModel model = new ReceitaResumoLazyDataModel();
+        injetar(model, "repository", repository);
+        injetar(model, "filtrosBean", filtros);
+        injetar(model, "versoes", new VersaoTabelas());
+        injetar(model, "replica", new ReplicaLeitura());
+        return model;
+    }
+
+    /** Valor do campo (declarado na classe do alvo ou em uma superclasse). */
+    static Object ler(Object alvo, String campo) {
+        return acessar(alvo, campo, false, null);
+    }
+
+    /** Atribui o valor ao campo (declarado na classe do alvo ou em uma superclasse), como faz a injeção do container. */
+    static void injetar(Object alvo, String campo, Object valor) {
+        acessar(alvo, campo, true, valor);
+    }
+
+    private static Object acessar(Object alvo, String campo, boolean atribuir, Object valor) {
+        for (Class<?> c = alvo.getClass(); c != null; c = c.getSuperclass()) {
+            try {
+                Field f = c.getDeclaredField(campo);
+                f.setAccessible(true);
+                if (!atribuir) {
+                    return f.get(alvo);
+                }
+                f.set(alvo, valor);
+                return null;
+            } catch (NoSuchFieldException e) {
+                // procura na superclasse
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Campo " + campo + " inacessível em " + c.getName(), e);
+            }
+        }
+        throw new IllegalArgumentException("Campo " + campo + " não existe em " + alvo.getClass().getName());
+    }
+}
@@ -0,0 +1,101 @@
+package br.com.teste.benchmark;
+
+import br.com.teste.busca.EsquemaBusca;
+import br.com.teste.repository.PacienteRepository;
+import br.com.teste.repository.ReceitaRepository;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.primefaces.model.FilterMeta;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo de montar as consultas dos repositórios, sem banco: Criteria do PacienteRepository
+ * (buildPredicates, ordenação, keyset, contagem), SQL nativo do resumo e JPQL do relatório.
+ * Inclui a passagem pelo Hibernate (Criteria → JPQL → plano em cache), mas não a execução no JDBC.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConstrucaoConsultaBenchmark {
+
+    /** Filtro de nome com f_unaccent(lower(nome)) (true) ou lower(nome) (false) */
+    @Param({"false", "true"})
+    public boolean trigrama;
+
+    private SessionFactory sessionFactory;
+    private Session sessao;
+    private PacienteRepository pacientes;
+    private ReceitaRepository receitas;
+
+    private final Map<String, FilterMeta> semFiltros = Collections.emptyMap();
+    private final Map<String, FilterMeta> filtros = new HashMap<>();
+
+    @Setup
+    public void preparar() {
+        sessionFactory = Componentes.sessionFactory(Collections.emptyMap());
+        sessao = sessionFactory.openSession();
+        EntityManager em = EntityManagerSemBanco.criar(sessao, Collections.emptyList());
+        EsquemaBusca busca = Componentes.esquemaBusca(trigrama);
+        pacientes = Componentes.pacienteRepository(em, busca);
+        receitas = Componentes.receitaRepository(em, busca);
+        filtros.put("nome", new FilterMeta("nome", "José"));
+        filtros.put("cpf", new FilterMeta("cpf", "123"));
+    }
+
+    @TearDown
+    public void encerrar() {
+        sessao.close();
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public Object pacientePaginaSemFiltros() {
+        return pacientes.findPage(0, 10, semFiltros, "nome", true);
+    }
+
+    @Benchmark
+    public Object pacientePaginaComFiltros() {
+        return pacientes.findPage(100, 10, filtros, "cpf", false);
+    }
+
+    @Benchmark
+    public Object pacientePaginaKeyset() {
+        return pacientes.findPageKeyset(10, filtros, "nome", true, "Maria", 1000L, true);
+    }
+
+    @Benchmark
+    public Object pacienteContagem() {
+        return pacientes.count(filtros);
+    }
+
+    @Benchmark
+    public List<?> resumoPaginaNativa() {
+        return receitas.findResumoPage(0, 10, "pacienteNome", true, "José", "dipirona", null, null, false);
+    }
+
+    @Benchmark
+    public List<?> topMedicamentosJpql() {
+        return receitas.topMedicamentos(10);
+    }
+}
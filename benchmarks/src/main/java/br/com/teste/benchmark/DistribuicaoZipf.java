@@ -0,0 +1,32 @@
+package br.com.teste.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * Distribuição de Zipf sobre n posições: a posição k (0 = mais frequente) tem probabilidade proporcional
+ * a 1 / (k + 1)^expoente. Amostragem por pesquisa binária na distribuição acumulada, pré-calculada.
+ */
+final class DistribuicaoZipf {
+
+    private final double[] acumulada;
+
+    DistribuicaoZipf(int n, double expoente) {
+        acumulada = new double[n];
+        double soma = 0;
+        for (int k = 0; k < n; k++) {
+            soma += 1.0 / Math.pow(k + 1, expoente);
+            acumulada[k] = soma;
+        }
+        for (int k = 0; k < n; k++) {
+            acumulada[k] /= soma;
+        }
+    }
+
+    /** Posição sorteada para um valor uniforme em [0, 1). */
+    int posicao(double u) {
+        int i = Arrays.binarySearch(acumulada, u);
+        // Primeira posição com acumulada > u
+        i = i >= 0 ? i + 1 : -i - 1;
+        return Math.min(i, acumulada.length - 1);
+    }
+}
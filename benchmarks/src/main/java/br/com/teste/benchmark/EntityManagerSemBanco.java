@@ -0,0 +1,67 @@
+package br.com.teste.benchmark;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+/**
+ * EntityManager para medir a montagem das consultas sem banco.
+ * createQuery/createNativeQuery passam pelo Hibernate de verdade (Criteria → JPQL → plano de consulta,
+ * em cache como no servidor), mas a execução devolve as linhas informadas em vez de ir ao JDBC.
+ */
+final class EntityManagerSemBanco {
+
+    private EntityManagerSemBanco() {
+    }
+
+    /**
+     * @param real EntityManager (Session) sem conexão, usado para criar as consultas
+     * @param linhas resultado de getResultList; getSingleResult devolve a primeira linha (ou 0 se vazio)
+     */
+    static EntityManager criar(EntityManager real, List<?> linhas) {
+        return (EntityManager) Proxy.newProxyInstance(EntityManager.class.getClassLoader(),
+                new Class<?>[]{EntityManager.class}, (proxy, metodo, args) -> {
+                    Object resultado = invocar(real, metodo, args);
+                    if (resultado instanceof Query && metodo.getName().startsWith("create")) {
+                        return consulta((Query) resultado, metodo.getReturnType(), linhas);
+                    }
+                    return resultado;
+                });
+    }
+
+    /** Consulta que repassa parâmetros e limites ao Hibernate e responde a execução com as linhas fixas. */
+    private static Object consulta(Query real, Class<?> tipo, List<?> linhas) {
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+                switch (metodo.getName()) {
+                    case "getResultList":
+                        return linhas;
+                    case "getResultStream":
+                        return linhas.stream();
+                    case "getSingleResult":
+                        return linhas.isEmpty() ? 0L : linhas.get(0);
+                    case "executeUpdate":
+                        return 0;
+                    default:
+                        Object resultado = invocar(real, metodo, args);
+                        // Métodos encadeáveis (setParameter, setMaxResults...) continuam no proxy
+                        return resultado == real ? proxy : resultado;
+                }
+            }
+        };
+        return Proxy.newProxyInstance(EntityManager.class.getClassLoader(), new Class<?>[]{tipo}, handler);
+    }
+
+    private static Object invocar(Object alvo, Method metodo, Object[] args) throws Throwable {
+        try {
+            return metodo.invoke(alvo, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package br.com.teste.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Ponto de entrada do benchmarks.jar: aceita as opções do JMH (-h lista todas) e, quando não informado,
+ * grava o resultado em JSON em resultados/jmh-&lt;data&gt;.json, para comparar execuções
+ * (ex.: jmh.morethan.io ou um diff dos campos primaryMetric.score).
+ * Sem -Dteste.benchmark.url os benchmarks de banco ({@link CarregamentoPaginaBenchmark}, {@link BuscaNomeBenchmark},
+ * {@link GravacaoReceitaBenchmark}) ficam de fora, e sem
+ * -Dteste.benchmark.servidor o de HTTP contra a aplicação implantada ({@link ApiHttpBenchmark}).
+ */
+public final class Executar {
+
+    private Executar() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions linha = new CommandLineOptions(args);
+        if (linha.shouldHelp()) {
+            linha.showHelp();
+            return;
+        }
+        if (linha.shouldList() || linha.shouldListWithParams() || linha.shouldListProfilers()
+                || linha.shouldListResultFormats()) {
+            // Listagens ficam a cargo do próprio JMH
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder opcoes = new OptionsBuilder().parent(linha);
+        if (!linha.getResultFormat().hasValue()) {
+            opcoes.resultFormat(ResultFormatType.JSON);
+        }
+        if (!linha.getResult().hasValue()) {
+            File pasta = new File("resultados");
+            if (!pasta.isDirectory() && !pasta.mkdirs()) {
+                throw new IllegalStateException("Não foi possível criar a pasta " + pasta.getAbsolutePath());
+            }
+            opcoes.result(new File(pasta, "jmh-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date())
+                    + ".json").getPath());
+        }
+        if (!BancoLocal.configurado()) {
+            System.out.println("-D" + BancoLocal.PROP_URL + " não informado: benchmarks de banco ignorados");
+            opcoes.exclude(CarregamentoPaginaBenchmark.class.getName());
+            opcoes.exclude(BuscaNomeBenchmark.class.getName());
+            opcoes.exclude(GravacaoReceitaBenchmark.class.getName());
+            opcoes.exclude(InsercaoItensBenchmark.class.getName());
+        }
+        if (!ApiHttpBenchmark.configurado()) {
+            System.out.println("-D" + ApiHttpBenchmark.PROP_SERVIDOR + " não informado: benchmark HTTP ignorado");
+            opcoes.exclude(ApiHttpBenchmark.class.getName());
+        }
+        new Runner(opcoes.build()).run();
+    }
+}
@@ -0,0 +1,345 @@
+package br.com.teste.benchmark;
+
+import br.com.teste.busca.EsquemaBusca;
+import org.hibernate.SessionFactory;
+import org.postgresql.ds.PGSimpleDataSource;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Gerador de dados sintéticos por fator de escala, base padrão do trabalho de desempenho
+ * (substitui o dump de 30 pacientes, pequeno demais para revelar problemas de volume).
+ *
+ * - Escala e: {@value #PACIENTES_POR_ESCALA} × e pacientes, {@value #RECEITAS_POR_ESCALA} × e receitas e um
+ *   catálogo fixo de {@value #MEDICAMENTOS} medicamentos (escala 1000 = 1 milhão de pacientes).
+ * - Popularidade dos medicamentos com distribuição de Zipf (poucos medicamentos concentram a maior parte dos itens)
+ *   e itens por receita com cauda longa (Pareto discreta: a maioria com 1 a 3, algumas com dezenas).
+ * - Nomes brasileiros com acentos e CPFs válidos e únicos.
+ * - Datas de emissão crescentes com o ID da receita, distribuídas pelos {@value #MESES_EMISSAO} meses anteriores
+ *   à data de referência (padrão {@link #REFERENCIA_PADRAO}; as partições mensais dos itens são criadas antes).
+ * - Determinístico: cada valor depende só da semente, da data de referência e do ID, então a mesma escala,
+ *   semente e referência produzem os mesmos dados com qualquer quantidade de threads, em qualquer dia.
+ *
+ * A carga apaga os dados das tabelas de negócio, grava em paralelo via COPY (um commit por bloco de
+ * {@value #LINHAS_POR_TAREFA} registros) e recalcula o resumo da consulta e os contadores do relatório.
+ *
+ * Uso: java -Dteste.benchmark.url=jdbc:postgresql://localhost:5432/banco -cp benchmarks.jar
+ * br.com.teste.benchmark.GeradorDados &lt;escala&gt; [semente] [referência aaaa-mm-dd]
+ */
+public final class GeradorDados {
+
+    private static final Logger LOG = Logger.getLogger(GeradorDados.class.getName());
+
+    /** Threads (e conexões) da carga; padrão: processadores disponíveis, até 8 */
+    public static final String PROP_THREADS = "teste.gerador.threads";
+
+    public static final long SEMENTE_PADRAO = 42L;
+
+    /** Fim do período das datas de emissão (exclusive) quando não informado */
+    public static final LocalDate REFERENCIA_PADRAO = LocalDate.of(2026, 10, 1);
+
+    static final int PACIENTES_POR_ESCALA = 1_000;
+    static final int RECEITAS_POR_ESCALA = 4_000;
+    static final int MEDICAMENTOS = NomesBrasileiros.MEDICAMENTOS_DISTINTOS;
+
+    /** Expoente da distribuição de Zipf da popularidade dos medicamentos */
+    private static final double EXPOENTE_ZIPF = 1.1;
+
+    /** Expoente da cauda da quantidade de itens por receita (P(itens ≥ n) ≈ n^-ALFA) e o máximo */
+    private static final double ALFA_ITENS = 1.7;
+    private static final int MAXIMO_ITENS = 40;
+
+    private static final int LINHAS_POR_TAREFA = 50_000;
+
+    /** Meses cobertos pelas datas de emissão das receitas, terminando na data de referência */
+    static final int MESES_EMISSAO = 24;
+
+    private static final DateTimeFormatter FORMATO_DATA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /** Tentativas de sortear um medicamento ainda não presente na mesma receita */
+    private static final int TENTATIVAS_MEDICAMENTO = 8;
+
+    private static final int CANAL_PACIENTE_RECEITA = 10;
+    private static final int CANAL_ITENS = 11;
+    private static final int CANAL_MEDICAMENTO = 12;
+
+    private final DataSource dataSource;
+    private final int escala;
+    private final long semente;
+    private final int threads;
+    private final DistribuicaoZipf popularidade = new DistribuicaoZipf(MEDICAMENTOS, EXPOENTE_ZIPF);
+
+    /** Deslocamento da permutação posição de popularidade → ID do medicamento (o mais popular não é sempre o ID 1) */
+    private final int deslocamentoMedicamento;
+
+    /** Início do período das datas de emissão (a última receita é emitida pouco antes da data de referência) */
+    private final LocalDateTime inicioEmissao;
+    private final LocalDateTime fimEmissao;
+    private final long segundosEmissao;
+
+    /**
+     * @param referencia fim do período das datas de emissão (exclusive): as receitas ocupam os
+     *                   {@value #MESES_EMISSAO} meses anteriores
+     */
+    public GeradorDados(DataSource dataSource, int escala, long semente, LocalDate referencia, int threads) {
+        if (escala < 1) {
+            throw new IllegalArgumentException("Escala deve ser maior ou igual a 1");
+        }
+        this.dataSource = dataSource;
+        this.escala = escala;
+        this.semente = semente;
+        this.threads = threads;
+        this.deslocamentoMedicamento = (int) Math.floorMod(Aleatorio.misturar(semente), (long) MEDICAMENTOS);
+        this.fimEmissao = referencia.atStartOfDay();
+        this.inicioEmissao = fimEmissao.minusMonths(MESES_EMISSAO);
+        this.segundosEmissao = Duration.between(inicioEmissao, fimEmissao).getSeconds();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Uso: GeradorDados <escala> [semente] [referência aaaa-mm-dd]  (banco: -D"
+                    + BancoLocal.PROP_URL + "=...)");
+            System.exit(2);
+        }
+        int escala = Integer.parseInt(args[0]);
+        long semente = args.length > 1 ? Long.parseLong(args[1]) : SEMENTE_PADRAO;
+        LocalDate referencia = args.length > 2 ? LocalDate.parse(args[2]) : REFERENCIA_PADRAO;
+        PGSimpleDataSource dataSource = BancoLocal.dataSource();
+        EsquemaBusca esquemaBusca = BancoLocal.prepararEsquema(dataSource);
+        SessionFactory sessionFactory = Componentes.sessionFactory(dataSource);
+        try {
+            new GeradorDados(dataSource, escala, semente, referencia, threadsPadrao()).gerar(sessionFactory, esquemaBusca);
+        } finally {
+            sessionFactory.close();
+        }
+    }
+
+    /** Valor de {@value #PROP_THREADS} ou a quantidade de processadores (até 8). */
+    public static int threadsPadrao() {
+        return Integer.getInteger(PROP_THREADS, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    }
+
+    long pacientes() {
+        return (long) PACIENTES_POR_ESCALA * escala;
+    }
+
+    long receitas() {
+        return (long) RECEITAS_POR_ESCALA * escala;
+    }
+
+    /**
+     * true se o banco já tem o volume desta escala (pacientes, receitas e medicamentos) e a última receita
+     * tem a data de emissão desta referência.
+     */
+    public boolean carregado() throws SQLException {
+        try (Connection con = dataSource.getConnection()) {
+            return contar(con, "paciente") == pacientes() && contar(con, "receita") == receitas()
+                    && contar(con, "medicamento") == MEDICAMENTOS
+                    && dataEmissao(receitas()).equals(ultimaEmissao(con));
+        }
+    }
+
+    /** Substitui os dados das tabelas de negócio pelos desta escala e recalcula os modelos de leitura. */
+    public void gerar(SessionFactory sessionFactory, EsquemaBusca esquemaBusca)
+            throws SQLException, InterruptedException {
+        long inicio = System.currentTimeMillis();
+        try (Connection con = dataSource.getConnection(); Statement st = con.createStatement()) {
+            st.execute("truncate table receita_resumo, medicamento_total, paciente_total, " +
+                    "medicamento_receitado_arquivo, receita_arquivo, medicamento_receitado, receita, receita_origem, paciente, medicamento");
+            // Até o mês corrente também: os benchmarks de gravação incluem receitas com a data de hoje
+            st.execute("select criar_particoes_medicamento_receitado(timestamp '" + FORMATO_DATA.format(inicioEmissao)
+                    + "', greatest(localtimestamp, timestamp '" + FORMATO_DATA.format(fimEmissao)
+                    + "') + interval '3 months')");
+        }
+        copiarMedicamentos();
+
+        List<Callable<Long>> tarefas = new ArrayList<>();
+        for (long de = 1; de <= pacientes(); de += LINHAS_POR_TAREFA) {
+            long primeiro = de;
+            tarefas.add(() -> copiarPacientes(primeiro, Math.min(primeiro + LINHAS_POR_TAREFA - 1, pacientes())));
+        }
+        long linhasPacientes = executar(tarefas);
+
+        // IDs dos itens contíguos: o primeiro ID de cada bloco de receitas vem da soma dos itens dos blocos anteriores
+        tarefas.clear();
+        long proximoItem = 1;
+        for (long de = 1; de <= receitas(); de += LINHAS_POR_TAREFA) {
+            long primeiro = de;
+            long ultimo = Math.min(de + LINHAS_POR_TAREFA - 1, receitas());
+            long primeiroItem = proximoItem;
+            tarefas.add(() -> copiarReceitas(primeiro, ultimo, primeiroItem));
+            for (long id = primeiro; id <= ultimo; id++) {
+                proximoItem += itens(id);
+            }
+        }
+        long linhasReceitas = executar(tarefas);
+        long itens = proximoItem - 1;
+
+        try (Connection con = dataSource.getConnection(); Statement st = con.createStatement()) {
+            for (String tabela : new String[]{"paciente", "medicamento", "receita", "medicamento_receitado"}) {
+                st.execute("select setval('" + tabela + "_id_seq', (select coalesce(max(id), 1) from " + tabela + "))");
+            }
+        }
+        long carga = System.currentTimeMillis() - inicio;
+        LOG.info("Escala " + escala + " (semente " + semente + "): " + linhasPacientes + " pacientes e "
+                + linhasReceitas + " receitas com itens (" + itens + " itens) em " + carga + " ms, "
+                + (linhasPacientes + linhasReceitas + itens) * 1000 / Math.max(1, carga) + " linhas/s, "
+                + threads + " threads");
+
+        long inicioResumo = System.currentTimeMillis();
+        EntityManager em = sessionFactory.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            Componentes.receitaResumoRepository(em, esquemaBusca).reconstruir();
+            Componentes.totaisRepository(em).reconstruir();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+        try (Connection con = dataSource.getConnection(); Statement st = con.createStatement()) {
+            st.execute("analyze");
+        }
+        LOG.info("Resumo, contadores e estatísticas recalculados em " + (System.currentTimeMillis() - inicioResumo) + " ms");
+    }
+
+    /** Quantidade de itens da receita: Pareto discreta com mínimo 1, limitada a {@value #MAXIMO_ITENS}. */
+    int itens(long idReceita) {
+        double u = Aleatorio.uniforme(semente, idReceita, CANAL_ITENS);
+        return (int) Math.min(MAXIMO_ITENS, Math.floor(Math.pow(1 - u, -1 / ALFA_ITENS)));
+    }
+
+    /** Data de emissão da receita (texto do COPY): proporcional ao ID dentro do período. */
+    private String dataEmissao(long idReceita) {
+        return FORMATO_DATA.format(inicioEmissao.plusSeconds((idReceita - 1) * segundosEmissao / receitas()));
+    }
+
+    /** ID (1 a MEDICAMENTOS) do medicamento da posição de popularidade sorteada. */
+    private int medicamento(long idItem, int tentativa) {
+        int posicao = popularidade.posicao(Aleatorio.uniforme(semente, idItem, CANAL_MEDICAMENTO + tentativa * 16));
+        // 617 é primo e não divide MEDICAMENTOS: permutação das posições
+        return 1 + (int) ((posicao * 617L + deslocamentoMedicamento) % MEDICAMENTOS);
+    }
+
+    private void copiarMedicamentos() throws SQLException {
+        try (Connection con = conexao()) {
+            SaidaCopy copy = new SaidaCopy(con, "copy medicamento (id, nome) from stdin");
+            for (int i = 0; i < MEDICAMENTOS; i++) {
+                copy.campo(i + 1).campo(NomesBrasileiros.medicamento(i)).fimLinha();
+            }
+            copy.concluir();
+            con.commit();
+        }
+    }
+
+    private long copiarPacientes(long de, long ate) throws SQLException {
+        try (Connection con = conexao()) {
+            SaidaCopy copy = new SaidaCopy(con, "copy paciente (id, nome, cpf) from stdin");
+            for (long id = de; id <= ate; id++) {
+                copy.campo(id).campo(NomesBrasileiros.paciente(semente, id)).campo(NomesBrasileiros.cpf(semente, id - 1))
+                        .fimLinha();
+            }
+            long linhas = copy.concluir();
+            con.commit();
+            return linhas;
+        }
+    }
+
+    /** Receitas do bloco e, na mesma transação, os itens delas (IDs a partir de primeiroItem). */
+    private long copiarReceitas(long de, long ate, long primeiroItem) throws SQLException {
+        try (Connection con = conexao()) {
+            SaidaCopy receitas = new SaidaCopy(con, "copy receita (id, id_paciente, data_emissao) from stdin");
+            for (long id = de; id <= ate; id++) {
+                long paciente = 1 + (long) (Aleatorio.uniforme(semente, id, CANAL_PACIENTE_RECEITA) * pacientes());
+                receitas.campo(id).campo(paciente).campo(dataEmissao(id)).fimLinha();
+            }
+            long linhas = receitas.concluir();
+
+            SaidaCopy itens = new SaidaCopy(con,
+                    "copy medicamento_receitado (id, id_receita, id_medicamento, data_emissao) from stdin");
+            int[] escolhidos = new int[MAXIMO_ITENS];
+            long idItem = primeiroItem;
+            for (long id = de; id <= ate; id++) {
+                int n = itens(id);
+                String emissao = dataEmissao(id);
+                for (int k = 0; k < n; k++, idItem++) {
+                    int medicamento = medicamento(idItem, 0);
+                    for (int t = 1; t < TENTATIVAS_MEDICAMENTO && repetido(escolhidos, k, medicamento); t++) {
+                        medicamento = medicamento(idItem, t);
+                    }
+                    escolhidos[k] = medicamento;
+                    itens.campo(idItem).campo(id).campo(medicamento).campo(emissao).fimLinha();
+                }
+            }
+            itens.concluir();
+            con.commit();
+            return linhas;
+        }
+    }
+
+    private static boolean repetido(int[] escolhidos, int quantidade, int medicamento) {
+        for (int i = 0; i < quantidade; i++) {
+            if (escolhidos[i] == medicamento) return true;
+        }
+        return false;
+    }
+
+    /** Conexão da carga: transação explícita e sem esperar o flush do WAL a cada commit (dados descartáveis). */
+    private Connection conexao() throws SQLException {
+        Connection con = dataSource.getConnection();
+        try (Statement st = con.createStatement()) {
+            st.execute("set synchronous_commit = off");
+        }
+        con.setAutoCommit(false);
+        return con;
+    }
+
+    private long executar(List<Callable<Long>> tarefas) throws SQLException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long total = 0;
+            for (Future<Long> f : executor.invokeAll(tarefas)) {
+                total += f.get();
+            }
+            return total;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new IllegalStateException("Falha na carga dos dados sintéticos", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String ultimaEmissao(Connection con) throws SQLException {
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("select to_char(max(data_emissao), 'YYYY-MM-DD HH24:MI:SS') from receita")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private static long contar(Connection con, String tabela) throws SQLException {
+        try (Statement st = con.createStatement(); ResultSet rs = st.executeQuery("select count(*) from " + tabela)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package br.com.teste.benchmark;
+
+import br.com.teste.model.MedicamentoReceitado;
+import br.com.teste.model.Paciente;
+import br.com.teste.model.Receita;
+import br.com.teste.repository.ReceitaRepository;
+import br.com.teste.sql.ContagemSql;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gravação dos itens de uma receita contra o PostgreSQL local ({@link BancoLocal}), como na tela de cadastro:
+ * - itemAItem: um medicamento por vez (addMedicamento em uma transação por item), relendo os itens da receita
+ *   após cada inclusão, como a tela fazia antes do rascunho;
+ * - rascunho: os mesmos medicamentos em uma única transação (addMedicamentos, INSERTs em lote) e uma releitura.
+ * Cada chamada grava uma receita nova (criada fora da medição) com -p itens=10 medicamentos sorteados.
+ * Ao final imprime a média de comandos SQL e de transações por receita (ContagemSql).
+ *
+ * Grava no banco: as receitas incluídas mudam o volume da escala, e a execução seguinte de um benchmark de banco
+ * recarrega os dados do {@link GeradorDados}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class GravacaoReceitaBenchmark {
+
+    /** Medicamentos por receita */
+    @Param({"10"})
+    public int itens;
+
+    private EntityManager em;
+    private ReceitaRepository receitas;
+    private final Random aleatorio = new Random(42);
+    private List<Long> idsPacientes;
+    private List<Long> idsMedicamentos;
+
+    /** Receita da próxima chamada e os medicamentos que ela recebe */
+    private Long idReceita;
+    private List<Long> medicamentos;
+
+    private long gravadas;
+    private long comandos;
+    private long transacoes;
+
+    @Setup
+    public void preparar(BancoLocal banco) {
+        em = banco.sessionFactory.createEntityManager();
+        receitas = Componentes.receitaRepositoryEscrita(em, banco.esquemaBusca);
+        idsPacientes = em.createQuery("select p.id from Paciente p", Long.class).setMaxResults(10_000).getResultList();
+        idsMedicamentos = em.createQuery("select m.id from Medicamento m", Long.class).getResultList();
+    }
+
+    @Setup(Level.Invocation)
+    public void novaReceita() throws Exception {
+        Receita r = new Receita();
+        r.setPaciente(em.getReference(Paciente.class, idsPacientes.get(aleatorio.nextInt(idsPacientes.size()))));
+        idReceita = emTransacao(() -> receitas.save(r)).getId();
+        em.clear();
+        medicamentos = new ArrayList<>(itens);
+        for (int i = 0; i < itens; i++) {
+            medicamentos.add(idsMedicamentos.get(aleatorio.nextInt(idsMedicamentos.size())));
+        }
+    }
+
+    @TearDown
+    public void encerrar() {
+        if (gravadas > 0) {
+            System.out.printf("%n%d receita(s) de %d itens: %.1f comandos SQL e %.1f transações por receita%n",
+                    gravadas, itens, (double) comandos / gravadas, (double) transacoes / gravadas);
+        }
+        em.close();
+    }
+
+    @Benchmark
+    public List<MedicamentoReceitado> itemAItem() throws Exception {
+        try (ContagemSql.Escopo escopo = ContagemSql.abrir("itemAItem")) {
+            List<MedicamentoReceitado> lidos = null;
+            for (Long idMedicamento : medicamentos) {
+                emTransacao(() -> receitas.addMedicamento(idReceita, idMedicamento));
+                lidos = receitas.listItensByReceita(idReceita);
+                em.clear();
+            }
+            contar(escopo, medicamentos.size());
+            return lidos;
+        }
+    }
+
+    @Benchmark
+    public List<MedicamentoReceitado> rascunho() throws Exception {
+        try (ContagemSql.Escopo escopo = ContagemSql.abrir("rascunho")) {
+            emTransacao(() -> receitas.addMedicamentos(idReceita, medicamentos));
+            List<MedicamentoReceitado> lidos = receitas.listItensByReceita(idReceita);
+            em.clear();
+            contar(escopo, 1);
+            return lidos;
+        }
+    }
+
+    private void contar(ContagemSql.Escopo escopo, int transacoesDaReceita) {
+        gravadas++;
+        comandos += escopo.getComandos();
+        transacoes += transacoesDaReceita;
+    }
+
+    /** Executa a ação em uma transação local (o container faria o mesmo na chamada ao EJB). */
+    private <T> T emTransacao(Callable<T> acao) throws Exception {
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        try {
+            T resultado = acao.call();
+            tx.commit();
+            return resultado;
+        } finally {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package br.com.teste.benchmark;
+
+import br.com.teste.busca.IndiceNomes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Busca do autocomplete ({@link IndiceNomes}) em memória, sem banco, sobre os nomes de pacientes do
+ * {@link GeradorDados}: 15 sugestões (padrão de teste.autocomplete.maximo) para termos de 2 letras e mais longos.
+ * Quando há sugestões suficientes com nomes iniciados pelo termo, elas saem direto da ordem por nome; senão todo
+ * sufixo iniciado pelo termo é lido, então um sobrenome comum (que raramente inicia o nome) é o pior caso.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class IndiceNomesBenchmark {
+
+    private static final int SUGESTOES = 15;
+
+    @Param({"500000"})
+    public int nomes;
+
+    /** Termo digitado: 2 letras (mínimo da tela), prenome e sobrenome comuns e nome completo */
+    @Param({"ma", "maria", "silva", "maria silva"})
+    public String termo;
+
+    private IndiceNomes indice;
+
+    @Setup
+    public void preparar() {
+        long[] ids = new long[nomes];
+        String[] textos = new String[nomes];
+        for (int i = 0; i < nomes; i++) {
+            ids[i] = i + 1;
+            textos[i] = NomesBrasileiros.paciente(GeradorDados.SEMENTE_PADRAO, i + 1);
+        }
+        indice = new IndiceNomes(1000);
+        indice.carregar(ids, textos, indice.marca());
+    }
+
+    @Benchmark
+    public List<IndiceNomes.Resultado> buscar() {
+        return indice.buscar(termo, SUGESTOES);
+    }
+}
@@ -0,0 +1,160 @@
+package br.com.teste.benchmark;
+
+import br.com.teste.model.Medicamento;
+import br.com.teste.model.MedicamentoReceitado;
+import br.com.teste.model.Receita;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.postgresql.ds.PGSimpleDataSource;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Inclusão de -p itens=100000 MedicamentoReceitado em uma transação contra o PostgreSQL local ({@link BancoLocal}),
+ * nos dois modos de geração do ID:
+ * - porLinha: como com GenerationType.IDENTITY, um INSERT ... RETURNING id por item (o Hibernate precisa do ID
+ *   gerado pelo banco na hora do persist, então não há lote) e o nextval no default da coluna;
+ * - emLote: persist pelo EntityManager com a sequência em blocos de 50 (otimizador pooled, um nextval a cada
+ *   50 itens) e os INSERTs em lotes JDBC de 50 (hibernate.jdbc.batch_size);
+ * - emLoteReescrito: emLote com reWriteBatchedInserts=true no driver (recomendado no README), que envia cada lote
+ *   como um único INSERT de várias linhas.
+ * Os itens vão para receitas sorteadas entre as existentes. A transação é desfeita ao final de cada chamada:
+ * o volume da escala não muda (somente as sequências avançam).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InsercaoItensBenchmark {
+
+    /** Itens incluídos por chamada */
+    @Param({"100000"})
+    public int itens;
+
+    /** A cada quantos itens o EntityManager é descarregado e limpo no modo emLote (como numa importação) */
+    private static final int DESCARGA = 1_000;
+
+    private EntityManager em;
+    private SessionFactory reescrita;
+    private List<Receita> receitas;
+    private List<Long> idsMedicamentos;
+    private final Random aleatorio = new Random(42);
+
+    @Setup
+    public void preparar(BancoLocal banco) {
+        em = banco.sessionFactory.createEntityManager();
+        receitas = em.createQuery("select r from Receita r", Receita.class).setMaxResults(1_000).getResultList();
+        idsMedicamentos = em.createQuery("select m.id from Medicamento m", Long.class).getResultList();
+        em.clear();
+        PGSimpleDataSource dataSource = BancoLocal.dataSource();
+        dataSource.setReWriteBatchedInserts(true);
+        reescrita = Componentes.sessionFactory(dataSource);
+    }
+
+    @TearDown
+    public void encerrar() {
+        em.close();
+        reescrita.close();
+    }
+
+    @Benchmark
+    public long porLinha() {
+        return desfeita(em, () -> {
+            long[] soma = new long[1];
+            em.unwrap(Session.class).doWork(con -> {
+                try (PreparedStatement ps = con.prepareStatement("insert into medicamento_receitado " +
+                        "(id_receita, id_medicamento, data_emissao) values (?, ?, ?) returning id")) {
+                    for (int i = 0; i < itens; i++) {
+                        Receita r = receita();
+                        ps.setLong(1, r.getId());
+                        ps.setLong(2, medicamento());
+                        ps.setTimestamp(3, new Timestamp(r.getDataEmissao().getTime()));
+                        try (ResultSet rs = ps.executeQuery()) {
+                            rs.next();
+                            soma[0] += rs.getLong(1);
+                        }
+                    }
+                }
+            });
+            return soma[0];
+        });
+    }
+
+    @Benchmark
+    public long emLote() {
+        return persistir(em);
+    }
+
+    @Benchmark
+    public long emLoteReescrito() {
+        EntityManager emReescrita = reescrita.createEntityManager();
+        try {
+            return persistir(emReescrita);
+        } finally {
+            emReescrita.close();
+        }
+    }
+
+    private long persistir(EntityManager em) {
+        return desfeita(em, () -> {
+            long soma = 0;
+            for (int i = 0; i < itens; i++) {
+                MedicamentoReceitado item = new MedicamentoReceitado();
+                item.setReceita(receita());
+                item.setMedicamento(em.getReference(Medicamento.class, medicamento()));
+                em.persist(item);
+                soma += item.getId();
+                if ((i + 1) % DESCARGA == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            em.flush();
+            em.clear();
+            return soma;
+        });
+    }
+
+    /** Receita sorteada, já carregada (a data de emissão dela é copiada para o item). */
+    private Receita receita() {
+        return receitas.get(aleatorio.nextInt(receitas.size()));
+    }
+
+    private long medicamento() {
+        return idsMedicamentos.get(aleatorio.nextInt(idsMedicamentos.size()));
+    }
+
+    /** Executa a inclusão em uma transação local e a desfaz. */
+    private static long desfeita(EntityManager em, LongSupplier inclusao) {
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        try {
+            return inclusao.getAsLong();
+        } finally {
+            tx.rollback();
+            em.clear();
+        }
+    }
+}
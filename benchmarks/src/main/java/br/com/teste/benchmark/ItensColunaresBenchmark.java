@@ -0,0 +1,104 @@
+package br.com.teste.benchmark;
+
+import br.com.teste.analitico.ColunasItens;
+import br.com.teste.analitico.ColunasItens.Coluna;
+import br.com.teste.analitico.ConsultaItens;
+import br.com.teste.dto.PacienteTotalDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consultas do armazenamento colunar de itens ({@link ColunasItens}) em memória, sem banco: os três dados do
+ * relatório "Medicamentos Prescritos" e uma contagem com filtro. Os itens seguem as proporções do
+ * {@link GeradorDados} (10 itens por paciente, 2,5 por receita, medicamentos com popularidade de Zipf).
+ * Na preparação, imprime a memória das colunas e o aumento do heap após a carga.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class ItensColunaresBenchmark {
+
+    private static final long SEMENTE = GeradorDados.SEMENTE_PADRAO;
+    private static final double EXPOENTE_ZIPF = 1.1;
+    private static final int CANAL_PACIENTE = 10;
+    private static final int CANAL_MEDICAMENTO = 12;
+
+    @Param({"1000000", "10000000"})
+    public int itens;
+
+    private ColunasItens colunas;
+
+    /** Medicamento mais prescrito (filtro da consulta com filtro) */
+    private long medicamentoFiltro;
+
+    @Setup
+    public void preparar() {
+        int pacientes = Math.max(1, itens / 10);
+        int receitas = Math.max(1, itens * 2 / 5);
+        int medicamentos = GeradorDados.MEDICAMENTOS;
+        long heapAntes = heapUsado();
+        colunas = new ColunasItens();
+        for (int p = 1; p <= pacientes; p++) {
+            colunas.nomearPaciente(p, NomesBrasileiros.paciente(SEMENTE, p));
+        }
+        for (int m = 0; m < medicamentos; m++) {
+            colunas.nomearMedicamento(m + 1, NomesBrasileiros.medicamento(m));
+        }
+        DistribuicaoZipf popularidade = new DistribuicaoZipf(medicamentos, EXPOENTE_ZIPF);
+        for (int i = 0; i < itens; i++) {
+            long receita = 1 + (long) i * receitas / itens;
+            long paciente = 1 + Aleatorio.inteiro(SEMENTE, receita, CANAL_PACIENTE, pacientes);
+            long medicamento = 1 + popularidade.posicao(Aleatorio.uniforme(SEMENTE, i, CANAL_MEDICAMENTO));
+            colunas.incluir(receita, paciente, medicamento, 1);
+        }
+        medicamentoFiltro = colunas.consulta().contarPor(Coluna.MEDICAMENTO).top(1).get(0).getId();
+        long heapDepois = heapUsado();
+        System.out.printf("%n%d itens, %d pacientes, %d medicamentos: colunas e dicionários %.1f MB, heap +%.1f MB%n",
+                colunas.linhas(), pacientes, medicamentos, colunas.bytes() / 1048576.0,
+                (heapDepois - heapAntes) / 1048576.0);
+    }
+
+    private static long heapUsado() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    @Benchmark
+    public List<ConsultaItens.Total> topMedicamentos() {
+        return colunas.consulta().contarPor(Coluna.MEDICAMENTO).top(2);
+    }
+
+    @Benchmark
+    public List<ConsultaItens.Total> topPacientes() {
+        return colunas.consulta().contarPor(Coluna.PACIENTE).top(2);
+    }
+
+    @Benchmark
+    public List<PacienteTotalDTO> totaisPorPaciente() {
+        return colunas.totaisPorPaciente();
+    }
+
+    /** Pacientes que mais receberam o medicamento mais prescrito. */
+    @Benchmark
+    public List<ConsultaItens.Total> topPacientesDoMedicamento() {
+        return colunas.consulta().onde(Coluna.MEDICAMENTO, medicamentoFiltro).contarPor(Coluna.PACIENTE).top(10);
+    }
+}
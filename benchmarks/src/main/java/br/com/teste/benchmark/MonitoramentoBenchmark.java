@@ -0,0 +1,117 @@
+package br.com.teste.benchmark;
+
+import br.com.teste.metrica.MetricasRepositorio;
+import br.com.teste.metrica.MonitoramentoInterceptor;
+import br.com.teste.repository.PacienteRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.interceptor.InvocationContext;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo do MonitoramentoInterceptor por chamada: a mesma chamada (um proceed que devolve uma lista pronta)
+ * direta e passando pelo interceptor, com 1 e com 4 threads registrando no mesmo método.
+ * A diferença entre os dois é o custo acrescentado a cada chamada de repositório.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonitoramentoBenchmark {
+
+    private MonitoramentoInterceptor interceptor;
+    private InvocationContext contexto;
+
+    @Setup
+    public void preparar() throws NoSuchMethodException {
+        interceptor = new MonitoramentoInterceptor();
+        Componentes.injetar(interceptor, "metricas", new MetricasRepositorio());
+        contexto = new ContextoFixo(PacienteRepository.class.getMethod("estimateCount"),
+                Arrays.asList("a", "b", "c"));
+    }
+
+    @Benchmark
+    public Object direto() throws Exception {
+        return contexto.proceed();
+    }
+
+    @Benchmark
+    public Object monitorado() throws Exception {
+        return interceptor.medir(contexto);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object monitorado4Threads() throws Exception {
+        return interceptor.medir(contexto);
+    }
+
+    /** InvocationContext mínimo: método fixo e proceed devolvendo sempre o mesmo resultado. */
+    private static final class ContextoFixo implements InvocationContext {
+
+        private final Method metodo;
+        private final List<?> resultado;
+
+        private ContextoFixo(Method metodo, List<?> resultado) {
+            this.metodo = metodo;
+            this.resultado = resultado;
+        }
+
+        @Override
+        public Object getTarget() {
+            return null;
+        }
+
+        @Override
+        public Object getTimer() {
+            return null;
+        }
+
+        @Override
+        public Method getMethod() {
+            return metodo;
+        }
+
+        @Override
+        public Constructor<?> getConstructor() {
+            return null;
+        }
+
+        @Override
+        public Object[] getParameters() {
+            return new Object[0];
+        }
+
+        @Override
+        public void setParameters(Object[] params) {
+        }
+
+        @Override
+        public Map<String, Object> getContextData() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Object proceed() {
+            return resultado;
+        }
+    }
+}
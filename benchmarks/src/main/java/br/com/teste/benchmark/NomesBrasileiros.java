@@ -0,0 +1,107 @@
+package br.com.teste.benchmark;
+
+/**
+ * Nomes de pacientes (com acentos), CPFs válidos e nomes de medicamentos para os dados sintéticos.
+ */
+final class NomesBrasileiros {
+
+    private static final String[] PRENOMES = {
+            "José", "João", "Antônio", "Francisco", "Carlos", "Paulo", "Pedro", "Lucas", "Luís", "Marcos",
+            "Luiz", "Gabriel", "Rafael", "Daniel", "Marcelo", "Bruno", "Eduardo", "Felipe", "Raimundo", "Rodrigo",
+            "Sebastião", "Cláudio", "Fábio", "Vinícius", "Márcio", "Maria", "Ana", "Francisca", "Antônia", "Adriana",
+            "Juliana", "Márcia", "Fernanda", "Patrícia", "Aline", "Sandra", "Camila", "Amanda", "Bruna", "Jéssica",
+            "Letícia", "Júlia", "Luciana", "Vanessa", "Mariana", "Conceição", "Lúcia", "Inês", "Débora", "Tânia",
+            "Cecília", "Beatriz", "Vitória", "Luíza", "Mônica", "Érica", "Simone", "Sônia", "Célia", "Valéria"
+    };
+
+    private static final String[] SOBRENOMES = {
+            "Silva", "Santos", "Oliveira", "Souza", "Rodrigues", "Ferreira", "Alves", "Pereira", "Lima", "Gomes",
+            "Costa", "Ribeiro", "Martins", "Carvalho", "Almeida", "Lopes", "Soares", "Fernandes", "Vieira", "Barbosa",
+            "Rocha", "Dias", "Nascimento", "Andrade", "Moreira", "Nunes", "Marques", "Machado", "Mendes", "Freitas",
+            "Cardoso", "Ramos", "Gonçalves", "Araújo", "Conceição", "Magalhães", "Simões", "Brandão", "Assunção", "Romão",
+            "Falcão", "Guimarães", "Caldeira", "Leão", "Sampaio", "Paixão", "Damião", "Estêvão", "Antunes", "Jesus"
+    };
+
+    private static final String[] PRINCIPIOS = {
+            "Dipirona Sódica", "Paracetamol", "Ibuprofeno", "Amoxicilina", "Losartana Potássica", "Omeprazol",
+            "Cloridrato de Metformina", "Sinvastatina", "Captopril", "Azitromicina", "Ácido Acetilsalicílico",
+            "Hidroclorotiazida", "Atenolol", "Enalapril", "Anlodipino", "Levotiroxina Sódica", "Prednisona",
+            "Dexametasona", "Loratadina", "Cetirizina", "Diclofenaco Sódico", "Nimesulida", "Cefalexina",
+            "Ciprofloxacino", "Fluconazol", "Metronidazol", "Albendazol", "Ivermectina", "Sertralina", "Fluoxetina",
+            "Escitalopram", "Clonazepam", "Diazepam", "Amitriptilina", "Carbamazepina", "Ácido Valpróico",
+            "Glibenclamida", "Insulina NPH", "Furosemida", "Espironolactona", "Propranolol", "Carvedilol",
+            "Atorvastatina", "Pantoprazol", "Ranitidina", "Domperidona", "Bromoprida", "Escopolamina",
+            "Sulfato Ferroso", "Ácido Fólico"
+    };
+
+    private static final String[] DOSAGENS = {"5 mg", "10 mg", "25 mg", "50 mg", "500 mg"};
+
+    private static final String[] FORMAS = {"comprimido", "cápsula", "solução oral", "injetável"};
+
+    /** Quantidade de nomes de medicamento distintos */
+    static final int MEDICAMENTOS_DISTINTOS = PRINCIPIOS.length * DOSAGENS.length * FORMAS.length;
+
+    private static final int CANAL_PRENOME = 1;
+    private static final int CANAL_SEGUNDO_PRENOME = 2;
+    private static final int CANAL_SOBRENOME = 3;
+    private static final int CANAL_SEGUNDO_SOBRENOME = 4;
+
+    /** Multiplicador coprimo com 10^9: indice → base do CPF é uma bijeção (CPFs únicos) */
+    private static final long MULTIPLICADOR_CPF = 387_420_489L;
+
+    private static final long BASES_CPF = 1_000_000_000L;
+
+    private NomesBrasileiros() {
+    }
+
+    /** Prenome (às vezes composto) e dois sobrenomes; a escolha pela distribuição uniforme repete nomes comuns. */
+    static String paciente(long semente, long id) {
+        StringBuilder nome = new StringBuilder(48);
+        nome.append(PRENOMES[Aleatorio.inteiro(semente, id, CANAL_PRENOME, PRENOMES.length)]);
+        int segundo = Aleatorio.inteiro(semente, id, CANAL_SEGUNDO_PRENOME, PRENOMES.length * 4);
+        if (segundo < PRENOMES.length) {
+            nome.append(' ').append(PRENOMES[segundo]);
+        }
+        nome.append(' ').append(SOBRENOMES[Aleatorio.inteiro(semente, id, CANAL_SOBRENOME, SOBRENOMES.length)]);
+        nome.append(' ').append(SOBRENOMES[Aleatorio.inteiro(semente, id, CANAL_SEGUNDO_SOBRENOME, SOBRENOMES.length)]);
+        return nome.toString();
+    }
+
+    /** CPF com dígitos verificadores válidos, formatado (000.000.000-00); distinto para cada índice abaixo de 10^9. */
+    static String cpf(long semente, long indice) {
+        long base = Math.floorMod(indice * MULTIPLICADOR_CPF + Math.floorMod(Aleatorio.misturar(semente), BASES_CPF),
+                BASES_CPF);
+        int[] d = new int[11];
+        for (int i = 8; i >= 0; i--) {
+            d[i] = (int) (base % 10);
+            base /= 10;
+        }
+        d[9] = digitoVerificador(d, 9);
+        d[10] = digitoVerificador(d, 10);
+        char[] c = new char[14];
+        int p = 0;
+        for (int i = 0; i < 11; i++) {
+            if (i == 3 || i == 6) c[p++] = '.';
+            if (i == 9) c[p++] = '-';
+            c[p++] = (char) ('0' + d[i]);
+        }
+        return new String(c);
+    }
+
+    private static int digitoVerificador(int[] d, int n) {
+        int soma = 0;
+        for (int i = 0; i < n; i++) {
+            soma += d[i] * (n + 1 - i);
+        }
+        int resto = soma % 11;
+        return resto < 2 ? 0 : 11 - resto;
+    }
+
+    /** Nome do medicamento de índice 0 a {@link #MEDICAMENTOS_DISTINTOS} - 1 (todos distintos). */
+    static String medicamento(int indice) {
+        int principio = indice % PRINCIPIOS.length;
+        int dosagem = indice / PRINCIPIOS.length % DOSAGENS.length;
+        int forma = indice / (PRINCIPIOS.length * DOSAGENS.length) % FORMAS.length;
+        return PRINCIPIOS[principio] + " " + DOSAGENS[dosagem] + " " + FORMAS[forma];
+    }
+}
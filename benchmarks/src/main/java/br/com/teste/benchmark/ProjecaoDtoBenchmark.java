@@ -0,0 +1,80 @@
+package br.com.teste.benchmark;
+
+import br.com.teste.busca.EsquemaBusca;
+import br.com.teste.dto.PacienteTotalDTO;
+import br.com.teste.dto.ReceitaResumoDTO;
+import br.com.teste.repository.ReceitaRepository;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Projeção das linhas do banco nos DTOs da consulta (ReceitaResumoDTO, a partir do SQL nativo)
+ * e do relatório (PacienteTotalDTO, a partir do JPQL), com a quantidade de linhas variando.
+ * As linhas têm os tipos que o Hibernate devolve (BigInteger no nativo, Long no JPQL); sem banco.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjecaoDtoBenchmark {
+
+    @Param({"10", "100", "10000"})
+    public int linhas;
+
+    private SessionFactory sessionFactory;
+    private Session sessao;
+    private ReceitaRepository resumo;
+    private ReceitaRepository totais;
+
+    @Setup
+    public void preparar() {
+        List<Object[]> linhasResumo = new ArrayList<>(linhas);
+        List<Object[]> linhasTotais = new ArrayList<>(linhas);
+        for (int i = 1; i <= linhas; i++) {
+            linhasResumo.add(new Object[]{BigInteger.valueOf(i), BigInteger.valueOf(i / 10 + 1),
+                    "Paciente " + i, BigInteger.valueOf(i % 7)});
+            linhasTotais.add(new Object[]{(long) i, "Paciente " + i, (long) (i % 40)});
+        }
+        sessionFactory = Componentes.sessionFactory(Collections.emptyMap());
+        sessao = sessionFactory.openSession();
+        EsquemaBusca busca = Componentes.esquemaBusca(false);
+        resumo = Componentes.receitaRepository(EntityManagerSemBanco.criar(sessao, linhasResumo), busca);
+        totais = Componentes.receitaRepository(EntityManagerSemBanco.criar(sessao, linhasTotais), busca);
+    }
+
+    @TearDown
+    public void encerrar() {
+        sessao.close();
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public List<ReceitaResumoDTO> receitaResumo() {
+        return resumo.findResumoPage(0, linhas, "receitaId", true, null, null, null, null, false);
+    }
+
+    @Benchmark
+    public List<PacienteTotalDTO> pacienteTotal() {
+        return totais.totalMedicamentosPorPaciente();
+    }
+}
@@ -0,0 +1,78 @@
+package br.com.teste.benchmark;
+
+import br.com.teste.datamodel.PacienteLazyDataModel;
+import br.com.teste.datamodel.ReceitaResumoLazyDataModel;
+import br.com.teste.dto.ReceitaResumoDTO;
+import br.com.teste.model.Paciente;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getRowData dos LazyDataModels (chamado pelo DataTable a cada seleção/ação em linha),
+ * percorrendo as chaves de todas as linhas da página corrente em sequência; sem banco.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowDataBenchmark {
+
+    /** Tamanhos de página oferecidos pelas tabelas e um extremo */
+    @Param({"10", "50", "500"})
+    public int tamanhoPagina;
+
+    private PacienteLazyDataModel pacientes;
+    private ReceitaResumoLazyDataModel receitas;
+    private String[] chaves;
+    private int proxima;
+
+    @Setup
+    public void preparar() {
+        List<Paciente> paginaPacientes = new ArrayList<>(tamanhoPagina);
+        List<ReceitaResumoDTO> paginaReceitas = new ArrayList<>(tamanhoPagina);
+        chaves = new String[tamanhoPagina];
+        for (int i = 0; i < tamanhoPagina; i++) {
+            long id = 1_000_000L + i * 37L;
+            Paciente p = new Paciente(id);
+            p.setNome("Paciente " + id);
+            paginaPacientes.add(p);
+            paginaReceitas.add(new ReceitaResumoDTO(id, id / 10, "Paciente " + id, 3L, null, false));
+            chaves[i] = Long.toString(id);
+        }
+        pacientes = Componentes.pacienteModel(null);
+        Componentes.injetar(pacientes, "pageData", paginaPacientes);
+        receitas = Componentes.receitaResumoModel(null, null);
+        Componentes.injetar(receitas, "pageData", paginaReceitas);
+    }
+
+    private String proximaChave() {
+        String chave = chaves[proxima];
+        proxima = (proxima + 1) % chaves.length;
+        return chave;
+    }
+
+    @Benchmark
+    public Paciente paciente() {
+        return pacientes.getRowData(proximaChave());
+    }
+
+    @Benchmark
+    public ReceitaResumoDTO receitaResumo() {
+        return receitas.getRowData(proximaChave());
+    }
+}
@@ -0,0 +1,75 @@
+package br.com.teste.benchmark;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * COPY ... FROM STDIN (formato texto: campos separados por tabulação) montado linha a linha em um buffer
+ * de tamanho fixo, enviado ao servidor sempre que enche.
+ */
+final class SaidaCopy {
+
+    private static final int BUFFER = 64 * 1024;
+
+    private final CopyIn copy;
+    private final StringBuilder texto = new StringBuilder(BUFFER + 1024);
+    private boolean primeiroCampo = true;
+    private long linhas;
+
+    SaidaCopy(Connection con, String comando) throws SQLException {
+        this.copy = con.unwrap(PGConnection.class).getCopyAPI().copyIn(comando);
+    }
+
+    SaidaCopy campo(long valor) {
+        separar();
+        texto.append(valor);
+        return this;
+    }
+
+    SaidaCopy campo(String valor) {
+        separar();
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '\\' || c == '\t' || c == '\n' || c == '\r') {
+                texto.append('\\');
+            }
+            texto.append(c);
+        }
+        return this;
+    }
+
+    void fimLinha() throws SQLException {
+        texto.append('\n');
+        primeiroCampo = true;
+        linhas++;
+        if (texto.length() >= BUFFER) {
+            enviar();
+        }
+    }
+
+    /** Envia o restante e encerra o COPY; devolve a quantidade de linhas. */
+    long concluir() throws SQLException {
+        enviar();
+        copy.endCopy();
+        return linhas;
+    }
+
+    private void separar() {
+        if (!primeiroCampo) {
+            texto.append('\t');
+        }
+        primeiroCampo = false;
+    }
+
+    private void enviar() throws SQLException {
+        if (texto.length() > 0) {
+            byte[] bytes = texto.toString().getBytes(StandardCharsets.UTF_8);
+            copy.writeToCopy(bytes, 0, bytes.length);
+            texto.setLength(0);
+        }
+    }
+}
@@ -1,47 +1,19 @@
 -- Dump de banco de dados (PostgreSQL) com valores aleatórios de exemplo
 -- Projeto: teste (Pacientes, Medicamentos, Receitas)
 -- Gerado em: 2025-10-06 19:08
--- Observação: execute em um banco vazio. Use psql:
+-- Observação: execute após a primeira subida da aplicação (que cria o esquema). Use psql:
 --   psql -h <host> -U <usuario> -d <database> -f db-dump-random-postgres.sql
 
 BEGIN;
 
--- Remoção das tabelas na ordem correta para evitar conflitos de chaves estrangeiras
-DROP TABLE IF EXISTS medicamento_receitado CASCADE;
-DROP TABLE IF EXISTS receita CASCADE;
-DROP TABLE IF EXISTS medicamento CASCADE;
-DROP TABLE IF EXISTS paciente CASCADE;
-
--- Tabela PACIENTE
-CREATE TABLE paciente (
-    id BIGSERIAL PRIMARY KEY,
-    nome VARCHAR(150) NOT NULL,
-    cpf  VARCHAR(14)  NOT NULL,
-    CONSTRAINT uk_paciente_cpf UNIQUE (cpf)
-);
-
--- Tabela MEDICAMENTO
-CREATE TABLE medicamento (
-    id BIGSERIAL PRIMARY KEY,
-    nome VARCHAR(150) NOT NULL
-);
-
--- Tabela RECEITA
-CREATE TABLE receita (
-    id BIGSERIAL PRIMARY KEY,
-    id_paciente BIGINT NOT NULL,
-    CONSTRAINT fk_receita_paciente FOREIGN KEY (id_paciente)
-        REFERENCES paciente(id)
-);
-
--- Tabela MEDICAMENTO_RECEITADO
-CREATE TABLE medicamento_receitado (
-    id BIGSERIAL PRIMARY KEY,
-    id_receita BIGINT NOT NULL,
-    id_medicamento BIGINT NOT NULL,
-    CONSTRAINT fk_item_receita FOREIGN KEY (id_receita) REFERENCES receita(id),
-    CONSTRAINT fk_item_medicamento FOREIGN KEY (id_medicamento) REFERENCES medicamento(id)
-);
+-- Somente dados: o esquema é criado pelas migrações da aplicação (src/main/resources/db/migracao).
+-- Limpa os dados existentes e reinicia as sequências.
+-- (receita_resumo é preenchida pela aplicação na próxima subida — ReceitaResumoJob)
+-- receita_origem sai junto: os IDs das receitas recomeçam e os códigos importados apontariam para as novas.
+-- O arquivo (V7) referencia paciente e medicamento: também é esvaziado.
+TRUNCATE TABLE receita_resumo, medicamento_total, paciente_total, medicamento_receitado, receita, receita_origem,
+    medicamento_receitado_arquivo, receita_arquivo, medicamento, paciente
+    RESTART IDENTITY;
 
 -- Pacientes (30 registros)
 INSERT INTO paciente (id, nome, cpf) VALUES
@@ -116,7 +88,9 @@ INSERT INTO receita (id, id_paciente) VALUES
 
 -- Itens de medicamentos por receita (todas as inserções unificadas)
 -- Padrão base: para cada receita r, medicamentos ( (r-1)%20+1 ), ( (r+5)%20+1 ), ( (r+11)%20+1 ) e itens adicionais conforme descrito abaixo.
-INSERT INTO medicamento_receitado (id_receita, id_medicamento) VALUES
+-- Os itens repetem a data de emissão da receita (chave das partições mensais, V6)
+INSERT INTO medicamento_receitado (id_receita, id_medicamento, data_emissao)
+SELECT v.r, v.m, r.data_emissao FROM (VALUES
   -- r=1..40 (base de 3 itens por receita)
   (1, 1), (1, 7), (1, 13),
   (2, 8), (2, 14),
@@ -249,7 +223,8 @@ INSERT INTO medicamento_receitado (id_receita, id_medicamento) VALUES
   (2, 2), (2, 2),
   (22, 2), (22, 2),
   (41, 2), (41, 2), (41, 2), (41, 2), (41, 2), (41, 9),
-  (51, 2), (51, 2), (51, 2), (51, 2), (51, 2), (51, 9);
+  (51, 2), (51, 2), (51, 2), (51, 2), (51, 2), (51, 9)
+) v(r, m) JOIN receita r ON r.id = v.r;
 
 
 
@@ -263,6 +238,12 @@ INSERT INTO medicamento_receitado (id_receita, id_medicamento) VALUES
 --  - Atribuir itens extras a receitas de pacientes específicos para variar o total por paciente
 -- Observação: permitir itens repetidos por receita (não há restrição de unicidade)
 
+-- Carga dos contadores agregados a partir dos itens inseridos
+INSERT INTO medicamento_total (id_medicamento, total)
+SELECT id_medicamento, count(*) FROM medicamento_receitado GROUP BY id_medicamento;
+INSERT INTO paciente_total (id_paciente, total)
+SELECT r.id_paciente, count(*) FROM medicamento_receitado i JOIN receita r ON r.id = i.id_receita GROUP BY r.id_paciente;
+
 -- Ajuste das sequências para ficarem alinhadas com os IDs máximos após todos os inserts
 SELECT setval(pg_get_serial_sequence('paciente','id'), (SELECT COALESCE(MAX(id), 1) FROM paciente));
 SELECT setval(pg_get_serial_sequence('medicamento','id'), (SELECT COALESCE(MAX(id), 1) FROM medicamento));
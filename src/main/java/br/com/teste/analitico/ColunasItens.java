@@ -0,0 +1,315 @@
+package br.com.teste.analitico;
+
+import br.com.teste.dto.PacienteTotalDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Itens de receita (medicamento_receitado com o paciente da receita) em colunas de tipos primitivos:
+ * ID da receita (long), código do paciente (int) e código do medicamento (int), 16 bytes por item, sem um
+ * objeto por linha. Pacientes e medicamentos são codificados por {@link Dicionario}, que guarda também os
+ * nomes para os relatórios.
+ *
+ * As consultas ({@link #consulta()}) varrem uma visão imutável das colunas (vetores e quantidade de linhas do
+ * momento) em paralelo, sem bloquear as escritas. Inclusões vão ao fim dos vetores (realocados com 50% de
+ * folga ao encher); uma exclusão marca a linha (medicamento -1) e as linhas marcadas são descartadas quando
+ * passam de 1/4 do total. Escritas e dicionários são protegidos pelo monitor da instância.
+ *
+ * As escritas de uma receita (exclusão de item, troca de paciente) não varrem as colunas: a última linha de cada
+ * receita fica em um {@link MapaLongInt} e cada linha aponta para a linha anterior da mesma receita (mais 4 bytes
+ * por item, usados só sob o monitor).
+ */
+public class ColunasItens {
+
+    /** Colunas pelas quais as consultas filtram e agrupam */
+    public enum Coluna { PACIENTE, MEDICAMENTO }
+
+    /** Linhas marcadas como excluídas a partir das quais (e acima de 1/4 do total) as colunas são compactadas */
+    private static final int MINIMO_COMPACTACAO = 1024;
+
+    private final Dicionario pacientes = new Dicionario();
+    private final Dicionario medicamentos = new Dicionario();
+
+    private long[] receitas;
+    private int[] codigosPaciente;
+    private int[] codigosMedicamento;
+
+    /** Linha anterior da mesma receita (-1 na primeira) */
+    private int[] anteriorDaReceita;
+
+    /** Última linha incluída de cada receita (inclusive as marcadas como excluídas) */
+    private final MapaLongInt ultimaDaReceita = new MapaLongInt();
+
+    private int linhas;
+    private int excluidas;
+
+    /** Visão publicada para as consultas (null após uma escrita; recriada na próxima consulta) */
+    private Visao visao;
+
+    public ColunasItens() {
+        this(1024);
+    }
+
+    /** @param capacidade linhas reservadas inicialmente (ex.: quantidade de itens esperada na carga) */
+    public ColunasItens(int capacidade) {
+        int c = Math.max(16, capacidade);
+        receitas = new long[c];
+        codigosPaciente = new int[c];
+        codigosMedicamento = new int[c];
+        anteriorDaReceita = new int[c];
+    }
+
+    /** Inclui quantidade itens iguais (mesma receita, paciente e medicamento). */
+    public synchronized void incluir(long idReceita, long idPaciente, long idMedicamento, long quantidade) {
+        int paciente = pacientes.incluir(idPaciente);
+        int medicamento = medicamentos.incluir(idMedicamento);
+        for (long q = 0; q < quantidade; q++) {
+            if (linhas == receitas.length) {
+                crescer();
+            }
+            receitas[linhas] = idReceita;
+            codigosPaciente[linhas] = paciente;
+            codigosMedicamento[linhas] = medicamento;
+            indexar(linhas);
+            linhas++;
+        }
+        visao = null;
+    }
+
+    /**
+     * Exclui um item da receita com o medicamento (itens repetidos são indistinguíveis; o mais recente sai).
+     * @return false se não houver item correspondente
+     */
+    public synchronized boolean excluir(long idReceita, long idMedicamento) {
+        int medicamento = medicamentos.codigo(idMedicamento);
+        if (medicamento < 0) {
+            return false;
+        }
+        for (int i = ultimaLinha(idReceita); i >= 0; i = anteriorDaReceita[i]) {
+            if (codigosMedicamento[i] == medicamento) {
+                // Escrita no próprio vetor: uma varredura em andamento pode ou não contar este item
+                codigosMedicamento[i] = -1;
+                excluidas++;
+                compactarSeNecessario();
+                visao = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Atribui os itens da receita a outro paciente (receita alterada). A coluna é copiada antes: o código
+     * novo pode não existir nas visões já publicadas.
+     */
+    public synchronized void trocarPaciente(long idReceita, long idPaciente) {
+        int paciente = pacientes.incluir(idPaciente);
+        int[] novos = null;
+        for (int i = ultimaLinha(idReceita); i >= 0; i = anteriorDaReceita[i]) {
+            if (codigosPaciente[i] != paciente) {
+                if (novos == null) {
+                    novos = codigosPaciente.clone();
+                }
+                novos[i] = paciente;
+            }
+        }
+        if (novos != null) {
+            codigosPaciente = novos;
+            visao = null;
+        }
+    }
+
+    /**
+     * Remove todos os itens das receitas informadas (para substituí-los pelos itens lidos de novo do banco).
+     * Gera vetores novos: as visões já publicadas não são afetadas.
+     * @return quantidade de itens removidos
+     */
+    public synchronized int removerReceitas(Set<Long> idsReceitas) {
+        if (idsReceitas.isEmpty()) {
+            return 0;
+        }
+        int antes = linhas - excluidas;
+        compactar(idsReceitas);
+        visao = null;
+        return antes - linhas;
+    }
+
+    public synchronized void nomearPaciente(long id, String nome) {
+        pacientes.nomear(id, nome);
+    }
+
+    public synchronized void nomearMedicamento(long id, String nome) {
+        medicamentos.nomear(id, nome);
+    }
+
+    /** Paciente excluído do cadastro: sai da lista de totais por paciente. */
+    public synchronized void removerPaciente(long id) {
+        pacientes.remover(id);
+    }
+
+    public synchronized void removerMedicamento(long id) {
+        medicamentos.remover(id);
+    }
+
+    /** Nome do paciente, ou null se desconhecido. */
+    public synchronized String nomePaciente(long id) {
+        int c = pacientes.codigo(id);
+        return c >= 0 ? pacientes.nome(c) : null;
+    }
+
+    /** Nome do medicamento, ou null se desconhecido. */
+    public synchronized String nomeMedicamento(long id) {
+        int c = medicamentos.codigo(id);
+        return c >= 0 ? medicamentos.nome(c) : null;
+    }
+
+    /** IDs de pacientes vindos de itens cujo cadastro (nome) ainda não foi lido. */
+    public synchronized List<Long> pacientesSemNome() {
+        List<Long> ids = new ArrayList<>();
+        for (int c = 0; c < pacientes.tamanho(); c++) {
+            if (pacientes.nome(c) == null && pacientes.ativo(c)) {
+                ids.add(pacientes.id(c));
+            }
+        }
+        return ids;
+    }
+
+    /** Nova consulta sobre o estado atual (itens incluídos depois não entram nela). */
+    public synchronized ConsultaItens consulta() {
+        if (visao == null) {
+            visao = new Visao(receitas, codigosPaciente, codigosMedicamento, linhas, excluidas,
+                    pacientes.ids(), pacientes.tamanho(), medicamentos.ids(), medicamentos.tamanho());
+        }
+        return new ConsultaItens(this, visao);
+    }
+
+    /**
+     * Todos os pacientes do cadastro com a quantidade de itens prescritos em todas as receitas (zero para quem
+     * não tem itens), em ordem de nome; o mesmo conteúdo de ReceitaRepository.totalMedicamentosPorPaciente.
+     */
+    public List<PacienteTotalDTO> totaisPorPaciente() {
+        ConsultaItens.Contagem contagem = consulta().contarPor(Coluna.PACIENTE);
+        synchronized (this) {
+            int[] ordem = pacientes.ordemPorNome();
+            List<PacienteTotalDTO> totais = new ArrayList<>(ordem.length);
+            for (int c : ordem) {
+                long id = pacientes.id(c);
+                String nome = pacientes.nome(c);
+                totais.add(new PacienteTotalDTO(id, nome != null ? nome : ("#" + id), contagem.totalDoCodigo(c)));
+            }
+            return totais;
+        }
+    }
+
+    /** Itens (linhas não excluídas). */
+    public synchronized int linhas() {
+        return linhas - excluidas;
+    }
+
+    /**
+     * Memória aproximada das colunas, do índice por receita e dos dicionários (vetores alocados; sem mapas de IDs
+     * nem nomes).
+     */
+    public synchronized long bytes() {
+        return receitas.length * (8L + 4L + 4L + 4L) + ultimaDaReceita.bytes() + pacientes.bytes() + medicamentos.bytes();
+    }
+
+    synchronized int codigo(Coluna coluna, long id) {
+        return dicionario(coluna).codigo(id);
+    }
+
+    synchronized String nome(Coluna coluna, int codigo) {
+        return dicionario(coluna).nome(codigo);
+    }
+
+    private Dicionario dicionario(Coluna coluna) {
+        return coluna == Coluna.PACIENTE ? pacientes : medicamentos;
+    }
+
+    private void crescer() {
+        int capacidade = receitas.length + (receitas.length >> 1);
+        receitas = Arrays.copyOf(receitas, capacidade);
+        codigosPaciente = Arrays.copyOf(codigosPaciente, capacidade);
+        codigosMedicamento = Arrays.copyOf(codigosMedicamento, capacidade);
+        anteriorDaReceita = Arrays.copyOf(anteriorDaReceita, capacidade);
+    }
+
+    /** Encadeia a linha (já gravada) como a última da receita dela. */
+    private void indexar(int linha) {
+        anteriorDaReceita[linha] = ultimaDaReceita.guardar(receitas[linha], linha);
+    }
+
+    private int ultimaLinha(long idReceita) {
+        return ultimaDaReceita.obter(idReceita);
+    }
+
+    private void compactarSeNecessario() {
+        if (excluidas >= MINIMO_COMPACTACAO && excluidas > linhas / 4) {
+            compactar(Collections.<Long>emptySet());
+        }
+    }
+
+    /**
+     * Copia para vetores novos as linhas não excluídas e de receitas fora de descartar (as visões publicadas
+     * continuam com os vetores antigos) e refaz o encadeamento por receita.
+     */
+    private void compactar(Set<Long> descartar) {
+        int restantes = linhas - excluidas;
+        int capacidade = Math.max(16, restantes + (restantes >> 2));
+        long[] novasReceitas = new long[capacidade];
+        int[] novosPacientes = new int[capacidade];
+        int[] novosMedicamentos = new int[capacidade];
+        ultimaDaReceita.limpar();
+        anteriorDaReceita = new int[capacidade];
+        int n = 0;
+        for (int i = 0; i < linhas; i++) {
+            if (codigosMedicamento[i] >= 0 && !descartar.contains(receitas[i])) {
+                novasReceitas[n] = receitas[i];
+                novosPacientes[n] = codigosPaciente[i];
+                novosMedicamentos[n] = codigosMedicamento[i];
+                n++;
+            }
+        }
+        receitas = novasReceitas;
+        codigosPaciente = novosPacientes;
+        codigosMedicamento = novosMedicamentos;
+        for (int i = 0; i < n; i++) {
+            indexar(i);
+        }
+        linhas = n;
+        excluidas = 0;
+    }
+
+    /**
+     * Colunas e dicionários no momento da publicação. Os vetores podem ser compartilhados com as colunas
+     * vivas: inclusões escrevem só depois de {@link #linhas} e realocações geram vetores novos.
+     */
+    static final class Visao {
+        final long[] receitas;
+        final int[] pacientes;
+        final int[] medicamentos;
+        final int linhas;
+        final int excluidas;
+        final long[] idsPacientes;
+        final int quantidadePacientes;
+        final long[] idsMedicamentos;
+        final int quantidadeMedicamentos;
+
+        Visao(long[] receitas, int[] pacientes, int[] medicamentos, int linhas, int excluidas,
+              long[] idsPacientes, int quantidadePacientes, long[] idsMedicamentos, int quantidadeMedicamentos) {
+            this.receitas = receitas;
+            this.pacientes = pacientes;
+            this.medicamentos = medicamentos;
+            this.linhas = linhas;
+            this.excluidas = excluidas;
+            this.idsPacientes = idsPacientes;
+            this.quantidadePacientes = quantidadePacientes;
+            this.idsMedicamentos = idsMedicamentos;
+            this.quantidadeMedicamentos = quantidadeMedicamentos;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package br.com.teste.analitico;
+
+import br.com.teste.analitico.ColunasItens.Coluna;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Consulta sobre uma visão de {@link ColunasItens}: filtros combinados por "e" ({@link #onde}, {@link #daReceita})
+ * seguidos de uma contagem, total ({@link #contar()}) ou por paciente/medicamento ({@link #contarPor}), com
+ * ranking ({@link Contagem#top}). Cada contagem é uma varredura das colunas em paralelo ({@link VarreduraItens}).
+ *
+ * Exemplo: quantos itens de cada medicamento os pacientes 10 e 20 receberam, e os 5 maiores:
+ * {@code colunas.consulta().onde(Coluna.PACIENTE, 10, 20).contarPor(Coluna.MEDICAMENTO).top(5)}.
+ */
+public final class ConsultaItens {
+
+    private final ColunasItens colunas;
+    private final ColunasItens.Visao visao;
+
+    /** Códigos aceitos por coluna (null = sem filtro) */
+    private boolean[] filtroPacientes;
+    private boolean[] filtroMedicamentos;
+
+    private boolean porReceita;
+    private long receita;
+
+    ConsultaItens(ColunasItens colunas, ColunasItens.Visao visao) {
+        this.colunas = colunas;
+        this.visao = visao;
+    }
+
+    /** Somente itens cujo paciente/medicamento é um dos IDs (chamadas repetidas na mesma coluna se somam por "e"). */
+    public ConsultaItens onde(Coluna coluna, long... ids) {
+        int quantidade = coluna == Coluna.PACIENTE ? visao.quantidadePacientes : visao.quantidadeMedicamentos;
+        boolean[] aceitos = new boolean[quantidade];
+        for (long id : ids) {
+            int c = colunas.codigo(coluna, id);
+            if (c >= 0 && c < quantidade) {
+                aceitos[c] = true;
+            }
+        }
+        boolean[] atual = coluna == Coluna.PACIENTE ? filtroPacientes : filtroMedicamentos;
+        if (atual != null) {
+            for (int c = 0; c < quantidade; c++) {
+                aceitos[c] &= atual[c];
+            }
+        }
+        if (coluna == Coluna.PACIENTE) {
+            filtroPacientes = aceitos;
+        } else {
+            filtroMedicamentos = aceitos;
+        }
+        return this;
+    }
+
+    /** Somente itens da receita. */
+    public ConsultaItens daReceita(long idReceita) {
+        if (porReceita && receita != idReceita) {
+            // Duas receitas diferentes: nenhum item atende
+            filtroMedicamentos = new boolean[visao.quantidadeMedicamentos];
+        }
+        porReceita = true;
+        receita = idReceita;
+        return this;
+    }
+
+    /** Quantidade de itens que atendem aos filtros. */
+    public long contar() {
+        if (filtroPacientes == null && filtroMedicamentos == null && !porReceita && visao.excluidas == 0) {
+            return visao.linhas;
+        }
+        return varrer(null, 1)[0];
+    }
+
+    /** Quantidade de itens que atendem aos filtros, por paciente ou por medicamento. */
+    public Contagem contarPor(Coluna coluna) {
+        int quantidade = coluna == Coluna.PACIENTE ? visao.quantidadePacientes : visao.quantidadeMedicamentos;
+        long[] ids = coluna == Coluna.PACIENTE ? visao.idsPacientes : visao.idsMedicamentos;
+        return new Contagem(colunas, coluna, ids, varrer(coluna == Coluna.PACIENTE ? visao.pacientes : visao.medicamentos,
+                quantidade));
+    }
+
+    private long[] varrer(int[] grupos, int quantidadeGrupos) {
+        return VarreduraItens.executar(visao, filtroPacientes, filtroMedicamentos, porReceita, receita,
+                grupos, quantidadeGrupos);
+    }
+
+    /** Resultado de {@link #contarPor}: total de itens por ID do paciente/medicamento. */
+    public static final class Contagem {
+
+        private final ColunasItens colunas;
+        private final Coluna coluna;
+        private final long[] ids;
+        private final long[] totais;
+
+        Contagem(ColunasItens colunas, Coluna coluna, long[] ids, long[] totais) {
+            this.colunas = colunas;
+            this.coluna = coluna;
+            this.ids = ids;
+            this.totais = totais;
+        }
+
+        /** Total do ID (0 se não tiver itens que atendam aos filtros). */
+        public long total(long id) {
+            return totalDoCodigo(colunas.codigo(coluna, id));
+        }
+
+        long totalDoCodigo(int codigo) {
+            return codigo >= 0 && codigo < totais.length ? totais[codigo] : 0L;
+        }
+
+        /** Os N IDs de maior total (apenas totais positivos), em ordem decrescente de total e, no empate, crescente de ID. */
+        public List<Total> top(int n) {
+            if (n <= 0) {
+                return Collections.emptyList();
+            }
+            // Os N maiores em um heap cujo topo é o pior deles
+            PriorityQueue<Total> melhores = new PriorityQueue<>(n + 1, (a, b) -> b.compareTo(a));
+            for (int c = 0; c < totais.length; c++) {
+                long t = totais[c];
+                if (t <= 0) {
+                    continue;
+                }
+                if (melhores.size() < n) {
+                    melhores.add(new Total(ids[c], t));
+                } else {
+                    Total pior = melhores.peek();
+                    if (t > pior.total || (t == pior.total && ids[c] < pior.id)) {
+                        melhores.poll();
+                        melhores.add(new Total(ids[c], t));
+                    }
+                }
+            }
+            List<Total> resultado = new ArrayList<>(melhores);
+            Collections.sort(resultado);
+            return resultado;
+        }
+
+        /** Nome do paciente/medicamento para exibição (null se desconhecido). */
+        public String nome(long id) {
+            int c = colunas.codigo(coluna, id);
+            return c >= 0 ? colunas.nome(coluna, c) : null;
+        }
+    }
+
+    /** Total de itens de um ID; ordenado por total decrescente e, no empate, por ID crescente. */
+    public static final class Total implements Comparable<Total> {
+
+        private final long id;
+        private final long total;
+
+        Total(long id, long total) {
+            this.id = id;
+            this.total = total;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        @Override
+        public int compareTo(Total o) {
+            int c = Long.compare(o.total, total);
+            return c != 0 ? c : Long.compare(id, o.id);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package br.com.teste.analitico;
+
+import br.com.teste.busca.BuscaTexto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dicionário de uma coluna de {@link ColunasItens}: associa cada ID (paciente ou medicamento) a um código
+ * denso (0, 1, 2...), que é o que as colunas guardam e o índice dos vetores de contagem das varreduras.
+ *
+ * O ID de um código nunca muda e o vetor de IDs só é substituído ao crescer, então uma visão pode guardar
+ * a referência e o tamanho do momento e lê-los sem bloqueio. Os demais acessos são feitos sob o monitor de
+ * {@link ColunasItens} (a classe não é thread-safe por si).
+ */
+final class Dicionario {
+
+    private final Map<Long, Integer> codigos = new HashMap<>();
+
+    private long[] ids = new long[64];
+    private String[] nomes = new String[64];
+    private boolean[] removidos = new boolean[64];
+    private int tamanho;
+
+    /** Códigos dos IDs ativos em ordem de nome (null até a primeira ordenação) */
+    private int[] ordemPorNome;
+
+    /** Códigos incluídos, renomeados ou removidos desde a última ordenação */
+    private final BitSet alterados = new BitSet();
+
+    /** Código do ID, ou -1 se ele não estiver no dicionário. */
+    int codigo(long id) {
+        Integer c = codigos.get(id);
+        return c != null ? c : -1;
+    }
+
+    /** Código do ID, incluindo-o (sem nome) se ainda não estiver no dicionário. */
+    int incluir(long id) {
+        Integer c = codigos.get(id);
+        if (c != null) {
+            if (removidos[c]) {
+                removidos[c] = false;
+                alterados.set(c);
+            }
+            return c;
+        }
+        if (tamanho == ids.length) {
+            int capacidade = tamanho + (tamanho >> 1);
+            ids = Arrays.copyOf(ids, capacidade);
+            nomes = Arrays.copyOf(nomes, capacidade);
+            removidos = Arrays.copyOf(removidos, capacidade);
+        }
+        ids[tamanho] = id;
+        codigos.put(id, tamanho);
+        alterados.set(tamanho);
+        return tamanho++;
+    }
+
+    /** Define o nome do ID (cadastro salvo ou carga), incluindo-o se necessário. */
+    void nomear(long id, String nome) {
+        int c = incluir(id);
+        if (!nome.equals(nomes[c])) {
+            nomes[c] = nome;
+            alterados.set(c);
+        }
+    }
+
+    /** Marca o ID como excluído do cadastro (deixa de aparecer em {@link #ordemPorNome()}). */
+    void remover(long id) {
+        int c = codigo(id);
+        if (c >= 0 && !removidos[c]) {
+            removidos[c] = true;
+            alterados.set(c);
+        }
+    }
+
+    long id(int codigo) {
+        return ids[codigo];
+    }
+
+    /** Nome do código, ou null se ainda não for conhecido (ID vindo de uma receita, sem cadastro lido). */
+    String nome(int codigo) {
+        return nomes[codigo];
+    }
+
+    boolean ativo(int codigo) {
+        return !removidos[codigo];
+    }
+
+    /** Vetor de IDs por código (ver comentário da classe); válido até {@link #tamanho()} do mesmo momento. */
+    long[] ids() {
+        return ids;
+    }
+
+    int tamanho() {
+        return tamanho;
+    }
+
+    /**
+     * Códigos dos IDs ativos ordenados por nome (minúsculas e sem acentos, como na busca; ver BuscaTexto) e,
+     * no empate, pelo nome original e pelo ID. Depois de poucas alterações de cadastro, só os códigos alterados
+     * são reposicionados (pesquisa binária na ordem anterior); depois de muitas, tudo é ordenado de novo.
+     */
+    int[] ordemPorNome() {
+        if (ordemPorNome != null && alterados.isEmpty()) {
+            return ordemPorNome;
+        }
+        if (ordemPorNome == null || alterados.cardinality() > tamanho / 8) {
+            ordemPorNome = ordenarTudo();
+        } else {
+            ordemPorNome = reposicionarAlterados();
+        }
+        alterados.clear();
+        return ordemPorNome;
+    }
+
+    private int[] ordenarTudo() {
+        String[] chaves = new String[tamanho];
+        Integer[] ordem = new Integer[tamanho];
+        int n = 0;
+        for (int c = 0; c < tamanho; c++) {
+            if (!removidos[c]) {
+                chaves[c] = chave(c);
+                ordem[n++] = c;
+            }
+        }
+        Arrays.sort(ordem, 0, n, (a, b) -> comparar(a, chaves[a], b, chaves[b]));
+        int[] codigosOrdenados = new int[n];
+        for (int i = 0; i < n; i++) {
+            codigosOrdenados[i] = ordem[i];
+        }
+        return codigosOrdenados;
+    }
+
+    private int[] reposicionarAlterados() {
+        int[] mantidos = new int[ordemPorNome.length];
+        int n = 0;
+        for (int c : ordemPorNome) {
+            if (!alterados.get(c)) {
+                mantidos[n++] = c;
+            }
+        }
+        List<Integer> novos = new ArrayList<>();
+        for (int c = alterados.nextSetBit(0); c >= 0; c = alterados.nextSetBit(c + 1)) {
+            if (!removidos[c]) {
+                novos.add(c);
+            }
+        }
+        novos.sort((a, b) -> comparar(a, chave(a), b, chave(b)));
+        int[] resultado = new int[n + novos.size()];
+        int origem = 0;
+        int destino = 0;
+        for (int c : novos) {
+            String chave = chave(c);
+            // Primeira posição dos mantidos (a partir da anterior) que deve vir depois de c
+            int ini = origem;
+            int fim = n;
+            while (ini < fim) {
+                int meio = (ini + fim) >>> 1;
+                if (comparar(mantidos[meio], chave(mantidos[meio]), c, chave) < 0) {
+                    ini = meio + 1;
+                } else {
+                    fim = meio;
+                }
+            }
+            System.arraycopy(mantidos, origem, resultado, destino, ini - origem);
+            destino += ini - origem;
+            origem = ini;
+            resultado[destino++] = c;
+        }
+        System.arraycopy(mantidos, origem, resultado, destino, n - origem);
+        return resultado;
+    }
+
+    private String chave(int codigo) {
+        String normalizado = BuscaTexto.normalizar(nomes[codigo]);
+        return normalizado != null ? normalizado : "";
+    }
+
+    private int comparar(int a, String chaveA, int b, String chaveB) {
+        int r = chaveA.compareTo(chaveB);
+        if (r == 0) {
+            r = String.valueOf(nomes[a]).compareTo(String.valueOf(nomes[b]));
+        }
+        return r != 0 ? r : Long.compare(ids[a], ids[b]);
+    }
+
+    /** Memória aproximada dos vetores (sem o mapa de IDs nem os nomes). */
+    long bytes() {
+        return ids.length * (8L + 4L + 1L);
+    }
+}
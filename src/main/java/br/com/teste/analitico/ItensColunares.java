@@ -0,0 +1,320 @@
+package br.com.teste.analitico;
+
+import br.com.teste.config.Configuracao;
+import br.com.teste.dto.NomeQuantidadeDTO;
+import br.com.teste.dto.PacienteTotalDTO;
+import br.com.teste.model.Medicamento;
+import br.com.teste.model.Paciente;
+import br.com.teste.repository.ReceitaRepository;
+import br.com.teste.transacao.AposCommit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Itens de receita em colunas na memória ({@link ColunasItens}) para consultas analíticas sem ir ao banco:
+ * contagens por paciente/medicamento com filtros ({@link #consulta()}) e os dados do relatório "Medicamentos
+ * Prescritos" (rankings e totais por paciente).
+ *
+ * - Carga na subida, em segundo plano, e recarga diária (04:30): cadastros de pacientes e medicamentos e um
+ *   cursor sobre todos os itens, inclusive os arquivados (ReceitaRepository.percorrerItens). Até a primeira
+ *   carga terminar, {@link #isCarregado()} é false e o relatório usa os contadores agregados.
+ * - Alimentado pelos repositórios (itens, receitas e cadastros), após o commit. As escritas confirmadas durante
+ *   uma carga são aplicadas às colunas em uso e anotadas; ao final, os itens das receitas alteradas são lidos de
+ *   novo e os cadastros reaplicados nas colunas novas antes da troca.
+ *
+ * Em cluster, cada nó enxerga as escritas feitas nele próprio até a próxima recarga.
+ */
+@Singleton
+@Startup
+@DependsOn("MigracaoEsquema")
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ItensColunares {
+
+    private static final Logger LOG = Logger.getLogger(ItensColunares.class.getName());
+
+    /** Propriedade que habilita a carga (false: o relatório usa sempre os contadores agregados) */
+    public static final String PROP_HABILITADO = "teste.analitico.habilitado";
+
+    /** Receitas por consulta na releitura das receitas alteradas durante a carga */
+    private static final int RECEITAS_POR_RELEITURA = 1000;
+
+    @PersistenceContext(unitName = "testePU")
+    private EntityManager em;
+
+    @Resource
+    private TransactionSynchronizationRegistry registry;
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    @EJB
+    private ReceitaRepository receitaRepository;
+
+    /** Colunas em uso (null até a primeira carga) */
+    private volatile ColunasItens colunas;
+
+    private final AtomicBoolean carregando = new AtomicBoolean();
+
+    /** Protege a troca das colunas e as alterações anotadas durante uma carga */
+    private final Object trava = new Object();
+
+    /** Receitas com itens alterados durante a carga em andamento (null fora de uma carga) */
+    private Set<Long> receitasAlteradas;
+
+    /** Alterações de cadastro confirmadas durante a carga em andamento */
+    private List<Consumer<ColunasItens>> cadastrosAlterados;
+
+    /** Carga inicial em segundo plano (a subida não espera pela leitura de todos os itens). */
+    @PostConstruct
+    public void init() {
+        if (habilitado()) {
+            executor.execute(this::recarregar);
+        }
+    }
+
+    /** Recarga completa a partir do banco (inclui escritas feitas por outros nós; ex.: após uma importação). */
+    @Schedule(hour = "4", minute = "30", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void recarregar() {
+        if (!habilitado() || !carregando.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (trava) {
+            receitasAlteradas = new HashSet<>();
+            cadastrosAlterados = new ArrayList<>();
+        }
+        try {
+            long inicio = System.currentTimeMillis();
+            ColunasItens anteriores = colunas;
+            ColunasItens novas = new ColunasItens(anteriores != null ? anteriores.linhas() : 1024);
+            for (Object[] r : em.createQuery("select p.id, p.nome from Paciente p", Object[].class).getResultList()) {
+                novas.nomearPaciente((Long) r[0], (String) r[1]);
+            }
+            for (Object[] r : em.createQuery("select m.id, m.nome from Medicamento m", Object[].class).getResultList()) {
+                novas.nomearMedicamento((Long) r[0], (String) r[1]);
+            }
+            receitaRepository.percorrerItens(c -> incluir(novas, c));
+            trocar(novas);
+            LOG.info("Itens em colunas carregados em " + (System.currentTimeMillis() - inicio) + " ms: "
+                    + novas.linhas() + " itens, " + novas.bytes() / (1024 * 1024) + " MB");
+        } catch (Exception e) {
+            synchronized (trava) {
+                receitasAlteradas = null;
+                cadastrosAlterados = null;
+            }
+            LOG.log(Level.WARNING, "Falha na carga dos itens em colunas", e);
+        } finally {
+            carregando.set(false);
+        }
+    }
+
+    /**
+     * Aplica às colunas novas o que foi confirmado durante a carga e as coloca em uso. Repete enquanto chegarem
+     * alterações durante a releitura; a troca acontece sob a trava, sem alterações pendentes.
+     */
+    private void trocar(ColunasItens novas) throws IOException {
+        for (;;) {
+            Set<Long> receitas;
+            List<Consumer<ColunasItens>> cadastros;
+            synchronized (trava) {
+                if (receitasAlteradas.isEmpty() && cadastrosAlterados.isEmpty()) {
+                    colunas = novas;
+                    receitasAlteradas = null;
+                    cadastrosAlterados = null;
+                    return;
+                }
+                receitas = receitasAlteradas;
+                cadastros = cadastrosAlterados;
+                receitasAlteradas = new HashSet<>();
+                cadastrosAlterados = new ArrayList<>();
+            }
+            cadastros.forEach(a -> a.accept(novas));
+            novas.removerReceitas(receitas);
+            List<Long> ids = new ArrayList<>(receitas);
+            for (int i = 0; i < ids.size(); i += RECEITAS_POR_RELEITURA) {
+                receitaRepository.percorrerItensDasReceitas(
+                        ids.subList(i, Math.min(ids.size(), i + RECEITAS_POR_RELEITURA)), c -> incluir(novas, c));
+            }
+        }
+    }
+
+    private static void incluir(ColunasItens destino, Object[] c) {
+        destino.incluir(((Number) c[0]).longValue(), ((Number) c[1]).longValue(), ((Number) c[2]).longValue(), 1);
+    }
+
+    /** Se a primeira carga terminou (antes disso as consultas não estão disponíveis). */
+    public boolean isCarregado() {
+        return colunas != null;
+    }
+
+    /**
+     * Nova consulta sobre os itens atuais (ver {@link ConsultaItens}).
+     * @throws IllegalStateException se a primeira carga ainda não terminou
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public ConsultaItens consulta() {
+        return colunasCarregadas().consulta();
+    }
+
+    /** Os N medicamentos mais prescritos (mesmo resultado de ReceitaRepository.topMedicamentos). */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<NomeQuantidadeDTO> topMedicamentos(int n) {
+        ColunasItens c = colunasCarregadas();
+        List<NomeQuantidadeDTO> dtos = new ArrayList<>(n);
+        for (ConsultaItens.Total t : c.consulta().contarPor(ColunasItens.Coluna.MEDICAMENTO).top(n)) {
+            dtos.add(new NomeQuantidadeDTO(nomeMedicamento(c, t.getId()), t.getTotal()));
+        }
+        return dtos;
+    }
+
+    /** Os N pacientes com mais medicamentos prescritos (mesmo resultado de ReceitaRepository.topPacientes). */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<NomeQuantidadeDTO> topPacientes(int n) {
+        ColunasItens c = colunasCarregadas();
+        List<NomeQuantidadeDTO> dtos = new ArrayList<>(n);
+        for (ConsultaItens.Total t : c.consulta().contarPor(ColunasItens.Coluna.PACIENTE).top(n)) {
+            dtos.add(new NomeQuantidadeDTO(nomePaciente(c, t.getId()), t.getTotal()));
+        }
+        return dtos;
+    }
+
+    /** Todos os pacientes com o total de medicamentos receitados, em ordem de nome. */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<PacienteTotalDTO> totalMedicamentosPorPaciente() {
+        ColunasItens c = colunasCarregadas();
+        for (Long id : c.pacientesSemNome()) {
+            nomePaciente(c, id);
+        }
+        return c.totaisPorPaciente();
+    }
+
+    /** Registra a inclusão de quantidade itens iguais na receita, após o commit. */
+    public void registrarInclusao(Long idReceita, Long idPaciente, Long idMedicamento, long quantidade) {
+        alterarItens(idReceita, c -> c.incluir(idReceita, idPaciente, idMedicamento, quantidade));
+    }
+
+    /** Registra a exclusão de um item da receita, após o commit. */
+    public void registrarExclusao(Long idReceita, Long idMedicamento) {
+        alterarItens(idReceita, c -> c.excluir(idReceita, idMedicamento));
+    }
+
+    /** Registra a alteração de uma receita (paciente), após o commit. */
+    public void registrarReceita(Long idReceita, Long idPaciente) {
+        alterarItens(idReceita, c -> c.trocarPaciente(idReceita, idPaciente));
+    }
+
+    /** Registra inclusão/alteração de paciente, após o commit. */
+    public void registrarPaciente(Long id, String nome) {
+        if (id != null && nome != null) {
+            alterarCadastro(c -> c.nomearPaciente(id, nome));
+        }
+    }
+
+    /** Registra exclusão de paciente, após o commit. */
+    public void removerPaciente(Long id) {
+        alterarCadastro(c -> c.removerPaciente(id));
+    }
+
+    /** Registra inclusão/alteração de medicamento, após o commit. */
+    public void registrarMedicamento(Long id, String nome) {
+        if (id != null && nome != null) {
+            alterarCadastro(c -> c.nomearMedicamento(id, nome));
+        }
+    }
+
+    /** Registra exclusão de medicamento, após o commit. */
+    public void removerMedicamento(Long id) {
+        alterarCadastro(c -> c.removerMedicamento(id));
+    }
+
+    private void alterarItens(Long idReceita, Consumer<ColunasItens> alteracao) {
+        AposCommit.executar(registry, () -> {
+            synchronized (trava) {
+                if (receitasAlteradas != null) {
+                    receitasAlteradas.add(idReceita);
+                }
+                aplicar(alteracao);
+            }
+        });
+    }
+
+    private void alterarCadastro(Consumer<ColunasItens> alteracao) {
+        AposCommit.executar(registry, () -> {
+            synchronized (trava) {
+                if (cadastrosAlterados != null) {
+                    cadastrosAlterados.add(alteracao);
+                }
+                aplicar(alteracao);
+            }
+        });
+    }
+
+    /** Aplica a alteração às colunas em uso; uma falha não desfaz a escrita já confirmada no banco. */
+    private void aplicar(Consumer<ColunasItens> alteracao) {
+        ColunasItens c = colunas;
+        if (c == null) {
+            return;
+        }
+        try {
+            alteracao.accept(c);
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Falha ao atualizar os itens em colunas (corrigido na próxima recarga)", e);
+        }
+    }
+
+    private ColunasItens colunasCarregadas() {
+        ColunasItens c = colunas;
+        if (c == null) {
+            throw new IllegalStateException("Itens em colunas ainda não carregados");
+        }
+        return c;
+    }
+
+    /** Nome em memória; só consulta o banco para IDs sem cadastro lido (ex.: cadastrados em outro nó). */
+    private String nomePaciente(ColunasItens c, long id) {
+        String nome = c.nomePaciente(id);
+        if (nome == null) {
+            Paciente p = em.find(Paciente.class, id);
+            nome = p != null ? p.getNome() : ("#" + id);
+            c.nomearPaciente(id, nome);
+        }
+        return nome;
+    }
+
+    private String nomeMedicamento(ColunasItens c, long id) {
+        String nome = c.nomeMedicamento(id);
+        if (nome == null) {
+            Medicamento m = em.find(Medicamento.class, id);
+            nome = m != null ? m.getNome() : ("#" + id);
+            c.nomearMedicamento(id, nome);
+        }
+        return nome;
+    }
+
+    private static boolean habilitado() {
+        return Configuracao.getBoolean(PROP_HABILITADO, true);
+    }
+}
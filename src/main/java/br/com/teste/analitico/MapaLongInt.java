@@ -0,0 +1,101 @@
+package br.com.teste.analitico;
+
+import java.util.Arrays;
+
+/**
+ * Mapa de long para int em dois vetores (endereçamento aberto, sondagem linear), sem objeto por entrada:
+ * cerca de 16 a 32 bytes por chave, contra perto de 90 de um HashMap&lt;Long, Integer&gt;. Usado no índice de
+ * linhas por receita de {@link ColunasItens}, que tem uma entrada por receita. Sem remoção de chaves
+ * (só {@link #limpar()}); não é thread-safe.
+ */
+final class MapaLongInt {
+
+    /** Chave das posições livres (não é um ID de receita) */
+    private static final long LIVRE = Long.MIN_VALUE;
+
+    /** Ocupação máxima antes de dobrar os vetores */
+    private static final double CARGA = 0.75;
+
+    private long[] chaves;
+    private int[] valores;
+    private int tamanho;
+
+    MapaLongInt() {
+        alocar(1024);
+    }
+
+    /** Valor da chave, ou -1 se ausente. */
+    int obter(long chave) {
+        int mascara = chaves.length - 1;
+        for (int i = posicao(chave, mascara); ; i = (i + 1) & mascara) {
+            long k = chaves[i];
+            if (k == chave) {
+                return valores[i];
+            }
+            if (k == LIVRE) {
+                return -1;
+            }
+        }
+    }
+
+    /** Associa o valor à chave; retorna o valor anterior, ou -1 se ela era nova. */
+    int guardar(long chave, int valor) {
+        int mascara = chaves.length - 1;
+        for (int i = posicao(chave, mascara); ; i = (i + 1) & mascara) {
+            long k = chaves[i];
+            if (k == chave) {
+                int anterior = valores[i];
+                valores[i] = valor;
+                return anterior;
+            }
+            if (k == LIVRE) {
+                chaves[i] = chave;
+                valores[i] = valor;
+                if (++tamanho > chaves.length * CARGA) {
+                    crescer();
+                }
+                return -1;
+            }
+        }
+    }
+
+    /** Remove todas as chaves (mantém a capacidade). */
+    void limpar() {
+        Arrays.fill(chaves, LIVRE);
+        tamanho = 0;
+    }
+
+    /** Memória aproximada dos vetores. */
+    long bytes() {
+        return chaves.length * (8L + 4L);
+    }
+
+    private void crescer() {
+        long[] antigasChaves = chaves;
+        int[] antigosValores = valores;
+        alocar(chaves.length * 2);
+        int mascara = chaves.length - 1;
+        for (int j = 0; j < antigasChaves.length; j++) {
+            long k = antigasChaves[j];
+            if (k != LIVRE) {
+                int i = posicao(k, mascara);
+                while (chaves[i] != LIVRE) {
+                    i = (i + 1) & mascara;
+                }
+                chaves[i] = k;
+                valores[i] = antigosValores[j];
+            }
+        }
+    }
+
+    private void alocar(int capacidade) {
+        chaves = new long[capacidade];
+        valores = new int[capacidade];
+        Arrays.fill(chaves, LIVRE);
+    }
+
+    /** Posição inicial da chave (IDs sequenciais espalhados pela multiplicação de Fibonacci). */
+    private static int posicao(long chave, int mascara) {
+        return (int) ((chave * 0x9E3779B97F4A7C15L) >>> 32) & mascara;
+    }
+}
@@ -0,0 +1,100 @@
+package br.com.teste.analitico;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Varredura paralela (fork/join) de uma faixa de linhas de {@link ColunasItens}: cada folha conta, em um vetor
+ * próprio indexado pelo código do grupo, os itens não excluídos que passam pelos filtros; os vetores das
+ * metades são somados na volta. Sem objetos por linha e com acesso sequencial às colunas.
+ *
+ * Roda no pool comum do fork/join (o mesmo dos parallel streams), com folhas de pelo menos
+ * {@value #FOLHA_MINIMA} linhas e cerca de 4 folhas por processador.
+ */
+final class VarreduraItens extends RecursiveTask<long[]> {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Linhas por folha abaixo das quais dividir custa mais que varrer */
+    private static final int FOLHA_MINIMA = 1 << 16;
+
+    private final ColunasItens.Visao visao;
+    private final boolean[] filtroPacientes;
+    private final boolean[] filtroMedicamentos;
+    private final boolean porReceita;
+    private final long receita;
+    /** Coluna de agrupamento (null = um único grupo) */
+    private final int[] grupos;
+    private final int quantidadeGrupos;
+    private final int inicio;
+    private final int fim;
+    private final int folha;
+
+    private VarreduraItens(ColunasItens.Visao visao, boolean[] filtroPacientes, boolean[] filtroMedicamentos,
+                           boolean porReceita, long receita, int[] grupos, int quantidadeGrupos,
+                           int inicio, int fim, int folha) {
+        this.visao = visao;
+        this.filtroPacientes = filtroPacientes;
+        this.filtroMedicamentos = filtroMedicamentos;
+        this.porReceita = porReceita;
+        this.receita = receita;
+        this.grupos = grupos;
+        this.quantidadeGrupos = quantidadeGrupos;
+        this.inicio = inicio;
+        this.fim = fim;
+        this.folha = folha;
+    }
+
+    /** Contagem por grupo (vetor de quantidadeGrupos posições) das linhas da visão que passam pelos filtros. */
+    static long[] executar(ColunasItens.Visao visao, boolean[] filtroPacientes, boolean[] filtroMedicamentos,
+                           boolean porReceita, long receita, int[] grupos, int quantidadeGrupos) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int folha = Math.max(FOLHA_MINIMA, visao.linhas / (4 * pool.getParallelism()) + 1);
+        VarreduraItens tarefa = new VarreduraItens(visao, filtroPacientes, filtroMedicamentos, porReceita, receita,
+                grupos, quantidadeGrupos, 0, visao.linhas, folha);
+        return visao.linhas <= folha ? tarefa.compute() : pool.invoke(tarefa);
+    }
+
+    @Override
+    protected long[] compute() {
+        if (fim - inicio <= folha) {
+            return varrer();
+        }
+        int meio = (inicio + fim) >>> 1;
+        VarreduraItens esquerda = dividir(inicio, meio);
+        VarreduraItens direita = dividir(meio, fim);
+        esquerda.fork();
+        long[] soma = direita.compute();
+        long[] parcial = esquerda.join();
+        for (int g = 0; g < soma.length; g++) {
+            soma[g] += parcial[g];
+        }
+        return soma;
+    }
+
+    private VarreduraItens dividir(int de, int ate) {
+        return new VarreduraItens(visao, filtroPacientes, filtroMedicamentos, porReceita, receita,
+                grupos, quantidadeGrupos, de, ate, folha);
+    }
+
+    private long[] varrer() {
+        long[] contagem = new long[quantidadeGrupos];
+        long[] receitas = visao.receitas;
+        int[] pacientes = visao.pacientes;
+        int[] medicamentos = visao.medicamentos;
+        for (int i = inicio; i < fim; i++) {
+            int m = medicamentos[i];
+            if (m < 0 || (filtroMedicamentos != null && !filtroMedicamentos[m])) {
+                continue;
+            }
+            if (filtroPacientes != null && !filtroPacientes[pacientes[i]]) {
+                continue;
+            }
+            if (porReceita && receitas[i] != receita) {
+                continue;
+            }
+            contagem[grupos != null ? grupos[i] : 0]++;
+        }
+        return contagem;
+    }
+}
@@ -0,0 +1,50 @@
+package br.com.teste.api;
+
+import br.com.teste.repository.PeriodoEmissao;
+
+import javax.ws.rs.ApplicationPath;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.core.Application;
+import java.util.Date;
+
+/**
+ * API JSON somente leitura (JAX-RS) para integrações, em /api, sobre os mesmos métodos de repositório das telas
+ * e sem o ciclo de vida do JSF (nem estado de view):
+ * - GET /api/receitas — consulta "Medicamentos por Paciente", paginada por cursor ({@link ReceitaResource})
+ * - GET /api/receitas/{id}/itens — itens de uma receita
+ * - GET /api/relatorio/... — rankings e totais por paciente do relatório ({@link RelatorioResource})
+ *
+ * As consultas e o relatório aceitam o período de emissão desde/ate (yyyy-MM-dd, inclusive).
+ *
+ * As respostas são gravadas em fluxo e levam ETag forte; com If-None-Match igual, a resposta é 304 sem executar
+ * a consulta ({@link RespostaCondicional}).
+ */
+@ApplicationPath("api")
+public class ApiAplicacao extends Application {
+
+    /** Maior quantidade de linhas por página/ranking aceita no parâmetro limite */
+    static final int LIMITE_MAXIMO = 1000;
+
+    /** Limite pedido pelo cliente entre 1 e {@link #LIMITE_MAXIMO}. */
+    static int limitar(int pedido) {
+        return Math.min(Math.max(pedido, 1), LIMITE_MAXIMO);
+    }
+
+    /** Início do período (parâmetro desde) ou null; 400 se a data for inválida. */
+    static Date desde(String dia) {
+        try {
+            return PeriodoEmissao.desde(dia);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
+    /** Limite exclusivo do período (dia seguinte ao parâmetro ate) ou null; 400 se a data for inválida. */
+    static Date ate(String ultimoDia) {
+        try {
+            return PeriodoEmissao.ate(ultimoDia);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package br.com.teste.api;
+
+import br.com.teste.dto.ReceitaResumoDTO;
+
+import javax.ws.rs.BadRequestException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Cursor da paginação de /api/receitas: ordenação, direção e chave (valor do campo de ordenação + ID da receita)
+ * da última linha entregue, em Base64 URL-safe. Para o cliente é opaco: basta repetir a consulta com
+ * ?cursor= (e os mesmos filtros) para obter a página seguinte. A página é lida por keyset, sem OFFSET,
+ * então o custo não cresce com a profundidade e linhas incluídas antes do cursor não duplicam a seguinte.
+ */
+final class CursorResumo {
+
+    private static final String SEPARADOR = "\t";
+
+    private final String ordenacao;
+    private final boolean asc;
+    private final long id;
+    private final Object valor;
+
+    private CursorResumo(String ordenacao, boolean asc, long id, Object valor) {
+        this.ordenacao = ordenacao;
+        this.asc = asc;
+        this.id = id;
+        this.valor = valor;
+    }
+
+    /** Campo de ordenação aceito pela consulta (receitaId quando ausente ou desconhecido). */
+    static String campo(String ordenacao) {
+        return "pacienteNome".equals(ordenacao) || "totalMedicamentos".equals(ordenacao) ? ordenacao : "receitaId";
+    }
+
+    /** Cursor que continua após a linha informada. */
+    static CursorResumo apos(ReceitaResumoDTO ultima, String ordenacao, boolean asc) {
+        Object valor;
+        if ("pacienteNome".equals(ordenacao)) {
+            valor = ultima.getPacienteNome();
+        } else if ("totalMedicamentos".equals(ordenacao)) {
+            valor = ultima.getTotalMedicamentos();
+        } else {
+            valor = null;
+        }
+        return new CursorResumo(ordenacao, asc, ultima.getReceitaId(), valor);
+    }
+
+    String codificar() {
+        String texto = ordenacao + SEPARADOR + asc + SEPARADOR + id + SEPARADOR + (valor != null ? valor : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Lê o cursor recebido do cliente.
+     * @throws BadRequestException (400) se o cursor for inválido ou de outra ordenação/direção
+     */
+    static CursorResumo decodificar(String cursor, String ordenacao, boolean asc) {
+        String[] partes;
+        try {
+            partes = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARADOR, 4);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Cursor inválido");
+        }
+        if (partes.length != 4 || !partes[0].equals(ordenacao) || !partes[1].equals(String.valueOf(asc))) {
+            throw new BadRequestException("Cursor inválido para a ordenação pedida");
+        }
+        try {
+            Object valor = "totalMedicamentos".equals(ordenacao) ? (Object) Long.valueOf(partes[3]) : partes[3];
+            return new CursorResumo(ordenacao, asc, Long.parseLong(partes[2]), valor);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Cursor inválido");
+        }
+    }
+
+    long getId() {
+        return id;
+    }
+
+    /** Valor do campo de ordenação na linha de referência (não usado na ordenação por receitaId). */
+    Object getValor() {
+        return valor;
+    }
+}
@@ -0,0 +1,111 @@
+package br.com.teste.api;
+
+import br.com.teste.cache.VersaoTabelas;
+import br.com.teste.dto.ReceitaResumoDTO;
+import br.com.teste.model.MedicamentoReceitado;
+import br.com.teste.repository.ReceitaRepository;
+
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Consulta "Medicamentos por Paciente" pela API:
+ * - GET /api/receitas — parâmetros opcionais pacienteNome, medicamentoNome, desde e ate (mesmos filtros da tela),
+ *   ordenacao (receitaId, pacienteNome ou totalMedicamentos), asc (padrão true), limite (padrão 50) e cursor.
+ *   Resposta: {"itens": [{"receitaId", "pacienteId", "pacienteNome", "totalMedicamentos", "dataEmissao"}...],
+ *   "proximo": cursor da página seguinte ou null}; dataEmissao em ISO-8601 (UTC).
+ * - GET /api/receitas/{id}/itens — [{"id", "medicamentoId", "medicamentoNome"}...] em ordem de inclusão
+ *   (também para uma receita arquivada).
+ */
+@Path("receitas")
+@Produces(MediaType.APPLICATION_JSON)
+@RequestScoped
+public class ReceitaResource {
+
+    private static final int LIMITE_PADRAO = 50;
+
+    @Inject
+    private ReceitaRepository receitaRepository;
+
+    @Inject
+    private RespostaCondicional condicional;
+
+    @Context
+    private Request request;
+
+    @GET
+    public Response listar(@QueryParam("pacienteNome") String pacienteNome,
+                           @QueryParam("medicamentoNome") String medicamentoNome,
+                           @QueryParam("desde") String desde,
+                           @QueryParam("ate") String ate,
+                           @QueryParam("ordenacao") String ordenacao,
+                           @QueryParam("asc") @DefaultValue("true") boolean asc,
+                           @QueryParam("limite") @DefaultValue("" + LIMITE_PADRAO) int limite,
+                           @QueryParam("cursor") String cursor) {
+        String campo = CursorResumo.campo(ordenacao);
+        int tamanho = ApiAplicacao.limitar(limite);
+        CursorResumo apos = cursor != null && !cursor.isEmpty() ? CursorResumo.decodificar(cursor, campo, asc) : null;
+        Date inicio = ApiAplicacao.desde(desde);
+        Date fim = ApiAplicacao.ate(ate);
+        return condicional.responder(request, () -> {
+            // Uma linha a mais indica se existe página seguinte
+            List<ReceitaResumoDTO> linhas = receitaRepository.findResumoPageKeyset(tamanho + 1, campo, asc,
+                    pacienteNome, medicamentoNome, inicio, fim, apos != null ? apos.getValor() : null, apos != null ? apos.getId() : null);
+            List<ReceitaResumoDTO> pagina = linhas.size() > tamanho ? linhas.subList(0, tamanho) : linhas;
+            String proximo = linhas.size() > tamanho
+                    ? CursorResumo.apos(pagina.get(tamanho - 1), campo, asc).codificar() : null;
+            return SaidaJson.fluxo(json -> {
+                json.writeStartObject().writeStartArray("itens");
+                for (ReceitaResumoDTO r : pagina) {
+                    json.writeStartObject()
+                            .write("receitaId", r.getReceitaId())
+                            .write("pacienteId", r.getPacienteId())
+                            .write("pacienteNome", r.getPacienteNome())
+                            .write("totalMedicamentos", r.getTotalMedicamentos())
+                            .write("dataEmissao", r.getDataEmissao().toInstant().toString())
+                            .writeEnd();
+                }
+                json.writeEnd();
+                if (proximo != null) {
+                    json.write("proximo", proximo);
+                } else {
+                    json.writeNull("proximo");
+                }
+                json.writeEnd();
+            });
+        }, VersaoTabelas.RECEITA, VersaoTabelas.PACIENTE, VersaoTabelas.MEDICAMENTO);
+    }
+
+    @GET
+    @Path("{id}/itens")
+    public Response itens(@PathParam("id") long id) {
+        return condicional.responder(request, () -> {
+            List<MedicamentoReceitado> ativos = receitaRepository.listItensByReceita(id);
+            // Sem itens nas tabelas quentes: a receita pode estar arquivada
+            List<MedicamentoReceitado> itens = ativos.isEmpty() ? receitaRepository.listItensArquivados(id) : ativos;
+            return SaidaJson.fluxo(json -> {
+                json.writeStartArray();
+                for (MedicamentoReceitado i : itens) {
+                    json.writeStartObject()
+                            .write("id", i.getId())
+                            .write("medicamentoId", i.getMedicamento().getId())
+                            .write("medicamentoNome", i.getMedicamento().getNome())
+                            .writeEnd();
+                }
+                json.writeEnd();
+            });
+        }, VersaoTabelas.RECEITA, VersaoTabelas.MEDICAMENTO);
+    }
+}
@@ -0,0 +1,95 @@
+package br.com.teste.api;
+
+import br.com.teste.bean.RelatorioMedicamentosBean;
+import br.com.teste.cache.VersaoTabelas;
+import br.com.teste.config.Configuracao;
+import br.com.teste.dto.NomeQuantidadeDTO;
+import br.com.teste.repository.ReceitaRepository;
+
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import java.util.Date;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Relatório "Medicamentos Prescritos" pela API, lido das tabelas agregadas:
+ * - GET /api/relatorio/top-medicamentos e /api/relatorio/top-pacientes — [{"nome", "quantidade"}...];
+ *   limite opcional (padrão teste.relatorio.topN)
+ * - GET /api/relatorio/totais-por-paciente — [{"pacienteId", "pacienteNome", "total"}...] em ordem de nome,
+ *   gravado em fluxo a partir de um cursor no banco (a memória usada não depende da quantidade de pacientes)
+ *
+ * Com período de emissão (desde/ate), os totais contam só os itens das receitas do período, agregados das
+ * partições mensais do período em vez das tabelas agregadas.
+ */
+@Path("relatorio")
+@Produces(MediaType.APPLICATION_JSON)
+@RequestScoped
+public class RelatorioResource {
+
+    @Inject
+    private ReceitaRepository receitaRepository;
+
+    @Inject
+    private RespostaCondicional condicional;
+
+    @Context
+    private Request request;
+
+    @GET
+    @Path("top-medicamentos")
+    public Response topMedicamentos(@QueryParam("limite") Integer limite, @QueryParam("desde") String desde,
+                                    @QueryParam("ate") String ate) {
+        Date inicio = ApiAplicacao.desde(desde);
+        Date fim = ApiAplicacao.ate(ate);
+        return ranking(limite, n -> receitaRepository.topMedicamentos(n, inicio, fim));
+    }
+
+    @GET
+    @Path("top-pacientes")
+    public Response topPacientes(@QueryParam("limite") Integer limite, @QueryParam("desde") String desde,
+                                 @QueryParam("ate") String ate) {
+        Date inicio = ApiAplicacao.desde(desde);
+        Date fim = ApiAplicacao.ate(ate);
+        return ranking(limite, n -> receitaRepository.topPacientes(n, inicio, fim));
+    }
+
+    @GET
+    @Path("totais-por-paciente")
+    public Response totaisPorPaciente(@QueryParam("desde") String desde, @QueryParam("ate") String ate) {
+        Date inicio = ApiAplicacao.desde(desde);
+        Date fim = ApiAplicacao.ate(ate);
+        return condicional.responder(request, () -> SaidaJson.fluxo(json -> {
+            json.writeStartArray();
+            receitaRepository.percorrerTotaisPorPaciente(inicio, fim, linha -> json.writeStartObject()
+                    .write("pacienteId", SaidaJson.numero(linha[0]))
+                    .write("pacienteNome", (String) linha[1])
+                    .write("total", SaidaJson.numero(linha[2]))
+                    .writeEnd());
+            json.writeEnd();
+        }), VersaoTabelas.RECEITA, VersaoTabelas.PACIENTE);
+    }
+
+    private Response ranking(Integer limite, IntFunction<List<NomeQuantidadeDTO>> consulta) {
+        int tamanho = ApiAplicacao.limitar(limite != null ? limite
+                : Configuracao.getInt(RelatorioMedicamentosBean.PROP_TOP_N, 2));
+        return condicional.responder(request, () -> {
+            List<NomeQuantidadeDTO> ranking = consulta.apply(tamanho);
+            return SaidaJson.fluxo(json -> {
+                json.writeStartArray();
+                for (NomeQuantidadeDTO r : ranking) {
+                    json.writeStartObject().write("nome", r.getNome()).write("quantidade", r.getQuantidade()).writeEnd();
+                }
+                json.writeEnd();
+            });
+        }, VersaoTabelas.RECEITA, VersaoTabelas.PACIENTE, VersaoTabelas.MEDICAMENTO);
+    }
+}
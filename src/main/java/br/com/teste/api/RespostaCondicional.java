@@ -0,0 +1,55 @@
+package br.com.teste.api;
+
+import br.com.teste.cache.VersaoTabelas;
+import br.com.teste.replica.ReplicaLeitura;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.security.SecureRandom;
+import java.util.function.Supplier;
+
+/**
+ * GET condicional da API: a ETag forte de uma resposta é a versão de alteração das tabelas de que ela depende
+ * (VersaoTabelas), lida antes da consulta. Se o If-None-Match do cliente coincidir, a resposta é 304 e o corpo
+ * (e portanto a consulta) não é produzido.
+ *
+ * As versões são da memória deste nó e recomeçam do zero a cada deploy; a ETag inclui um identificador da
+ * subida, para que a tag de outro nó ou de uma subida anterior nunca coincida com conteúdo diferente.
+ * A versão é incrementada somente após o commit, então a consulta feita depois dela já enxerga a escrita;
+ * na réplica isso só vale depois da janela de atraso, e até lá a resposta vai sem ETag.
+ */
+@ApplicationScoped
+public class RespostaCondicional {
+
+    private final String subida = Long.toString(new SecureRandom().nextLong() & Long.MAX_VALUE, 36);
+
+    @Inject
+    private VersaoTabelas versoes;
+
+    @Inject
+    private ReplicaLeitura replica;
+
+    /**
+     * Responde 304 se o cliente já tem a versão atual; senão 200 com o corpo produzido pelo fornecedor
+     * (chamado somente nesse caso) e a ETag.
+     * @param tabelas tabelas (VersaoTabelas) cujas alterações mudam o conteúdo da resposta
+     */
+    public Response responder(Request request, Supplier<StreamingOutput> corpo, String... tabelas) {
+        CacheControl revalidar = new CacheControl();
+        revalidar.setNoCache(true);
+        if (replica.podeEstarDefasada(versoes.alteradaEm(tabelas))) {
+            return Response.ok(corpo.get()).cacheControl(revalidar).build();
+        }
+        EntityTag tag = new EntityTag(subida + "-" + versoes.versao(tabelas));
+        Response.ResponseBuilder naoModificado = request.evaluatePreconditions(tag);
+        if (naoModificado != null) {
+            return naoModificado.cacheControl(revalidar).build();
+        }
+        return Response.ok(corpo.get()).tag(tag).cacheControl(revalidar).build();
+    }
+}
@@ -0,0 +1,52 @@
+package br.com.teste.api;
+
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Corpo JSON gravado em fluxo com o JsonGenerator do JSON-P: cada valor vai direto para a saída da resposta,
+ * sem montar o documento (nem uma lista de objetos intermediários) em memória.
+ */
+final class SaidaJson {
+
+    private static final Logger LOG = Logger.getLogger(SaidaJson.class.getName());
+
+    /** Fábrica compartilhada (criar um gerador por Json.createGenerator procura o provedor a cada chamada) */
+    private static final JsonGeneratorFactory FABRICA = Json.createGeneratorFactory(Collections.emptyMap());
+
+    /** Escreve o conteúdo no gerador. */
+    @FunctionalInterface
+    interface Escrita {
+        void escrever(JsonGenerator json) throws IOException;
+    }
+
+    private SaidaJson() {
+    }
+
+    static StreamingOutput fluxo(Escrita escrita) {
+        return saida -> {
+            JsonGenerator json = FABRICA.createGenerator(saida, StandardCharsets.UTF_8);
+            try {
+                escrita.escrever(json);
+            } catch (IOException | RuntimeException e) {
+                // Com a resposta já iniciada não há como informar o erro ao cliente: o JSON chega truncado
+                LOG.log(Level.WARNING, "Resposta JSON interrompida", e);
+                throw e;
+            }
+            // Sem close: o fluxo da resposta pertence ao container
+            json.flush();
+        };
+    }
+
+    /** Número de uma coluna de consulta nativa (Integer, Long ou BigInteger conforme o tipo no banco). */
+    static long numero(Object coluna) {
+        return ((Number) coluna).longValue();
+    }
+}
@@ -2,6 +2,7 @@ package br.com.teste.bean;
 
 import br.com.teste.datamodel.ReceitaResumoLazyDataModel;
 import br.com.teste.model.MedicamentoReceitado;
+import br.com.teste.repository.PeriodoEmissao;
 import br.com.teste.repository.ReceitaRepository;
 
 import javax.annotation.PostConstruct;
@@ -10,6 +11,7 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.Serializable;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -29,6 +31,13 @@ public class ConsultaMedicamentosBean implements Serializable {
     private String pacienteNomeFiltro;
     private String medicamentoNomeFiltro;
 
+    // Período de emissão (dias inclusive); limita as partições de itens lidas
+    private Date emissaoDesdeFiltro;
+    private Date emissaoAteFiltro;
+
+    // Inclui as receitas arquivadas (consulta mais lenta, sobre as tabelas de arquivo)
+    private boolean incluirArquivadasFiltro;
+
     // Estado para visualizar os itens de uma receita específica
     private Long receitaIdParaItens;
     private List<MedicamentoReceitado> itensDaReceita;
@@ -58,6 +67,44 @@ public class ConsultaMedicamentosBean implements Serializable {
         this.medicamentoNomeFiltro = medicamentoNomeFiltro;
     }
 
+    public Date getEmissaoDesdeFiltro() {
+        return emissaoDesdeFiltro;
+    }
+
+    public void setEmissaoDesdeFiltro(Date emissaoDesdeFiltro) {
+        this.emissaoDesdeFiltro = emissaoDesdeFiltro;
+    }
+
+    public Date getEmissaoAteFiltro() {
+        return emissaoAteFiltro;
+    }
+
+    public void setEmissaoAteFiltro(Date emissaoAteFiltro) {
+        this.emissaoAteFiltro = emissaoAteFiltro;
+    }
+
+    public boolean isIncluirArquivadasFiltro() {
+        return incluirArquivadasFiltro;
+    }
+
+    public void setIncluirArquivadasFiltro(boolean incluirArquivadasFiltro) {
+        this.incluirArquivadasFiltro = incluirArquivadasFiltro;
+    }
+
+    /** Limite superior exclusivo do período para as consultas: o dia seguinte ao último dia informado. */
+    public Date getEmissaoAteExclusiva() {
+        return PeriodoEmissao.diaSeguinte(emissaoAteFiltro);
+    }
+
+    /** Período no formato dos parâmetros da exportação (yyyy-MM-dd). */
+    public String getEmissaoDesdeTexto() {
+        return PeriodoEmissao.texto(emissaoDesdeFiltro);
+    }
+
+    public String getEmissaoAteTexto() {
+        return PeriodoEmissao.texto(emissaoAteFiltro);
+    }
+
     /** Dispara a pesquisa. O DataTable lerá os filtros pelo LazyDataModel. */
     public void pesquisar() {
         // Intencionalmente em branco: o PrimeFaces recarregará via lazy quando a tabela for atualizada.
@@ -67,15 +114,20 @@ public class ConsultaMedicamentosBean implements Serializable {
     public void limpar() {
         this.pacienteNomeFiltro = null;
         this.medicamentoNomeFiltro = null;
+        this.emissaoDesdeFiltro = null;
+        this.emissaoAteFiltro = null;
+        this.incluirArquivadasFiltro = false;
         this.receitaIdParaItens = null;
         this.itensDaReceita = Collections.emptyList();
     }
 
-    /** Carrega os itens da receita solicitada para exibição em diálogo. */
-    public void abrirItensReceita(Long receitaId) {
+    /** Carrega os itens da receita solicitada (das tabelas de arquivo, se arquivada) para exibição em diálogo. */
+    public void abrirItensReceita(Long receitaId, boolean arquivada) {
         this.receitaIdParaItens = receitaId;
         try {
-            this.itensDaReceita = receitaRepository.listItensByReceita(receitaId);
+            this.itensDaReceita = arquivada
+                    ? receitaRepository.listItensArquivados(receitaId)
+                    : receitaRepository.listItensByReceita(receitaId);
         } catch (Exception e) {
             this.itensDaReceita = Collections.emptyList();
         }
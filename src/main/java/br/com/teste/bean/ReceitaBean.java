@@ -1,21 +1,21 @@
 package br.com.teste.bean;
 
-import br.com.teste.model.Medicamento;
+import br.com.teste.busca.IndiceAutocomplete;
+import br.com.teste.dto.IdNomeDTO;
 import br.com.teste.model.MedicamentoReceitado;
 import br.com.teste.model.Paciente;
 import br.com.teste.model.Receita;
-import br.com.teste.repository.MedicamentoRepository;
 import br.com.teste.repository.PacienteRepository;
 import br.com.teste.repository.ReceitaRepository;
 import org.primefaces.PrimeFaces;
 
-import javax.annotation.PostConstruct;
 import javax.faces.application.FacesMessage;
 import javax.faces.context.FacesContext;
 import javax.faces.view.ViewScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -23,8 +23,11 @@ import java.util.List;
  * Bean para cadastro/associação de Medicamentos a uma Receita de um Paciente.
  * Fluxo básico:
  * 1) Seleciona-se um Paciente e clica em "Criar Receita" (cria e persiste a receita).
- * 2) Adicionam-se um ou mais Medicamentos (cria itens de MedicamentoReceitado).
- * 3) Pode-se remover itens. 
+ * 2) Adicionam-se um ou mais Medicamentos a um rascunho na própria view (sem acesso ao banco).
+ * 3) "Salvar Itens" grava o rascunho inteiro em uma única transação (inserção em lote).
+ * 4) Pode-se remover itens já gravados ou retirar itens do rascunho. 
+ * Paciente e medicamento são escolhidos por autocomplete no servidor (índice em memória), sem carregar
+ * as listas completas na view.
  */
 @Named
 @ViewScoped
@@ -34,7 +37,7 @@ public class ReceitaBean implements Serializable {
     private PacienteRepository pacienteRepository;
 
     @Inject
-    private MedicamentoRepository medicamentoRepository;
+    private IndiceAutocomplete indiceAutocomplete;
 
     @Inject
     private ReceitaRepository receitaRepository;
@@ -42,65 +45,51 @@ public class ReceitaBean implements Serializable {
     /** Receita em edição (criada para o paciente selecionado) */
     private Receita receita;
 
-    /** ID do Paciente selecionado para a receita (evita necessidade de converter no JSF) */
-    private Long pacienteIdSelecionado;
+    /** Paciente escolhido no autocomplete (ID + nome) para a receita */
+    private IdNomeDTO pacienteSelecionado;
 
-    /** ID do Medicamento selecionado para adicionar à receita */
-    private Long medicamentoIdSelecionado;
+    /** Medicamento escolhido no autocomplete (ID + nome) para adicionar à receita */
+    private IdNomeDTO medicamentoSelecionado;
 
-    /** Listas para popular selects */
-    private List<Paciente> pacientes;
-    private List<Medicamento> medicamentos;
+    /** Medicamentos adicionados e ainda não gravados (rascunho da view) */
+    private final List<IdNomeDTO> rascunho = new ArrayList<>();
 
-    @PostConstruct
-    public void init() {
-        carregarListas();
-    }
-
-    private void carregarListas() {
-        try {
-            pacientes = pacienteRepository.findAllOrderedByNome();
-        } catch (Exception e) {
-            pacientes = Collections.emptyList();
-        }
-        try {
-            medicamentos = medicamentoRepository.findAllOrderedByNome();
-        } catch (Exception e) {
-            medicamentos = Collections.emptyList();
-        }
-    }
+    /** Itens já gravados da receita; recarregados somente após alterações (não a cada renderização) */
+    private List<MedicamentoReceitado> itens;
 
-    public List<Paciente> getPacientes() {
-        return pacientes;
+    /** Sugestões do autocomplete de pacientes. */
+    public List<IdNomeDTO> completarPacientes(String termo) {
+        return indiceAutocomplete.buscarPacientes(termo);
     }
 
-    public List<Medicamento> getMedicamentos() {
-        return medicamentos;
+    /** Sugestões do autocomplete de medicamentos. */
+    public List<IdNomeDTO> completarMedicamentos(String termo) {
+        return indiceAutocomplete.buscarMedicamentos(termo);
     }
 
     public Receita getReceita() {
         return receita;
     }
 
-    public Long getPacienteIdSelecionado() {
-        return pacienteIdSelecionado;
+    public IdNomeDTO getPacienteSelecionado() {
+        return pacienteSelecionado;
     }
 
-    public void setPacienteIdSelecionado(Long pacienteIdSelecionado) {
-        this.pacienteIdSelecionado = pacienteIdSelecionado;
+    public void setPacienteSelecionado(IdNomeDTO pacienteSelecionado) {
+        this.pacienteSelecionado = pacienteSelecionado;
     }
 
-    public Long getMedicamentoIdSelecionado() {
-        return medicamentoIdSelecionado;
+    public IdNomeDTO getMedicamentoSelecionado() {
+        return medicamentoSelecionado;
     }
 
-    public void setMedicamentoIdSelecionado(Long medicamentoIdSelecionado) {
-        this.medicamentoIdSelecionado = medicamentoIdSelecionado;
+    public void setMedicamentoSelecionado(IdNomeDTO medicamentoSelecionado) {
+        this.medicamentoSelecionado = medicamentoSelecionado;
     }
 
     /** Cria e persiste uma nova receita para o paciente selecionado. */
     public void criarNovaReceita() {
-        if (pacienteIdSelecionado == null) {
+        if (pacienteSelecionado == null) {
             FacesContext.getCurrentInstance().addMessage(null,
                     new FacesMessage(FacesMessage.SEVERITY_WARN, "Selecione um paciente para criar a receita.", null));
             PrimeFaces.current().ajax().update("formReceita:growl");
@@ -109,9 +98,11 @@ public class ReceitaBean implements Serializable {
         try {
             Receita r = new Receita();
             // Garantir que o paciente esteja gerenciado; recarregar do banco
-            Paciente p = pacienteRepository.findById(pacienteIdSelecionado);
+            Paciente p = pacienteRepository.findById(pacienteSelecionado.getId());
             r.setPaciente(p);
             receita = receitaRepository.save(r);
+            itens = null;
+            rascunho.clear();
             FacesContext.getCurrentInstance().addMessage(null,
                     new FacesMessage(FacesMessage.SEVERITY_INFO, "Receita criada com sucesso (ID: " + receita.getId() + ")", null));
             // Atualiza o formulário inteiro para garantir que componentes condicionalmente renderizados entrem na árvore
@@ -124,18 +115,42 @@ public class ReceitaBean implements Serializable {
         }
     }
 
-    /** Adiciona o medicamento selecionado à receita corrente. */
+    /** Adiciona o medicamento selecionado ao rascunho da receita corrente (gravado em "Salvar Itens"). */
     public void adicionarMedicamento() {
         if (!validarReceitaEMedicamentoSelecionados()) return;
+        rascunho.add(medicamentoSelecionado);
+        // Limpa seleção e atualiza o rascunho
+        medicamentoSelecionado = null;
+        PrimeFaces.current().ajax().update("formReceita:tabelaRascunho", "formReceita:selectMedicamento");
+    }
+
+    /** Retira um medicamento do rascunho (posição na tabela). */
+    public void removerDoRascunho(int indice) {
+        if (indice >= 0 && indice < rascunho.size()) {
+            rascunho.remove(indice);
+        }
+        PrimeFaces.current().ajax().update("formReceita:tabelaRascunho");
+    }
+
+    /** Grava todos os medicamentos do rascunho em uma única transação. */
+    public void salvarRascunho() {
+        if (receita == null || receita.getId() == null || rascunho.isEmpty()) return;
+        List<Long> ids = new ArrayList<>(rascunho.size());
+        for (IdNomeDTO m : rascunho) {
+            ids.add(m.getId());
+        }
         try {
-            MedicamentoReceitado item = receitaRepository.addMedicamento(receita.getId(), medicamentoIdSelecionado);
+            long inicio = System.nanoTime();
+            int incluidos = receitaRepository.addMedicamentos(receita.getId(), ids);
+            long ms = (System.nanoTime() - inicio) / 1_000_000;
+            rascunho.clear();
+            itens = null;
             FacesContext.getCurrentInstance().addMessage(null,
-                    new FacesMessage(FacesMessage.SEVERITY_INFO, "Medicamento adicionado (Item ID: " + item.getId() + ")", null));
-            // Limpa seleção e atualiza a tabela
-            medicamentoIdSelecionado = null;
-            PrimeFaces.current().ajax().update("formReceita:growl", "formReceita:tabelaItens", "formReceita:selectMedicamento");
+                    new FacesMessage(FacesMessage.SEVERITY_INFO, incluidos + " medicamento(s) gravado(s) em " + ms + " ms", null));
+            PrimeFaces.current().ajax().update("formReceita:growl", "formReceita:tabelaItens", "formReceita:tabelaRascunho");
         } catch (Exception e) {
-            String msg = "Erro ao adicionar medicamento: " + e.getMessage();
+            // O rascunho é mantido para nova tentativa
+            String msg = "Erro ao gravar medicamentos: " + e.getMessage();
             FacesContext.getCurrentInstance().addMessage(null,
                     new FacesMessage(FacesMessage.SEVERITY_ERROR, msg, null));
             PrimeFaces.current().ajax().update("formReceita:growl");
@@ -146,24 +161,35 @@ public class ReceitaBean implements Serializable {
     public void removerItem(Long idItem) {
         if (receita == null || receita.getId() == null) return;
         receitaRepository.deleteItem(idItem);
+        itens = null;
         FacesContext.getCurrentInstance().addMessage(null,
                 new FacesMessage(FacesMessage.SEVERITY_INFO, "Item removido com sucesso", null));
         PrimeFaces.current().ajax().update("formReceita:tabelaItens", "formReceita:growl");
     }
 
-    /** Lista os itens atuais da receita para exibição na tabela. */
+    /** Lista os itens gravados da receita para exibição na tabela (consulta apenas após alterações). */
     public List<MedicamentoReceitado> getItensDaReceita() {
         if (receita == null || receita.getId() == null) {
             return Collections.emptyList();
         }
-        return receitaRepository.listItensByReceita(receita.getId());
+        if (itens == null) {
+            itens = receitaRepository.listItensByReceita(receita.getId());
+        }
+        return itens;
+    }
+
+    /** Medicamentos do rascunho, ainda não gravados. */
+    public List<IdNomeDTO> getRascunho() {
+        return rascunho;
     }
 
     /** Reinicia o fluxo, limpando a receita e seleções. */
     public void novaAssociacao() {
         this.receita = null;
-        this.pacienteIdSelecionado = null;
-        this.medicamentoIdSelecionado = null;
+        this.pacienteSelecionado = null;
+        this.medicamentoSelecionado = null;
+        this.rascunho.clear();
+        this.itens = null;
         PrimeFaces.current().ajax().update("formReceita");
     }
 
@@ -174,7 +200,7 @@ public class ReceitaBean implements Serializable {
             PrimeFaces.current().ajax().update("formReceita:growl");
             return false;
         }
-        if (medicamentoIdSelecionado == null) {
+        if (medicamentoSelecionado == null) {
             FacesContext.getCurrentInstance().addMessage(null,
                     new FacesMessage(FacesMessage.SEVERITY_WARN, "Selecione um medicamento para adicionar.", null));
             PrimeFaces.current().ajax().update("formReceita:growl");
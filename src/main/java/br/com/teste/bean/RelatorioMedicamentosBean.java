@@ -1,68 +1,202 @@
 package br.com.teste.bean;
 
+import br.com.teste.config.Configuracao;
 import br.com.teste.dto.NomeQuantidadeDTO;
 import br.com.teste.dto.PacienteTotalDTO;
-import br.com.teste.repository.ReceitaRepository;
+import br.com.teste.estatistica.SnapshotRelatorio;
+import br.com.teste.job.AtualizacaoRelatorio;
+import br.com.teste.job.SnapshotRelatorioJob;
+import br.com.teste.replica.EscritaRecente;
+import org.primefaces.PrimeFaces;
 
 import javax.annotation.PostConstruct;
-import javax.enterprise.context.SessionScoped;
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.faces.context.FacesContext;
 import javax.faces.view.ViewScoped;
-import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Bean para o Relatório de Medicamentos Prescritos.
  * Exibe:
- *  - Top 2 medicamentos mais prescritos
- *  - Top 2 pacientes com mais medicamentos prescritos
+ *  - Top N medicamentos mais prescritos
+ *  - Top N pacientes com mais medicamentos prescritos
  *  - Lista de pacientes com total de medicamentos receitados em todas as receitas
+ * N vem da propriedade teste.relatorio.topN (padrão 2).
+ *
+ * Os dados vêm da fotografia do relatório ({@link SnapshotRelatorioJob}, atualizada a cada 5 minutos e após
+ * escritas em receitas), exibida sem consultar o banco, com a data em que foi gerada. Cada nova fotografia
+ * chega à tela pelo f:websocket e {@link #sincronizar()} redesenha só as seções que mudaram.
+ * "Atualizar" gera uma nova fotografia no executor gerenciado pelo container (ou reaproveita uma gerada há
+ * menos de teste.relatorio.push.intervalo ms): a página não espera por ela e cada seção é preenchida por ajax
+ * (p:remoteCommand) quando a geração termina, ou mostra a mensagem de tempo esgotado após
+ * teste.relatorio.timeout ms. O mesmo acontece na abertura se ainda não houver fotografia.
  */
 @Named
 @ViewScoped
 public class RelatorioMedicamentosBean implements Serializable {
 
-    @Inject
-    private ReceitaRepository receitaRepository;
+    /** Propriedade com a quantidade de posições dos rankings */
+    public static final String PROP_TOP_N = "teste.relatorio.topN";
 
-    private List<NomeQuantidadeDTO> topMedicamentos;
-    private List<NomeQuantidadeDTO> topPacientes;
-    private List<PacienteTotalDTO> totaisPorPaciente;
+    /** Tempo limite de cada seção, em ms, contado desde o início do cálculo */
+    public static final String PROP_TIMEOUT = "teste.relatorio.timeout";
+
+    @EJB
+    private SnapshotRelatorioJob snapshots;
+
+    @EJB
+    private AtualizacaoRelatorio atualizacao;
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    private int topN;
+
+    /** Fotografia cujos dados estão na tela (trocada pela geração sob demanda quando ela termina) */
+    private volatile SnapshotRelatorio exibida;
+
+    private final SecaoAssincrona<List<NomeQuantidadeDTO>> topMedicamentos = new SecaoAssincrona<>("topMedicamentos");
+    private final SecaoAssincrona<List<NomeQuantidadeDTO>> topPacientes = new SecaoAssincrona<>("topPacientes");
+    private final SecaoAssincrona<List<PacienteTotalDTO>> totaisPorPaciente = new SecaoAssincrona<>("totaisPorPaciente");
 
     @PostConstruct
     public void init() {
-        atualizar();
+        topN = Math.max(1, Configuracao.getInt(PROP_TOP_N, 2));
+        SnapshotRelatorio s = snapshots.getAtual();
+        if (s != null) {
+            exibida = s;
+            topMedicamentos.concluir(limitar(s.getTopMedicamentos()));
+            topPacientes.concluir(limitar(s.getTopPacientes()));
+            totaisPorPaciente.concluir(s.getTotaisPorPaciente());
+        } else {
+            atualizar();
+        }
     }
 
+    /** Gera uma nova fotografia em segundo plano; a página busca as seções em seguida (carregar*). */
     public void atualizar() {
-        try {
-            topMedicamentos = receitaRepository.top2Medicamentos();
-        } catch (Exception e) {
-            topMedicamentos = Collections.emptyList();
+        // A marca de escrita recente acompanha a geração (leitura na réplica, ver LeituraReplica)
+        long idadeMaxima = atualizacao.intervalo();
+        Callable<SnapshotRelatorio> tarefa = EscritaRecente.propagar(() -> snapshots.atualizar(idadeMaxima));
+        CompletableFuture<SnapshotRelatorio> geracao = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                geracao.complete(tarefa.call());
+            } catch (Exception e) {
+                geracao.completeExceptionally(e);
+            }
+        });
+        topMedicamentos.acompanhar(geracao.thenApply(s -> limitar(s.getTopMedicamentos())));
+        topPacientes.acompanhar(geracao.thenApply(s -> limitar(s.getTopPacientes())));
+        totaisPorPaciente.acompanhar(geracao.thenApply(s -> {
+            exibida = s;
+            return s.getTotaisPorPaciente();
+        }));
+    }
+
+    /**
+     * Chamado pela tela ao receber a mensagem de uma nova fotografia (parâmetros versao, topMedicamentos,
+     * topPacientes e totais da mensagem): exibe a fotografia atual e redesenha somente as seções alteradas.
+     * Se a tela perdeu alguma versão intermediária, ou uma seção ainda não tem dados, ela também é redesenhada.
+     */
+    public void sincronizar() {
+        SnapshotRelatorio s = snapshots.getAtual();
+        SnapshotRelatorio anterior = exibida;
+        if (s == null || (anterior != null && s.getVersao() <= anterior.getVersao())) {
+            return;
+        }
+        Map<String, String> parametros = FacesContext.getCurrentInstance().getExternalContext().getRequestParameterMap();
+        boolean seguida = anterior != null && s.getVersao() == anterior.getVersao() + 1
+                && String.valueOf(s.getVersao()).equals(parametros.get("versao"));
+        exibida = s;
+        PrimeFaces.Ajax ajax = PrimeFaces.current().ajax();
+        ajax.update("formRelatorio:dataSnapshot");
+        if (!seguida || "true".equals(parametros.get("topMedicamentos")) || topMedicamentos.getDados() == null) {
+            topMedicamentos.concluir(limitar(s.getTopMedicamentos()));
+            ajax.update("formRelatorio:secaoTopMeds");
         }
-        try {
-            topPacientes = receitaRepository.top2Pacientes();
-        } catch (Exception e) {
-            topPacientes = Collections.emptyList();
+        if (!seguida || "true".equals(parametros.get("topPacientes")) || topPacientes.getDados() == null) {
+            topPacientes.concluir(limitar(s.getTopPacientes()));
+            ajax.update("formRelatorio:secaoTopPacs");
         }
-        try {
-            totaisPorPaciente = receitaRepository.totalMedicamentosPorPaciente();
-        } catch (Exception e) {
-            totaisPorPaciente = Collections.emptyList();
+        if (!seguida || "true".equals(parametros.get("totais")) || totaisPorPaciente.getDados() == null) {
+            totaisPorPaciente.concluir(s.getTotaisPorPaciente());
+            ajax.update("formRelatorio:secaoTotais");
         }
     }
 
-    public List<NomeQuantidadeDTO> getTopMedicamentos() {
+    public void carregarTopMedicamentos() {
+        topMedicamentos.aguardar(timeout());
+    }
+
+    public void carregarTopPacientes() {
+        topPacientes.aguardar(timeout());
+    }
+
+    public void carregarTotaisPorPaciente() {
+        totaisPorPaciente.aguardar(timeout());
+    }
+
+    private static long timeout() {
+        return Math.max(1L, Configuracao.getLong(PROP_TIMEOUT, 10000L));
+    }
+
+    /** Rankings da fotografia limitados ao top N configurado (a fotografia pode ter sido gerada com outro N). */
+    private <T> List<T> limitar(List<T> ranking) {
+        return ranking.size() > topN ? new ArrayList<>(ranking.subList(0, topN)) : ranking;
+    }
+
+    public int getTopN() {
+        return topN;
+    }
+
+    /** Data de geração da fotografia exibida, ou null enquanto a primeira é gerada. */
+    public Date getGeradoEm() {
+        SnapshotRelatorio s = exibida;
+        return s != null ? new Date(s.getGeradoEm()) : null;
+    }
+
+    /** Versão da fotografia exibida (0 enquanto a primeira é gerada). */
+    public long getVersao() {
+        SnapshotRelatorio s = exibida;
+        return s != null ? s.getVersao() : 0L;
+    }
+
+    public SecaoAssincrona<List<NomeQuantidadeDTO>> getSecaoTopMedicamentos() {
         return topMedicamentos;
     }
 
-    public List<NomeQuantidadeDTO> getTopPacientes() {
+    public SecaoAssincrona<List<NomeQuantidadeDTO>> getSecaoTopPacientes() {
         return topPacientes;
     }
 
-    public List<PacienteTotalDTO> getTotaisPorPaciente() {
+    public SecaoAssincrona<List<PacienteTotalDTO>> getSecaoTotaisPorPaciente() {
         return totaisPorPaciente;
     }
+
+    public List<NomeQuantidadeDTO> getTopMedicamentos() {
+        return ouVazia(topMedicamentos.getDados());
+    }
+
+    public List<NomeQuantidadeDTO> getTopPacientes() {
+        return ouVazia(topPacientes.getDados());
+    }
+
+    public List<PacienteTotalDTO> getTotaisPorPaciente() {
+        return ouVazia(totaisPorPaciente.getDados());
+    }
+
+    private static <T> List<T> ouVazia(List<T> lista) {
+        return lista != null ? lista : Collections.emptyList();
+    }
 }
@@ -0,0 +1,101 @@
+package br.com.teste.bean;
+
+import java.io.Serializable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Seção de uma tela calculada em segundo plano: a tela é exibida com a seção "carregando" e uma requisição ajax
+ * da própria página aguarda o resultado ({@link #aguardar}) e a atualiza. O tempo limite conta desde o início
+ * do cálculo; esgotado, o cálculo é cancelado e a seção exibe a mensagem.
+ * O resultado (T) deve ser serializável, como o restante do estado da view.
+ */
+public class SecaoAssincrona<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = Logger.getLogger(SecaoAssincrona.class.getName());
+
+    private final String nome;
+
+    /** Cálculo em andamento (não sobrevive à serialização da view; ver {@link #aguardar}) */
+    private transient Future<T> calculo;
+    private long inicio;
+
+    private T dados;
+    private String mensagem;
+
+    public SecaoAssincrona(String nome) {
+        this.nome = nome;
+    }
+
+    /** Passa a acompanhar um cálculo em andamento; o resultado anterior é descartado. */
+    public void acompanhar(Future<T> novoCalculo) {
+        if (calculo != null) {
+            calculo.cancel(true);
+        }
+        dados = null;
+        mensagem = null;
+        inicio = System.nanoTime();
+        calculo = novoCalculo;
+    }
+
+    /** Exibe um resultado já disponível (sem cálculo a aguardar). */
+    public void concluir(T resultado) {
+        if (calculo != null) {
+            calculo.cancel(true);
+            calculo = null;
+        }
+        dados = resultado;
+        mensagem = null;
+    }
+
+    /**
+     * Aguarda o fim do cálculo até o tempo limite (contado desde {@link #acompanhar}) e guarda o resultado ou a
+     * mensagem de erro. Chamadas seguintes, com a seção já concluída, retornam imediatamente.
+     */
+    public void aguardar(long limiteMs) {
+        Future<T> f = calculo;
+        if (f == null) {
+            if (dados == null && mensagem == null) {
+                mensagem = "Seção indisponível; clique em Atualizar.";
+            }
+            return;
+        }
+        long restante = TimeUnit.MILLISECONDS.toNanos(limiteMs) - (System.nanoTime() - inicio);
+        try {
+            dados = f.get(Math.max(0L, restante), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            f.cancel(true);
+            mensagem = "Tempo esgotado (" + limiteMs + " ms); clique em Atualizar.";
+            LOG.warning(() -> "Seção " + nome + " do relatório não concluiu em " + limiteMs + " ms");
+        } catch (ExecutionException | CancellationException e) {
+            mensagem = "Erro ao carregar a seção.";
+            LOG.log(Level.WARNING, "Erro ao calcular a seção " + nome + " do relatório", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        calculo = null;
+    }
+
+    /** Se a seção ainda não tem resultado nem mensagem (exibe o indicador de carregamento). */
+    public boolean isCarregando() {
+        return dados == null && mensagem == null;
+    }
+
+    /** Resultado do cálculo, ou null enquanto carrega ou em caso de erro/tempo esgotado. */
+    public T getDados() {
+        return dados;
+    }
+
+    /** Mensagem de erro ou de tempo esgotado, ou null. */
+    public String getMensagem() {
+        return mensagem;
+    }
+}
@@ -0,0 +1,33 @@
+package br.com.teste.busca;
+
+import java.text.Normalizer;
+import java.util.regex.Pattern;
+
+/**
+ * Normalização dos termos de busca por nome (minúsculas e sem acentos), espelhando a expressão
+ * f_unaccent(lower(nome)) usada nos índices GIN pg_trgm criados por {@link EsquemaBusca}.
+ */
+public final class BuscaTexto {
+
+    /** Função SQL (imutável) que remove acentos; envolve a extensão unaccent para poder ser indexada */
+    public static final String FUNCAO_SEM_ACENTO = "f_unaccent";
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+
+    private BuscaTexto() {
+    }
+
+    /** Termo em minúsculas e sem acentos ("João" → "joao"). Retorna null para termos vazios. */
+    public static String normalizar(String termo) {
+        if (termo == null) return null;
+        String t = termo.trim().toLowerCase();
+        if (t.isEmpty()) return null;
+        return MARCAS.matcher(Normalizer.normalize(t, Normalizer.Form.NFD)).replaceAll("");
+    }
+
+    /** Padrão LIKE "contém" para o termo normalizado, ou null quando o termo é vazio. */
+    public static String padraoContem(String termo) {
+        String t = normalizar(termo);
+        return t == null ? null : ("%" + t + "%");
+    }
+}
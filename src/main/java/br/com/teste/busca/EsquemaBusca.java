@@ -0,0 +1,87 @@
+package br.com.teste.busca;
+
+import br.com.teste.config.Configuracao;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.DependsOn;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionManagement;
+import javax.ejb.TransactionManagementType;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Prepara no banco a busca por nome com índices de trigramas (pg_trgm) e sem acentos (unaccent),
+ * executado uma vez na subida da aplicação.
+ *
+ * As buscas "contém" (like '%termo%') não usam índices B-tree; com um índice GIN gin_trgm_ops
+ * sobre f_unaccent(lower(nome)) o planner consegue atendê-las sem varrer a tabela, desde que a consulta
+ * use exatamente a mesma expressão. Se as extensões não puderem ser criadas (ex.: usuário sem permissão),
+ * a aplicação continua com a busca tradicional lower(nome) like.
+ *
+ * Fica fora das migrações versionadas porque depende de extensões opcionais (e de permissão para criá-las).
+ */
+@Singleton
+@Startup
+@DependsOn("MigracaoEsquema")
+@TransactionManagement(TransactionManagementType.BEAN)
+public class EsquemaBusca {
+
+    private static final Logger LOG = Logger.getLogger(EsquemaBusca.class.getName());
+
+    /** Propriedade para desligar a busca por trigramas (padrão: habilitada) */
+    public static final String PROP_HABILITADA = "teste.busca.trigrama";
+
+    private static final String[] DDL = {
+            "create extension if not exists pg_trgm",
+            "create extension if not exists unaccent",
+            // unaccent() é apenas STABLE; o wrapper IMMUTABLE com dicionário explícito permite usá-lo em índices
+            "create or replace function " + BuscaTexto.FUNCAO_SEM_ACENTO + "(text) returns text " +
+                    "language sql immutable parallel safe strict as " +
+                    "$$ select public.unaccent('public.unaccent'::regdictionary, $1) $$",
+            "create index if not exists ix_paciente_nome_trgm on paciente " +
+                    "using gin (" + BuscaTexto.FUNCAO_SEM_ACENTO + "(lower(nome)) gin_trgm_ops)",
+            "create index if not exists ix_medicamento_nome_trgm on medicamento " +
+                    "using gin (" + BuscaTexto.FUNCAO_SEM_ACENTO + "(lower(nome)) gin_trgm_ops)",
+            // Modelo de leitura receita_resumo: medicamento_nomes já é gravado normalizado
+            "create index if not exists ix_receita_resumo_paciente_trgm on receita_resumo " +
+                    "using gin (" + BuscaTexto.FUNCAO_SEM_ACENTO + "(lower(paciente_nome)) gin_trgm_ops)",
+            "create index if not exists ix_receita_resumo_medicamentos_trgm on receita_resumo " +
+                    "using gin (medicamento_nomes gin_trgm_ops)"
+    };
+
+    @Resource(lookup = "java:/PostgresDS")
+    private DataSource dataSource;
+
+    private volatile boolean trigramaDisponivel;
+
+    @PostConstruct
+    public void init() {
+        if (!Configuracao.getBoolean(PROP_HABILITADA, true)) {
+            LOG.info("Busca por trigramas desabilitada (" + PROP_HABILITADA + "=false)");
+            return;
+        }
+        try (Connection con = dataSource.getConnection(); Statement st = con.createStatement()) {
+            for (String sql : DDL) {
+                st.execute(sql);
+            }
+            trigramaDisponivel = true;
+        } catch (SQLException e) {
+            LOG.log(Level.WARNING, "Não foi possível preparar a busca por trigramas; usando lower(nome) like", e);
+        }
+    }
+
+    /** true quando as consultas podem usar f_unaccent(lower(nome)) e os índices pg_trgm. */
+    @Lock(LockType.READ)
+    public boolean isTrigramaDisponivel() {
+        return trigramaDisponivel;
+    }
+}
@@ -0,0 +1,179 @@
+package br.com.teste.busca;
+
+import br.com.teste.config.Configuracao;
+import br.com.teste.dto.IdNomeDTO;
+import br.com.teste.transacao.AposCommit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Autocomplete de pacientes e medicamentos (tela de receita) a partir de índices em memória ({@link IndiceNomes}).
+ *
+ * - Carga na subida e recarga diária (04:00) a partir do banco.
+ * - Alimentado pelos repositórios a cada save/delete, após o commit; o delta é incorporado à base
+ *   em segundo plano quando passa do limite.
+ * - As sugestões não acessam o banco, e a tela guarda apenas a opção escolhida (não a lista completa).
+ *
+ * Em cluster, cada nó enxerga as escritas feitas nele próprio até a próxima recarga.
+ */
+@Singleton
+@Startup
+@DependsOn("MigracaoEsquema")
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class IndiceAutocomplete {
+
+    private static final Logger LOG = Logger.getLogger(IndiceAutocomplete.class.getName());
+
+    /** Propriedade com a quantidade máxima de sugestões por busca */
+    public static final String PROP_MAXIMO = "teste.autocomplete.maximo";
+
+    /** Alterações pendentes (por índice) a partir das quais a base é recompactada */
+    private static final int LIMITE_DELTA = 1024;
+
+    @PersistenceContext(unitName = "testePU")
+    private EntityManager em;
+
+    @Resource
+    private TransactionSynchronizationRegistry registry;
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    private final IndiceNomes pacientes = new IndiceNomes(LIMITE_DELTA);
+    private final IndiceNomes medicamentos = new IndiceNomes(LIMITE_DELTA);
+
+    /** Carga inicial (sem transação: uma falha não impede a subida). */
+    @PostConstruct
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void init() {
+        recarregar();
+    }
+
+    /** Recarga completa a partir do banco (inclui escritas feitas por outros nós). */
+    @Schedule(hour = "4", minute = "0", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void recarregar() {
+        try {
+            long inicio = System.currentTimeMillis();
+            carregar(pacientes, "select p.id, p.nome from Paciente p order by p.id");
+            carregar(medicamentos, "select m.id, m.nome from Medicamento m order by m.id");
+            LOG.info("Índices de autocomplete carregados em " + (System.currentTimeMillis() - inicio) + " ms: "
+                    + pacientes.tamanho() + " pacientes, " + medicamentos.tamanho() + " medicamentos");
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Falha ao carregar os índices de autocomplete", e);
+        }
+    }
+
+    private void carregar(IndiceNomes indice, String jpql) {
+        long marca = indice.marca();
+        List<Object[]> rows = em.createQuery(jpql, Object[].class).getResultList();
+        long[] ids = new long[rows.size()];
+        String[] nomes = new String[rows.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Object[] r = rows.get(i);
+            ids[i] = (Long) r[0];
+            nomes[i] = (String) r[1];
+        }
+        indice.carregar(ids, nomes, marca);
+    }
+
+    /** Sugestões de pacientes cujo nome tem uma palavra iniciada pelo termo. */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<IdNomeDTO> buscarPacientes(String termo) {
+        return buscar(pacientes, termo);
+    }
+
+    /** Sugestões de medicamentos cujo nome tem uma palavra iniciada pelo termo. */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<IdNomeDTO> buscarMedicamentos(String termo) {
+        return buscar(medicamentos, termo);
+    }
+
+    /** Opção (ID + nome) de um paciente do índice, ou null se não existir. */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public IdNomeDTO paciente(Long id) {
+        return opcao(pacientes, id);
+    }
+
+    /** Opção (ID + nome) de um medicamento do índice, ou null se não existir. */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public IdNomeDTO medicamento(Long id) {
+        return opcao(medicamentos, id);
+    }
+
+    /** Registra inclusão/alteração de paciente, após o commit. */
+    public void registrarPaciente(Long id, String nome) {
+        registrar(pacientes, id, nome);
+    }
+
+    /** Registra exclusão de paciente, após o commit. */
+    public void removerPaciente(Long id) {
+        remover(pacientes, id);
+    }
+
+    /** Registra inclusão/alteração de medicamento, após o commit. */
+    public void registrarMedicamento(Long id, String nome) {
+        registrar(medicamentos, id, nome);
+    }
+
+    /** Registra exclusão de medicamento, após o commit. */
+    public void removerMedicamento(Long id) {
+        remover(medicamentos, id);
+    }
+
+    private void registrar(IndiceNomes indice, Long id, String nome) {
+        if (id != null && nome != null) {
+            AposCommit.executar(registry, () -> {
+                indice.registrar(id, nome);
+                agendarCompactacao(indice);
+            });
+        }
+    }
+
+    private void remover(IndiceNomes indice, Long id) {
+        if (id != null) {
+            AposCommit.executar(registry, () -> {
+                indice.remover(id);
+                agendarCompactacao(indice);
+            });
+        }
+    }
+
+    private void agendarCompactacao(IndiceNomes indice) {
+        if (indice.precisaCompactar()) {
+            executor.execute(indice::compactar);
+        }
+    }
+
+    private static List<IdNomeDTO> buscar(IndiceNomes indice, String termo) {
+        List<IndiceNomes.Resultado> resultados = indice.buscar(termo, Configuracao.getInt(PROP_MAXIMO, 15));
+        List<IdNomeDTO> dtos = new ArrayList<>(resultados.size());
+        for (IndiceNomes.Resultado r : resultados) {
+            dtos.add(new IdNomeDTO(r.getId(), r.getNome()));
+        }
+        return dtos;
+    }
+
+    private static IdNomeDTO opcao(IndiceNomes indice, Long id) {
+        if (id == null) return null;
+        String nome = indice.nome(id);
+        return nome != null ? new IdNomeDTO(id, nome) : null;
+    }
+}
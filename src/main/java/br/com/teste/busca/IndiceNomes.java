@@ -0,0 +1,406 @@
+package br.com.teste.busca;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Índice em memória de nomes (ID → nome) para autocomplete, com busca pelo início de qualquer palavra
+ * do nome ("silva" encontra "Diego Silva"), sem acentos e sem diferenciar maiúsculas.
+ *
+ * Estrutura:
+ * - Base imutável em arrays compactos: IDs ordenados, nomes, nomes normalizados e um array de sufixos
+ *   (documento + posição de início de cada palavra) ordenado lexicograficamente. A busca é uma pesquisa
+ *   binária pelo termo seguida da leitura sequencial dos sufixos que começam por ele: o custo depende
+ *   da quantidade de palavras iniciadas pelo termo, não da quantidade de nomes.
+ * - Delta: inclusões, alterações e exclusões registradas após a montagem da base (prevalecem sobre ela).
+ *   Quando passa do limite, {@link #compactar()} monta uma nova base e troca a referência; leituras
+ *   concorrentes continuam na base anterior, sem bloqueio.
+ */
+public class IndiceNomes {
+
+    /** Bits da posição da palavra no sufixo empacotado (nome com até 65535 caracteres) */
+    private static final int BITS_POSICAO = 16;
+    private static final long MASCARA_POSICAO = (1L << BITS_POSICAO) - 1;
+
+    private final int limiteDelta;
+
+    private volatile Base base = new Base(new long[0], new String[0]);
+    private final Map<Long, Entrada> delta = new ConcurrentHashMap<>();
+    private final AtomicLong sequencia = new AtomicLong();
+    /** Serializa as trocas de base (compactação e recarga completa) */
+    private final ReentrantLock trocaBase = new ReentrantLock();
+
+    /** @param limiteDelta quantidade de alterações pendentes a partir da qual a compactação é recomendada */
+    public IndiceNomes(int limiteDelta) {
+        this.limiteDelta = limiteDelta;
+    }
+
+    /** Marca do momento atual: alterações registradas depois dela sobrevivem a {@link #carregar}. */
+    public long marca() {
+        return sequencia.get();
+    }
+
+    /**
+     * Substitui todo o conteúdo pelos nomes lidos do banco (ids obrigatoriamente em ordem crescente).
+     * Alterações registradas após a marca (obtida antes da leitura) são mantidas no delta.
+     */
+    public void carregar(long[] ids, String[] nomes, long marca) {
+        Base nova = new Base(ids, nomes);
+        trocaBase.lock();
+        try {
+            base = nova;
+            delta.values().removeIf(e -> e.sequencia <= marca);
+        } finally {
+            trocaBase.unlock();
+        }
+    }
+
+    /** Inclui ou atualiza o nome de um ID. */
+    public void registrar(long id, String nome) {
+        delta.put(id, new Entrada(id, nome, sequencia.incrementAndGet()));
+    }
+
+    /** Remove um ID do índice. */
+    public void remover(long id) {
+        delta.put(id, new Entrada(id, null, sequencia.incrementAndGet()));
+    }
+
+    /** true quando o delta passou do limite e uma compactação deve ser agendada. */
+    public boolean precisaCompactar() {
+        return delta.size() > limiteDelta;
+    }
+
+    /** Incorpora o delta atual a uma nova base. Não faz nada se outra troca de base estiver em andamento. */
+    public void compactar() {
+        if (!trocaBase.tryLock()) return;
+        try {
+            Base atual = base;
+            List<Entrada> pendentes = new ArrayList<>(delta.values());
+            Map<Long, Entrada> porId = new HashMap<>();
+            for (Entrada e : pendentes) porId.put(e.id, e);
+
+            long[] ids = new long[atual.ids.length + pendentes.size()];
+            String[] nomes = new String[ids.length];
+            int n = 0;
+            for (int i = 0; i < atual.ids.length; i++) {
+                if (!porId.containsKey(atual.ids[i])) {
+                    ids[n] = atual.ids[i];
+                    nomes[n++] = atual.nomes[i];
+                }
+            }
+            for (Entrada e : pendentes) {
+                if (e.nome != null) {
+                    ids[n] = e.id;
+                    nomes[n++] = e.nome;
+                }
+            }
+            base = Base.ordenadaPorId(Arrays.copyOf(ids, n), Arrays.copyOf(nomes, n));
+            // Só sai do delta o que foi incorporado e não mudou desde então
+            for (Entrada e : pendentes) delta.remove(e.id, e);
+        } finally {
+            trocaBase.unlock();
+        }
+    }
+
+    /** Quantidade aproximada de nomes no índice (base + inclusões pendentes). */
+    public int tamanho() {
+        return base.ids.length + delta.size();
+    }
+
+    /** Nome atual do ID, ou null se não estiver no índice. */
+    public String nome(long id) {
+        Entrada e = delta.get(id);
+        if (e != null) return e.nome;
+        Base b = base;
+        int pos = Arrays.binarySearch(b.ids, id);
+        return pos >= 0 ? b.nomes[pos] : null;
+    }
+
+    /**
+     * Até limite resultados cujo nome tem uma palavra iniciada pelo termo, em ordem alfabética.
+     * Nomes que começam pelo termo vêm antes dos que só o contêm em uma palavra seguinte.
+     *
+     * Os nomes iniciados pelo termo são um intervalo contíguo da base em ordem de nome: quando ele já enche o
+     * limite, basta lê-lo. Senão todos os sufixos iniciados pelo termo são percorridos, comparando só a posição
+     * do nome na ordem alfabética, e os limite melhores ficam guardados.
+     */
+    public List<Resultado> buscar(String termo, int limite) {
+        String t = BuscaTexto.normalizar(termo);
+        if (t == null || limite <= 0) return Collections.emptyList();
+
+        Base b = base;
+        int n = b.ids.length;
+        // Posições em ordem de nome dos nomes iniciados pelo termo: [inicio, fim)
+        int inicio = b.limiteNomes(t, false), fim = b.limiteNomes(t, true);
+        // Chave de ordenação por documento: iniciados pelo termo primeiro, depois os demais, em ordem de nome
+        int capacidade = Math.min(limite, n);
+        long[] melhores = new long[capacidade];
+        int encontrados = 0;
+        if (fim - inicio >= capacidade) {
+            for (int r = inicio; r < fim && encontrados < capacidade; r++) {
+                if (!delta.containsKey(b.ids[b.porNome[r]])) melhores[encontrados++] = r - inicio;
+            }
+        }
+        if (encontrados < capacidade) {
+            encontrados = 0;
+            for (int i = b.limiteInferior(t, false), ate = b.limiteInferior(t, true); i < ate; i++) {
+                int doc = documento(b.sufixos[i]);
+                int r = b.ordem[doc];
+                long chave = r >= inicio && r < fim ? r - inicio : (long) n + r;
+                // O delta só é consultado para quem entraria na lista
+                if (encontrados == capacidade && chave >= melhores[capacidade - 1]) continue;
+                if (delta.containsKey(b.ids[doc])) continue;
+                encontrados = inserir(melhores, encontrados, chave);
+            }
+        }
+
+        List<Resultado> resultado = new ArrayList<>(encontrados + delta.size());
+        for (int k = 0; k < encontrados; k++) {
+            long chave = melhores[k];
+            int doc = b.porNome[(int) (chave < n ? chave + inicio : chave - n)];
+            resultado.add(new Resultado(b.ids[doc], b.nomes[doc], b.chaves[doc]));
+        }
+        if (delta.isEmpty()) return resultado;
+
+        for (Entrada e : delta.values()) {
+            if (e.nome != null && iniciaPalavra(e.chave, t)) {
+                resultado.add(new Resultado(e.id, e.nome, e.chave));
+            }
+        }
+        resultado.sort((x, y) -> {
+            boolean px = x.chave.startsWith(t), py = y.chave.startsWith(t);
+            if (px != py) return px ? -1 : 1;
+            int c = x.chave.compareTo(y.chave);
+            return c != 0 ? c : Long.compare(x.id, y.id);
+        });
+        return resultado.size() > limite ? new ArrayList<>(resultado.subList(0, limite)) : resultado;
+    }
+
+    /**
+     * Insere a chave na lista ordenada das melhores (tamanho fixo), ignorando repetidas (outra palavra do mesmo
+     * nome) e descartando a pior quando a lista está cheia.
+     * @return novo tamanho da lista
+     */
+    private static int inserir(long[] melhores, int tamanho, long chave) {
+        int pos = Arrays.binarySearch(melhores, 0, tamanho, chave);
+        if (pos >= 0) return tamanho;
+        pos = -pos - 1;
+        int novo = Math.min(tamanho + 1, melhores.length);
+        System.arraycopy(melhores, pos, melhores, pos + 1, novo - pos - 1);
+        melhores[pos] = chave;
+        return novo;
+    }
+
+    /** Nome normalizado para comparação ("" para nomes vazios) */
+    private static String chave(String nome) {
+        String c = BuscaTexto.normalizar(nome);
+        return c != null ? c : "";
+    }
+
+    private static boolean iniciaPalavra(String chave, String termo) {
+        for (int pos = 0; pos <= chave.length() - termo.length(); pos++) {
+            if (inicioDePalavra(chave, pos) && chave.startsWith(termo, pos)) return true;
+        }
+        return false;
+    }
+
+    private static boolean inicioDePalavra(String chave, int pos) {
+        return Character.isLetterOrDigit(chave.charAt(pos))
+                && (pos == 0 || !Character.isLetterOrDigit(chave.charAt(pos - 1)));
+    }
+
+    private static int documento(long sufixo) {
+        return (int) (sufixo >>> BITS_POSICAO);
+    }
+
+    private static int posicao(long sufixo) {
+        return (int) (sufixo & MASCARA_POSICAO);
+    }
+
+    /** Item encontrado na busca */
+    public static final class Resultado {
+        private final long id;
+        private final String nome;
+        private final String chave;
+
+        Resultado(long id, String nome, String chave) {
+            this.id = id;
+            this.nome = nome;
+            this.chave = chave;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getNome() {
+            return nome;
+        }
+    }
+
+    /** Alteração pendente (nome null = exclusão) */
+    private static final class Entrada {
+        final long id;
+        final String nome;
+        final String chave;
+        final long sequencia;
+
+        Entrada(long id, String nome, long sequencia) {
+            this.id = id;
+            this.nome = nome;
+            this.chave = chave(nome);
+            this.sequencia = sequencia;
+        }
+    }
+
+    /** Conteúdo imutável do índice em arrays paralelos ordenados por ID */
+    private static final class Base {
+        final long[] ids;
+        final String[] nomes;
+        final String[] chaves;
+        /** (documento << 16 | posição do início da palavra), em ordem lexicográfica do sufixo */
+        final long[] sufixos;
+        /** Documentos em ordem de nome normalizado (empate por ID) */
+        final int[] porNome;
+        /** Posição de cada documento em {@link #porNome} */
+        final int[] ordem;
+
+        Base(long[] ids, String[] nomes) {
+            this.ids = ids;
+            this.nomes = nomes;
+            this.chaves = new String[ids.length];
+            int total = 0;
+            for (int i = 0; i < ids.length; i++) {
+                chaves[i] = chave(nomes[i]);
+                total += palavras(chaves[i]);
+            }
+            long[] s = new long[total];
+            int n = 0;
+            for (int doc = 0; doc < chaves.length; doc++) {
+                String c = chaves[doc];
+                for (int pos = 0; pos < c.length() && pos <= MASCARA_POSICAO; pos++) {
+                    if (inicioDePalavra(c, pos)) s[n++] = ((long) doc << BITS_POSICAO) | pos;
+                }
+            }
+            ordenar(s, new long[s.length], 0, s.length);
+            this.sufixos = s;
+
+            // O nome inteiro é o sufixo da posição 0 (mesma comparação dos sufixos)
+            long[] inteiros = new long[ids.length];
+            for (int doc = 0; doc < inteiros.length; doc++) inteiros[doc] = (long) doc << BITS_POSICAO;
+            ordenar(inteiros, new long[inteiros.length], 0, inteiros.length);
+            this.porNome = new int[ids.length];
+            this.ordem = new int[ids.length];
+            for (int r = 0; r < inteiros.length; r++) {
+                porNome[r] = documento(inteiros[r]);
+                ordem[porNome[r]] = r;
+            }
+        }
+
+        static Base ordenadaPorId(long[] ids, String[] nomes) {
+            Integer[] ordem = new Integer[ids.length];
+            for (int i = 0; i < ordem.length; i++) ordem[i] = i;
+            Arrays.sort(ordem, (a, b) -> Long.compare(ids[a], ids[b]));
+            long[] idsOrdenados = new long[ids.length];
+            String[] nomesOrdenados = new String[ids.length];
+            for (int i = 0; i < ordem.length; i++) {
+                idsOrdenados[i] = ids[ordem[i]];
+                nomesOrdenados[i] = nomes[ordem[i]];
+            }
+            return new Base(idsOrdenados, nomesOrdenados);
+        }
+
+        private static int palavras(String chave) {
+            int n = 0;
+            for (int pos = 0; pos < chave.length() && pos <= MASCARA_POSICAO; pos++) {
+                if (inicioDePalavra(chave, pos)) n++;
+            }
+            return n;
+        }
+
+        /**
+         * Primeira posição de {@link #sufixos} cujo sufixo começa pelo termo (apos = false) ou a seguinte à
+         * última delas (apos = true).
+         */
+        int limiteInferior(String termo, boolean apos) {
+            int lo = 0, hi = sufixos.length;
+            while (lo < hi) {
+                int meio = (lo + hi) >>> 1;
+                int c = compararComTermo(sufixos[meio], termo);
+                if (c < 0 || (apos && c == 0)) lo = meio + 1;
+                else hi = meio;
+            }
+            return lo;
+        }
+
+        /** Como {@link #limiteInferior}, em {@link #porNome}: nomes que começam pelo termo. */
+        int limiteNomes(String termo, boolean apos) {
+            int lo = 0, hi = porNome.length;
+            while (lo < hi) {
+                int meio = (lo + hi) >>> 1;
+                int c = compararComTermo((long) porNome[meio] << BITS_POSICAO, termo);
+                if (c < 0 || (apos && c == 0)) lo = meio + 1;
+                else hi = meio;
+            }
+            return lo;
+        }
+
+        /** Compara o início do sufixo com o termo: 0 se o sufixo começa pelo termo. */
+        private int compararComTermo(long sufixo, String termo) {
+            String c = chaves[documento(sufixo)];
+            int pos = posicao(sufixo);
+            int n = Math.min(c.length() - pos, termo.length());
+            for (int k = 0; k < n; k++) {
+                int d = c.charAt(pos + k) - termo.charAt(k);
+                if (d != 0) return d;
+            }
+            return c.length() - pos < termo.length() ? -1 : 0;
+        }
+
+        private int comparar(long a, long b) {
+            String ca = chaves[documento(a)], cb = chaves[documento(b)];
+            int pa = posicao(a), pb = posicao(b);
+            int la = ca.length() - pa, lb = cb.length() - pb;
+            int n = Math.min(la, lb);
+            for (int k = 0; k < n; k++) {
+                int d = ca.charAt(pa + k) - cb.charAt(pb + k);
+                if (d != 0) return d;
+            }
+            return la != lb ? la - lb : Long.compare(a, b);
+        }
+
+        /** Merge sort sobre o array primitivo (evita boxing de milhões de sufixos). */
+        private void ordenar(long[] a, long[] aux, int ini, int fim) {
+            if (fim - ini < 2) return;
+            if (fim - ini <= 16) {
+                for (int i = ini + 1; i < fim; i++) {
+                    long v = a[i];
+                    int j = i - 1;
+                    while (j >= ini && comparar(a[j], v) > 0) {
+                        a[j + 1] = a[j];
+                        j--;
+                    }
+                    a[j + 1] = v;
+                }
+                return;
+            }
+            int meio = (ini + fim) >>> 1;
+            ordenar(a, aux, ini, meio);
+            ordenar(a, aux, meio, fim);
+            if (comparar(a[meio - 1], a[meio]) <= 0) return;
+            System.arraycopy(a, ini, aux, ini, fim - ini);
+            int i = ini, j = meio;
+            for (int k = ini; k < fim; k++) {
+                if (i < meio && (j >= fim || comparar(aux[i], aux[j]) <= 0)) a[k] = aux[i++];
+                else a[k] = aux[j++];
+            }
+        }
+    }
+}
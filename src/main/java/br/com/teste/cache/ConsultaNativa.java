@@ -0,0 +1,29 @@
+package br.com.teste.cache;
+
+import org.hibernate.query.NativeQuery;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+/**
+ * Comandos SQL nativos de escrita com as tabelas afetadas declaradas ao Hibernate.
+ *
+ * Sem essa declaração, todo executeUpdate nativo invalida o cache de segundo nível inteiro (o Hibernate não
+ * sabe o que o SQL alterou). Declarando as tabelas, apenas as regiões que dependem delas são invalidadas;
+ * os cadastros de Paciente e Medicamento continuam em cache.
+ */
+public final class ConsultaNativa {
+
+    private ConsultaNativa() {
+    }
+
+    /** Cria um comando nativo que altera somente as tabelas informadas. */
+    public static Query escrita(EntityManager em, String sql, String... tabelas) {
+        Query q = em.createNativeQuery(sql);
+        NativeQuery<?> nativa = q.unwrap(NativeQuery.class);
+        for (String tabela : tabelas) {
+            nativa.addSynchronizedQuerySpace(tabela);
+        }
+        return q;
+    }
+}
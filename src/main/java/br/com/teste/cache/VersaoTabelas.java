@@ -0,0 +1,71 @@
+package br.com.teste.cache;
+
+import br.com.teste.replica.EscritaRecente;
+import br.com.teste.transacao.AposCommit;
+
+import javax.annotation.Resource;
+import javax.enterprise.context.ApplicationScoped;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versão de alteração por tabela, incrementada a cada escrita feita pelos repositórios.
+ * Permite que caches (ex.: contagens das tabelas lazy) saibam se o valor guardado ainda é válido
+ * sem consultar o banco. As versões vivem na memória deste nó e recomeçam do zero a cada deploy.
+ */
+@ApplicationScoped
+public class VersaoTabelas {
+
+    public static final String PACIENTE = "paciente";
+    public static final String MEDICAMENTO = "medicamento";
+    public static final String RECEITA = "receita";
+
+    private final ConcurrentMap<String, AtomicLong> versoes = new ConcurrentHashMap<>();
+
+    /** System.currentTimeMillis do último incremento de cada tabela */
+    private final ConcurrentMap<String, Long> alteradaEm = new ConcurrentHashMap<>();
+
+    @Resource
+    private TransactionSynchronizationRegistry registry;
+
+    /**
+     * Registra uma alteração na tabela. Dentro de uma transação JTA o incremento acontece somente
+     * após o commit (um rollback não invalida caches e uma leitura concorrente não guarda dado antigo com versão nova).
+     * A escrita também mantém no primário as leituras seguintes da transação e do usuário (EscritaRecente).
+     */
+    public void registrarAlteracao(String tabela) {
+        AposCommit.executar(registry, () -> incrementar(tabela));
+        EscritaRecente.registrar(registry);
+    }
+
+    /** Versão atual de uma tabela. */
+    public long versao(String tabela) {
+        AtomicLong v = versoes.get(tabela);
+        return v != null ? v.get() : 0L;
+    }
+
+    /** Versão combinada de várias tabelas (muda sempre que qualquer uma delas muda). */
+    public long versao(String... tabelas) {
+        long soma = 0L;
+        for (String t : tabelas) {
+            soma += versao(t);
+        }
+        return soma;
+    }
+
+    /** Momento (System.currentTimeMillis) da alteração mais recente entre as tabelas, ou 0 se nenhuma mudou. */
+    public long alteradaEm(String... tabelas) {
+        long ultima = 0L;
+        for (String t : tabelas) {
+            ultima = Math.max(ultima, alteradaEm.getOrDefault(t, 0L));
+        }
+        return ultima;
+    }
+
+    private void incrementar(String tabela) {
+        alteradaEm.put(tabela, System.currentTimeMillis());
+        versoes.computeIfAbsent(tabela, t -> new AtomicLong()).incrementAndGet();
+    }
+}
@@ -0,0 +1,41 @@
+package br.com.teste.config;
+
+/**
+ * Parâmetros de configuração da aplicação.
+ * Lidos de propriedades de sistema (ex.: bloco system-properties do standalone.xml do WildFly
+ * ou -Dchave=valor na linha de comando), com valor padrão quando ausentes ou inválidos.
+ */
+public final class Configuracao {
+
+    private Configuracao() {
+    }
+
+    /** Valor textual da propriedade, ou o padrão quando ausente/vazia. */
+    public static String getString(String chave, String padrao) {
+        String valor = System.getProperty(chave);
+        return (valor == null || valor.trim().isEmpty()) ? padrao : valor.trim();
+    }
+
+    /** Valor inteiro (long) da propriedade, ou o padrão quando ausente/inválida. */
+    public static long getLong(String chave, long padrao) {
+        String valor = getString(chave, null);
+        if (valor == null) return padrao;
+        try {
+            return Long.parseLong(valor);
+        } catch (NumberFormatException e) {
+            return padrao;
+        }
+    }
+
+    /** Valor inteiro da propriedade, ou o padrão quando ausente/inválida. */
+    public static int getInt(String chave, int padrao) {
+        long valor = getLong(chave, padrao);
+        return (valor > Integer.MAX_VALUE || valor < Integer.MIN_VALUE) ? padrao : (int) valor;
+    }
+
+    /** Valor booleano da propriedade ("true"/"false"), ou o padrão quando ausente. */
+    public static boolean getBoolean(String chave, boolean padrao) {
+        String valor = getString(chave, null);
+        return valor == null ? padrao : Boolean.parseBoolean(valor);
+    }
+}
@@ -0,0 +1,18 @@
+package br.com.teste.converter;
+
+import br.com.teste.busca.IndiceAutocomplete;
+import br.com.teste.dto.IdNomeDTO;
+
+import javax.faces.convert.FacesConverter;
+
+/**
+ * Conversor das opções do autocomplete de medicamentos.
+ */
+@FacesConverter("medicamentoOpcaoConverter")
+public class MedicamentoOpcaoConverter extends OpcaoIndiceConverter {
+
+    @Override
+    protected IdNomeDTO buscar(IndiceAutocomplete indice, Long id) {
+        return indice.medicamento(id);
+    }
+}
@@ -0,0 +1,38 @@
+package br.com.teste.converter;
+
+import br.com.teste.busca.IndiceAutocomplete;
+import br.com.teste.dto.IdNomeDTO;
+
+import javax.enterprise.inject.spi.CDI;
+import javax.faces.component.UIComponent;
+import javax.faces.context.FacesContext;
+import javax.faces.convert.Converter;
+
+/**
+ * Base dos conversores das opções de autocomplete: o valor submetido é o ID, e o nome é obtido
+ * do índice em memória (sem consulta ao banco).
+ */
+public abstract class OpcaoIndiceConverter implements Converter<IdNomeDTO> {
+
+    @Override
+    public IdNomeDTO getAsObject(FacesContext context, UIComponent component, String value) {
+        if (value == null || value.trim().isEmpty()) return null;
+        Long id;
+        try {
+            id = Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        IdNomeDTO opcao = buscar(CDI.current().select(IndiceAutocomplete.class).get(), id);
+        // ID ainda desconhecido por este nó (ex.: cadastrado em outro nó do cluster)
+        return opcao != null ? opcao : new IdNomeDTO(id, "#" + id);
+    }
+
+    @Override
+    public String getAsString(FacesContext context, UIComponent component, IdNomeDTO value) {
+        return value != null && value.getId() != null ? value.getId().toString() : "";
+    }
+
+    /** Opção do índice correspondente ao ID. */
+    protected abstract IdNomeDTO buscar(IndiceAutocomplete indice, Long id);
+}
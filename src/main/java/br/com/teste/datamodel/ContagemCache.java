@@ -0,0 +1,60 @@
+package br.com.teste.datamodel;
+
+import br.com.teste.config.Configuracao;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache das contagens (total de registros) de um LazyDataModel, por conjunto normalizado de filtros.
+ * Vive junto do modelo (escopo da view): paginar ou reordenar reaproveita o total já calculado,
+ * e qualquer escrita nas tabelas envolvidas (versão diferente) força um novo COUNT.
+ */
+public class ContagemCache implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Quantidade máxima de combinações de filtros guardadas por view */
+    private static final int MAX_ENTRADAS = 16;
+
+    /**
+     * Propriedade que habilita a contagem estimada (estatísticas do planner) para tabelas sem filtro:
+     * se a estimativa for maior ou igual a este valor, ela é usada no lugar do COUNT exato. 0 desabilita.
+     */
+    public static final String PROP_MINIMO_ESTIMATIVA = "teste.contagem.estimativa.minimo";
+
+    private final Map<String, Entrada> entradas = new LinkedHashMap<String, Entrada>(MAX_ENTRADAS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entrada> eldest) {
+            return size() > MAX_ENTRADAS;
+        }
+    };
+
+    /** Retorna a contagem guardada para os filtros, ou null se ausente ou calculada em outra versão. */
+    public Long obter(String chaveFiltros, long versao) {
+        Entrada e = entradas.get(chaveFiltros);
+        return (e != null && e.versao == versao) ? e.total : null;
+    }
+
+    /** Guarda a contagem calculada para os filtros na versão informada. */
+    public void guardar(String chaveFiltros, long versao, long total) {
+        entradas.put(chaveFiltros, new Entrada(versao, total));
+    }
+
+    /** Limite a partir do qual a estimativa do planner substitui o COUNT exato (0 = desabilitado). */
+    public static long minimoParaEstimativa() {
+        return Configuracao.getLong(PROP_MINIMO_ESTIMATIVA, 0L);
+    }
+
+    private static final class Entrada implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final long versao;
+        private final long total;
+
+        private Entrada(long versao, long total) {
+            this.versao = versao;
+            this.total = total;
+        }
+    }
+}
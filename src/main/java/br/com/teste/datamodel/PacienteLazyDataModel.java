@@ -1,5 +1,6 @@
 package br.com.teste.datamodel;
 
+import br.com.teste.cache.VersaoTabelas;
 import br.com.teste.model.Paciente;
 import br.com.teste.repository.PacienteRepository;
 import org.primefaces.model.LazyDataModel;
@@ -24,9 +25,19 @@ public class PacienteLazyDataModel extends LazyDataModel<Paciente> implements Se
     @Inject
     private PacienteRepository repository;
 
+    /** Versões de alteração das tabelas, para saber se a contagem em cache ainda vale */
+    @Inject
+    private VersaoTabelas versoes;
+
     /** Cache da página atual retornada pelo load (usado por getRowData) */
     private List<Paciente> pageData;
 
+    /** Estado da última página, para navegar por keyset ao avançar/voltar uma página */
+    private final PaginacaoKeyset paginacao = new PaginacaoKeyset();
+
+    /** Contagens já calculadas nesta view, por filtros (reaproveitadas ao paginar/ordenar) */
+    private final ContagemCache contagens = new ContagemCache();
+
     /**
      * Carrega uma página de pacientes conforme parâmetros vindos do componente DataTable.
      * Define também a contagem total para o componente paginar corretamente.
@@ -34,12 +45,55 @@ public class PacienteLazyDataModel extends LazyDataModel<Paciente> implements Se
     @Override
     public List<Paciente> load(int first, int pageSize, String sortField, SortOrder sortOrder, Map<String, org.primefaces.model.FilterMeta> filters) {
         boolean asc = sortOrder == SortOrder.ASCENDING || sortOrder == SortOrder.UNSORTED;
-        pageData = repository.findPage(first, pageSize, filters, sortField, asc);
-        int count = repository.count(filters).intValue();
-        setRowCount(count);
+        String campo = (sortField != null && !sortField.isEmpty()) ? sortField : "nome";
+        String chaveFiltros = PaginacaoKeyset.chaveFiltros(filters);
+
+        // Navegação página a página usa keyset; saltos aleatórios continuam com OFFSET
+        PaginacaoKeyset.Direcao direcao = paginacao.direcao(first, pageSize, campo, asc, chaveFiltros);
+        if (direcao != null) {
+            pageData = repository.findPageKeyset(pageSize, filters, campo, asc,
+                    paginacao.valorReferencia(direcao), paginacao.idReferencia(direcao),
+                    direcao == PaginacaoKeyset.Direcao.AVANCAR);
+        } else {
+            pageData = repository.findPage(first, pageSize, filters, campo, asc);
+        }
+        if (pageData.isEmpty()) {
+            paginacao.limpar();
+        } else {
+            Paciente primeiro = pageData.get(0);
+            Paciente ultimo = pageData.get(pageData.size() - 1);
+            paginacao.registrar(first, pageSize, campo, asc, chaveFiltros,
+                    valorOrdenacao(primeiro, campo), primeiro.getId(), valorOrdenacao(ultimo, campo), ultimo.getId());
+        }
+
+        // A versão é lida antes do COUNT: uma escrita concorrente invalida o valor guardado
+        long versao = versoes.versao(VersaoTabelas.PACIENTE);
+        Long count = contagens.obter(chaveFiltros, versao);
+        if (count == null) {
+            count = contar(filters, chaveFiltros);
+            contagens.guardar(chaveFiltros, versao, count);
+        }
+        setRowCount(count.intValue());
         return pageData;
     }
 
+    /** COUNT exato, ou a estimativa do planner quando habilitada e a tabela (sem filtros) é grande o bastante. */
+    private long contar(Map<String, org.primefaces.model.FilterMeta> filters, String chaveFiltros) {
+        long minimo = ContagemCache.minimoParaEstimativa();
+        if (minimo > 0 && chaveFiltros.isEmpty()) {
+            long estimativa = repository.estimateCount();
+            if (estimativa >= minimo) return estimativa;
+        }
+        return repository.count(filters);
+    }
+
+    /** Valor do campo de ordenação de um registro (chave do keyset). */
+    private Object valorOrdenacao(Paciente p, String campo) {
+        if ("id".equals(campo)) return p.getId();
+        if ("cpf".equals(campo)) return p.getCpf();
+        return p.getNome();
+    }
+
     /**
      * Localiza o registro na página corrente a partir da chave da linha (ID).
      */
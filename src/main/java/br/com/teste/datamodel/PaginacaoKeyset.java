@@ -0,0 +1,96 @@
+package br.com.teste.datamodel;
+
+import org.primefaces.model.FilterMeta;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Estado da última página carregada por um LazyDataModel, usado para decidir entre paginação keyset e OFFSET.
+ * Quando o usuário avança ou volta exatamente uma página (mesmo tamanho, ordenação e filtros),
+ * a próxima consulta pode partir da primeira/última linha já exibida; saltos aleatórios continuam com OFFSET.
+ */
+public class PaginacaoKeyset implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Direção da navegação em relação à página anterior */
+    public enum Direcao { AVANCAR, VOLTAR }
+
+    private int first = -1;
+    private int pageSize;
+    private String sortField;
+    private boolean asc;
+    private String chaveFiltros;
+
+    /** Chave de ordenação (valor do campo + ID) da primeira e da última linha da página anterior */
+    private Object primeiroValor;
+    private Long primeiroId;
+    private Object ultimoValor;
+    private Long ultimoId;
+
+    /**
+     * Retorna a direção keyset aplicável ao novo pedido de página, ou null quando for um salto
+     * (primeira página, mudança de tamanho/ordenação/filtros ou navegação para página não adjacente).
+     */
+    public Direcao direcao(int first, int pageSize, String sortField, boolean asc, String chaveFiltros) {
+        if (first == 0 || this.first < 0 || ultimoId == null) return null;
+        if (pageSize != this.pageSize || asc != this.asc) return null;
+        if (!igual(sortField, this.sortField) || !igual(chaveFiltros, this.chaveFiltros)) return null;
+        if (first == this.first + pageSize) return Direcao.AVANCAR;
+        if (first == this.first - pageSize) return Direcao.VOLTAR;
+        return null;
+    }
+
+    /** Valor de ordenação da linha de referência para a direção informada. */
+    public Object valorReferencia(Direcao direcao) {
+        return direcao == Direcao.AVANCAR ? ultimoValor : primeiroValor;
+    }
+
+    /** ID da linha de referência para a direção informada. */
+    public Long idReferencia(Direcao direcao) {
+        return direcao == Direcao.AVANCAR ? ultimoId : primeiroId;
+    }
+
+    /** Guarda os parâmetros e as chaves das extremidades da página recém-carregada. */
+    public void registrar(int first, int pageSize, String sortField, boolean asc, String chaveFiltros,
+                          Object primeiroValor, Long primeiroId, Object ultimoValor, Long ultimoId) {
+        this.first = first;
+        this.pageSize = pageSize;
+        this.sortField = sortField;
+        this.asc = asc;
+        this.chaveFiltros = chaveFiltros;
+        this.primeiroValor = primeiroValor;
+        this.primeiroId = primeiroId;
+        this.ultimoValor = ultimoValor;
+        this.ultimoId = ultimoId;
+    }
+
+    /** Descarta o estado (a próxima página será obtida por OFFSET). */
+    public void limpar() {
+        this.first = -1;
+        this.ultimoId = null;
+        this.primeiroId = null;
+    }
+
+    /**
+     * Representação normalizada dos filtros do DataTable: campos em ordem alfabética,
+     * valores sem espaços nas extremidades e em minúsculas; filtros vazios são ignorados.
+     */
+    public static String chaveFiltros(Map<String, FilterMeta> filters) {
+        if (filters == null || filters.isEmpty()) return "";
+        Map<String, String> normalizados = new TreeMap<>();
+        for (Map.Entry<String, FilterMeta> e : filters.entrySet()) {
+            Object val = e.getValue() != null ? e.getValue().getFilterValue() : null;
+            if (val != null && !val.toString().trim().isEmpty()) {
+                normalizados.put(e.getKey(), val.toString().trim().toLowerCase());
+            }
+        }
+        return normalizados.toString();
+    }
+
+    private static boolean igual(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
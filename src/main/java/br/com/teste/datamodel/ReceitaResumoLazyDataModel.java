@@ -1,6 +1,8 @@
 package br.com.teste.datamodel;
 
+import br.com.teste.cache.VersaoTabelas;
 import br.com.teste.dto.ReceitaResumoDTO;
+import br.com.teste.replica.ReplicaLeitura;
 import br.com.teste.repository.ReceitaRepository;
 import br.com.teste.bean.ConsultaMedicamentosBean;
 import org.primefaces.model.LazyDataModel;
@@ -9,12 +11,14 @@ import org.primefaces.model.SortOrder;
 import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 import java.io.Serializable;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
 /**
  * LazyDataModel para a consulta de "Medicamentos por Paciente".
- * Carrega páginas sob demanda aplicando filtros por nome do paciente e do medicamento.
+ * Carrega páginas sob demanda aplicando filtros por nome do paciente e do medicamento e por período de emissão,
+ * a partir do modelo de leitura receita_resumo (ver ReceitaResumoRepository) e, quando pedido, das receitas arquivadas.
  */
 @Dependent
 public class ReceitaResumoLazyDataModel extends LazyDataModel<ReceitaResumoDTO> implements Serializable {
@@ -26,21 +30,69 @@ public class ReceitaResumoLazyDataModel extends LazyDataModel<ReceitaResumoDTO>
     @Inject
     private ConsultaMedicamentosBean filtrosBean;
 
+    @Inject
+    private VersaoTabelas versoes;
+
+    @Inject
+    private ReplicaLeitura replica;
+
+    /** Tabelas cujas escritas mudam a contagem (os nomes de paciente/medicamento também entram nos filtros) */
+    private static final String[] TABELAS = {VersaoTabelas.RECEITA, VersaoTabelas.PACIENTE, VersaoTabelas.MEDICAMENTO};
+
     private List<ReceitaResumoDTO> pageData;
 
+    /** Contagens já calculadas nesta view, por filtros (reaproveitadas ao paginar/ordenar) */
+    private final ContagemCache contagens = new ContagemCache();
+
     @Override
     public List<ReceitaResumoDTO> load(int first, int pageSize, String sortField, SortOrder sortOrder,
                                        Map<String, org.primefaces.model.FilterMeta> filters) {
         boolean asc = sortOrder == SortOrder.ASCENDING || sortOrder == SortOrder.UNSORTED;
         String pacienteNome = filtrosBean.getPacienteNomeFiltro();
         String medicamentoNome = filtrosBean.getMedicamentoNomeFiltro();
+        Date desde = filtrosBean.getEmissaoDesdeFiltro();
+        Date ate = filtrosBean.getEmissaoAteExclusiva();
+        boolean arquivadas = filtrosBean.isIncluirArquivadasFiltro();
+
+        pageData = repository.findResumoPage(first, pageSize, sortField, asc, pacienteNome, medicamentoNome, desde, ate,
+                arquivadas);
 
-        pageData = repository.findResumoPage(first, pageSize, sortField, asc, pacienteNome, medicamentoNome);
-        int count = repository.countResumo(pacienteNome, medicamentoNome).intValue();
-        setRowCount(count);
+        String chaveFiltros = normalizar(pacienteNome) + "|" + normalizar(medicamentoNome)
+                + "|" + milissegundos(desde) + "|" + milissegundos(ate) + "|" + (arquivadas ? "arquivadas" : "");
+        long versao = versoes.versao(TABELAS);
+        Long count = contagens.obter(chaveFiltros, versao);
+        if (count == null) {
+            // Logo após uma escrita a réplica pode ainda não tê-la: a contagem de lá vale só para esta página,
+            // senão ficaria guardada com a versão nova até a próxima escrita
+            boolean defasada = replica.podeEstarDefasada(versoes.alteradaEm(TABELAS));
+            count = contar(pacienteNome, medicamentoNome, desde, ate, arquivadas, chaveFiltros);
+            if (!defasada) {
+                contagens.guardar(chaveFiltros, versao, count);
+            }
+        }
+        setRowCount(count.intValue());
         return pageData;
     }
 
+    /** COUNT exato, ou a estimativa do planner quando habilitada e não há filtros. */
+    private long contar(String pacienteNome, String medicamentoNome, Date desde, Date ate, boolean arquivadas,
+                        String chaveFiltros) {
+        long minimo = ContagemCache.minimoParaEstimativa();
+        if (minimo > 0 && "||||".equals(chaveFiltros)) {
+            long estimativa = repository.estimateCountResumo();
+            if (estimativa >= minimo) return estimativa;
+        }
+        return repository.countResumo(pacienteNome, medicamentoNome, desde, ate, arquivadas);
+    }
+
+    private static String normalizar(String filtro) {
+        return filtro == null ? "" : filtro.trim().toLowerCase();
+    }
+
+    private static String milissegundos(Date data) {
+        return data == null ? "" : Long.toString(data.getTime());
+    }
+
     @Override
     public ReceitaResumoDTO getRowData(String rowKey) {
         if (pageData == null) return null;
@@ -0,0 +1,42 @@
+package br.com.teste.dto;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * DTO de projeção (ID + nome) usado nas sugestões de autocomplete de Paciente e Medicamento.
+ */
+public class IdNomeDTO implements Serializable {
+
+    private final Long id;
+    private final String nome;
+
+    public IdNomeDTO(Long id, String nome) {
+        this.id = id;
+        this.nome = nome;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    /**
+     * Duas instâncias são consideradas iguais se possuírem o mesmo ID.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        IdNomeDTO that = (IdNomeDTO) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+}
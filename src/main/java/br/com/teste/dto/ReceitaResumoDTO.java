@@ -1,11 +1,12 @@
 package br.com.teste.dto;
 
 import java.io.Serializable;
+import java.util.Date;
 
 /**
  * DTO de projeção para a consulta "Medicamentos por Paciente".
- * Representa uma linha por Receita contendo: id da receita, dados do paciente e
- * o total de medicamentos receitados naquela receita.
+ * Representa uma linha por Receita contendo: id da receita, dados do paciente,
+ * o total de medicamentos receitados naquela receita, a data de emissão e se a receita está arquivada.
  */
 public class ReceitaResumoDTO implements Serializable {
 
@@ -13,12 +14,17 @@ public class ReceitaResumoDTO implements Serializable {
     private Long pacienteId;
     private String pacienteNome;
     private Long totalMedicamentos;
+    private Date dataEmissao;
+    private boolean arquivada;
 
-    public ReceitaResumoDTO(Long receitaId, Long pacienteId, String pacienteNome, Long totalMedicamentos) {
+    public ReceitaResumoDTO(Long receitaId, Long pacienteId, String pacienteNome, Long totalMedicamentos,
+                            Date dataEmissao, boolean arquivada) {
         this.receitaId = receitaId;
         this.pacienteId = pacienteId;
         this.pacienteNome = pacienteNome;
         this.totalMedicamentos = totalMedicamentos;
+        this.dataEmissao = dataEmissao;
+        this.arquivada = arquivada;
     }
 
     public Long getReceitaId() {
@@ -36,4 +42,12 @@ public class ReceitaResumoDTO implements Serializable {
     public Long getTotalMedicamentos() {
         return totalMedicamentos;
     }
+
+    public Date getDataEmissao() {
+        return dataEmissao;
+    }
+
+    public boolean isArquivada() {
+        return arquivada;
+    }
 }
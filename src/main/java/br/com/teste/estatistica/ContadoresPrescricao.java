@@ -0,0 +1,157 @@
+package br.com.teste.estatistica;
+
+import br.com.teste.dto.NomeQuantidadeDTO;
+import br.com.teste.model.Medicamento;
+import br.com.teste.model.Paciente;
+import br.com.teste.transacao.AposCommit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Contadores de prescrição em memória (por medicamento e por paciente) para o relatório/painel.
+ *
+ * - Carga inicial na subida a partir das tabelas medicamento_total/paciente_total.
+ * - Alimentado por ReceitaRepository.addMedicamento/deleteItem (e pela troca de paciente em save), aplicando cada
+ *   variação somente após o commit.
+ * - Responde "top N" sem acessar o banco (ver {@link RankingContadores}).
+ *
+ * Os valores refletem as escritas feitas por este nó; em cluster, cada nó enxerga as próprias escritas
+ * até a próxima subida (ou use o relatório baseado nas tabelas agregadas).
+ */
+@Singleton
+@Startup
+@DependsOn("TotaisPrescricaoJob")
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ContadoresPrescricao {
+
+    private static final Logger LOG = Logger.getLogger(ContadoresPrescricao.class.getName());
+
+    @PersistenceContext(unitName = "testePU")
+    private EntityManager em;
+
+    @Resource
+    private TransactionSynchronizationRegistry registry;
+
+    private final RankingContadores medicamentos = new RankingContadores();
+    private final RankingContadores pacientes = new RankingContadores();
+
+    /** Nomes para exibição, por ID (atualizados também quando o cadastro é salvo) */
+    private final Map<Long, String> nomesMedicamentos = new ConcurrentHashMap<>();
+    private final Map<Long, String> nomesPacientes = new ConcurrentHashMap<>();
+
+    /** Carga inicial a partir dos contadores agregados do banco (sem transação: uma falha não impede a subida). */
+    @PostConstruct
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void init() {
+        recarregar();
+    }
+
+    /** Recarga a partir dos contadores agregados do banco (ex.: após uma importação histórica). */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void recarregar() {
+        try {
+            List<Object[]> meds = em.createQuery(
+                    "select m.id, m.nome, t.total from MedicamentoTotal t join t.medicamento m", Object[].class)
+                    .getResultList();
+            for (Object[] r : meds) {
+                nomesMedicamentos.put((Long) r[0], (String) r[1]);
+                medicamentos.definir((Long) r[0], ((Number) r[2]).longValue());
+            }
+            List<Object[]> pacs = em.createQuery(
+                    "select p.id, p.nome, t.total from PacienteTotal t join t.paciente p", Object[].class)
+                    .getResultList();
+            for (Object[] r : pacs) {
+                nomesPacientes.put((Long) r[0], (String) r[1]);
+                pacientes.definir((Long) r[0], ((Number) r[2]).longValue());
+            }
+            LOG.info("Contadores de prescrição carregados: " + meds.size() + " medicamentos, " + pacs.size() + " pacientes");
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Falha na carga dos contadores de prescrição em memória", e);
+        }
+    }
+
+    /**
+     * Registra a inclusão (delta = 1) ou exclusão (delta = -1) de um item de receita.
+     * Aplicado após o commit da transação corrente.
+     */
+    public void registrarItem(Long idPaciente, Long idMedicamento, long delta) {
+        AposCommit.executar(registry, () -> {
+            medicamentos.somar(idMedicamento, delta);
+            pacientes.somar(idPaciente, delta);
+        });
+    }
+
+    /** Registra a troca de paciente de uma receita com a quantidade de itens dela, após o commit. */
+    public void registrarTrocaPaciente(Long idPacienteAnterior, Long idPaciente, long itens) {
+        AposCommit.executar(registry, () -> {
+            pacientes.somar(idPacienteAnterior, -itens);
+            pacientes.somar(idPaciente, itens);
+        });
+    }
+
+    /** Atualiza o nome exibido de um medicamento (cadastro salvo), após o commit. */
+    public void registrarNomeMedicamento(Long id, String nome) {
+        if (id != null && nome != null) {
+            AposCommit.executar(registry, () -> nomesMedicamentos.put(id, nome));
+        }
+    }
+
+    /** Atualiza o nome exibido de um paciente (cadastro salvo), após o commit. */
+    public void registrarNomePaciente(Long id, String nome) {
+        if (id != null && nome != null) {
+            AposCommit.executar(registry, () -> nomesPacientes.put(id, nome));
+        }
+    }
+
+    /** Os N medicamentos mais prescritos. */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<NomeQuantidadeDTO> topMedicamentos(int n) {
+        List<NomeQuantidadeDTO> dtos = new ArrayList<>(n);
+        for (RankingContadores.Posicao p : medicamentos.top(n)) {
+            dtos.add(new NomeQuantidadeDTO(nomeMedicamento(p.getId()), p.getTotal()));
+        }
+        return dtos;
+    }
+
+    /** Os N pacientes com mais medicamentos prescritos. */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<NomeQuantidadeDTO> topPacientes(int n) {
+        List<NomeQuantidadeDTO> dtos = new ArrayList<>(n);
+        for (RankingContadores.Posicao p : pacientes.top(n)) {
+            dtos.add(new NomeQuantidadeDTO(nomePaciente(p.getId()), p.getTotal()));
+        }
+        return dtos;
+    }
+
+    /** Nome em memória; só consulta o banco para IDs ainda desconhecidos (ex.: cadastrados em outro nó). */
+    private String nomeMedicamento(long id) {
+        return nomesMedicamentos.computeIfAbsent(id, k -> {
+            Medicamento m = em.find(Medicamento.class, k);
+            return m != null ? m.getNome() : ("#" + k);
+        });
+    }
+
+    private String nomePaciente(long id) {
+        return nomesPacientes.computeIfAbsent(id, k -> {
+            Paciente p = em.find(Paciente.class, k);
+            return p != null ? p.getNome() : ("#" + k);
+        });
+    }
+}
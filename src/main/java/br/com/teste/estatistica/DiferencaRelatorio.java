@@ -0,0 +1,124 @@
+package br.com.teste.estatistica;
+
+import br.com.teste.dto.NomeQuantidadeDTO;
+import br.com.teste.dto.PacienteTotalDTO;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * O que mudou entre duas fotografias do relatório: se cada ranking mudou e quais pacientes tiveram o total
+ * alterado, incluído ou removido. É a mensagem enviada às telas abertas a cada nova fotografia, que então
+ * redesenham somente as seções alteradas (a partir da fotografia em memória, sem consultar o banco).
+ */
+public final class DiferencaRelatorio {
+
+    /** Acima desta quantidade de linhas alteradas a mensagem só indica que os totais mudaram */
+    private static final int MAXIMO_LINHAS_MENSAGEM = 100;
+
+    private final SnapshotRelatorio nova;
+    private final boolean topMedicamentos;
+    private final boolean topPacientes;
+    private final List<PacienteTotalDTO> totaisAlterados;
+    private final List<Long> pacientesRemovidos;
+
+    private DiferencaRelatorio(SnapshotRelatorio nova, boolean topMedicamentos, boolean topPacientes,
+                               List<PacienteTotalDTO> totaisAlterados, List<Long> pacientesRemovidos) {
+        this.nova = nova;
+        this.topMedicamentos = topMedicamentos;
+        this.topPacientes = topPacientes;
+        this.totaisAlterados = totaisAlterados;
+        this.pacientesRemovidos = pacientesRemovidos;
+    }
+
+    /**
+     * Diferença da fotografia anterior para a nova (sem anterior, tudo é considerado alterado).
+     * Uma linha de totais conta como alterada quando o nome ou o total do paciente mudou.
+     */
+    public static DiferencaRelatorio entre(SnapshotRelatorio anterior, SnapshotRelatorio nova) {
+        if (anterior == null) {
+            return new DiferencaRelatorio(nova, true, true, nova.getTotaisPorPaciente(), new ArrayList<>());
+        }
+        Map<Long, PacienteTotalDTO> antes = new HashMap<>(anterior.getTotaisPorPaciente().size() * 2);
+        for (PacienteTotalDTO t : anterior.getTotaisPorPaciente()) {
+            antes.put(t.getPacienteId(), t);
+        }
+        List<PacienteTotalDTO> alterados = new ArrayList<>();
+        for (PacienteTotalDTO t : nova.getTotaisPorPaciente()) {
+            PacienteTotalDTO a = antes.remove(t.getPacienteId());
+            if (a == null || !Objects.equals(a.getTotal(), t.getTotal())
+                    || !Objects.equals(a.getPacienteNome(), t.getPacienteNome())) {
+                alterados.add(t);
+            }
+        }
+        // O que sobrou no mapa não existe mais na nova fotografia
+        return new DiferencaRelatorio(nova,
+                !mesmoRanking(anterior.getTopMedicamentos(), nova.getTopMedicamentos()),
+                !mesmoRanking(anterior.getTopPacientes(), nova.getTopPacientes()),
+                alterados, new ArrayList<>(antes.keySet()));
+    }
+
+    private static boolean mesmoRanking(List<NomeQuantidadeDTO> a, List<NomeQuantidadeDTO> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (!Objects.equals(a.get(i).getNome(), b.get(i).getNome())
+                    || !Objects.equals(a.get(i).getQuantidade(), b.get(i).getQuantidade())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** true quando nada mudou (nenhuma tela precisa ser atualizada). */
+    public boolean isVazia() {
+        return !topMedicamentos && !topPacientes && totaisAlterados.isEmpty() && pacientesRemovidos.isEmpty();
+    }
+
+    public boolean isTopMedicamentos() {
+        return topMedicamentos;
+    }
+
+    public boolean isTopPacientes() {
+        return topPacientes;
+    }
+
+    public boolean isTotais() {
+        return !totaisAlterados.isEmpty() || !pacientesRemovidos.isEmpty();
+    }
+
+    /**
+     * Mensagem JSON (mapas, listas e valores simples, convertidos pelo f:websocket):
+     * {"versao", "geradoEm", "topMedicamentos": bool, "topPacientes": bool, "totais": bool,
+     *  "linhas": [{"pacienteId", "pacienteNome", "total"}...], "removidos": [pacienteId...]}.
+     * Com mais de {@value #MAXIMO_LINHAS_MENSAGEM} linhas alteradas (ex.: primeira fotografia), "linhas" e
+     * "removidos" vão vazios e "totais" indica que a lista deve ser recarregada por inteiro.
+     */
+    public Map<String, Object> paraMensagem() {
+        boolean resumida = totaisAlterados.size() + pacientesRemovidos.size() > MAXIMO_LINHAS_MENSAGEM;
+        List<Map<String, Object>> linhas = new ArrayList<>();
+        if (!resumida) {
+            for (PacienteTotalDTO t : totaisAlterados) {
+                Map<String, Object> linha = new LinkedHashMap<>();
+                linha.put("pacienteId", t.getPacienteId());
+                linha.put("pacienteNome", t.getPacienteNome());
+                linha.put("total", t.getTotal());
+                linhas.add(linha);
+            }
+        }
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("versao", nova.getVersao());
+        m.put("geradoEm", nova.getGeradoEm());
+        m.put("topMedicamentos", topMedicamentos);
+        m.put("topPacientes", topPacientes);
+        m.put("totais", isTotais());
+        m.put("linhas", linhas);
+        m.put("removidos", resumida ? new ArrayList<Long>() : pacientesRemovidos);
+        return m;
+    }
+}
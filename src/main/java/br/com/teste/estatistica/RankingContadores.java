@@ -0,0 +1,123 @@
+package br.com.teste.estatistica;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contadores em memória por ID com ranking ordenado (top-K), sem bloqueios.
+ *
+ * Cada ID tem um AtomicLong (incremento por CAS, contagem exata sob concorrência) e uma posição
+ * (total, id) em um ConcurrentSkipListSet ordenado por total decrescente. Consultar o top N percorre
+ * apenas o início do conjunto, então o custo depende de N e não da quantidade de IDs.
+ *
+ * Durante atualizações concorrentes do mesmo ID o conjunto pode conter, por instantes, uma posição antiga;
+ * a leitura descarta posições cujo total não coincide com o contador e, quando as escritas cessam,
+ * resta exatamente uma posição por ID (ver {@link #publicar(long, AtomicLong)}).
+ */
+public class RankingContadores {
+
+    private final Map<Long, AtomicLong> totais = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Posicao> ranking = new ConcurrentSkipListSet<>();
+
+    /** Soma delta (positivo ou negativo) ao contador do ID e retorna o novo total. */
+    public long somar(long id, long delta) {
+        AtomicLong total = totais.computeIfAbsent(id, k -> new AtomicLong());
+        long novo = total.addAndGet(delta);
+        ranking.remove(new Posicao(id, novo - delta));
+        publicar(id, total);
+        return novo;
+    }
+
+    /** Define o total do ID (carga inicial). */
+    public void definir(long id, long valor) {
+        AtomicLong total = totais.computeIfAbsent(id, k -> new AtomicLong());
+        long anterior = total.getAndSet(valor);
+        ranking.remove(new Posicao(id, anterior));
+        publicar(id, total);
+    }
+
+    /** Total atual do ID (0 se nunca contado). */
+    public long total(long id) {
+        AtomicLong total = totais.get(id);
+        return total != null ? total.get() : 0L;
+    }
+
+    /** Descarta todos os contadores. */
+    public void limpar() {
+        totais.clear();
+        ranking.clear();
+    }
+
+    /**
+     * Os N IDs de maior total (apenas totais positivos), em ordem decrescente de total e, no empate, crescente de ID.
+     */
+    public List<Posicao> top(int n) {
+        List<Posicao> resultado = new ArrayList<>(Math.max(n, 0));
+        Set<Long> vistos = new HashSet<>();
+        for (Posicao p : ranking) {
+            if (resultado.size() >= n || p.total <= 0) break;
+            if (total(p.id) != p.total || !vistos.add(p.id)) continue; // posição antiga em trânsito
+            resultado.add(p);
+        }
+        return resultado;
+    }
+
+    /**
+     * Garante que a posição do total atual esteja no ranking. Se o contador mudar entre ler e publicar,
+     * a posição recém-incluída é retirada e o ciclo se repete com o novo valor; a thread que fez a
+     * mudança remove a posição anterior a ela. Assim, encerradas as escritas, só a posição atual permanece.
+     */
+    private void publicar(long id, AtomicLong total) {
+        for (;;) {
+            long atual = total.get();
+            Posicao p = new Posicao(id, atual);
+            ranking.add(p);
+            if (total.get() == atual) return;
+            ranking.remove(p);
+        }
+    }
+
+    /** Posição de um ID no ranking: ordenada por total decrescente e, no empate, por ID crescente. */
+    public static final class Posicao implements Comparable<Posicao> {
+        private final long id;
+        private final long total;
+
+        Posicao(long id, long total) {
+            this.id = id;
+            this.total = total;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        @Override
+        public int compareTo(Posicao o) {
+            int c = Long.compare(o.total, total);
+            return c != 0 ? c : Long.compare(id, o.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Posicao)) return false;
+            Posicao that = (Posicao) o;
+            return id == that.id && total == that.total;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(id) * 31 + Long.hashCode(total);
+        }
+    }
+}
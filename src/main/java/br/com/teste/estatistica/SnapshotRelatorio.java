@@ -0,0 +1,168 @@
+package br.com.teste.estatistica;
+
+import br.com.teste.dto.NomeQuantidadeDTO;
+import br.com.teste.dto.PacienteTotalDTO;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Fotografia imutável dos dados do relatório "Medicamentos Prescritos" (rankings e totais por paciente),
+ * com versão crescente e o momento em que foi gerada.
+ *
+ * Formato binário (GZIP, que também verifica a integridade pelo CRC): assinatura, versão do formato,
+ * versão da fotografia, data de geração, top N e as três listas; números como inteiros de tamanho variável
+ * (LEB128) e nomes em UTF-8 modificado (DataOutput.writeUTF).
+ */
+public final class SnapshotRelatorio implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** "TSNP" */
+    private static final int ASSINATURA = 0x54534E50;
+
+    /** Versão do formato do arquivo; arquivos de outra versão são ignorados */
+    private static final int FORMATO = 1;
+
+    private final long versao;
+    private final long geradoEm;
+    private final int topN;
+    private final List<NomeQuantidadeDTO> topMedicamentos;
+    private final List<NomeQuantidadeDTO> topPacientes;
+    private final List<PacienteTotalDTO> totaisPorPaciente;
+
+    public SnapshotRelatorio(long versao, long geradoEm, int topN, List<NomeQuantidadeDTO> topMedicamentos,
+                             List<NomeQuantidadeDTO> topPacientes, List<PacienteTotalDTO> totaisPorPaciente) {
+        this.versao = versao;
+        this.geradoEm = geradoEm;
+        this.topN = topN;
+        this.topMedicamentos = Collections.unmodifiableList(new ArrayList<>(topMedicamentos));
+        this.topPacientes = Collections.unmodifiableList(new ArrayList<>(topPacientes));
+        this.totaisPorPaciente = Collections.unmodifiableList(new ArrayList<>(totaisPorPaciente));
+    }
+
+    /** Grava a fotografia no fluxo (que é fechado ao final). */
+    public void gravar(OutputStream destino) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(destino, 64 * 1024))) {
+            out.writeInt(ASSINATURA);
+            escreverNumero(out, FORMATO);
+            escreverNumero(out, versao);
+            escreverNumero(out, geradoEm);
+            escreverNumero(out, topN);
+            escreverRanking(out, topMedicamentos);
+            escreverRanking(out, topPacientes);
+            escreverNumero(out, totaisPorPaciente.size());
+            for (PacienteTotalDTO t : totaisPorPaciente) {
+                escreverNumero(out, t.getPacienteId());
+                out.writeUTF(t.getPacienteNome() != null ? t.getPacienteNome() : "");
+                escreverNumero(out, t.getTotal());
+            }
+        }
+    }
+
+    /**
+     * Lê uma fotografia gravada por {@link #gravar} (o fluxo é fechado ao final).
+     * @throws IOException se o conteúdo não for uma fotografia, for de outro formato ou estiver corrompido
+     */
+    public static SnapshotRelatorio ler(InputStream origem) throws IOException {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(origem, 64 * 1024))) {
+            if (in.readInt() != ASSINATURA) {
+                throw new IOException("Arquivo não é uma fotografia do relatório");
+            }
+            long formato = lerNumero(in);
+            if (formato != FORMATO) {
+                throw new IOException("Formato de fotografia não suportado: " + formato);
+            }
+            long versao = lerNumero(in);
+            long geradoEm = lerNumero(in);
+            int topN = (int) lerNumero(in);
+            List<NomeQuantidadeDTO> topMedicamentos = lerRanking(in);
+            List<NomeQuantidadeDTO> topPacientes = lerRanking(in);
+            int n = (int) lerNumero(in);
+            List<PacienteTotalDTO> totais = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                long id = lerNumero(in);
+                String nome = in.readUTF();
+                totais.add(new PacienteTotalDTO(id, nome, lerNumero(in)));
+            }
+            return new SnapshotRelatorio(versao, geradoEm, topN, topMedicamentos, topPacientes, totais);
+        }
+    }
+
+    private static void escreverRanking(DataOutputStream out, List<NomeQuantidadeDTO> ranking) throws IOException {
+        escreverNumero(out, ranking.size());
+        for (NomeQuantidadeDTO r : ranking) {
+            out.writeUTF(r.getNome() != null ? r.getNome() : "");
+            escreverNumero(out, r.getQuantidade());
+        }
+    }
+
+    private static List<NomeQuantidadeDTO> lerRanking(DataInputStream in) throws IOException {
+        int n = (int) lerNumero(in);
+        List<NomeQuantidadeDTO> ranking = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String nome = in.readUTF();
+            ranking.add(new NomeQuantidadeDTO(nome, lerNumero(in)));
+        }
+        return ranking;
+    }
+
+    /** Inteiro não negativo em 7 bits por byte (bit mais alto indica continuação). */
+    private static void escreverNumero(DataOutputStream out, long valor) throws IOException {
+        if (valor < 0) {
+            throw new IOException("Valor negativo na fotografia: " + valor);
+        }
+        while ((valor & ~0x7FL) != 0) {
+            out.writeByte((int) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        out.writeByte((int) valor);
+    }
+
+    private static long lerNumero(DataInputStream in) throws IOException {
+        long valor = 0;
+        for (int deslocamento = 0; deslocamento < 64; deslocamento += 7) {
+            int b = in.readUnsignedByte();
+            valor |= (long) (b & 0x7F) << deslocamento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new IOException("Número inválido na fotografia");
+    }
+
+    public long getVersao() {
+        return versao;
+    }
+
+    /** Momento da geração (System.currentTimeMillis). */
+    public long getGeradoEm() {
+        return geradoEm;
+    }
+
+    /** Posições calculadas nos rankings. */
+    public int getTopN() {
+        return topN;
+    }
+
+    public List<NomeQuantidadeDTO> getTopMedicamentos() {
+        return topMedicamentos;
+    }
+
+    public List<NomeQuantidadeDTO> getTopPacientes() {
+        return topPacientes;
+    }
+
+    public List<PacienteTotalDTO> getTotaisPorPaciente() {
+        return totaisPorPaciente;
+    }
+}
@@ -0,0 +1,13 @@
+package br.com.teste.exportacao;
+
+import java.io.IOException;
+
+/**
+ * Recebe, uma a uma, as linhas de uma consulta percorrida por cursor (ex.: exportação),
+ * sem que o resultado seja acumulado em memória.
+ */
+@FunctionalInterface
+public interface ConsumidorLinha {
+
+    void aceitar(Object[] colunas) throws IOException;
+}
@@ -0,0 +1,39 @@
+package br.com.teste.exportacao;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Formatos de exportação aceitos pelo parâmetro "formato" (padrão: CSV).
+ */
+public enum FormatoExportacao {
+
+    CSV("text/csv; charset=UTF-8", ".csv"),
+    XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", ".xlsx");
+
+    private final String contentType;
+    private final String extensao;
+
+    FormatoExportacao(String contentType, String extensao) {
+        this.contentType = contentType;
+        this.extensao = extensao;
+    }
+
+    /** Formato pelo nome (sem diferenciar maiúsculas); CSV quando ausente ou desconhecido. */
+    public static FormatoExportacao de(String nome) {
+        return "xlsx".equalsIgnoreCase(nome) ? XLSX : CSV;
+    }
+
+    /** Saída deste formato gravando no stream informado. */
+    public SaidaTabular abrir(OutputStream destino, String titulo) throws IOException {
+        return this == XLSX ? new SaidaXlsx(destino, titulo) : new SaidaCsv(destino);
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtensao() {
+        return extensao;
+    }
+}
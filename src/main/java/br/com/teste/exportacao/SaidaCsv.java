@@ -0,0 +1,62 @@
+package br.com.teste.exportacao;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CSV em UTF-8 com BOM e separador ";" (abre direto no Excel em português), gravado em fluxo.
+ */
+public class SaidaCsv implements SaidaTabular {
+
+    private static final char SEPARADOR = ';';
+
+    private final Writer out;
+
+    public SaidaCsv(OutputStream destino) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(destino, StandardCharsets.UTF_8), 1 << 16);
+        out.write('\uFEFF');
+    }
+
+    @Override
+    public void cabecalho(String... colunas) throws IOException {
+        linha(colunas);
+    }
+
+    @Override
+    public void linha(Object[] valores) throws IOException {
+        for (int i = 0; i < valores.length; i++) {
+            if (i > 0) out.write(SEPARADOR);
+            Object v = valores[i];
+            if (v instanceof Number) {
+                out.write(v.toString());
+            } else if (v != null) {
+                escreverTexto(v.toString());
+            }
+        }
+        out.write("\r\n");
+    }
+
+    private void escreverTexto(String texto) throws IOException {
+        boolean aspas = false;
+        for (int i = 0; i < texto.length() && !aspas; i++) {
+            char c = texto.charAt(i);
+            aspas = c == SEPARADOR || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!aspas) {
+            out.write(texto);
+            return;
+        }
+        out.write('"');
+        out.write(texto.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
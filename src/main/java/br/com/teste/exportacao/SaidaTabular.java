@@ -0,0 +1,20 @@
+package br.com.teste.exportacao;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destino de uma exportação tabular gravado em fluxo: cada linha é escrita no stream assim que recebida.
+ * Implementações: {@link SaidaCsv} e {@link SaidaXlsx}.
+ *
+ * {@link #close()} finaliza o arquivo (partes finais do XLSX, fim do ZIP e do stream de destino). Após uma falha
+ * no meio da exportação não deve ser chamado: o arquivo truncado ficaria com aparência de completo.
+ */
+public interface SaidaTabular extends Closeable {
+
+    /** Nomes das colunas; chamado uma vez, antes da primeira linha. */
+    void cabecalho(String... colunas) throws IOException;
+
+    /** Uma linha de valores (números são gravados como números, o restante como texto). */
+    void linha(Object[] valores) throws IOException;
+}
@@ -0,0 +1,163 @@
+package br.com.teste.exportacao;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Planilha XLSX (SpreadsheetML) gravada em fluxo, sem biblioteca e sem montar a planilha em memória:
+ * as linhas vão direto para a entrada ZIP da aba (textos como inlineStr, sem tabela de strings compartilhadas).
+ * Ao atingir o limite de linhas de uma aba do Excel, continua em uma nova aba com o mesmo cabeçalho;
+ * o workbook, que lista as abas, é gravado no fim.
+ */
+public class SaidaXlsx implements SaidaTabular {
+
+    /** Linhas por aba, incluindo o cabeçalho (limite do Excel: 1.048.576) */
+    static final int LINHAS_POR_ABA = 1_048_576;
+
+    private static final String NS_PLANILHA = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String NS_RELACOES = "http://schemas.openxmlformats.org/package/2006/relationships";
+    private static final String NS_DOCUMENTO = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String CABECALHO_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+
+    private final ZipOutputStream zip;
+    private final Writer out;
+    private final String nomeAba;
+    private final int linhasPorAba;
+    private String[] cabecalho;
+    private int abas;
+    private int linhasNaAba;
+
+    public SaidaXlsx(OutputStream destino, String nomeAba) {
+        this(destino, nomeAba, LINHAS_POR_ABA);
+    }
+
+    SaidaXlsx(OutputStream destino, String nomeAba, int linhasPorAba) {
+        this.zip = new ZipOutputStream(destino, StandardCharsets.UTF_8);
+        this.out = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), 1 << 16);
+        this.nomeAba = nomeAba;
+        this.linhasPorAba = linhasPorAba;
+    }
+
+    @Override
+    public void cabecalho(String... colunas) throws IOException {
+        this.cabecalho = colunas;
+        novaAba();
+    }
+
+    @Override
+    public void linha(Object[] valores) throws IOException {
+        if (abas == 0 || linhasNaAba >= linhasPorAba) novaAba();
+        escreverLinha(valores);
+    }
+
+    /** Abas gravadas até aqui */
+    int getAbas() {
+        return abas;
+    }
+
+    private void novaAba() throws IOException {
+        if (abas > 0) fecharAba();
+        abas++;
+        linhasNaAba = 0;
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + abas + ".xml"));
+        out.write(CABECALHO_XML);
+        out.write("<worksheet xmlns=\"" + NS_PLANILHA + "\"><sheetData>");
+        if (cabecalho != null) escreverLinha(cabecalho);
+    }
+
+    private void fecharAba() throws IOException {
+        out.write("</sheetData></worksheet>");
+        out.flush();
+        zip.closeEntry();
+    }
+
+    private void escreverLinha(Object[] valores) throws IOException {
+        out.write("<row>");
+        for (Object v : valores) {
+            if (v instanceof Number) {
+                out.write("<c><v>");
+                out.write(v.toString());
+                out.write("</v></c>");
+            } else if (v == null) {
+                out.write("<c/>");
+            } else {
+                out.write("<c t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+                escreverXml(v.toString());
+                out.write("</t></is></c>");
+            }
+        }
+        out.write("</row>");
+        linhasNaAba++;
+    }
+
+    private void escreverXml(String texto) throws IOException {
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '&': out.write("&amp;"); break;
+                case '<': out.write("&lt;"); break;
+                case '>': out.write("&gt;"); break;
+                default:
+                    // Caracteres de controle não são permitidos em XML 1.0
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') out.write(c);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (abas == 0) novaAba();
+        fecharAba();
+
+        entrada("[Content_Types].xml");
+        out.write("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">");
+        out.write("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>");
+        out.write("<Default Extension=\"xml\" ContentType=\"application/xml\"/>");
+        out.write("<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>");
+        for (int i = 1; i <= abas; i++) {
+            out.write("<Override PartName=\"/xl/worksheets/sheet" + i + ".xml\" "
+                    + "ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+        }
+        out.write("</Types>");
+
+        entrada("_rels/.rels");
+        out.write("<Relationships xmlns=\"" + NS_RELACOES + "\">");
+        out.write("<Relationship Id=\"rId1\" Type=\"" + NS_DOCUMENTO + "/officeDocument\" Target=\"xl/workbook.xml\"/>");
+        out.write("</Relationships>");
+
+        entrada("xl/workbook.xml");
+        out.write("<workbook xmlns=\"" + NS_PLANILHA + "\" xmlns:r=\"" + NS_DOCUMENTO + "\"><sheets>");
+        for (int i = 1; i <= abas; i++) {
+            String nome = abas == 1 ? nomeAba : nomeAba + " " + i;
+            out.write("<sheet name=\"");
+            escreverXml(nome.replace("\"", "'"));
+            out.write("\" sheetId=\"" + i + "\" r:id=\"rId" + i + "\"/>");
+        }
+        out.write("</sheets></workbook>");
+
+        entrada("xl/_rels/workbook.xml.rels");
+        out.write("<Relationships xmlns=\"" + NS_RELACOES + "\">");
+        for (int i = 1; i <= abas; i++) {
+            out.write("<Relationship Id=\"rId" + i + "\" Type=\"" + NS_DOCUMENTO + "/worksheet\" "
+                    + "Target=\"worksheets/sheet" + i + ".xml\"/>");
+        }
+        out.write("</Relationships>");
+        out.flush();
+        zip.closeEntry();
+        zip.finish();
+        out.close();
+    }
+
+    private void entrada(String nome) throws IOException {
+        out.flush();
+        zip.closeEntry();
+        zip.putNextEntry(new ZipEntry(nome));
+        out.write(CABECALHO_XML);
+    }
+}
@@ -0,0 +1,66 @@
+package br.com.teste.importacao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Reserva IDs de uma sequência em blocos, com a mesma regra do otimizador pooled das entidades
+ * (cada nextval é o topo de um bloco de {@link #BLOCO} IDs). Assim as linhas importadas recebem IDs
+ * que não colidem com os reservados pelo Hibernate, sem um nextval por linha.
+ *
+ * Os blocos são reservados antes de cada COPY: durante o COPY a conexão não aceita outros comandos.
+ */
+class AlocadorIds {
+
+    /** Tamanho do bloco: o mesmo allocationSize das entidades e INCREMENT BY das sequências (migração V4) */
+    static final int BLOCO = 50;
+
+    private final String sequencia;
+    private final Deque<Long> tetos = new ArrayDeque<>();
+    private long proximo = 1;
+    private long limite = 0;
+    private long disponiveis = 0;
+
+    AlocadorIds(String sequencia) {
+        this.sequencia = sequencia;
+    }
+
+    /** Garante ao menos a quantidade de IDs reservados, buscando os blocos que faltarem em um único comando. */
+    void garantir(Connection con, int quantidade) throws SQLException {
+        if (disponiveis >= quantidade) return;
+        int blocos = (int) ((quantidade - disponiveis + BLOCO - 1) / BLOCO);
+        try (PreparedStatement ps = con.prepareStatement(
+                "select nextval(cast(? as regclass)) from generate_series(1, ?)")) {
+            ps.setString(1, sequencia);
+            ps.setInt(2, blocos);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    long teto = rs.getLong(1);
+                    tetos.add(teto);
+                    disponiveis += teto - inicio(teto) + 1;
+                }
+            }
+        }
+    }
+
+    /** Próximo ID reservado ({@link #garantir} deve ter sido chamado antes). */
+    long proximo() {
+        if (proximo > limite) {
+            Long teto = tetos.poll();
+            if (teto == null) throw new IllegalStateException("Nenhum ID reservado da sequência " + sequencia);
+            proximo = inicio(teto);
+            limite = teto;
+        }
+        disponiveis--;
+        return proximo++;
+    }
+
+    /** Primeiro ID do bloco (o primeiro nextval de uma sequência nova é 1) */
+    private static long inicio(long teto) {
+        return Math.max(1, teto - BLOCO + 1);
+    }
+}
@@ -0,0 +1,212 @@
+package br.com.teste.importacao;
+
+/**
+ * Arquivos aceitos pela importação histórica, na ordem de carga, com as regras de validação de cada linha,
+ * a tabela de preparação (COPY) e os comandos da resolução de chaves.
+ *
+ * Formato: UTF-8, separador ";", primeira linha com o cabeçalho abaixo.
+ * - pacientes.csv: cpf;nome — CPF com 11 dígitos (máscara opcional), nome até 150 caracteres.
+ * - receitas.csv: codigo;cpf_paciente — código da receita no sistema de origem (até 60 caracteres).
+ * - itens.csv: codigo_receita;medicamento — medicamento pelo nome, já cadastrado (sem diferenciar maiúsculas).
+ *
+ * O paciente da receita é localizado pelo CPF (cadastrado antes ou importado no mesmo lote). O código de cada
+ * receita incluída fica em receita_origem: uma receita já importada não é incluída de novo, e o item é ligado
+ * à receita pelo código, importada no mesmo lote ou antes (neste caso, somente se ela ainda não tiver itens,
+ * para que uma nova importação dos mesmos arquivos não repita os itens). Os arquivos não trazem a data de
+ * emissão: as receitas importadas recebem a data da importação, repetida nos seus itens.
+ */
+enum ArquivoImportacao {
+
+    PACIENTES("pacientes.csv", new String[]{"cpf", "nome"},
+            "importacao_paciente (linha, id, cpf, nome)", "paciente_id_seq",
+            "select x.linha, case when x.n > 1 then 'CPF repetido no arquivo (mantida a última ocorrência)' " +
+                    "                     else 'paciente já cadastrado (CPF); mantido o cadastro existente' end, x.cpf, x.nome " +
+                    "from (select s.linha, s.cpf, s.nome, row_number() over (partition by s.cpf order by s.linha desc) as n " +
+                    "      from importacao_paciente s) x " +
+                    "left join " + ArquivoImportacao.PACIENTE_POR_CPF + " p on p.cpf = x.cpf " +
+                    "where x.n > 1 or p.id is not null order by x.linha",
+            // Pacientes já cadastrados (mesmo CPF, com ou sem máscara) são mantidos como estão
+            "insert into paciente (id, nome, cpf) " +
+                    "select x.id, x.nome, " +
+                    "       substr(x.cpf, 1, 3) || '.' || substr(x.cpf, 4, 3) || '.' || substr(x.cpf, 7, 3) || '-' || substr(x.cpf, 10, 2) " +
+                    "from (select distinct on (s.cpf) s.id, s.cpf, s.nome from importacao_paciente s order by s.cpf, s.linha desc) x " +
+                    "where not exists (select 1 from paciente p where regexp_replace(p.cpf, '[^0-9]', '', 'g') = x.cpf) " +
+                    "on conflict do nothing") {
+        @Override
+        String[] normalizar(String[] campos) throws RegistroInvalidoException {
+            return new String[]{cpf(campos[0]), texto(campos[1], 150, "nome")};
+        }
+    },
+
+    RECEITAS("receitas.csv", new String[]{"codigo", "cpf_paciente"},
+            "importacao_receita (linha, id, codigo, cpf)", "receita_id_seq",
+            "select x.linha, case when x.n > 1 then 'código de receita repetido no arquivo' " +
+                    "                     when o.codigo is not null then 'receita já importada (código)' " +
+                    "                     else 'paciente não encontrado (CPF)' end, x.codigo, x.cpf " +
+                    "from (select s.linha, s.codigo, s.cpf, row_number() over (partition by s.codigo order by s.linha) as n " +
+                    "      from importacao_receita s) x " +
+                    "left join receita_origem o on o.codigo = x.codigo " +
+                    "left join " + ArquivoImportacao.PACIENTE_POR_CPF + " p on p.cpf = x.cpf " +
+                    "where x.n > 1 or o.codigo is not null or p.id is null order by x.linha",
+            // Receita e código em um comando (a contagem de incluídas vem do código)
+            "with novas as (" +
+                    "    select x.id, x.codigo, p.id as id_paciente " +
+                    "    from (select distinct on (s.codigo) s.id, s.codigo, s.cpf from importacao_receita s order by s.codigo, s.linha) x " +
+                    "    join " + ArquivoImportacao.PACIENTE_POR_CPF + " p on p.cpf = x.cpf " +
+                    "    where not exists (select 1 from receita_origem o where o.codigo = x.codigo)), " +
+                    "receitas as (insert into receita (id, id_paciente) select n.id, n.id_paciente from novas n) " +
+                    "insert into receita_origem (codigo, id_receita) select n.codigo, n.id from novas n") {
+        @Override
+        String[] normalizar(String[] campos) throws RegistroInvalidoException {
+            return new String[]{texto(campos[0], 60, "código da receita"), cpf(campos[1])};
+        }
+    },
+
+    ITENS("itens.csv", new String[]{"codigo_receita", "medicamento"},
+            "importacao_item (linha, id, codigo_receita, medicamento)", "medicamento_receitado_id_seq",
+            "select i.linha, case when r.id is null then 'receita não importada (código ausente ou rejeitado)' " +
+                    "                     when m.id is null then 'medicamento não cadastrado' " +
+                    "                     else 'receita importada anteriormente, já com itens' end, i.codigo_receita, i.medicamento " +
+                    "from importacao_item i " +
+                    "left join (receita_origem o join receita r on r.id = o.id_receita) on o.codigo = i.codigo_receita " +
+                    "left join " + ArquivoImportacao.MEDICAMENTO_POR_NOME + " m on m.chave = lower(i.medicamento) " +
+                    "where r.id is null or m.id is null or not (" + ArquivoImportacao.RECEITA_ACEITA_ITENS + ") " +
+                    "order by i.linha",
+            "insert into medicamento_receitado (id, id_receita, id_medicamento, data_emissao) " +
+                    "select i.id, r.id, m.id, r.data_emissao " +
+                    "from importacao_item i " +
+                    "join receita_origem o on o.codigo = i.codigo_receita " +
+                    "join receita r on r.id = o.id_receita " +
+                    "join " + ArquivoImportacao.MEDICAMENTO_POR_NOME + " m on m.chave = lower(i.medicamento) " +
+                    "where " + ArquivoImportacao.RECEITA_ACEITA_ITENS) {
+        @Override
+        String[] normalizar(String[] campos) throws RegistroInvalidoException {
+            return new String[]{texto(campos[0], 60, "código da receita"), texto(campos[1], 150, "medicamento")};
+        }
+    };
+
+    /** Um paciente por CPF (somente dígitos); cadastros antigos podem ter o CPF com ou sem máscara */
+    private static final String PACIENTE_POR_CPF =
+            "(select distinct on (d.cpf) d.cpf, d.id " +
+                    " from (select regexp_replace(p.cpf, '[^0-9]', '', 'g') as cpf, p.id from paciente p) d " +
+                    " order by d.cpf, d.id)";
+
+    /**
+     * Um medicamento por nome, normalizado como o nome do arquivo ({@link #texto}: sem espaços nas pontas e com
+     * espaços internos simples), em minúsculas; havendo repetidos, o de menor ID
+     */
+    private static final String MEDICAMENTO_POR_NOME =
+            "(select distinct on (c.chave) c.chave, c.id " +
+                    " from (select lower(btrim(regexp_replace(m.nome, '\\s+', ' ', 'g'))) as chave, m.id from medicamento m) c " +
+                    " order by c.chave, c.id)";
+
+    /**
+     * Receita r (localizada pelo código) que recebe os itens do arquivo: incluída nesta importação, ou importada
+     * antes e ainda sem itens
+     */
+    private static final String RECEITA_ACEITA_ITENS =
+            "(exists (select 1 from importacao_receita s where s.id = r.id) " +
+                    " or not exists (select 1 from medicamento_receitado x where x.id_receita = r.id))";
+
+    private final String nome;
+    private final String[] cabecalho;
+    private final String destinoCopy;
+    private final String sequencia;
+    private final String consultaRejeitados;
+    private final String inclusao;
+
+    ArquivoImportacao(String nome, String[] cabecalho, String destinoCopy, String sequencia,
+                      String consultaRejeitados, String inclusao) {
+        this.nome = nome;
+        this.cabecalho = cabecalho;
+        this.destinoCopy = destinoCopy;
+        this.sequencia = sequencia;
+        this.consultaRejeitados = consultaRejeitados;
+        this.inclusao = inclusao;
+    }
+
+    /** Valores normalizados da linha, na ordem das colunas de preparação. */
+    abstract String[] normalizar(String[] campos) throws RegistroInvalidoException;
+
+    /** Confere a quantidade de colunas e normaliza a linha. */
+    String[] validar(String[] campos) throws RegistroInvalidoException {
+        if (campos.length != cabecalho.length) {
+            throw new RegistroInvalidoException("quantidade de colunas inválida (esperadas " + cabecalho.length + ")");
+        }
+        return normalizar(campos);
+    }
+
+    /** true se o registro é o cabeçalho esperado (sem diferenciar maiúsculas). */
+    boolean cabecalhoValido(String[] campos) {
+        if (campos == null || campos.length != cabecalho.length) return false;
+        for (int i = 0; i < campos.length; i++) {
+            if (!cabecalho[i].equalsIgnoreCase(campos[i].trim())) return false;
+        }
+        return true;
+    }
+
+    String getNome() {
+        return nome;
+    }
+
+    String[] getCabecalho() {
+        return cabecalho;
+    }
+
+    String getSequencia() {
+        return sequencia;
+    }
+
+    /** Tabela de preparação deste arquivo */
+    String getTabela() {
+        return destinoCopy.substring(0, destinoCopy.indexOf(' '));
+    }
+
+    String getComandoCopy() {
+        return "copy " + destinoCopy + " from stdin with (format csv, encoding 'UTF8')";
+    }
+
+    /** Linhas preparadas que a resolução de chaves não inclui: linha, motivo e campos normalizados */
+    String getConsultaRejeitados() {
+        return consultaRejeitados;
+    }
+
+    /** Inclusão nas tabelas definitivas a partir da tabela de preparação */
+    String getInclusao() {
+        return inclusao;
+    }
+
+    /** Nome do arquivo de rejeitados correspondente (ex.: pacientes.rejeitados.csv) */
+    String getNomeRejeitados() {
+        return nome.replace(".csv", ".rejeitados.csv");
+    }
+
+    /** CPF com 11 dígitos; aceita a máscara (pontos, traço) e espaços. */
+    static String cpf(String valor) throws RegistroInvalidoException {
+        StringBuilder digitos = new StringBuilder(11);
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digitos.append(c);
+            } else if (c != '.' && c != '-' && c != ' ') {
+                throw new RegistroInvalidoException("CPF inválido: caractere não permitido");
+            }
+        }
+        if (digitos.length() != 11) {
+            throw new RegistroInvalidoException("CPF inválido: esperados 11 dígitos");
+        }
+        return digitos.toString();
+    }
+
+    /** Texto sem espaços nas pontas e com espaços internos simples, obrigatório e com tamanho máximo. */
+    static String texto(String valor, int maximo, String descricao) throws RegistroInvalidoException {
+        String t = valor.trim().replaceAll("\\s+", " ");
+        if (t.isEmpty()) {
+            throw new RegistroInvalidoException(descricao + " vazio");
+        }
+        if (t.length() > maximo) {
+            throw new RegistroInvalidoException(descricao + " com mais de " + maximo + " caracteres");
+        }
+        return t;
+    }
+}
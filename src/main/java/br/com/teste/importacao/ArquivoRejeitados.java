@@ -0,0 +1,74 @@
+package br.com.teste.importacao;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Arquivo CSV com as linhas rejeitadas de um arquivo importado: número da linha original, motivo e campos.
+ * Aberto em modo de acréscimo (uma importação retomada continua o mesmo arquivo) e criado somente
+ * na primeira rejeição.
+ */
+class ArquivoRejeitados implements Closeable {
+
+    private final File arquivo;
+    private final String[] cabecalho;
+    private Writer out;
+    private long quantidade;
+
+    ArquivoRejeitados(File arquivo, String[] cabecalho) {
+        this.arquivo = arquivo;
+        this.cabecalho = cabecalho;
+    }
+
+    void escrever(long linha, String motivo, String[] campos) throws IOException {
+        if (out == null) {
+            boolean novo = !arquivo.exists();
+            out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(arquivo, true), StandardCharsets.UTF_8));
+            if (novo) {
+                out.write("linha;motivo");
+                for (String c : cabecalho) {
+                    out.write(';');
+                    out.write(c);
+                }
+                out.write('\n');
+            }
+        }
+        out.write(Long.toString(linha));
+        out.write(';');
+        out.write(campo(motivo));
+        for (String c : campos) {
+            out.write(';');
+            out.write(campo(c));
+        }
+        out.write('\n');
+        quantidade++;
+    }
+
+    /** Grava no disco as rejeições acumuladas (chamado antes do commit de cada lote). */
+    void descarregar() throws IOException {
+        if (out != null) out.flush();
+    }
+
+    long getQuantidade() {
+        return quantidade;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) out.close();
+    }
+
+    private static String campo(String valor) {
+        if (valor == null) return "";
+        if (valor.indexOf(';') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+            return valor;
+        }
+        return '"' + valor.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,394 @@
+package br.com.teste.importacao;
+
+import br.com.teste.analitico.ItensColunares;
+import br.com.teste.busca.IndiceAutocomplete;
+import br.com.teste.cache.VersaoTabelas;
+import br.com.teste.config.Configuracao;
+import br.com.teste.estatistica.ContadoresPrescricao;
+import br.com.teste.repository.ReceitaResumoRepository;
+import br.com.teste.repository.TotaisPrescricaoRepository;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import javax.annotation.Resource;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionManagement;
+import javax.ejb.TransactionManagementType;
+import javax.inject.Inject;
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Importação de pacientes, receitas e itens históricos a partir de arquivos CSV (ver {@link ArquivoImportacao}),
+ * sem passar pelo EntityManager: cada arquivo é lido em fluxo, validado linha a linha e gravado via COPY
+ * em uma tabela de preparação; depois, as chaves são resolvidas por comandos SQL sobre o conjunto inteiro.
+ *
+ * - Lotes de {@value #LOTE_PADRAO} linhas (teste.importacao.lote): cada lote é um COPY e uma transação, que
+ *   também grava a última linha lida em importacao_etapa. Uma importação interrompida continua do último lote.
+ * - Linhas inválidas ou sem correspondência vão para &lt;arquivo&gt;.rejeitados.csv, com o motivo.
+ * - Os IDs são reservados em blocos das sequências pooled, como o Hibernate faz.
+ * - Ao final: resumo da consulta, contadores, autocomplete, itens em colunas e cache de consultas são
+ *   recalculados, e os arquivos da pasta recebem o sufixo .importado-&lt;data&gt;.
+ *
+ * A pasta é processada somente quando contém o marcador {@value #MARCADOR} (criado após a cópia dos arquivos).
+ * Uma trava consultiva impede duas importações simultâneas no cluster.
+ */
+@Stateless
+@TransactionManagement(TransactionManagementType.BEAN)
+public class ImportacaoHistorico {
+
+    private static final Logger LOG = Logger.getLogger(ImportacaoHistorico.class.getName());
+
+    /** Propriedade com a quantidade de linhas por lote (COPY + commit) */
+    public static final String PROP_LOTE = "teste.importacao.lote";
+
+    public static final int LOTE_PADRAO = 50_000;
+
+    /** Arquivo que libera a pasta para importação */
+    public static final String MARCADOR = "importacao.pronta";
+
+    /** Etapa registrada quando todas as linhas foram incluídas (falta apenas arquivar a pasta) */
+    private static final String FINALIZACAO = "FINALIZACAO";
+
+    /** Chave da trava consultiva da importação */
+    private static final long TRAVA = 4_201_012L;
+
+    @Resource(lookup = "java:/PostgresDS")
+    private DataSource dataSource;
+
+    @Inject
+    private ReceitaResumoRepository resumoRepository;
+
+    @Inject
+    private TotaisPrescricaoRepository totaisRepository;
+
+    @Inject
+    private ContadoresPrescricao contadores;
+
+    @Inject
+    private IndiceAutocomplete indiceAutocomplete;
+
+    @Inject
+    private ItensColunares itensColunares;
+
+    @Inject
+    private VersaoTabelas versoes;
+
+    /**
+     * Importa (ou retoma a importação de) os arquivos da pasta.
+     * @return true se a pasta estava liberada e foi processada até o fim
+     */
+    public boolean importar(File pasta) {
+        if (!new File(pasta, MARCADOR).isFile()) return false;
+        try (Connection con = dataSource.getConnection()) {
+            con.setAutoCommit(true);
+            if (!travar(con)) {
+                LOG.info("Importação histórica já em andamento em outro nó");
+                return false;
+            }
+            try {
+                return importar(con, pasta);
+            } finally {
+                try (Statement st = con.createStatement()) {
+                    st.execute("select pg_advisory_unlock(" + TRAVA + ")");
+                }
+            }
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Falha na importação histórica de " + pasta, e);
+        }
+    }
+
+    private boolean importar(Connection con, File pasta) throws SQLException, IOException {
+        Map<String, Etapa> etapas = lerEtapas(con);
+        Etapa finalizacao = etapas.get(FINALIZACAO);
+        if (finalizacao != null && finalizacao.concluida) {
+            // Interrompida entre a inclusão e o arquivamento: arquiva a pasta se ela ainda for a mesma
+            if (mesmosArquivos(pasta, etapas)) {
+                concluir(con, pasta);
+                return true;
+            }
+            limparEtapas(con);
+            etapas.clear();
+        }
+
+        long inicio = System.currentTimeMillis();
+        LOG.info("Importação histórica de " + pasta + (etapas.isEmpty() ? " iniciada" : " retomada"));
+        int lote = Math.max(1, Configuracao.getInt(PROP_LOTE, LOTE_PADRAO));
+        for (ArquivoImportacao arquivo : ArquivoImportacao.values()) {
+            File f = new File(pasta, arquivo.getNome());
+            if (!f.isFile()) {
+                LOG.info(arquivo.getNome() + " ausente; etapa ignorada");
+                continue;
+            }
+            try (ArquivoRejeitados rejeitados = new ArquivoRejeitados(
+                    new File(pasta, arquivo.getNomeRejeitados()), arquivo.getCabecalho())) {
+                preparar(con, arquivo, f, etapas.get(arquivo.name()), lote, rejeitados);
+                resolver(con, arquivo, etapas.get(etapaResolucao(arquivo)), rejeitados);
+            }
+        }
+
+        con.setAutoCommit(false);
+        try (Statement st = con.createStatement()) {
+            st.execute("truncate importacao_paciente, importacao_receita, importacao_item");
+            gravarEtapa(con, FINALIZACAO, null, 0, 0, 0, true);
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(true);
+        }
+        LOG.info("Importação histórica: linhas incluídas em " + (System.currentTimeMillis() - inicio) + " ms");
+        concluir(con, pasta);
+        return true;
+    }
+
+    /**
+     * Lê o arquivo em lotes e grava as linhas válidas na tabela de preparação via COPY.
+     * Cada lote termina com o commit da última linha lida; uma etapa retomada pula as linhas já gravadas.
+     */
+    private void preparar(Connection con, ArquivoImportacao arquivo, File f, Etapa etapa, int lote,
+                          ArquivoRejeitados rejeitados) throws SQLException, IOException {
+        if (etapa != null && etapa.concluida) return;
+        if (etapa != null && etapa.tamanhoArquivo != f.length()) {
+            throw new IllegalStateException(arquivo.getNome() + " foi alterado durante a importação (tamanho "
+                    + f.length() + ", esperado " + etapa.tamanhoArquivo + "); para recomeçar, esvazie importacao_etapa e as tabelas importacao_*");
+        }
+        long retomarApos = etapa != null ? etapa.linha : 0;
+        long registros = etapa != null ? etapa.registros : 0;
+        long rejeitadas = etapa != null ? etapa.rejeitados : 0;
+
+        CopyManager copyManager = con.unwrap(PGConnection.class).getCopyAPI();
+        AlocadorIds ids = new AlocadorIds(arquivo.getSequencia());
+        long inicio = System.nanoTime();
+        long lidas = 0;
+        try (LeitorCsv leitor = new LeitorCsv(f)) {
+            if (!arquivo.cabecalhoValido(leitor.proximo())) {
+                throw new IllegalStateException(arquivo.getNome() + ": cabeçalho esperado "
+                        + String.join(";", arquivo.getCabecalho()));
+            }
+            String[] campos = leitor.proximo();
+            while (campos != null && leitor.linha() <= retomarApos) {
+                campos = leitor.proximo();
+            }
+            con.setAutoCommit(false);
+            try {
+                while (campos != null) {
+                    ids.garantir(con, lote);
+                    LoteCopy copy = new LoteCopy(copyManager.copyIn(arquivo.getComandoCopy()));
+                    long ultimaLinha = 0;
+                    try {
+                        for (int n = 0; campos != null && n < lote; n++) {
+                            ultimaLinha = leitor.linha();
+                            try {
+                                // Valida antes de reservar o ID: uma linha rejeitada não consome ID da sequência
+                                String[] valores = arquivo.validar(campos);
+                                copy.adicionar(ultimaLinha, ids.proximo(), valores);
+                            } catch (RegistroInvalidoException e) {
+                                rejeitados.escrever(ultimaLinha, e.getMessage(), campos);
+                                rejeitadas++;
+                            }
+                            lidas++;
+                            campos = leitor.proximo();
+                        }
+                        registros += copy.concluir();
+                    } catch (SQLException | IOException | RuntimeException e) {
+                        copy.cancelar();
+                        throw e;
+                    }
+                    // Rejeitados no disco antes do commit: ao retomar, uma rejeição pode se repetir, mas não se perde
+                    rejeitados.descarregar();
+                    gravarEtapa(con, arquivo.name(), f.length(), ultimaLinha, registros, rejeitadas, false);
+                    con.commit();
+                    LOG.info(arquivo.getNome() + ": até a linha " + ultimaLinha + ", " + registros + " preparadas, "
+                            + rejeitadas + " rejeitadas (" + porSegundo(lidas, inicio) + " linhas/s)");
+                }
+                gravarEtapa(con, arquivo.name(), f.length(), Long.MAX_VALUE, registros, rejeitadas, true);
+                con.commit();
+            } catch (SQLException | IOException | RuntimeException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(true);
+            }
+        }
+        try (Statement st = con.createStatement()) {
+            st.execute("analyze " + arquivo.getTabela());
+        }
+        LOG.info(arquivo.getNome() + " preparado: " + lidas + " linhas lidas nesta execução em "
+                + (System.nanoTime() - inicio) / 1_000_000 + " ms (" + porSegundo(lidas, inicio) + " linhas/s)");
+    }
+
+    /**
+     * Resolve as chaves da tabela de preparação e inclui as linhas nas tabelas definitivas, em uma transação:
+     * primeiro grava os rejeitados (sem correspondência ou repetidos), depois a inclusão em um único comando.
+     */
+    private void resolver(Connection con, ArquivoImportacao arquivo, Etapa etapa,
+                          ArquivoRejeitados rejeitados) throws SQLException, IOException {
+        if (etapa != null && etapa.concluida) return;
+        long inicio = System.nanoTime();
+        con.setAutoCommit(false);
+        try {
+            long rejeitadas = 0;
+            try (Statement st = con.createStatement()) {
+                st.setFetchSize(10_000);
+                try (ResultSet rs = st.executeQuery(arquivo.getConsultaRejeitados())) {
+                    String[] campos = new String[arquivo.getCabecalho().length];
+                    while (rs.next()) {
+                        for (int i = 0; i < campos.length; i++) {
+                            campos[i] = rs.getString(3 + i);
+                        }
+                        rejeitados.escrever(rs.getLong(1), rs.getString(2), campos);
+                        rejeitadas++;
+                    }
+                }
+            }
+            rejeitados.descarregar();
+            int incluidas;
+            try (Statement st = con.createStatement()) {
+                incluidas = st.executeUpdate(arquivo.getInclusao());
+            }
+            gravarEtapa(con, etapaResolucao(arquivo), null, 0, incluidas, rejeitadas, true);
+            con.commit();
+            LOG.info(arquivo.getNome() + ": " + incluidas + " incluídas, " + rejeitadas + " rejeitadas na resolução de chaves em "
+                    + (System.nanoTime() - inicio) / 1_000_000 + " ms (" + porSegundo(incluidas, inicio) + " linhas/s)");
+        } catch (SQLException | IOException | RuntimeException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Recalcula o que deriva das tabelas importadas (gravadas sem passar pelos repositórios),
+     * arquiva os arquivos da pasta e limpa o controle de etapas.
+     */
+    private void concluir(Connection con, File pasta) throws SQLException {
+        atualizarDerivados();
+        String sufixo = ".importado-" + new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
+        for (ArquivoImportacao arquivo : ArquivoImportacao.values()) {
+            arquivar(new File(pasta, arquivo.getNome()), sufixo);
+            arquivar(new File(pasta, arquivo.getNomeRejeitados()), sufixo);
+        }
+        if (!new File(pasta, MARCADOR).delete()) {
+            LOG.warning("Não foi possível remover o marcador " + MARCADOR + " de " + pasta);
+        }
+        limparEtapas(con);
+        LOG.info("Importação histórica de " + pasta + " concluída");
+    }
+
+    private void atualizarDerivados() {
+        long inicio = System.currentTimeMillis();
+        try {
+            resumoRepository.reconstruir();
+            totaisRepository.reconstruir();
+            contadores.recarregar();
+            indiceAutocomplete.recarregar();
+            itensColunares.recarregar();
+            versoes.registrarAlteracao(VersaoTabelas.PACIENTE);
+            versoes.registrarAlteracao(VersaoTabelas.RECEITA);
+            LOG.info("Dados derivados da importação recalculados em " + (System.currentTimeMillis() - inicio) + " ms");
+        } catch (Exception e) {
+            // As rotinas diárias de reconstrução corrigem o que ficar pendente
+            LOG.log(Level.WARNING, "Falha ao recalcular os dados derivados da importação", e);
+        }
+    }
+
+    private static void arquivar(File f, String sufixo) {
+        if (f.isFile() && !f.renameTo(new File(f.getParentFile(), f.getName() + sufixo))) {
+            LOG.warning("Não foi possível arquivar " + f);
+        }
+    }
+
+    private boolean travar(Connection con) throws SQLException {
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("select pg_try_advisory_lock(" + TRAVA + ")")) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    /** true se os arquivos da pasta têm os tamanhos registrados nas etapas de preparação. */
+    private static boolean mesmosArquivos(File pasta, Map<String, Etapa> etapas) {
+        for (ArquivoImportacao arquivo : ArquivoImportacao.values()) {
+            Etapa e = etapas.get(arquivo.name());
+            File f = new File(pasta, arquivo.getNome());
+            if (e == null ? f.isFile() : e.tamanhoArquivo != f.length()) return false;
+        }
+        return true;
+    }
+
+    private static String etapaResolucao(ArquivoImportacao arquivo) {
+        return arquivo.name() + "_CHAVES";
+    }
+
+    private static long porSegundo(long linhas, long inicioNanos) {
+        long nanos = Math.max(1, System.nanoTime() - inicioNanos);
+        return linhas * 1_000_000_000L / nanos;
+    }
+
+    private static Map<String, Etapa> lerEtapas(Connection con) throws SQLException {
+        Map<String, Etapa> etapas = new HashMap<>();
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery(
+                     "select etapa, tamanho_arquivo, linha, registros, rejeitados, concluida from importacao_etapa")) {
+            while (rs.next()) {
+                Etapa e = new Etapa();
+                e.tamanhoArquivo = rs.getLong(2);
+                e.linha = rs.getLong(3);
+                e.registros = rs.getLong(4);
+                e.rejeitados = rs.getLong(5);
+                e.concluida = rs.getBoolean(6);
+                etapas.put(rs.getString(1), e);
+            }
+        }
+        return etapas;
+    }
+
+    private static void gravarEtapa(Connection con, String etapa, Long tamanhoArquivo, long linha, long registros,
+                                    long rejeitados, boolean concluida) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(
+                "insert into importacao_etapa (etapa, tamanho_arquivo, linha, registros, rejeitados, concluida) " +
+                        "values (?, ?, ?, ?, ?, ?) " +
+                        "on conflict (etapa) do update set tamanho_arquivo = excluded.tamanho_arquivo, linha = excluded.linha, " +
+                        "registros = excluded.registros, rejeitados = excluded.rejeitados, concluida = excluded.concluida, " +
+                        "atualizado_em = now()")) {
+            ps.setString(1, etapa);
+            if (tamanhoArquivo != null) ps.setLong(2, tamanhoArquivo);
+            else ps.setNull(2, Types.BIGINT);
+            ps.setLong(3, linha);
+            ps.setLong(4, registros);
+            ps.setLong(5, rejeitados);
+            ps.setBoolean(6, concluida);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void limparEtapas(Connection con) throws SQLException {
+        try (Statement st = con.createStatement()) {
+            st.execute("delete from importacao_etapa");
+        }
+    }
+
+    /** Linha de importacao_etapa */
+    private static final class Etapa {
+        long tamanhoArquivo;
+        long linha;
+        long registros;
+        long rejeitados;
+        boolean concluida;
+    }
+}
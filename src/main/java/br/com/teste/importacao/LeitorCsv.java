@@ -0,0 +1,98 @@
+package br.com.teste.importacao;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Leitura sequencial de um arquivo CSV (UTF-8, separador ";"), um registro por vez, sem carregar o arquivo.
+ *
+ * - Campos entre aspas podem conter o separador, quebras de linha e aspas duplicadas ("").
+ * - Linhas em branco são ignoradas e o BOM inicial, quando existir, é descartado.
+ * - {@link #linha()} informa a linha física em que o registro começa (usada como ponto de retomada).
+ */
+public class LeitorCsv implements Closeable {
+
+    private static final char SEPARADOR = ';';
+
+    private final BufferedReader in;
+
+    /** Linha física do próximo caractere a ser lido */
+    private long linhaAtual = 1;
+
+    /** Linha física em que começa o último registro lido */
+    private long linhaRegistro;
+
+    public LeitorCsv(File arquivo) throws IOException {
+        this.in = new BufferedReader(new InputStreamReader(new FileInputStream(arquivo), StandardCharsets.UTF_8), 1 << 16);
+        in.mark(1);
+        if (in.read() != '\uFEFF') {
+            in.reset();
+        }
+    }
+
+    /** Próximo registro (campos sem as aspas), ou null no fim do arquivo. */
+    public String[] proximo() throws IOException {
+        while (true) {
+            int c = in.read();
+            if (c == -1) return null;
+            linhaRegistro = linhaAtual;
+            List<String> campos = new ArrayList<>();
+            StringBuilder campo = new StringBuilder();
+            boolean entreAspas = false;
+            boolean teveAspas = false;
+            while (true) {
+                if (entreAspas) {
+                    if (c == -1) {
+                        throw new IOException("Aspas não fechadas no registro iniciado na linha " + linhaRegistro);
+                    }
+                    if (c == '"') {
+                        int seguinte = in.read();
+                        if (seguinte != '"') {
+                            entreAspas = false;
+                            c = seguinte;
+                            continue;
+                        }
+                        campo.append('"');
+                    } else if (c != '\r') {
+                        if (c == '\n') linhaAtual++;
+                        campo.append((char) c);
+                    }
+                } else if (c == '"' && campo.length() == 0) {
+                    entreAspas = true;
+                    teveAspas = true;
+                } else if (c == SEPARADOR) {
+                    campos.add(campo.toString());
+                    campo.setLength(0);
+                } else if (c == '\n' || c == -1) {
+                    if (c == '\n') linhaAtual++;
+                    break;
+                } else if (c != '\r') {
+                    campo.append((char) c);
+                }
+                c = in.read();
+            }
+            campos.add(campo.toString());
+            if (campos.size() == 1 && !teveAspas && campos.get(0).trim().isEmpty()) {
+                continue; // linha em branco
+            }
+            return campos.toArray(new String[0]);
+        }
+    }
+
+    /** Linha física em que começa o último registro devolvido por {@link #proximo()}. */
+    public long linha() {
+        return linhaRegistro;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,67 @@
+package br.com.teste.importacao;
+
+import org.postgresql.copy.CopyIn;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+
+/**
+ * Um COPY ... FROM STDIN (formato CSV) em andamento: as linhas são codificadas em um buffer de tamanho fixo
+ * e enviadas ao servidor sempre que ele enche, então a memória usada não depende do tamanho do lote.
+ */
+class LoteCopy {
+
+    private static final int BUFFER = 64 * 1024;
+
+    private final CopyIn copy;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUFFER + 1024);
+    private final StringBuilder linha = new StringBuilder(256);
+
+    LoteCopy(CopyIn copy) {
+        this.copy = copy;
+    }
+
+    /** Acrescenta uma linha: número da linha do arquivo, ID reservado e os campos texto (sempre entre aspas). */
+    void adicionar(long numeroLinha, long id, String[] campos) throws SQLException {
+        linha.setLength(0);
+        linha.append(numeroLinha).append(',').append(id);
+        for (String campo : campos) {
+            linha.append(",\"");
+            for (int i = 0; i < campo.length(); i++) {
+                char ch = campo.charAt(i);
+                if (ch == '"') linha.append('"');
+                linha.append(ch);
+            }
+            linha.append('"');
+        }
+        linha.append('\n');
+        byte[] bytes = linha.toString().getBytes(StandardCharsets.UTF_8);
+        buffer.write(bytes, 0, bytes.length);
+        if (buffer.size() >= BUFFER) {
+            descarregar();
+        }
+    }
+
+    /** Envia o restante do buffer e encerra o COPY. @return linhas gravadas pelo servidor */
+    long concluir() throws SQLException {
+        descarregar();
+        return copy.endCopy();
+    }
+
+    /** Interrompe o COPY após uma falha (a transação ainda precisa de rollback). */
+    void cancelar() {
+        try {
+            if (copy.isActive()) copy.cancelCopy();
+        } catch (SQLException e) {
+            // a falha original é a relevante
+        }
+    }
+
+    private void descarregar() throws SQLException {
+        if (buffer.size() > 0) {
+            copy.writeToCopy(buffer.toByteArray(), 0, buffer.size());
+            buffer.reset();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package br.com.teste.importacao;
+
+/**
+ * Linha do arquivo importado que não atende às regras de validação; a mensagem é o motivo gravado
+ * no arquivo de rejeitados.
+ */
+class RegistroInvalidoException extends Exception {
+
+    RegistroInvalidoException(String motivo) {
+        super(motivo);
+    }
+}
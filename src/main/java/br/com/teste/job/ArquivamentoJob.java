@@ -0,0 +1,73 @@
+package br.com.teste.job;
+
+import br.com.teste.config.Configuracao;
+import br.com.teste.repository.ArquivamentoRepository;
+
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Arquivamento das receitas antigas, para que as tabelas quentes (receita, medicamento_receitado e
+ * receita_resumo) e os seus índices guardem só os meses recentes.
+ * - Diariamente (02:00): move, um mês por transação e do mais antigo ao mais novo, as receitas emitidas antes
+ *   de {@link #PROP_MESES} meses inteiros para as tabelas de arquivo; depois remove as partições de itens
+ *   desses meses, já vazias.
+ * Sem transação própria: uma falha interrompe a execução e os meses restantes ficam para o dia seguinte
+ * (cada mês arquivado já está confirmado).
+ */
+@Singleton
+@Startup
+@DependsOn("MigracaoEsquema")
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class ArquivamentoJob {
+
+    private static final Logger LOG = Logger.getLogger(ArquivamentoJob.class.getName());
+
+    /** Idade, em meses inteiros, a partir da qual as receitas são arquivadas (padrão 24; 0 desabilita) */
+    public static final String PROP_MESES = "teste.arquivamento.meses";
+
+    @EJB
+    private ArquivamentoRepository arquivamentoRepository;
+
+    @Schedule(hour = "2", minute = "0", persistent = false)
+    public void arquivar() {
+        int meses = Configuracao.getInt(PROP_MESES, 24);
+        if (meses <= 0) {
+            return;
+        }
+        long inicio = System.currentTimeMillis();
+        SimpleDateFormat formato = new SimpleDateFormat("MM/yyyy");
+        try {
+            int receitas = 0;
+            Date mes;
+            while ((mes = arquivamentoRepository.proximoMes(meses)) != null) {
+                int movidas = arquivamentoRepository.arquivarMes(mes);
+                LOG.info(movidas + " receita(s) de " + formato.format(mes) + " arquivada(s)");
+                receitas += movidas;
+            }
+            int particoes = 0;
+            for (String particao : arquivamentoRepository.particoesArquivadas(meses)) {
+                if (arquivamentoRepository.removerParticaoVazia(particao)) {
+                    particoes++;
+                } else {
+                    LOG.warning("Partição " + particao + " de mês arquivado ainda tem itens; mantida");
+                }
+            }
+            if (receitas > 0 || particoes > 0) {
+                LOG.info("Arquivamento: " + receitas + " receita(s) e " + particoes + " partição(ões) removida(s) em "
+                        + (System.currentTimeMillis() - inicio) + " ms");
+            }
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Falha no arquivamento das receitas antigas", e);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package br.com.teste.job;
+
+import br.com.teste.config.Configuracao;
+import br.com.teste.transacao.AposCommit;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Atualização da fotografia do relatório após escritas em receitas (ReceitaRepository), que a envia às telas
+ * abertas (ver {@link SnapshotRelatorioJob#CANAL}).
+ *
+ * Rajadas de escritas são agrupadas: a primeira escrita confirmada agenda uma geração e as seguintes, até ela
+ * começar, não agendam outra; entre o início de duas gerações passam pelo menos teste.relatorio.push.intervalo
+ * ms. A carga do relatório no banco acompanha assim a taxa de escrita (no máximo uma geração por intervalo),
+ * e não a quantidade de telas abertas, que só leem a fotografia em memória.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class AtualizacaoRelatorio {
+
+    private static final Logger LOG = Logger.getLogger(AtualizacaoRelatorio.class.getName());
+
+    /** Intervalo mínimo, em ms, entre duas gerações disparadas por escritas */
+    public static final String PROP_INTERVALO = "teste.relatorio.push.intervalo";
+
+    @EJB
+    private SnapshotRelatorioJob snapshots;
+
+    @Resource
+    private ManagedScheduledExecutorService executor;
+
+    @Resource
+    private TransactionSynchronizationRegistry registry;
+
+    /** Geração agendada e ainda não iniciada */
+    private final AtomicBoolean agendada = new AtomicBoolean();
+
+    /** System.nanoTime do início da última geração */
+    private volatile long ultimaGeracao = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+
+    /** Registra uma escrita que altera o relatório; a geração é agendada após o commit (rollback não agenda). */
+    public void registrarEscrita() {
+        AposCommit.executar(registry, this::agendar);
+    }
+
+    /** Intervalo mínimo entre gerações, em ms. */
+    public long intervalo() {
+        return Math.max(0L, Configuracao.getLong(PROP_INTERVALO, 5000L));
+    }
+
+    private void agendar() {
+        if (!agendada.compareAndSet(false, true)) {
+            return;
+        }
+        long decorrido = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ultimaGeracao);
+        try {
+            executor.schedule(this::gerar, Math.max(0L, intervalo() - decorrido), TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            agendada.set(false);
+            LOG.log(Level.WARNING, "Falha ao agendar a atualização do relatório", e);
+        }
+    }
+
+    private void gerar() {
+        // Escritas confirmadas a partir daqui agendam a próxima geração (que verá também as delas)
+        agendada.set(false);
+        ultimaGeracao = System.nanoTime();
+        try {
+            snapshots.atualizar();
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Falha ao atualizar a fotografia do relatório após escritas", e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package br.com.teste.job;
+
+import br.com.teste.config.Configuracao;
+import br.com.teste.importacao.ImportacaoHistorico;
+
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import java.io.File;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Verifica a cada 5 minutos a pasta de importação histórica (teste.importacao.pasta) e, quando ela
+ * contém o marcador {@value ImportacaoHistorico#MARCADOR}, importa ou retoma a importação dos arquivos.
+ * Sem a propriedade, a rotina não faz nada.
+ */
+@Singleton
+@Startup
+@DependsOn("MigracaoEsquema")
+public class ImportacaoHistoricoJob {
+
+    private static final Logger LOG = Logger.getLogger(ImportacaoHistoricoJob.class.getName());
+
+    /** Propriedade com a pasta monitorada pela importação histórica */
+    public static final String PROP_PASTA = "teste.importacao.pasta";
+
+    @EJB
+    private ImportacaoHistorico importacao;
+
+    @Schedule(hour = "*", minute = "*/5", persistent = false)
+    public void verificar() {
+        String pasta = Configuracao.getString(PROP_PASTA, null);
+        if (pasta == null) return;
+        try {
+            importacao.importar(new File(pasta));
+        } catch (Exception e) {
+            // Tentada novamente na próxima verificação, a partir do último lote confirmado
+            LOG.log(Level.WARNING, "Falha na importação histórica", e);
+        }
+    }
+}
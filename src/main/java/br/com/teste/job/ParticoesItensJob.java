@@ -0,0 +1,54 @@
+package br.com.teste.job;
+
+import br.com.teste.config.Configuracao;
+import br.com.teste.repository.ReceitaRepository;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Criação antecipada das partições mensais de medicamento_receitado (particionada pela data de emissão).
+ * - Na subida e diariamente (00:30): cria as partições que faltam do mês corrente até os meses à frente
+ *   de {@link #PROP_MESES_ADIANTE}.
+ * Sem transação própria: a chamada ao repositório roda em sua transação, e uma falha não impede a subida
+ * (as partições já criadas atendem as inclusões até o fim do período antecipado).
+ */
+@Singleton
+@Startup
+@DependsOn("MigracaoEsquema")
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class ParticoesItensJob {
+
+    private static final Logger LOG = Logger.getLogger(ParticoesItensJob.class.getName());
+
+    /** Meses à frente do corrente com partição já criada (padrão 3) */
+    public static final String PROP_MESES_ADIANTE = "teste.particoes.mesesAdiante";
+
+    @EJB
+    private ReceitaRepository receitaRepository;
+
+    @PostConstruct
+    public void init() {
+        criarParticoes();
+    }
+
+    @Schedule(hour = "0", minute = "30", persistent = false)
+    public void criarParticoes() {
+        try {
+            int criadas = receitaRepository.criarParticoesItens(Math.max(1, Configuracao.getInt(PROP_MESES_ADIANTE, 3)));
+            if (criadas > 0) {
+                LOG.info(criadas + " partição(ões) mensal(is) de medicamento_receitado criada(s)");
+            }
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Falha ao criar as partições de medicamento_receitado", e);
+        }
+    }
+}
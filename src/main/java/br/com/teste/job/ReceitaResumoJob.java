@@ -0,0 +1,56 @@
+package br.com.teste.job;
+
+import br.com.teste.repository.ReceitaResumoRepository;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rotina de manutenção do modelo de leitura receita_resumo (consulta "Medicamentos por Paciente").
+ * - Na subida: carga inicial quando há receitas mas o resumo está vazio (tabela criada pela migração V3).
+ * - Diariamente (03:30): reconstrução completa, corrigindo eventuais divergências.
+ * Depende de EsquemaBusca, que define a forma normalizada dos nomes gravados (com ou sem f_unaccent).
+ */
+@Singleton
+@Startup
+@DependsOn({"MigracaoEsquema", "EsquemaBusca"})
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class ReceitaResumoJob {
+
+    private static final Logger LOG = Logger.getLogger(ReceitaResumoJob.class.getName());
+
+    @EJB
+    private ReceitaResumoRepository resumoRepository;
+
+    @PostConstruct
+    public void init() {
+        try {
+            if (resumoRepository.precisaCargaInicial()) {
+                LOG.info("Resumo de receitas vazio; executando carga inicial");
+                resumoRepository.reconstruir();
+            }
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Falha ao preparar o resumo de receitas", e);
+        }
+    }
+
+    /** Reconstrução diária para correção de divergências. */
+    @Schedule(hour = "3", minute = "30", persistent = false)
+    public void reconstruir() {
+        long inicio = System.currentTimeMillis();
+        try {
+            resumoRepository.reconstruir();
+            LOG.info("Resumo de receitas reconstruído em " + (System.currentTimeMillis() - inicio) + " ms");
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Falha ao reconstruir o resumo de receitas", e);
+        }
+    }
+}
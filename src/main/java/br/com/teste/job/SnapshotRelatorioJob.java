@@ -0,0 +1,199 @@
+package br.com.teste.job;
+
+import br.com.teste.analitico.ItensColunares;
+import br.com.teste.bean.RelatorioMedicamentosBean;
+import br.com.teste.config.Configuracao;
+import br.com.teste.dto.NomeQuantidadeDTO;
+import br.com.teste.dto.PacienteTotalDTO;
+import br.com.teste.estatistica.ContadoresPrescricao;
+import br.com.teste.estatistica.DiferencaRelatorio;
+import br.com.teste.estatistica.SnapshotRelatorio;
+import br.com.teste.repository.ReceitaRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.faces.push.Push;
+import javax.faces.push.PushContext;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fotografia do relatório "Medicamentos Prescritos" para painéis gerenciais, que não precisam de valores ao
+ * segundo mas abrem o relatório muitas vezes por hora.
+ * - Na subida: lê a última fotografia gravada em disco (a tela a exibe imediatamente); sem arquivo, gera uma
+ *   nova em segundo plano.
+ * - A cada 5 minutos, após escritas em receitas (agrupadas por {@link AtualizacaoRelatorio}) ou sob demanda
+ *   ("Atualizar" na tela): gera uma nova versão, troca a fotografia em memória e grava o arquivo (gravação
+ *   atômica por renomeação). Rankings e totais por paciente vêm dos itens em colunas ({@link ItensColunares});
+ *   até a carga deles terminar, dos contadores em memória e da tabela agregada.
+ * - Cada nova versão que muda algo é enviada pelo canal {@value #CANAL} (f:websocket) às telas abertas do
+ *   relatório, com a diferença para a anterior ({@link DiferencaRelatorio}).
+ * A leitura da fotografia atual não bloqueia; gerações simultâneas são feitas uma de cada vez e quem esperou
+ * recebe a que acabou de ser gerada.
+ */
+@Singleton
+@Startup
+@DependsOn({"ContadoresPrescricao", "ItensColunares"})
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class SnapshotRelatorioJob {
+
+    private static final Logger LOG = Logger.getLogger(SnapshotRelatorioJob.class.getName());
+
+    /** Arquivo da fotografia (padrão: teste/relatorio-snapshot.bin na pasta de dados do WildFly) */
+    public static final String PROP_ARQUIVO = "teste.relatorio.snapshot.arquivo";
+
+    /** Canal do f:websocket (escopo de aplicação) que recebe as diferenças de cada nova fotografia */
+    public static final String CANAL = "relatorio";
+
+    @EJB
+    private ReceitaRepository receitaRepository;
+
+    @EJB
+    private ContadoresPrescricao contadores;
+
+    @EJB
+    private ItensColunares itens;
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    @Inject
+    @Push(channel = CANAL)
+    private PushContext canal;
+
+    private volatile SnapshotRelatorio atual;
+
+    private final Object geracao = new Object();
+
+    @PostConstruct
+    public void init() {
+        Path arquivo = arquivo();
+        try (InputStream in = Files.newInputStream(arquivo)) {
+            atual = SnapshotRelatorio.ler(in);
+            LOG.info("Fotografia do relatório carregada de " + arquivo + " (versão " + atual.getVersao() + ")");
+        } catch (NoSuchFileException e) {
+            LOG.info("Sem fotografia do relatório em " + arquivo + "; gerando em segundo plano");
+            executor.execute(this::atualizarAgendado);
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Fotografia do relatório ilegível em " + arquivo + "; gerando em segundo plano", e);
+            executor.execute(this::atualizarAgendado);
+        }
+    }
+
+    /** Fotografia atual, ou null se nenhuma foi gerada ainda. */
+    public SnapshotRelatorio getAtual() {
+        return atual;
+    }
+
+    @Schedule(hour = "*", minute = "*/5", persistent = false)
+    public void atualizarAgendado() {
+        try {
+            atualizar();
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Falha ao gerar a fotografia do relatório", e);
+        }
+    }
+
+    /**
+     * Gera, publica e grava uma nova fotografia. Se outra geração terminar enquanto esta aguarda a vez,
+     * devolve a recém-gerada em vez de repetir o trabalho.
+     */
+    public SnapshotRelatorio atualizar() {
+        return atualizar(0L);
+    }
+
+    /**
+     * Como {@link #atualizar()}, mas devolve a fotografia atual se ela tiver sido gerada há menos de
+     * idadeMaximaMs (pedidos sob demanda de várias telas não geram uma fotografia cada).
+     */
+    public SnapshotRelatorio atualizar(long idadeMaximaMs) {
+        long pedido = System.currentTimeMillis() - idadeMaximaMs;
+        synchronized (geracao) {
+            SnapshotRelatorio anterior = atual;
+            if (anterior != null && anterior.getGeradoEm() >= pedido) {
+                return anterior;
+            }
+            long inicio = System.nanoTime();
+            int topN = Math.max(1, Configuracao.getInt(RelatorioMedicamentosBean.PROP_TOP_N, 2));
+            List<NomeQuantidadeDTO> topMedicamentos;
+            List<NomeQuantidadeDTO> topPacientes;
+            List<PacienteTotalDTO> totais;
+            if (itens.isCarregado()) {
+                topMedicamentos = itens.topMedicamentos(topN);
+                topPacientes = itens.topPacientes(topN);
+                totais = itens.totalMedicamentosPorPaciente();
+            } else {
+                topMedicamentos = contadores.topMedicamentos(topN);
+                topPacientes = contadores.topPacientes(topN);
+                totais = receitaRepository.totalMedicamentosPorPaciente();
+            }
+            SnapshotRelatorio nova = new SnapshotRelatorio(anterior != null ? anterior.getVersao() + 1 : 1,
+                    System.currentTimeMillis(), topN, topMedicamentos, topPacientes, totais);
+            atual = nova;
+            gravar(nova);
+            publicar(DiferencaRelatorio.entre(anterior, nova));
+            LOG.info("Fotografia do relatório versão " + nova.getVersao() + " gerada em "
+                    + (System.nanoTime() - inicio) / 1_000_000 + " ms");
+            return nova;
+        }
+    }
+
+    /** Envia a diferença às telas abertas (nada é enviado se a fotografia não mudou). */
+    private void publicar(DiferencaRelatorio diferenca) {
+        if (diferenca.isVazia()) {
+            return;
+        }
+        try {
+            canal.send(diferenca.paraMensagem());
+        } catch (RuntimeException e) {
+            // As telas continuam com a fotografia que já exibem; a próxima publicação as atualiza
+            LOG.log(Level.WARNING, "Falha ao enviar a fotografia do relatório às telas abertas", e);
+        }
+    }
+
+    /** Grava em arquivo temporário e renomeia: o arquivo lido na subida nunca fica pela metade. */
+    private void gravar(SnapshotRelatorio snapshot) {
+        Path arquivo = arquivo();
+        try {
+            Files.createDirectories(arquivo.toAbsolutePath().getParent());
+            Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporario)) {
+                snapshot.gravar(out);
+            }
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // A fotografia em memória continua válida; só a próxima subida fica sem ela
+            LOG.log(Level.WARNING, "Falha ao gravar a fotografia do relatório em " + arquivo, e);
+        }
+    }
+
+    private static Path arquivo() {
+        String configurado = Configuracao.getString(PROP_ARQUIVO, null);
+        if (configurado != null) {
+            return Paths.get(configurado);
+        }
+        String pasta = Configuracao.getString("jboss.server.data.dir", System.getProperty("java.io.tmpdir"));
+        return Paths.get(pasta, "teste", "relatorio-snapshot.bin");
+    }
+}
@@ -0,0 +1,56 @@
+package br.com.teste.job;
+
+import br.com.teste.repository.TotaisPrescricaoRepository;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rotina de manutenção dos contadores agregados de prescrição.
+ * - Na subida: carga inicial quando há itens mas os contadores estão vazios.
+ * - Diariamente (03:00): reconstrução completa, corrigindo eventuais divergências.
+ * Sem transação própria: cada chamada ao repositório roda em sua transação, e uma falha não impede a subida.
+ */
+@Singleton
+@Startup
+@DependsOn("MigracaoEsquema")
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class TotaisPrescricaoJob {
+
+    private static final Logger LOG = Logger.getLogger(TotaisPrescricaoJob.class.getName());
+
+    @EJB
+    private TotaisPrescricaoRepository totaisRepository;
+
+    @PostConstruct
+    public void init() {
+        try {
+            if (totaisRepository.precisaCargaInicial()) {
+                LOG.info("Contadores de prescrição vazios; executando carga inicial");
+                totaisRepository.reconstruir();
+            }
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Falha na carga inicial dos contadores de prescrição", e);
+        }
+    }
+
+    /** Reconstrução diária para correção de divergências. */
+    @Schedule(hour = "3", minute = "0", persistent = false)
+    public void reconstruir() {
+        long inicio = System.currentTimeMillis();
+        try {
+            totaisRepository.reconstruir();
+            LOG.info("Contadores de prescrição reconstruídos em " + (System.currentTimeMillis() - inicio) + " ms");
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Falha ao reconstruir os contadores de prescrição", e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package br.com.teste.metrica;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latências em nanossegundos com faixas log-lineares (como o HdrHistogram): cada potência de 2
+ * é dividida em {@value #SUBFAIXAS} faixas iguais, então o erro relativo de qualquer valor é de no máximo ~3%,
+ * de 1 ns até ~73 minutos (valores maiores caem na última faixa).
+ *
+ * Registrar é um incremento atômico em um array pré-alocado, sem bloqueio e sem alocação de objetos.
+ * As leituras (exportação) percorrem o array sem parar os registros; os valores são acumulados desde a subida.
+ */
+public class HistogramaLatencia {
+
+    /** Bits de resolução por potência de 2 (32 faixas) */
+    private static final int BITS_SUBFAIXA = 5;
+    private static final int SUBFAIXAS = 1 << BITS_SUBFAIXA;
+
+    /** Maior expoente representado: 2^42 ns (~73 min) */
+    private static final int EXPOENTE_MAXIMO = 42;
+
+    private static final int FAIXAS = (EXPOENTE_MAXIMO - BITS_SUBFAIXA + 2) * SUBFAIXAS;
+
+    private final AtomicLongArray contagens = new AtomicLongArray(FAIXAS);
+    private final LongAdder soma = new LongAdder();
+
+    /** Registra uma duração (ns); valores negativos contam como zero. */
+    public void registrar(long nanos) {
+        long valor = Math.max(0L, nanos);
+        contagens.incrementAndGet(faixa(valor));
+        soma.add(valor);
+    }
+
+    /** Índice da faixa de um valor: os SUBFAIXAS primeiros valores têm uma faixa cada, depois log-linear. */
+    static int faixa(long valor) {
+        if (valor < SUBFAIXAS) {
+            return (int) valor;
+        }
+        int expoente = 63 - Long.numberOfLeadingZeros(valor);
+        if (expoente > EXPOENTE_MAXIMO) {
+            return FAIXAS - 1;
+        }
+        int deslocamento = expoente - BITS_SUBFAIXA;
+        return (deslocamento + 1) * SUBFAIXAS + (int) ((valor >>> deslocamento) - SUBFAIXAS);
+    }
+
+    /** Maior valor (ns) que cai na faixa. */
+    static long limiteSuperior(int faixa) {
+        if (faixa < SUBFAIXAS) {
+            return faixa;
+        }
+        int deslocamento = faixa / SUBFAIXAS - 1;
+        long inferior = ((long) SUBFAIXAS + faixa % SUBFAIXAS) << deslocamento;
+        return inferior + (1L << deslocamento) - 1;
+    }
+
+    /** Cópia das contagens e da soma, para que a exportação leia valores coerentes entre si. */
+    public Leitura ler() {
+        long[] copia = new long[FAIXAS];
+        long total = 0;
+        for (int i = 0; i < FAIXAS; i++) {
+            copia[i] = contagens.get(i);
+            total += copia[i];
+        }
+        return new Leitura(copia, total, soma.sum());
+    }
+
+    /** Estado do histograma em um instante. */
+    public static class Leitura {
+
+        private final long[] contagens;
+        private final long total;
+        private final long somaNanos;
+
+        Leitura(long[] contagens, long total, long somaNanos) {
+            this.contagens = contagens;
+            this.total = total;
+            this.somaNanos = somaNanos;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getSomaNanos() {
+            return somaNanos;
+        }
+
+        /** Quantidade de registros com valor até o limite (ns), pelas faixas inteiramente abaixo dele. */
+        public long ate(long limiteNanos) {
+            long n = 0;
+            for (int i = 0; i < contagens.length && limiteSuperior(i) <= limiteNanos; i++) {
+                n += contagens[i];
+            }
+            return n;
+        }
+
+        /** Valor (ns) abaixo do qual está a fração q dos registros (limite superior da faixa); 0 se vazio. */
+        public long quantil(double q) {
+            if (total == 0) return 0;
+            long alvo = Math.max(1L, (long) Math.ceil(q * total));
+            long acumulado = 0;
+            for (int i = 0; i < contagens.length; i++) {
+                acumulado += contagens[i];
+                if (acumulado >= alvo) {
+                    return limiteSuperior(i);
+                }
+            }
+            return limiteSuperior(contagens.length - 1);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package br.com.teste.metrica;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas de um método monitorado: histograma de latência, linhas devolvidas, chamadas que terminaram em exceção
+ * e comandos SQL executados (só com a contagem de SQL habilitada).
+ */
+public class MetricaMetodo {
+
+    private final String classe;
+    private final String metodo;
+    private final String parametros;
+    private final HistogramaLatencia latencia = new HistogramaLatencia();
+    private final LongAdder linhas = new LongAdder();
+    private final LongAdder erros = new LongAdder();
+    private final LongAdder comandos = new LongAdder();
+
+    MetricaMetodo(Method m) {
+        this.classe = m.getDeclaringClass().getSimpleName();
+        this.metodo = m.getName();
+        this.parametros = parametros(m);
+    }
+
+    /** Tipos dos parâmetros (nomes simples, separados por vírgula): distingue as sobrecargas do mesmo método. */
+    static String parametros(Method m) {
+        StringBuilder sb = new StringBuilder();
+        for (Class<?> tipo : m.getParameterTypes()) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(tipo.getSimpleName());
+        }
+        return sb.toString();
+    }
+
+    /** Registra uma chamada concluída com sucesso: duração e linhas do resultado. */
+    void registrar(long nanos, Object resultado) {
+        latencia.registrar(nanos);
+        linhas.add(linhas(resultado));
+    }
+
+    /** Registra uma chamada que lançou exceção (a duração também entra no histograma). */
+    void registrarErro(long nanos) {
+        latencia.registrar(nanos);
+        erros.increment();
+    }
+
+    /** Soma os comandos SQL de uma chamada (ContagemSql). */
+    void registrarComandos(int quantidade) {
+        comandos.add(quantidade);
+    }
+
+    /**
+     * Linhas de um resultado: tamanho da coleção, 1 para uma entidade/DTO e 0 para ausência (null),
+     * void e valores escalares (contagens, totais, flags).
+     */
+    static long linhas(Object resultado) {
+        if (resultado instanceof Collection) {
+            return ((Collection<?>) resultado).size();
+        }
+        if (resultado == null || resultado instanceof Number || resultado instanceof Boolean) {
+            return 0;
+        }
+        return 1;
+    }
+
+    public String getClasse() {
+        return classe;
+    }
+
+    public String getMetodo() {
+        return metodo;
+    }
+
+    public String getParametros() {
+        return parametros;
+    }
+
+    /** Classe, método e parâmetros, ex.: ReceitaRepository.topMedicamentos(int,Date,Date) */
+    public String getAssinatura() {
+        return classe + "." + metodo + "(" + parametros + ")";
+    }
+
+    public HistogramaLatencia getLatencia() {
+        return latencia;
+    }
+
+    public long getLinhas() {
+        return linhas.sum();
+    }
+
+    public long getErros() {
+        return erros.sum();
+    }
+
+    public long getComandos() {
+        return comandos.sum();
+    }
+}
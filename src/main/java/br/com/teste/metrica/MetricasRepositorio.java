@@ -0,0 +1,33 @@
+package br.com.teste.metrica;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Métricas de todos os métodos monitorados ({@link Monitorado}), criadas na primeira chamada de cada método.
+ * Vivem na memória deste nó e recomeçam do zero a cada deploy (o coletor trata o reinício dos contadores).
+ */
+@ApplicationScoped
+public class MetricasRepositorio {
+
+    private final ConcurrentMap<Method, MetricaMetodo> metricas = new ConcurrentHashMap<>();
+
+    /** Métricas do método (a busca não aloca; computeIfAbsent só na primeira chamada). */
+    public MetricaMetodo de(Method m) {
+        MetricaMetodo metrica = metricas.get(m);
+        return metrica != null ? metrica : metricas.computeIfAbsent(m, MetricaMetodo::new);
+    }
+
+    /** Métricas registradas, ordenadas por classe, método e parâmetros. */
+    public List<MetricaMetodo> todas() {
+        List<MetricaMetodo> lista = new ArrayList<>(metricas.values());
+        lista.sort(Comparator.comparing(MetricaMetodo::getClasse).thenComparing(MetricaMetodo::getMetodo)
+                .thenComparing(MetricaMetodo::getParametros));
+        return lista;
+    }
+}
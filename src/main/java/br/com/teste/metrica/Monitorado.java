@@ -0,0 +1,17 @@
+package br.com.teste.metrica;
+
+import javax.interceptor.InterceptorBinding;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marca uma classe (ou um método) cujas chamadas têm a latência, as linhas devolvidas e os erros
+ * registrados por {@link MonitoramentoInterceptor} e publicados em /metricas/repositorios.
+ */
+@InterceptorBinding
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface Monitorado {
+}
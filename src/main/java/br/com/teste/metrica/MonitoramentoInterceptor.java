@@ -0,0 +1,63 @@
+package br.com.teste.metrica;
+
+import br.com.teste.sql.ContagemSql;
+import br.com.teste.sql.DetectorNmais1;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.Interceptor;
+import javax.interceptor.InvocationContext;
+import java.io.Serializable;
+
+/**
+ * Mede cada chamada dos métodos {@link Monitorado}: duração (System.nanoTime), linhas devolvidas e exceções.
+ * Nos EJBs o interceptor roda dentro da transação do container, então o tempo do commit feito ao sair do
+ * método não entra na medida. O caminho da chamada não aloca objetos (ver HistogramaLatencia).
+ *
+ * Com teste.sql.inspecao=true a chamada também abre um escopo de {@link ContagemSql}: os comandos SQL do método
+ * entram na métrica e as suspeitas de N+1 são relatadas com o nome do método. Os comandos do flush no commit
+ * (depois da saída do método) contam só na requisição.
+ */
+@Monitorado
+@Interceptor
+@Priority(Interceptor.Priority.APPLICATION)
+public class MonitoramentoInterceptor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Inject
+    private MetricasRepositorio metricas;
+
+    @Inject
+    private DetectorNmais1 detector;
+
+    @AroundInvoke
+    public Object medir(InvocationContext ctx) throws Exception {
+        MetricaMetodo metrica = metricas.de(ctx.getMethod());
+        if (!ContagemSql.isHabilitada()) {
+            return executar(ctx, metrica);
+        }
+        try (ContagemSql.Escopo escopo = ContagemSql.abrir(metrica.getAssinatura())) {
+            try {
+                return executar(ctx, metrica);
+            } finally {
+                metrica.registrarComandos(escopo.getComandos());
+                detector.relatar(escopo);
+            }
+        }
+    }
+
+    private static Object executar(InvocationContext ctx, MetricaMetodo metrica) throws Exception {
+        long inicio = System.nanoTime();
+        Object resultado;
+        try {
+            resultado = ctx.proceed();
+        } catch (Exception e) {
+            metrica.registrarErro(System.nanoTime() - inicio);
+            throw e;
+        }
+        metrica.registrar(System.nanoTime() - inicio, resultado);
+        return resultado;
+    }
+}
@@ -0,0 +1,87 @@
+package br.com.teste.migracao;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Script de migração versionado (classpath db/migracao/V{versao}__{descricao}.sql) e seu checksum SHA-256.
+ */
+public class Migracao {
+
+    private static final Pattern NOME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    private final int versao;
+    private final String descricao;
+    private final String script;
+    private final String sql;
+    private final String checksum;
+
+    private Migracao(int versao, String descricao, String script, String sql) {
+        this.versao = versao;
+        this.descricao = descricao;
+        this.script = script;
+        this.sql = sql;
+        this.checksum = sha256(sql);
+    }
+
+    /** Lê o script da pasta informada no classpath. */
+    public static Migracao carregar(String pasta, String script) throws IOException {
+        Matcher m = NOME.matcher(script);
+        if (!m.matches()) {
+            throw new IllegalArgumentException("Nome de migração inválido (esperado V<n>__<descricao>.sql): " + script);
+        }
+        try (InputStream in = Migracao.class.getClassLoader().getResourceAsStream(pasta + script)) {
+            if (in == null) {
+                throw new IOException("Migração não encontrada no classpath: " + pasta + script);
+            }
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            byte[] b = new byte[4096];
+            int lidos;
+            while ((lidos = in.read(b)) != -1) {
+                buf.write(b, 0, lidos);
+            }
+            // Quebras de linha normalizadas: o checksum não depende do sistema em que o WAR foi gerado
+            String sql = new String(buf.toByteArray(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+            return new Migracao(Integer.parseInt(m.group(1)), m.group(2).replace('_', ' '), script, sql);
+        }
+    }
+
+    private static String sha256(String texto) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(texto.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int getVersao() {
+        return versao;
+    }
+
+    public String getDescricao() {
+        return descricao;
+    }
+
+    public String getScript() {
+        return script;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+}
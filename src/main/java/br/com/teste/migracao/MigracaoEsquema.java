@@ -0,0 +1,330 @@
+package br.com.teste.migracao;
+
+import br.com.teste.config.Configuracao;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionManagement;
+import javax.ejb.TransactionManagementType;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Migrações versionadas do esquema, aplicadas na subida da aplicação (substitui o hbm2ddl).
+ *
+ * - Os scripts ficam em db/migracao no classpath e são aplicados em ordem, cada um em sua transação.
+ * - A tabela esquema_versao registra versão, checksum e data de cada script aplicado; um script já aplicado
+ *   e depois alterado interrompe a subida (crie uma nova versão em vez de editar a antiga).
+ * - Uma trava consultiva (pg_advisory_lock) impede que dois nós do cluster migrem ao mesmo tempo.
+ * - Após migrar, as consultas de {@link #VERIFICACOES} são analisadas com EXPLAIN para confirmar
+ *   que o índice esperado é utilizável, e as de {@link #PARTICOES} para confirmar que o período limita as
+ *   partições lidas (aviso no log quando não for; MigracaoEsquemaTest faz a mesma verificação como teste).
+ *   Linhas na partição DEFAULT de medicamento_receitado (V9) também geram aviso.
+ *
+ * Os demais beans de subida que acessam o banco declaram @DependsOn("MigracaoEsquema").
+ */
+@Singleton
+@Startup
+@TransactionManagement(TransactionManagementType.BEAN)
+public class MigracaoEsquema {
+
+    private static final Logger LOG = Logger.getLogger(MigracaoEsquema.class.getName());
+
+    /** Propriedade para desligar a verificação dos índices via EXPLAIN (padrão: habilitada) */
+    public static final String PROP_VERIFICAR_INDICES = "teste.migracao.verificarIndices";
+
+    private static final String PASTA = "db/migracao/";
+
+    /** Scripts em ordem de aplicação; novas versões entram sempre no fim */
+    static final String[] MIGRACOES = {
+            "V1__esquema_inicial.sql",
+            "V2__indices_consultas.sql",
+            "V3__receita_resumo.sql",
+            "V4__sequencias_pooled.sql",
+            "V5__importacao_historica.sql",
+            "V6__data_emissao_particoes.sql",
+            "V7__arquivo_receitas.sql",
+            "V8__receita_origem.sql",
+            "V9__particao_padrao_itens.sql",
+            "V10__arquivar_particao_padrao.sql"
+    };
+
+    /** Consultas representativas dos repositórios e o índice que deve atendê-las */
+    static final VerificacaoIndice[] VERIFICACOES = {
+            new VerificacaoIndice(2, "ix_receita_paciente",
+                    "select r.id from receita r where r.id_paciente = 1"),
+            new VerificacaoIndice(2, "ix_medicamento_receitado_receita",
+                    "select i.id, i.id_medicamento from medicamento_receitado i where i.id_receita = 1 order by i.id"),
+            new VerificacaoIndice(2, "ix_medicamento_receitado_medicamento",
+                    "select i.id from medicamento_receitado i where i.id_medicamento = 1"),
+            new VerificacaoIndice(2, "ix_paciente_nome_id",
+                    "select p.id from paciente p where (p.nome, p.id) > ('a', 0) order by p.nome, p.id limit 10"),
+            new VerificacaoIndice(2, "ix_medicamento_nome_id",
+                    "select m.id from medicamento m where (m.nome, m.id) > ('a', 0) order by m.nome, m.id limit 10"),
+            new VerificacaoIndice(3, "ix_receita_resumo_total",
+                    "select rr.id_receita from receita_resumo rr order by rr.total_medicamentos desc, rr.id_receita desc limit 10"),
+            new VerificacaoIndice(3, "ix_receita_resumo_paciente_nome",
+                    "select rr.id_receita from receita_resumo rr order by rr.paciente_nome, rr.id_receita limit 10"),
+            new VerificacaoIndice(3, "ix_receita_resumo_medicamento_ids",
+                    "select rr.id_receita from receita_resumo rr where rr.medicamento_ids @> cast(array[1] as bigint[])"),
+            new VerificacaoIndice(6, "ix_receita_resumo_data_emissao",
+                    "select rr.id_receita from receita_resumo rr where rr.data_emissao >= '2020-01-01' " +
+                            "order by rr.data_emissao, rr.id_receita limit 10"),
+            new VerificacaoIndice(7, "ix_receita_data_emissao",
+                    "select r.id from receita r where r.data_emissao >= '2020-01-01' and r.data_emissao < '2020-02-01'"),
+            new VerificacaoIndice(7, "ix_medicamento_receitado_arquivo_receita",
+                    "select i.id, i.id_medicamento from medicamento_receitado_arquivo i where i.id_receita = 1 order by i.id")
+    };
+
+    /** Consultas com período dos repositórios sobre tabelas particionadas e quantas partições devem ler */
+    static final VerificacaoParticao[] PARTICOES = {
+            new VerificacaoParticao(6, "medicamento_receitado",
+                    "select i.id_medicamento, count(*) from medicamento_receitado i " +
+                            "where i.data_emissao >= :inicio and i.data_emissao < :fim group by i.id_medicamento", 1),
+            new VerificacaoParticao(6, "medicamento_receitado",
+                    "select r.id_paciente, count(*) from medicamento_receitado i join receita r on r.id = i.id_receita " +
+                            "where i.data_emissao >= :inicio and i.data_emissao < :fim group by r.id_paciente", 1)
+    };
+
+    /** Chave da trava consultiva da migração */
+    private static final long TRAVA = 4_201_007L;
+
+    @Resource(lookup = "java:/PostgresDS")
+    private DataSource dataSource;
+
+    /** Aplica as migrações pendentes; uma falha impede a subida (o esquema ficaria incompatível com o código). */
+    @PostConstruct
+    public void init() {
+        try (Connection con = dataSource.getConnection()) {
+            con.setAutoCommit(true);
+            try (Statement st = con.createStatement()) {
+                st.execute("select pg_advisory_lock(" + TRAVA + ")");
+            }
+            try {
+                // Já sob a trava: dois nós na primeira subida não criam a tabela ao mesmo tempo
+                try (Statement st = con.createStatement()) {
+                    st.execute("create table if not exists esquema_versao (" +
+                            " versao integer primary key," +
+                            " descricao varchar(200) not null," +
+                            " script varchar(200) not null," +
+                            " checksum varchar(64) not null," +
+                            " aplicado_em timestamp not null default now()," +
+                            " duracao_ms bigint not null)");
+                }
+                migrar(con);
+            } finally {
+                try (Statement st = con.createStatement()) {
+                    st.execute("select pg_advisory_unlock(" + TRAVA + ")");
+                }
+            }
+            if (Configuracao.getBoolean(PROP_VERIFICAR_INDICES, true)) {
+                List<String> falhas = indicesNaoUsados(con);
+                if (falhas.isEmpty()) {
+                    LOG.info("Índices das migrações verificados com EXPLAIN: " + VERIFICACOES.length + " consultas");
+                } else {
+                    LOG.warning("Consultas que não usam o índice esperado: " + falhas);
+                }
+                verificarParticoes(con);
+            }
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Falha ao aplicar as migrações do esquema", e);
+        }
+    }
+
+    private void migrar(Connection con) throws SQLException, IOException {
+        Map<Integer, String> aplicadas = new HashMap<>();
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("select versao, checksum from esquema_versao")) {
+            while (rs.next()) {
+                aplicadas.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+        int aplicadasAgora = 0;
+        for (String script : MIGRACOES) {
+            Migracao m = Migracao.carregar(PASTA, script);
+            String checksum = aplicadas.get(m.getVersao());
+            if (checksum == null) {
+                aplicar(con, m);
+                aplicadasAgora++;
+            } else if (!checksum.equals(m.getChecksum())) {
+                throw new IllegalStateException("Migração " + script + " foi alterada após ser aplicada (checksum "
+                        + checksum + " no banco, " + m.getChecksum() + " no script)");
+            }
+        }
+        LOG.info("Esquema na versão " + MIGRACOES.length + " (" + aplicadasAgora + " migração(ões) aplicada(s) nesta subida)");
+    }
+
+    private void aplicar(Connection con, Migracao m) throws SQLException {
+        long inicio = System.currentTimeMillis();
+        con.setAutoCommit(false);
+        try {
+            try (Statement st = con.createStatement()) {
+                for (String comando : ScriptSql.dividir(m.getSql())) {
+                    st.execute(comando);
+                }
+            }
+            try (PreparedStatement ps = con.prepareStatement(
+                    "insert into esquema_versao (versao, descricao, script, checksum, duracao_ms) values (?, ?, ?, ?, ?)")) {
+                ps.setInt(1, m.getVersao());
+                ps.setString(2, m.getDescricao());
+                ps.setString(3, m.getScript());
+                ps.setString(4, m.getChecksum());
+                ps.setLong(5, System.currentTimeMillis() - inicio);
+                ps.executeUpdate();
+            }
+            con.commit();
+            LOG.info("Migração " + m.getScript() + " aplicada em " + (System.currentTimeMillis() - inicio) + " ms");
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Confere, com varredura sequencial desabilitada (o plano independe do volume atual das tabelas),
+     * se cada consulta representativa é atendida pelo índice esperado. Na subida as falhas viram avisos no log;
+     * o teste da migração (MigracaoEsquemaTest) exige a lista vazia.
+     * @return índices esperados que o plano não usa, com a versão que os criou
+     */
+    List<String> indicesNaoUsados(Connection con) {
+        List<String> falhas = new ArrayList<>();
+        for (VerificacaoIndice v : VERIFICACOES) {
+            try {
+                if (!usaIndice(con, v)) {
+                    falhas.add(v.getIndice() + " (V" + v.getVersao() + ")");
+                }
+            } catch (SQLException e) {
+                LOG.log(Level.WARNING, "Não foi possível verificar o índice " + v.getIndice(), e);
+                falhas.add(v.getIndice() + " (V" + v.getVersao() + ", " + e.getMessage() + ")");
+            }
+        }
+        return falhas;
+    }
+
+    /** Em tabela particionada o plano cita os índices das partições, criados a partir do índice da tabela. */
+    private boolean usaIndice(Connection con, VerificacaoIndice v) throws SQLException {
+        List<String> indices = new ArrayList<>();
+        indices.add(v.getIndice());
+        try (PreparedStatement ps = con.prepareStatement("select c.relname from pg_inherits h " +
+                "join pg_class c on c.oid = h.inhrelid where h.inhparent = to_regclass(?)")) {
+            ps.setString(1, v.getIndice());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    indices.add(rs.getString(1));
+                }
+            }
+        }
+        String plano = explicar(con, v.getConsulta(), true);
+        for (String indice : indices) {
+            if (plano.contains(" " + indice + " ") || plano.contains(" " + indice + "\n")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Confere se cada consulta com período lê só as partições esperadas, com o mês corrente como período
+     * (a partição existe desde a migração). Apenas registra avisos.
+     */
+    private void verificarParticoes(Connection con) {
+        List<String> falhas = particoesForaDoPeriodo(con);
+        if (falhas.isEmpty()) {
+            LOG.info("Poda de partições verificada com EXPLAIN: " + PARTICOES.length + " consultas");
+        } else {
+            LOG.warning("Consultas com período que leem partições fora do período: " + falhas);
+        }
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("select count(*), min(data_emissao), max(data_emissao) " +
+                     "from medicamento_receitado_padrao")) {
+            rs.next();
+            if (rs.getLong(1) > 0) {
+                LOG.warning(rs.getLong(1) + " item(ns) na partição padrão de medicamento_receitado (emissão de "
+                        + rs.getTimestamp(2) + " a " + rs.getTimestamp(3) + "): crie os meses com "
+                        + "criar_particoes_medicamento_receitado(inicio, fim), que move as linhas");
+            }
+        } catch (SQLException e) {
+            LOG.log(Level.WARNING, "Não foi possível verificar a partição padrão de medicamento_receitado", e);
+        }
+    }
+
+    /**
+     * Partições lidas por cada consulta de {@link #PARTICOES} com o mês corrente como período. Conta as partições
+     * mensais distintas do plano (os índices delas aparecem como "Index Scan on ..._idx") e a partição padrão
+     * (tabela_padrao), que só é lida se o mês não tiver partição. O teste da migração exige a lista vazia.
+     * @return consultas que leem partições diferentes das esperadas, com a versão e as partições lidas
+     */
+    List<String> particoesForaDoPeriodo(Connection con) {
+        LocalDate mes = LocalDate.now().withDayOfMonth(1);
+        List<String> falhas = new ArrayList<>();
+        for (VerificacaoParticao v : PARTICOES) {
+            String consulta = v.getConsulta()
+                    .replace(":inicio", "timestamp '" + mes + "'")
+                    .replace(":fim", "timestamp '" + mes.plusMonths(1) + "'");
+            try {
+                String plano = explicar(con, consulta, false);
+                Set<String> lidas = particoesLidas(plano, v.getTabela());
+                boolean padrao = Pattern.compile(" on " + Pattern.quote(v.getTabela() + "_padrao") + "(?!\\w)")
+                        .matcher(plano).find();
+                if (lidas.size() != v.getParticoes() || padrao) {
+                    falhas.add(v.getTabela() + " (V" + v.getVersao() + ", " + lidas.size() + " partições em vez de "
+                            + v.getParticoes() + ": " + lidas + (padrao ? " e a partição padrão" : "") + ")");
+                }
+            } catch (SQLException e) {
+                LOG.log(Level.WARNING, "Não foi possível verificar as partições de " + v.getTabela(), e);
+                falhas.add(v.getTabela() + " (V" + v.getVersao() + ", " + e.getMessage() + ")");
+            }
+        }
+        return falhas;
+    }
+
+    /** Partições mensais (tabela_pAAAA_MM) distintas citadas no plano, sem os índices delas. */
+    static Set<String> particoesLidas(String plano, String tabela) {
+        Set<String> lidas = new TreeSet<>();
+        Matcher m = Pattern.compile(" on (" + Pattern.quote(tabela) + "_p\\d{4}_\\d{2})(?!\\w)").matcher(plano);
+        while (m.find()) {
+            lidas.add(m.group(1));
+        }
+        return lidas;
+    }
+
+    /** Plano (EXPLAIN) da consulta, opcionalmente com varredura sequencial desabilitada. */
+    private static String explicar(Connection con, String consulta, boolean semVarreduraSequencial) throws SQLException {
+        con.setAutoCommit(false);
+        try (Statement st = con.createStatement()) {
+            if (semVarreduraSequencial) {
+                st.execute("set local enable_seqscan = off");
+            }
+            StringBuilder plano = new StringBuilder();
+            try (ResultSet rs = st.executeQuery("explain " + consulta)) {
+                while (rs.next()) {
+                    plano.append(rs.getString(1)).append('\n');
+                }
+            }
+            return plano.toString();
+        } finally {
+            con.rollback();
+            con.setAutoCommit(true);
+        }
+    }
+}
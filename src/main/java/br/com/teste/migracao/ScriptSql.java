@@ -0,0 +1,90 @@
+package br.com.teste.migracao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Divisão de um script SQL em comandos individuais (separados por ";"), para execução via JDBC.
+ * Respeita comentários de linha (--), literais entre aspas simples e blocos dollar-quoted ($$ ... $$, $tag$ ... $tag$),
+ * de modo que corpos de funções e blocos DO podem conter ";".
+ */
+public final class ScriptSql {
+
+    private ScriptSql() {
+    }
+
+    /** Comandos do script, sem o ";" final e sem comandos vazios. */
+    public static List<String> dividir(String script) {
+        List<String> comandos = new ArrayList<>();
+        StringBuilder atual = new StringBuilder();
+        int i = 0;
+        int n = script.length();
+        while (i < n) {
+            char c = script.charAt(i);
+            if (c == '-' && i + 1 < n && script.charAt(i + 1) == '-') {
+                // comentário até o fim da linha (descartado)
+                int fim = script.indexOf('\n', i);
+                i = fim < 0 ? n : fim;
+            } else if (c == '\'') {
+                int fim = fimLiteral(script, i);
+                atual.append(script, i, fim);
+                i = fim;
+            } else if (c == '$') {
+                String tag = tagDollar(script, i);
+                if (tag != null) {
+                    int fecha = script.indexOf(tag, i + tag.length());
+                    int fim = fecha < 0 ? n : fecha + tag.length();
+                    atual.append(script, i, fim);
+                    i = fim;
+                } else {
+                    atual.append(c);
+                    i++;
+                }
+            } else if (c == ';') {
+                adicionar(comandos, atual);
+                atual.setLength(0);
+                i++;
+            } else {
+                atual.append(c);
+                i++;
+            }
+        }
+        adicionar(comandos, atual);
+        return comandos;
+    }
+
+    /** Posição logo após o literal iniciado em inicio ('' dentro do literal é aspa escapada). */
+    private static int fimLiteral(String s, int inicio) {
+        int i = inicio + 1;
+        while (i < s.length()) {
+            if (s.charAt(i) == '\'') {
+                if (i + 1 < s.length() && s.charAt(i + 1) == '\'') {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return s.length();
+    }
+
+    /** Delimitador dollar-quote ($$ ou $tag$) iniciado em inicio, ou null se não for um. */
+    private static String tagDollar(String s, int inicio) {
+        int i = inicio + 1;
+        while (i < s.length() && (Character.isLetterOrDigit(s.charAt(i)) || s.charAt(i) == '_')) {
+            i++;
+        }
+        if (i < s.length() && s.charAt(i) == '$') {
+            return s.substring(inicio, i + 1);
+        }
+        return null;
+    }
+
+    private static void adicionar(List<String> comandos, StringBuilder sql) {
+        String comando = sql.toString().trim();
+        if (!comando.isEmpty()) {
+            comandos.add(comando);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package br.com.teste.migracao;
+
+/**
+ * Consulta representativa e o índice que uma migração criou para atendê-la.
+ * Verificada com EXPLAIN após as migrações (ver {@link MigracaoEsquema}).
+ */
+public class VerificacaoIndice {
+
+    private final int versao;
+    private final String indice;
+    private final String consulta;
+
+    public VerificacaoIndice(int versao, String indice, String consulta) {
+        this.versao = versao;
+        this.indice = indice;
+        this.consulta = consulta;
+    }
+
+    /** Versão da migração que criou o índice */
+    public int getVersao() {
+        return versao;
+    }
+
+    public String getIndice() {
+        return indice;
+    }
+
+    public String getConsulta() {
+        return consulta;
+    }
+}
@@ -0,0 +1,43 @@
+package br.com.teste.migracao;
+
+/**
+ * Consulta com período sobre uma tabela particionada por mês e a quantidade de partições que o plano deve ler
+ * (as demais descartadas pelo partition pruning). Verificada com EXPLAIN após as migrações (ver {@link MigracaoEsquema}).
+ * A partição padrão (tabela_padrao, V9) não conta entre as esperadas: lida, é falha.
+ *
+ * Na consulta, :inicio e :fim são substituídos por literais do primeiro dia do mês corrente e do seguinte
+ * (literais, e não parâmetros, para que a poda aconteça já no planejamento e apareça no plano).
+ */
+public class VerificacaoParticao {
+
+    private final int versao;
+    private final String tabela;
+    private final String consulta;
+    private final int particoes;
+
+    public VerificacaoParticao(int versao, String tabela, String consulta, int particoes) {
+        this.versao = versao;
+        this.tabela = tabela;
+        this.consulta = consulta;
+        this.particoes = particoes;
+    }
+
+    /** Versão da migração que particionou a tabela */
+    public int getVersao() {
+        return versao;
+    }
+
+    /** Tabela particionada; as partições mensais são reconhecidas no plano pelo nome tabela_pAAAA_MM */
+    public String getTabela() {
+        return tabela;
+    }
+
+    public String getConsulta() {
+        return consulta;
+    }
+
+    /** Quantidade de partições que o plano deve ler */
+    public int getParticoes() {
+        return particoes;
+    }
+}
@@ -1,5 +1,8 @@
 package br.com.teste.model;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Size;
@@ -9,14 +12,19 @@ import java.util.Objects;
 /**
  * Entidade JPA que representa um Medicamento.
  * Campos mínimos para atender aos requisitos: id e nome.
+ *
+ * Em cache de segundo nível (READ_WRITE): lido com muito mais frequência do que alterado.
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "medicamento")
 public class Medicamento implements Serializable {
 
-    /** Identificador gerado automaticamente (chave primária) */
+    /** Identificador gerado automaticamente (chave primária), da sequência medicamento_id_seq (blocos de 50) */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "medicamento_seq")
+    @SequenceGenerator(name = "medicamento_seq", sequenceName = "medicamento_id_seq", allocationSize = 50)
     private Long id;
 
     /** Nome do medicamento (obrigatório, até 150 caracteres) */
@@ -3,6 +3,7 @@ package br.com.teste.model;
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
+import java.util.Date;
 import java.util.Objects;
 
 /**
@@ -13,9 +14,10 @@ import java.util.Objects;
 @Table(name = "medicamento_receitado")
 public class MedicamentoReceitado implements Serializable {
 
-    /** Identificador gerado automaticamente (idMedicamentoReceitado - chave primária) */
+    /** Identificador gerado automaticamente (idMedicamentoReceitado - chave primária), da sequência medicamento_receitado_id_seq (blocos de 50) */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "medicamento_receitado_seq")
+    @SequenceGenerator(name = "medicamento_receitado_seq", sequenceName = "medicamento_receitado_id_seq", allocationSize = 50)
     private Long id;
 
     /** Receita à qual este item pertence */
@@ -30,6 +32,14 @@ public class MedicamentoReceitado implements Serializable {
     @JoinColumn(name = "id_medicamento", nullable = false, foreignKey = @ForeignKey(name = "fk_item_medicamento"))
     private Medicamento medicamento;
 
+    /**
+     * Data de emissão da receita, repetida no item: é a chave de partição de medicamento_receitado (uma partição
+     * por mês), o que permite às consultas com período ler só os meses pedidos sem juntar com a receita
+     */
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "data_emissao", nullable = false, updatable = false)
+    private Date dataEmissao;
+
     /** Construtor padrão exigido pelo JPA */
     public MedicamentoReceitado() {
     }
@@ -62,6 +72,18 @@ public class MedicamentoReceitado implements Serializable {
         this.medicamento = medicamento;
     }
 
+    public Date getDataEmissao() {
+        return dataEmissao;
+    }
+
+    /** Copia a data de emissão da receita (persistida antes dos itens). */
+    @PrePersist
+    void definirDataEmissao() {
+        if (dataEmissao == null) {
+            dataEmissao = receita != null && receita.getDataEmissao() != null ? receita.getDataEmissao() : new Date();
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
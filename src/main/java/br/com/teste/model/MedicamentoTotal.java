@@ -0,0 +1,60 @@
+package br.com.teste.model;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Contador agregado de prescrições por medicamento: quantas vezes o medicamento foi prescrito (itens de receita).
+ * Mantido na mesma transação das inclusões/exclusões de itens (TotaisPrescricaoRepository),
+ * permite montar o relatório sem reagregar a tabela medicamento_receitado.
+ */
+@Entity
+@Table(name = "medicamento_total", indexes = {
+        @Index(name = "ix_medicamento_total_total", columnList = "total DESC")
+})
+public class MedicamentoTotal implements Serializable {
+
+    /** ID do medicamento (chave primária, derivada da associação abaixo) */
+    @Id
+    private Long medicamentoId;
+
+    /** Medicamento ao qual o contador se refere */
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "id_medicamento", foreignKey = @ForeignKey(name = "fk_medicamento_total_medicamento"))
+    private Medicamento medicamento;
+
+    /** Quantidade de itens de receita */
+    @Column(name = "total", nullable = false)
+    private Long total;
+
+    /** Construtor padrão exigido pelo JPA */
+    public MedicamentoTotal() {
+    }
+
+    public Long getMedicamentoId() {
+        return medicamentoId;
+    }
+
+    public Medicamento getMedicamento() {
+        return medicamento;
+    }
+
+    public Long getTotal() {
+        return total;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MedicamentoTotal that = (MedicamentoTotal) o;
+        return Objects.equals(medicamentoId, that.medicamentoId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(medicamentoId);
+    }
+}
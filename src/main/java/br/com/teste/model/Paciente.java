@@ -1,5 +1,8 @@
 package br.com.teste.model;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Size;
@@ -9,16 +12,21 @@ import java.util.Objects;
 /**
  * Entidade JPA que representa um Paciente.
  * Possui restrição de unicidade no CPF (uk_paciente_cpf) e validações básicas.
+ *
+ * Em cache de segundo nível (READ_WRITE): lido com muito mais frequência do que alterado.
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "paciente", uniqueConstraints = {
         @UniqueConstraint(name = "uk_paciente_cpf", columnNames = {"cpf"})
 })
 public class Paciente implements Serializable {
 
-    /** Identificador gerado automaticamente (chave primária) */
+    /** Identificador gerado automaticamente (chave primária), da sequência paciente_id_seq (blocos de 50) */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "paciente_seq")
+    @SequenceGenerator(name = "paciente_seq", sequenceName = "paciente_id_seq", allocationSize = 50)
     private Long id;
 
     /** Nome completo do paciente (obrigatório, até 150 caracteres) */
@@ -0,0 +1,61 @@
+package br.com.teste.model;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Contador agregado de prescrições por paciente: quantos medicamentos foram prescritos ao paciente,
+ * somando todas as suas receitas.
+ * Mantido na mesma transação das inclusões/exclusões de itens (TotaisPrescricaoRepository),
+ * permite montar o relatório sem reagregar a tabela medicamento_receitado.
+ */
+@Entity
+@Table(name = "paciente_total", indexes = {
+        @Index(name = "ix_paciente_total_total", columnList = "total DESC")
+})
+public class PacienteTotal implements Serializable {
+
+    /** ID do paciente (chave primária, derivada da associação abaixo) */
+    @Id
+    private Long pacienteId;
+
+    /** Paciente ao qual o contador se refere */
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "id_paciente", foreignKey = @ForeignKey(name = "fk_paciente_total_paciente"))
+    private Paciente paciente;
+
+    /** Quantidade de itens de receita */
+    @Column(name = "total", nullable = false)
+    private Long total;
+
+    /** Construtor padrão exigido pelo JPA */
+    public PacienteTotal() {
+    }
+
+    public Long getPacienteId() {
+        return pacienteId;
+    }
+
+    public Paciente getPaciente() {
+        return paciente;
+    }
+
+    public Long getTotal() {
+        return total;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PacienteTotal that = (PacienteTotal) o;
+        return Objects.equals(pacienteId, that.pacienteId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(pacienteId);
+    }
+}
@@ -4,6 +4,7 @@ import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Objects;
 
@@ -15,9 +16,10 @@ import java.util.Objects;
 @Table(name = "receita")
 public class Receita implements Serializable {
 
-    /** Identificador gerado automaticamente (idReceita - chave primária) */
+    /** Identificador gerado automaticamente (idReceita - chave primária), da sequência receita_id_seq (blocos de 50) */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "receita_seq")
+    @SequenceGenerator(name = "receita_seq", sequenceName = "receita_id_seq", allocationSize = 50)
     private Long id;
 
     /** Paciente ao qual a receita pertence (idPaciente) */
@@ -26,6 +28,11 @@ public class Receita implements Serializable {
     @JoinColumn(name = "id_paciente", nullable = false, foreignKey = @ForeignKey(name = "fk_receita_paciente"))
     private Paciente paciente;
 
+    /** Data e hora de emissão (chave de partição dos itens); definida na inclusão e não alterada depois */
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "data_emissao", nullable = false, updatable = false)
+    private Date dataEmissao;
+
     /** Itens (medicamentos receitados) desta receita */
     @OneToMany(mappedBy = "receita", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<MedicamentoReceitado> itens = new ArrayList<>();
@@ -54,6 +61,22 @@ public class Receita implements Serializable {
         this.paciente = paciente;
     }
 
+    public Date getDataEmissao() {
+        return dataEmissao;
+    }
+
+    public void setDataEmissao(Date dataEmissao) {
+        this.dataEmissao = dataEmissao;
+    }
+
+    /** Receita nova sem data informada é emitida agora. */
+    @PrePersist
+    void definirDataEmissao() {
+        if (dataEmissao == null) {
+            dataEmissao = new Date();
+        }
+    }
+
     public List<MedicamentoReceitado> getItens() {
         return itens;
     }
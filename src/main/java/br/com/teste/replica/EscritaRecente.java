@@ -0,0 +1,79 @@
+package br.com.teste.replica;
+
+import br.com.teste.transacao.AposCommit;
+
+import javax.transaction.Status;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.io.Serializable;
+import java.util.concurrent.Callable;
+
+/**
+ * Momento da última escrita confirmada de um usuário (guardado na sessão HTTP e vinculado à thread da requisição
+ * pelo EscritaRecenteFilter). Enquanto a escrita for recente, as leituras desse usuário ficam no primário,
+ * para que ele veja o que acabou de gravar mesmo com atraso na replicação.
+ */
+public class EscritaRecente implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Atributo da sessão HTTP */
+    public static final String ATRIBUTO = EscritaRecente.class.getName();
+
+    /** Recurso da transação JTA marcado quando ela já escreveu no primário */
+    private static final String CHAVE_TRANSACAO = EscritaRecente.class.getName() + ".transacao";
+
+    private static final ThreadLocal<EscritaRecente> ATUAL = new ThreadLocal<>();
+
+    /** System.currentTimeMillis da última escrita confirmada (a sessão pode migrar de nó) */
+    private volatile long ultimaEscrita;
+
+    /** Vincula a marca do usuário à thread da requisição (null desvincula). */
+    public static void vincular(EscritaRecente marca) {
+        if (marca != null) {
+            ATUAL.set(marca);
+        } else {
+            ATUAL.remove();
+        }
+    }
+
+    /**
+     * Tarefa que roda com a marca do usuário da thread atual vinculada (para tarefas entregues a um executor,
+     * cujas threads não passam pelo filtro da requisição).
+     */
+    public static <T> Callable<T> propagar(Callable<T> tarefa) {
+        EscritaRecente marca = ATUAL.get();
+        return () -> {
+            vincular(marca);
+            try {
+                return tarefa.call();
+            } finally {
+                vincular(null);
+            }
+        };
+    }
+
+    /**
+     * Registra uma escrita no primário: a transação corrente passa a ler do primário e, após o commit,
+     * a marca do usuário da requisição (se houver) é atualizada.
+     */
+    public static void registrar(TransactionSynchronizationRegistry registry) {
+        if (registry != null && registry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            registry.putResource(CHAVE_TRANSACAO, Boolean.TRUE);
+        }
+        EscritaRecente marca = ATUAL.get();
+        if (marca != null) {
+            AposCommit.executar(registry, () -> marca.ultimaEscrita = System.currentTimeMillis());
+        }
+    }
+
+    /** Se a leitura deve ir ao primário: escrita na transação corrente ou escrita do usuário dentro da janela. */
+    static boolean exigePrimario(TransactionSynchronizationRegistry registry, long janelaMs) {
+        if (registry != null && registry.getTransactionStatus() == Status.STATUS_ACTIVE
+                && registry.getResource(CHAVE_TRANSACAO) != null) {
+            return true;
+        }
+        EscritaRecente marca = ATUAL.get();
+        return marca != null && marca.ultimaEscrita != 0
+                && System.currentTimeMillis() - marca.ultimaEscrita < janelaMs;
+    }
+}
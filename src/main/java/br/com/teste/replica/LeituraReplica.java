@@ -0,0 +1,18 @@
+package br.com.teste.replica;
+
+import javax.interceptor.InterceptorBinding;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marca métodos de repositório somente-leitura que podem ser atendidos pela réplica de leitura
+ * ({@link LeituraReplicaInterceptor}). O método deve fazer as consultas pelo EntityManager de
+ * {@link ReplicaLeitura#ou(javax.persistence.EntityManager)}, que é o do primário quando a chamada não foi roteada.
+ */
+@InterceptorBinding
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface LeituraReplica {
+}
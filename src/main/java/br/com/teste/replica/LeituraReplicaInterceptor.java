@@ -0,0 +1,69 @@
+package br.com.teste.replica;
+
+import org.hibernate.Session;
+
+import javax.annotation.Priority;
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.Interceptor;
+import javax.interceptor.InvocationContext;
+import javax.persistence.EntityManager;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.io.Serializable;
+
+/**
+ * Decide, a cada chamada de um método {@link LeituraReplica}, se ela vai à réplica ou fica no primário.
+ * Fica no primário quando a réplica está desabilitada, quando a transação corrente já escreveu ou quando o
+ * usuário da requisição escreveu há menos de teste.replica.janelaEscrita ms ({@link EscritaRecente}).
+ * Chamadas aninhadas reaproveitam o EntityManager da réplica da chamada externa.
+ *
+ * O EntityManager da réplica não participa da transação JTA: uma leitura roteada dentro de uma transação que
+ * também usa o primário não vira uma transação distribuída.
+ */
+@LeituraReplica
+@Interceptor
+@Priority(Interceptor.Priority.APPLICATION + 10)
+public class LeituraReplicaInterceptor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Inject
+    private ReplicaLeitura replica;
+
+    @Resource
+    private TransactionSynchronizationRegistry registry;
+
+    @AroundInvoke
+    public Object rotear(InvocationContext ctx) throws Exception {
+        if (ReplicaLeitura.emAndamento()) {
+            return ctx.proceed();
+        }
+        if (!replica.isHabilitada() || EscritaRecente.exigePrimario(registry, replica.janelaEscrita())) {
+            replica.contarPrimario();
+            return ctx.proceed();
+        }
+        EntityManager em = replica.criarEntityManager();
+        if (em == null) {
+            replica.contarPrimario();
+            return ctx.proceed();
+        }
+        replica.contarReplica();
+        ReplicaLeitura.vincular(em);
+        try {
+            // Transação local somente para leitura: snapshot único e cursores no servidor (percorrer*)
+            em.getTransaction().begin();
+            em.unwrap(Session.class).setDefaultReadOnly(true);
+            return ctx.proceed();
+        } finally {
+            ReplicaLeitura.vincular(null);
+            try {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+            } finally {
+                em.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package br.com.teste.replica;
+
+import br.com.teste.config.Configuracao;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Unidade de persistência da réplica de leitura (testeLeituraPU): RESOURCE_LOCAL sobre um DataSource não-JTA,
+ * sem cache de segundo nível, criada na primeira leitura roteada. Não é gerenciada pelo WildFly
+ * (jboss.as.jpa.managed=false), então a aplicação sobe mesmo sem o DataSource da réplica quando ela está
+ * desabilitada.
+ *
+ * Cada chamada roteada usa um EntityManager próprio, em uma transação local somente-leitura encerrada
+ * com rollback ao fim do método. O EntityManager da chamada em andamento fica na thread ({@link #ou}).
+ */
+@ApplicationScoped
+public class ReplicaLeitura {
+
+    private static final Logger LOG = Logger.getLogger(ReplicaLeitura.class.getName());
+
+    /** Roteia os métodos {@link LeituraReplica} para a réplica (padrão false: tudo no primário). */
+    public static final String PROP_HABILITADA = "teste.replica.habilitada";
+
+    /** JNDI do DataSource (não-JTA) da réplica. */
+    public static final String PROP_DATASOURCE = "teste.replica.datasource";
+
+    /** Tempo, após uma escrita confirmada, em que as leituras do mesmo usuário ficam no primário (ms). */
+    public static final String PROP_JANELA_ESCRITA = "teste.replica.janelaEscrita";
+
+    private static final String UNIDADE = "testeLeituraPU";
+
+    private static final ThreadLocal<EntityManager> ATUAL = new ThreadLocal<>();
+
+    private final LongAdder leiturasReplica = new LongAdder();
+    private final LongAdder leiturasPrimario = new LongAdder();
+
+    private EntityManagerFactory emf;
+
+    /** Se a DataSource da réplica falhou ao iniciar (não tenta de novo até o próximo deploy) */
+    private volatile boolean indisponivel;
+
+    /**
+     * EntityManager da chamada roteada para a réplica em andamento na thread, ou o primário informado.
+     * Usado pelos métodos {@link LeituraReplica} em todas as consultas.
+     */
+    public static EntityManager ou(EntityManager primario) {
+        EntityManager replica = ATUAL.get();
+        return replica != null ? replica : primario;
+    }
+
+    static boolean emAndamento() {
+        return ATUAL.get() != null;
+    }
+
+    static void vincular(EntityManager em) {
+        if (em != null) {
+            ATUAL.set(em);
+        } else {
+            ATUAL.remove();
+        }
+    }
+
+    public boolean isHabilitada() {
+        return !indisponivel && Configuracao.getBoolean(PROP_HABILITADA, false);
+    }
+
+    long janelaEscrita() {
+        return Configuracao.getLong(PROP_JANELA_ESCRITA, 5000L);
+    }
+
+    /**
+     * Se uma leitura roteada para a réplica pode ainda não refletir uma escrita confirmada no primário
+     * no momento informado (System.currentTimeMillis), por estar dentro da janela de atraso da replicação.
+     */
+    public boolean podeEstarDefasada(long escritaEm) {
+        return isHabilitada() && System.currentTimeMillis() - escritaEm < janelaEscrita();
+    }
+
+    /** EntityManager novo sobre a réplica, ou null se a unidade não pôde ser criada. */
+    EntityManager criarEntityManager() {
+        EntityManagerFactory f = fabrica();
+        return f != null ? f.createEntityManager() : null;
+    }
+
+    private synchronized EntityManagerFactory fabrica() {
+        if (emf == null && !indisponivel) {
+            Map<String, Object> propriedades = new HashMap<>();
+            propriedades.put("javax.persistence.nonJtaDataSource",
+                    Configuracao.getString(PROP_DATASOURCE, "java:/PostgresReplicaDS"));
+            try {
+                emf = Persistence.createEntityManagerFactory(UNIDADE, propriedades);
+            } catch (RuntimeException e) {
+                indisponivel = true;
+                LOG.log(Level.WARNING, "Réplica de leitura indisponível; as leituras seguem no primário", e);
+            }
+        }
+        return emf;
+    }
+
+    void contarReplica() {
+        leiturasReplica.increment();
+    }
+
+    void contarPrimario() {
+        leiturasPrimario.increment();
+    }
+
+    /** Chamadas {@link LeituraReplica} atendidas pela réplica desde a subida. */
+    public long getLeiturasReplica() {
+        return leiturasReplica.sum();
+    }
+
+    /** Chamadas {@link LeituraReplica} mantidas no primário (desabilitada, escrita recente ou na transação). */
+    public long getLeiturasPrimario() {
+        return leiturasPrimario.sum();
+    }
+
+    @PreDestroy
+    synchronized void fechar() {
+        if (emf != null) {
+            emf.close();
+            emf = null;
+        }
+    }
+}
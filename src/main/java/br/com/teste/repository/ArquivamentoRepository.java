@@ -0,0 +1,95 @@
+package br.com.teste.repository;
+
+import br.com.teste.cache.ConsultaNativa;
+import br.com.teste.cache.VersaoTabelas;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TemporalType;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Repositório (EJB Stateless) do arquivamento das receitas antigas (ver ArquivamentoJob): move as receitas
+ * de um mês, com os itens, das tabelas quentes para receita_arquivo e medicamento_receitado_arquivo e remove
+ * as partições de itens que ficaram vazias. Cada método roda em sua transação.
+ *
+ * A idade é contada em meses inteiros: com idade N, são arquivados os meses anteriores ao mês corrente menos N.
+ * Os contadores agregados (medicamento_total, paciente_total) não mudam: os itens arquivados continuam contados.
+ */
+@Stateless
+public class ArquivamentoRepository {
+
+    /** Espera máxima pelo bloqueio da tabela de itens ao remover uma partição (consultas longas em andamento) */
+    private static final String ESPERA_BLOQUEIO = "5s";
+
+    /** EntityManager JTA injetado pelo container (WildFly), atrelado ao PU "testePU" */
+    @PersistenceContext(unitName = "testePU")
+    private EntityManager em;
+
+    /** Versões de alteração por tabela (invalida caches de contagem) */
+    @Inject
+    private VersaoTabelas versoes;
+
+    /**
+     * Primeiro dia do mês da receita mais antiga, se ela já tiver a idade de arquivamento; senão null.
+     * @param meses idade em meses
+     */
+    public Date proximoMes(int meses) {
+        List<?> mes = em.createNativeQuery("select date_trunc('month', min(r.data_emissao)) from receita r " +
+                "having min(r.data_emissao) < date_trunc('month', localtimestamp) - make_interval(months => :meses)")
+                .setParameter("meses", meses)
+                .getResultList();
+        return mes.isEmpty() ? null : (Date) mes.get(0);
+    }
+
+    /**
+     * Move as receitas emitidas no mês (e os seus itens) para o arquivo (função da migração V7). A partição de
+     * itens do mês fica bloqueada até o commit e termina vazia; em um mês sem partição os itens saem da partição
+     * padrão (V10).
+     * @return quantidade de receitas arquivadas
+     */
+    public int arquivarMes(Date mes) {
+        Number movidas = (Number) ConsultaNativa.escrita(em, "select arquivar_receitas_mes(:mes)",
+                "receita", "medicamento_receitado", "receita_resumo", "receita_arquivo", "medicamento_receitado_arquivo")
+                .setParameter("mes", mes, TemporalType.TIMESTAMP)
+                .getSingleResult();
+        versoes.registrarAlteracao(VersaoTabelas.RECEITA);
+        return movidas.intValue();
+    }
+
+    /** Partições de medicamento_receitado dos meses com a idade de arquivamento, da mais antiga à mais nova. */
+    @SuppressWarnings("unchecked")
+    public List<String> particoesArquivadas(int meses) {
+        return em.createNativeQuery("select c.relname from pg_inherits h join pg_class c on c.oid = h.inhrelid " +
+                "where h.inhparent = to_regclass('medicamento_receitado') " +
+                "and c.relname < 'medicamento_receitado_p' || " +
+                "to_char(date_trunc('month', localtimestamp) - make_interval(months => :meses), 'YYYY_MM') " +
+                "order by c.relname")
+                .setParameter("meses", meses)
+                .getResultList();
+    }
+
+    /**
+     * Remove a partição se estiver vazia. Remover uma partição bloqueia medicamento_receitado inteira por um
+     * instante: se o bloqueio não vier em {@value #ESPERA_BLOQUEIO} (consultas longas em andamento), desiste
+     * com erro, sem travar as demais consultas na fila, e a partição fica para a próxima execução.
+     * @return true se a partição foi removida
+     */
+    public boolean removerParticaoVazia(String particao) {
+        em.createNativeQuery("select set_config('lock_timeout', :espera, true)")
+                .setParameter("espera", ESPERA_BLOQUEIO)
+                .getSingleResult();
+        String nome = "\"" + particao.replace("\"", "\"\"") + "\"";
+        // Mesma ordem de bloqueio das inclusões de itens (tabela particionada, depois a partição)
+        ConsultaNativa.escrita(em, "lock table medicamento_receitado, " + nome + " in access exclusive mode",
+                "medicamento_receitado").executeUpdate();
+        boolean vazia = em.createNativeQuery("select 1 from " + nome + " limit 1").getResultList().isEmpty();
+        if (vazia) {
+            ConsultaNativa.escrita(em, "drop table " + nome, "medicamento_receitado").executeUpdate();
+        }
+        return vazia;
+    }
+}
@@ -1,17 +1,27 @@
 package br.com.teste.repository;
 
+import br.com.teste.analitico.ItensColunares;
+import br.com.teste.busca.BuscaTexto;
+import br.com.teste.busca.EsquemaBusca;
+import br.com.teste.busca.IndiceAutocomplete;
+import br.com.teste.cache.VersaoTabelas;
+import br.com.teste.estatistica.ContadoresPrescricao;
+import br.com.teste.metrica.Monitorado;
 import br.com.teste.model.Medicamento;
 import org.primefaces.model.FilterMeta;
 
 import javax.ejb.Stateless;
+import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -20,12 +30,37 @@ import java.util.Map;
  * Usa JPA com Criteria API para paginação, ordenação e filtros (por nome).
  */
 @Stateless
+@Monitorado
 public class MedicamentoRepository {
 
     /** EntityManager JTA injetado pelo container (WildFly), atrelado ao PU "testePU" */
     @PersistenceContext(unitName = "testePU")
     private EntityManager em;
 
+    /** Versões de alteração por tabela (invalida caches de contagem) */
+    @Inject
+    private VersaoTabelas versoes;
+
+    /** Indica se a busca por nome pode usar os índices de trigramas (pg_trgm + unaccent) */
+    @Inject
+    private EsquemaBusca esquemaBusca;
+
+    /** Contadores em memória do painel (mantém o nome exibido atualizado) */
+    @Inject
+    private ContadoresPrescricao contadores;
+
+    /** Índice em memória do autocomplete da tela de receita */
+    @Inject
+    private IndiceAutocomplete indiceAutocomplete;
+
+    /** Itens em colunas na memória (nomes exibidos no relatório) */
+    @Inject
+    private ItensColunares itensColunares;
+
+    /** Modelo de leitura da consulta "Medicamentos por Paciente" (nomes desnormalizados) */
+    @Inject
+    private ReceitaResumoRepository resumoRepository;
+
     /** Busca um medicamento pelo identificador (chave primária). */
     public Medicamento findById(Long id) {
         return em.find(Medicamento.class, id);
@@ -36,12 +71,21 @@ public class MedicamentoRepository {
      * Força um flush para que violações sejam detectadas imediatamente.
      */
     public void save(Medicamento m) {
-        if (m.getId() == null) {
+        boolean novo = m.getId() == null;
+        if (novo) {
             em.persist(m);
         } else {
             em.merge(m);
         }
         em.flush();
+        if (!novo) {
+            // Cadastro alterado: propaga o nome para as receitas já resumidas
+            resumoRepository.atualizarNomeMedicamento(m.getId());
+        }
+        versoes.registrarAlteracao(VersaoTabelas.MEDICAMENTO);
+        contadores.registrarNomeMedicamento(m.getId(), m.getNome());
+        indiceAutocomplete.registrarMedicamento(m.getId(), m.getNome());
+        itensColunares.registrarMedicamento(m.getId(), m.getNome());
     }
 
     /** Remove o medicamento, se existir, pelo ID informado. */
@@ -49,6 +93,9 @@ public class MedicamentoRepository {
         Medicamento managed = findById(id);
         if (managed != null) {
             em.remove(managed);
+            versoes.registrarAlteracao(VersaoTabelas.MEDICAMENTO);
+            indiceAutocomplete.removerMedicamento(id);
+            itensColunares.removerMedicamento(id);
         }
     }
 
@@ -69,12 +116,8 @@ public class MedicamentoRepository {
         List<Predicate> predicates = buildPredicates(cb, root, filters);
         cq.where(predicates.toArray(new Predicate[0]));
 
-        // Ordenação configurável; default por nome ASC
-        if (sortField != null && !sortField.isEmpty()) {
-            cq.orderBy(asc ? cb.asc(root.get(sortField)) : cb.desc(root.get(sortField)));
-        } else {
-            cq.orderBy(cb.asc(root.get("nome")));
-        }
+        // Ordenação configurável; default por nome ASC, com o ID como desempate
+        aplicarOrdenacao(cb, cq, root, sortField, asc);
 
         TypedQuery<Medicamento> query = em.createQuery(cq);
         query.setFirstResult(first);
@@ -82,6 +125,37 @@ public class MedicamentoRepository {
         return query.getResultList();
     }
 
+    /**
+     * Retorna uma página de Medicamento por paginação keyset (seek), sem OFFSET:
+     * a consulta parte da linha de referência (coluna de ordenação + ID como desempate).
+     * @param valorReferencia valor da coluna de ordenação na linha de referência
+     * @param idReferencia ID da linha de referência
+     * @param avancar true para a página seguinte; false para a anterior
+     */
+    public List<Medicamento> findPageKeyset(int pageSize, Map<String, FilterMeta> filters, String sortField, boolean asc,
+                                            Object valorReferencia, Long idReferencia, boolean avancar) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Medicamento> cq = cb.createQuery(Medicamento.class);
+        Root<Medicamento> root = cq.from(Medicamento.class);
+
+        String campo = campoOrdenacao(sortField);
+        List<Predicate> predicates = buildPredicates(cb, root, filters);
+        // Ao voltar uma página a ordem é invertida e o resultado é desinvertido ao final
+        boolean ordemConsulta = avancar == asc;
+        predicates.add(buildSeekPredicate(cb, root, campo, valorReferencia, idReferencia, ordemConsulta));
+        cq.where(predicates.toArray(new Predicate[0]));
+        aplicarOrdenacao(cb, cq, root, campo, ordemConsulta);
+
+        TypedQuery<Medicamento> query = em.createQuery(cq);
+        query.setMaxResults(pageSize);
+        List<Medicamento> pagina = query.getResultList();
+        if (!avancar) {
+            pagina = new ArrayList<>(pagina);
+            Collections.reverse(pagina);
+        }
+        return pagina;
+    }
+
     /** Retorna a quantidade total de registros considerando os filtros aplicados. */
     public Long count(Map<String, FilterMeta> filters) {
         CriteriaBuilder cb = em.getCriteriaBuilder();
@@ -93,7 +167,18 @@ public class MedicamentoRepository {
         return em.createQuery(cq).getSingleResult();
     }
 
-    /** Monta os predicados (where) de acordo com os filtros da tela (apenas Nome: LIKE case-insensitive). */
+    /** Estimativa do total de medicamentos pelas estatísticas do planner (-1 se a tabela nunca foi analisada). */
+    public long estimateCount() {
+        Number n = (Number) em.createNativeQuery(
+                "select cast(reltuples as bigint) from pg_class where oid = to_regclass('medicamento')")
+                .getSingleResult();
+        return n != null ? n.longValue() : -1L;
+    }
+
+    /**
+     * Monta os predicados (where) de acordo com os filtros da tela (apenas Nome: LIKE case-insensitive,
+     * e insensível a acentos quando a busca por trigramas está disponível).
+     */
     private List<Predicate> buildPredicates(CriteriaBuilder cb, Root<Medicamento> root, Map<String, FilterMeta> filters) {
         List<Predicate> predicates = new ArrayList<>();
         if (filters != null && !filters.isEmpty()) {
@@ -101,17 +186,54 @@ public class MedicamentoRepository {
             if (nomeMeta != null) {
                 Object val = nomeMeta.getFilterValue();
                 if (val != null && !val.toString().trim().isEmpty()) {
-                    String termo = val.toString().trim().toLowerCase();
-                    predicates.add(cb.like(cb.lower(root.get("nome")), "%" + termo + "%"));
+                    predicates.add(buildNomePredicate(cb, root, val.toString()));
                 }
             }
         }
         return predicates;
     }
 
-    /** Lista todos os medicamentos ordenados por nome (para selects). */
-    public List<Medicamento> findAllOrderedByNome() {
-        return em.createQuery("select m from Medicamento m order by m.nome asc", Medicamento.class)
-                .getResultList();
+    /** Campo efetivo de ordenação (nome quando não informado). */
+    private String campoOrdenacao(String sortField) {
+        return (sortField != null && !sortField.isEmpty()) ? sortField : "nome";
+    }
+
+    /** Ordena pelo campo solicitado e, em seguida, pelo ID no mesmo sentido (desempate). */
+    private void aplicarOrdenacao(CriteriaBuilder cb, CriteriaQuery<Medicamento> cq, Root<Medicamento> root, String sortField, boolean asc) {
+        String campo = campoOrdenacao(sortField);
+        if ("id".equals(campo)) {
+            cq.orderBy(asc ? cb.asc(root.get("id")) : cb.desc(root.get("id")));
+        } else {
+            cq.orderBy(asc ? cb.asc(root.get(campo)) : cb.desc(root.get(campo)),
+                    asc ? cb.asc(root.get("id")) : cb.desc(root.get("id")));
+        }
+    }
+
+    /**
+     * Predicado do keyset: campo >= v and ((campo > v) or (campo = v and id > idRef)), ou o inverso quando maior=false.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Predicate buildSeekPredicate(CriteriaBuilder cb, Root<Medicamento> root, String campo,
+                                         Object valorReferencia, Long idReferencia, boolean maior) {
+        Path<Long> id = root.get("id");
+        Predicate idApos = maior ? cb.greaterThan(id, idReferencia) : cb.lessThan(id, idReferencia);
+        if ("id".equals(campo)) {
+            return idApos;
+        }
+        Path<Comparable> valor = root.get(campo);
+        Comparable ref = (Comparable) valorReferencia;
+        Predicate valorApos = maior ? cb.greaterThan(valor, ref) : cb.lessThan(valor, ref);
+        // Limite redundante: é ele que posiciona a varredura do índice (ver PacienteRepository.buildSeekPredicate)
+        Predicate limite = maior ? cb.greaterThanOrEqualTo(valor, ref) : cb.lessThanOrEqualTo(valor, ref);
+        return cb.and(limite, cb.or(valorApos, cb.and(cb.equal(valor, ref), idApos)));
+    }
+
+    /** Predicado "nome contém": f_unaccent(lower(nome)) like (índice ix_medicamento_nome_trgm) ou lower(nome) like. */
+    private Predicate buildNomePredicate(CriteriaBuilder cb, Root<Medicamento> root, String valor) {
+        if (esquemaBusca.isTrigramaDisponivel()) {
+            return cb.like(cb.function(BuscaTexto.FUNCAO_SEM_ACENTO, String.class, cb.lower(root.get("nome"))),
+                    BuscaTexto.padraoContem(valor));
+        }
+        return cb.like(cb.lower(root.get("nome")), "%" + valor.trim().toLowerCase() + "%");
     }
 }
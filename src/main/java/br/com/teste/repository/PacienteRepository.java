@@ -1,17 +1,27 @@
 package br.com.teste.repository;
 
+import br.com.teste.analitico.ItensColunares;
+import br.com.teste.busca.BuscaTexto;
+import br.com.teste.busca.EsquemaBusca;
+import br.com.teste.busca.IndiceAutocomplete;
+import br.com.teste.cache.VersaoTabelas;
+import br.com.teste.estatistica.ContadoresPrescricao;
+import br.com.teste.metrica.Monitorado;
 import br.com.teste.model.Paciente;
 import org.primefaces.model.FilterMeta;
 
 import javax.ejb.Stateless;
+import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -20,12 +30,37 @@ import java.util.Map;
  * Usa JPA com Criteria API para paginação, ordenação e filtros.
  */
 @Stateless
+@Monitorado
 public class PacienteRepository {
 
     /** EntityManager JTA injetado pelo container (WildFly), atrelado ao PU "testePU" */
     @PersistenceContext(unitName = "testePU")
     private EntityManager em;
 
+    /** Versões de alteração por tabela (invalida caches de contagem) */
+    @Inject
+    private VersaoTabelas versoes;
+
+    /** Indica se a busca por nome pode usar os índices de trigramas (pg_trgm + unaccent) */
+    @Inject
+    private EsquemaBusca esquemaBusca;
+
+    /** Contadores em memória do painel (mantém o nome exibido atualizado) */
+    @Inject
+    private ContadoresPrescricao contadores;
+
+    /** Índice em memória do autocomplete da tela de receita */
+    @Inject
+    private IndiceAutocomplete indiceAutocomplete;
+
+    /** Itens em colunas na memória (nomes exibidos no relatório) */
+    @Inject
+    private ItensColunares itensColunares;
+
+    /** Modelo de leitura da consulta "Medicamentos por Paciente" (nomes desnormalizados) */
+    @Inject
+    private ReceitaResumoRepository resumoRepository;
+
     /**
      * Busca um paciente pelo identificador (chave primária).
      */
@@ -38,13 +73,22 @@ public class PacienteRepository {
      * Força um flush para que violações de restrição (ex.: CPF duplicado) sejam detectadas imediatamente.
      */
     public void save(Paciente p) {
-        if (p.getId() == null) {
+        boolean novo = p.getId() == null;
+        if (novo) {
             em.persist(p);
         } else {
             em.merge(p);
         }
         // Força flush para evidenciar violações de restrição (ex.: CPF duplicado) imediatamente
         em.flush();
+        if (!novo) {
+            // Cadastro alterado: propaga o nome para as receitas já resumidas
+            resumoRepository.atualizarNomePaciente(p.getId(), p.getNome());
+        }
+        versoes.registrarAlteracao(VersaoTabelas.PACIENTE);
+        contadores.registrarNomePaciente(p.getId(), p.getNome());
+        indiceAutocomplete.registrarPaciente(p.getId(), p.getNome());
+        itensColunares.registrarPaciente(p.getId(), p.getNome());
     }
 
     /**
@@ -54,6 +98,9 @@ public class PacienteRepository {
         Paciente managed = findById(id);
         if (managed != null) {
             em.remove(managed);
+            versoes.registrarAlteracao(VersaoTabelas.PACIENTE);
+            indiceAutocomplete.removerPaciente(id);
+            itensColunares.removerPaciente(id);
         }
     }
 
@@ -74,16 +121,8 @@ public class PacienteRepository {
         List<Predicate> predicates = buildPredicates(cb, root, filters);
         cq.where(predicates.toArray(new Predicate[0]));
 
-        // Ordenação configurável; default por nome ASC
-        if (sortField != null && !sortField.isEmpty()) {
-            if (asc) {
-                cq.orderBy(cb.asc(root.get(sortField)));
-            } else {
-                cq.orderBy(cb.desc(root.get(sortField)));
-            }
-        } else {
-            cq.orderBy(cb.asc(root.get("nome")));
-        }
+        // Ordenação configurável; default por nome ASC. O ID entra como desempate para a ordem ser estável.
+        aplicarOrdenacao(cb, cq, root, sortField, asc);
 
         TypedQuery<Paciente> query = em.createQuery(cq);
         query.setFirstResult(first);
@@ -91,6 +130,42 @@ public class PacienteRepository {
         return query.getResultList();
     }
 
+    /**
+     * Retorna uma página de Paciente por paginação keyset (seek), sem OFFSET.
+     * Em vez de descartar as linhas anteriores, a consulta parte da linha de referência
+     * (valor da coluna de ordenação + ID como desempate), então o custo não cresce com a profundidade da página.
+     * @param pageSize quantidade de registros por página (limit)
+     * @param filters filtros vindos do PrimeFaces (por nome e cpf)
+     * @param sortField campo de ordenação
+     * @param asc true para ascendente; false para descendente
+     * @param valorReferencia valor da coluna de ordenação na linha de referência
+     * @param idReferencia ID da linha de referência
+     * @param avancar true para a página seguinte (após a referência); false para a anterior (antes da referência)
+     */
+    public List<Paciente> findPageKeyset(int pageSize, Map<String, FilterMeta> filters, String sortField, boolean asc,
+                                         Object valorReferencia, Long idReferencia, boolean avancar) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Paciente> cq = cb.createQuery(Paciente.class);
+        Root<Paciente> root = cq.from(Paciente.class);
+
+        String campo = campoOrdenacao(sortField);
+        List<Predicate> predicates = buildPredicates(cb, root, filters);
+        // Ao voltar uma página a ordem é invertida e o resultado é desinvertido ao final
+        boolean ordemConsulta = avancar == asc;
+        predicates.add(buildSeekPredicate(cb, root, campo, valorReferencia, idReferencia, ordemConsulta));
+        cq.where(predicates.toArray(new Predicate[0]));
+        aplicarOrdenacao(cb, cq, root, campo, ordemConsulta);
+
+        TypedQuery<Paciente> query = em.createQuery(cq);
+        query.setMaxResults(pageSize);
+        List<Paciente> pagina = query.getResultList();
+        if (!avancar) {
+            pagina = new ArrayList<>(pagina);
+            Collections.reverse(pagina);
+        }
+        return pagina;
+    }
+
     /**
      * Retorna a quantidade total de registros considerando os filtros aplicados.
      */
@@ -104,9 +179,21 @@ public class PacienteRepository {
         return em.createQuery(cq).getSingleResult();
     }
 
+    /**
+     * Estimativa do total de pacientes pelas estatísticas do planner (pg_class.reltuples), sem varrer a tabela.
+     * Retorna -1 quando a tabela ainda não foi analisada (ANALYZE/autovacuum).
+     */
+    public long estimateCount() {
+        Number n = (Number) em.createNativeQuery(
+                "select cast(reltuples as bigint) from pg_class where oid = to_regclass('paciente')")
+                .getSingleResult();
+        return n != null ? n.longValue() : -1L;
+    }
+
     /**
      * Monta os predicados (where) de acordo com os filtros da tela.
-     * - Nome: LIKE case-insensitive contendo o termo.
+     * - Nome: LIKE case-insensitive contendo o termo; com pg_trgm disponível, também insensível a acentos
+     *   (f_unaccent(lower(nome)) like, expressão atendida pelo índice ix_paciente_nome_trgm).
      * - CPF: LIKE case-insensitive (permite pesquisar com ou sem máscara, desde que o termo coincida).
      */
     private List<Predicate> buildPredicates(CriteriaBuilder cb, Root<Paciente> root, Map<String, FilterMeta> filters) {
@@ -117,8 +204,7 @@ public class PacienteRepository {
             if (nomeMeta != null) {
                 Object val = nomeMeta.getFilterValue();
                 if (val != null && !val.toString().trim().isEmpty()) {
-                    String termo = val.toString().trim().toLowerCase();
-                    predicates.add(cb.like(cb.lower(root.get("nome")), "%" + termo + "%"));
+                    predicates.add(buildNomePredicate(cb, root, val.toString()));
                 }
             }
 
@@ -135,9 +221,51 @@ public class PacienteRepository {
         return predicates;
     }
 
-    /** Lista todos os pacientes ordenados por nome (para selects). */
-    public List<Paciente> findAllOrderedByNome() {
-        return em.createQuery("select p from Paciente p order by p.nome asc", Paciente.class)
-                .getResultList();
+    /** Campo efetivo de ordenação (nome quando não informado). */
+    private String campoOrdenacao(String sortField) {
+        return (sortField != null && !sortField.isEmpty()) ? sortField : "nome";
+    }
+
+    /** Ordena pelo campo solicitado e, em seguida, pelo ID no mesmo sentido (desempate). */
+    private void aplicarOrdenacao(CriteriaBuilder cb, CriteriaQuery<Paciente> cq, Root<Paciente> root, String sortField, boolean asc) {
+        String campo = campoOrdenacao(sortField);
+        if ("id".equals(campo)) {
+            cq.orderBy(asc ? cb.asc(root.get("id")) : cb.desc(root.get("id")));
+        } else if (asc) {
+            cq.orderBy(cb.asc(root.get(campo)), cb.asc(root.get("id")));
+        } else {
+            cq.orderBy(cb.desc(root.get(campo)), cb.desc(root.get("id")));
+        }
+    }
+
+    /**
+     * Predicado de posicionamento do keyset: (campo, id) estritamente após (maior=true) ou antes (maior=false)
+     * da linha de referência, na forma campo >= v and ((campo > v) or (campo = v and id > idRef)).
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Predicate buildSeekPredicate(CriteriaBuilder cb, Root<Paciente> root, String campo,
+                                         Object valorReferencia, Long idReferencia, boolean maior) {
+        Path<Long> id = root.get("id");
+        Predicate idApos = maior ? cb.greaterThan(id, idReferencia) : cb.lessThan(id, idReferencia);
+        if ("id".equals(campo)) {
+            return idApos;
+        }
+        Path<Comparable> valor = root.get(campo);
+        Comparable ref = (Comparable) valorReferencia;
+        Predicate valorApos = maior ? cb.greaterThan(valor, ref) : cb.lessThan(valor, ref);
+        // Limite redundante campo >= v (ou <=): o OR sozinho não vira condição de início da varredura do índice
+        // (campo, id), e cada página voltaria a percorrer o índice desde o começo. A Criteria não tem
+        // comparação de linha ((campo, id) > (v, idRef)), usada na consulta nativa do resumo.
+        Predicate limite = maior ? cb.greaterThanOrEqualTo(valor, ref) : cb.lessThanOrEqualTo(valor, ref);
+        return cb.and(limite, cb.or(valorApos, cb.and(cb.equal(valor, ref), idApos)));
+    }
+
+    /** Predicado "nome contém": por trigramas/sem acentos quando disponível, senão lower(nome) like. */
+    private Predicate buildNomePredicate(CriteriaBuilder cb, Root<Paciente> root, String valor) {
+        if (esquemaBusca.isTrigramaDisponivel()) {
+            return cb.like(cb.function(BuscaTexto.FUNCAO_SEM_ACENTO, String.class, cb.lower(root.get("nome"))),
+                    BuscaTexto.padraoContem(valor));
+        }
+        return cb.like(cb.lower(root.get("nome")), "%" + valor.trim().toLowerCase() + "%");
     }
 }
@@ -0,0 +1,64 @@
+package br.com.teste.repository;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+
+/**
+ * Conversões do período de emissão informado em dias (telas, API e exportação: primeiro e último dia,
+ * inclusive, como yyyy-MM-dd) para os limites dos filtros do {@link ReceitaRepository} (desde inclusive,
+ * ate exclusive), no fuso do servidor, o mesmo em que as datas de emissão são gravadas.
+ */
+public final class PeriodoEmissao {
+
+    private PeriodoEmissao() {
+    }
+
+    /**
+     * Início do primeiro dia do período, ou null se ausente.
+     * @throws IllegalArgumentException se a data não estiver no formato yyyy-MM-dd
+     */
+    public static Date desde(String dia) {
+        LocalDate d = ler(dia);
+        return d != null ? inicio(d) : null;
+    }
+
+    /**
+     * Início do dia seguinte ao último dia do período (limite exclusivo), ou null se ausente.
+     * @throws IllegalArgumentException se a data não estiver no formato yyyy-MM-dd
+     */
+    public static Date ate(String ultimoDia) {
+        LocalDate d = ler(ultimoDia);
+        return d != null ? inicio(d.plusDays(1)) : null;
+    }
+
+    /** Início do dia seguinte ao da data (limite exclusivo para um último dia escolhido na tela), ou null. */
+    public static Date diaSeguinte(Date ultimoDia) {
+        return ultimoDia != null ? inicio(dia(ultimoDia).plusDays(1)) : null;
+    }
+
+    /** Dia da data no formato yyyy-MM-dd (parâmetros da exportação), ou null. */
+    public static String texto(Date data) {
+        return data != null ? dia(data).toString() : null;
+    }
+
+    private static LocalDate ler(String dia) {
+        if (dia == null || dia.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(dia.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Data inválida (use aaaa-mm-dd): " + dia, e);
+        }
+    }
+
+    private static LocalDate dia(Date data) {
+        return data.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static Date inicio(LocalDate dia) {
+        return Date.from(dia.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -1,182 +1,595 @@
 package br.com.teste.repository;
 
+import br.com.teste.analitico.ItensColunares;
+import br.com.teste.busca.BuscaTexto;
+import br.com.teste.busca.EsquemaBusca;
+import br.com.teste.cache.VersaoTabelas;
 import br.com.teste.dto.ReceitaResumoDTO;
 import br.com.teste.dto.NomeQuantidadeDTO;
 import br.com.teste.dto.PacienteTotalDTO;
+import br.com.teste.estatistica.ContadoresPrescricao;
+import br.com.teste.exportacao.ConsumidorLinha;
+import br.com.teste.job.AtualizacaoRelatorio;
+import br.com.teste.metrica.Monitorado;
 import br.com.teste.model.Medicamento;
 import br.com.teste.model.MedicamentoReceitado;
 import br.com.teste.model.Receita;
+import br.com.teste.replica.LeituraReplica;
+import br.com.teste.replica.ReplicaLeitura;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.NativeQuery;
 
 import javax.ejb.Stateless;
+import javax.inject.Inject;
 import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
 import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.TemporalType;
 import javax.persistence.TypedQuery;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 /**
  * Repositório (EJB Stateless) para operações relacionadas à Receita e seus itens (MedicamentoReceitado).
+ *
+ * Os filtros de período recebem desde (inclusive) e ate (exclusive), ambos opcionais, sobre a data de emissão
+ * da receita. Nos itens, a data repetida é a chave de partição (um mês por partição): com período, só as
+ * partições do período são lidas.
+ *
+ * Receitas arquivadas (receita_arquivo e medicamento_receitado_arquivo, ver ArquivamentoRepository) entram nos
+ * rankings, nos totais e na carga do armazenamento colunar; na consulta de resumo, só quando pedidas
+ * (arquivadas = true), por um caminho mais lento: o arquivo não tem o modelo de leitura nem os índices de busca.
  */
 @Stateless
+@Monitorado
 public class ReceitaRepository {
 
+    /** Linhas buscadas por ida ao banco nas consultas percorridas por cursor (exportação) */
+    private static final int LINHAS_POR_BUSCA = 1000;
+
+    /** Itens de receita com o paciente da receita (carga do armazenamento colunar) */
+    private static final String SELECT_ITENS = "select r.id, r.id_paciente, i.id_medicamento " +
+            "from medicamento_receitado i join receita r on r.id = i.id_receita and i.data_emissao = r.data_emissao";
+
+    /** Itens arquivados, nas mesmas colunas de {@link #SELECT_ITENS} */
+    private static final String SELECT_ITENS_ARQUIVADOS = "select a.id_receita, a.id_paciente, a.id_medicamento " +
+            "from medicamento_receitado_arquivo a";
+
     /** EntityManager JTA injetado pelo container (WildFly), atrelado ao PU "testePU" */
     @PersistenceContext(unitName = "testePU")
     private EntityManager em;
 
+    /** Versões de alteração por tabela (invalida caches de contagem) */
+    @Inject
+    private VersaoTabelas versoes;
+
+    /** Indica se os filtros por nome podem usar os índices de trigramas (pg_trgm + unaccent) */
+    @Inject
+    private EsquemaBusca esquemaBusca;
+
+    /** Contadores agregados de prescrição, atualizados na mesma transação dos itens */
+    @Inject
+    private TotaisPrescricaoRepository totaisRepository;
+
+    /** Contadores em memória do painel, alimentados após o commit */
+    @Inject
+    private ContadoresPrescricao contadores;
+
+    /** Modelo de leitura da consulta "Medicamentos por Paciente", mantido na mesma transação */
+    @Inject
+    private ReceitaResumoRepository resumoRepository;
+
+    /** Nova fotografia do relatório (enviada às telas abertas) após as escritas nos itens */
+    @Inject
+    private AtualizacaoRelatorio atualizacaoRelatorio;
+
+    /** Itens em colunas na memória (consultas analíticas e relatório), alimentados após o commit */
+    @Inject
+    private ItensColunares itensColunares;
+
+    /** EntityManager das consultas {@link LeituraReplica}: o da réplica quando a chamada foi roteada, senão o primário. */
+    private EntityManager emLeitura() {
+        return ReplicaLeitura.ou(em);
+    }
+
     /** Busca uma receita pelo ID. */
     public Receita findById(Long id) {
         return em.find(Receita.class, id);
     }
 
-    /** Persiste/atualiza uma receita e força flush (para obter ID imediatamente). */
+    /**
+     * Persiste/atualiza uma receita e força flush (para obter ID imediatamente). Uma receita passada a outro
+     * paciente leva os itens junto: os contadores por paciente (paciente_total, memória e itens em colunas) passam
+     * do paciente anterior para o novo e o relatório é atualizado.
+     */
     public Receita save(Receita r) {
-        if (r.getId() == null) {
+        boolean nova = r.getId() == null;
+        Object[] anterior = null;
+        if (nova) {
             em.persist(r);
         } else {
+            anterior = pacienteEItens(r.getId());
             r = em.merge(r);
         }
         em.flush();
+        resumoRepository.atualizarReceita(r.getId());
+        versoes.registrarAlteracao(VersaoTabelas.RECEITA);
+        Long idPaciente = r.getPaciente().getId();
+        Long idPacienteAnterior = anterior != null ? ((Number) anterior[0]).longValue() : null;
+        if (idPacienteAnterior != null && !idPaciente.equals(idPacienteAnterior)) {
+            long itens = ((Number) anterior[1]).longValue();
+            itensColunares.registrarReceita(r.getId(), idPaciente);
+            if (itens > 0) {
+                totaisRepository.moverPaciente(idPacienteAnterior, idPaciente, itens);
+                contadores.registrarTrocaPaciente(idPacienteAnterior, idPaciente, itens);
+                atualizacaoRelatorio.registrarEscrita();
+            }
+        }
         return r;
     }
 
-    /** Inclui um medicamento na receita (cria um item MedicamentoReceitado). */
+    /**
+     * Paciente gravado da receita e quantidade de itens, ou null se ela não existe no banco. Lidos sem flush
+     * (a instância no contexto pode já ter o paciente novo) e com a receita bloqueada até o commit: uma inclusão
+     * de item concorrente (a chave estrangeira lê a receita) espera a troca e entra já no paciente novo.
+     */
+    private Object[] pacienteEItens(Long idReceita) {
+        List<?> linhas = em.createNativeQuery("select r.id_paciente, (select count(*) from medicamento_receitado i " +
+                "where i.id_receita = r.id and i.data_emissao = r.data_emissao) from receita r where r.id = ?1 for update")
+                .setParameter(1, idReceita)
+                .setFlushMode(FlushModeType.COMMIT)
+                .getResultList();
+        return linhas.isEmpty() ? null : (Object[]) linhas.get(0);
+    }
+
+    /** Inclui um medicamento na receita (cria um item MedicamentoReceitado) e atualiza os contadores do relatório. */
     public MedicamentoReceitado addMedicamento(Long idReceita, Long idMedicamento) {
-        Receita receita = em.getReference(Receita.class, idReceita);
+        // find (e não getReference) para conhecer o paciente da receita sem consulta adicional
+        Receita receita = em.find(Receita.class, idReceita);
         Medicamento medicamento = em.getReference(Medicamento.class, idMedicamento);
         MedicamentoReceitado item = new MedicamentoReceitado();
         item.setReceita(receita);
         item.setMedicamento(medicamento);
         em.persist(item);
         em.flush();
+        totaisRepository.incrementar(idReceita, idMedicamento);
+        resumoRepository.atualizarItens(idReceita);
+        contadores.registrarItem(receita.getPaciente().getId(), idMedicamento, 1);
+        itensColunares.registrarInclusao(idReceita, receita.getPaciente().getId(), idMedicamento, 1);
+        versoes.registrarAlteracao(VersaoTabelas.RECEITA);
+        atualizacaoRelatorio.registrarEscrita();
         return item;
     }
 
-    /** Exclui um item (MedicamentoReceitado) pelo seu ID. */
+    /**
+     * Inclui vários medicamentos na receita em uma única transação (rascunho confirmado pela tela).
+     * Os itens são gravados com INSERTs em lote (JDBC batch, lotes de 50) e os contadores
+     * e o resumo são atualizados uma vez para o lote inteiro, não por item.
+     * Medicamentos repetidos na lista geram itens repetidos, como na inclusão individual.
+     * @return quantidade de itens incluídos
+     */
+    public int addMedicamentos(Long idReceita, List<Long> idsMedicamentos) {
+        if (idsMedicamentos == null || idsMedicamentos.isEmpty()) return 0;
+        Receita receita = em.find(Receita.class, idReceita);
+        if (receita == null) {
+            throw new IllegalArgumentException("Receita não encontrada: " + idReceita);
+        }
+        // IDs da sequência pooled (sem ida ao banco por item); o flush agrupa os INSERTs em lote (hibernate.jdbc.batch_size)
+        for (Long idMedicamento : idsMedicamentos) {
+            MedicamentoReceitado item = new MedicamentoReceitado();
+            item.setReceita(receita);
+            item.setMedicamento(em.getReference(Medicamento.class, idMedicamento));
+            em.persist(item);
+        }
+        em.flush();
+        SortedMap<Long, Long> quantidades = new TreeMap<>();
+        for (Long idMedicamento : idsMedicamentos) {
+            quantidades.merge(idMedicamento, 1L, Long::sum);
+        }
+        totaisRepository.incrementar(idReceita, quantidades);
+        resumoRepository.atualizarItens(idReceita);
+        Long idPaciente = receita.getPaciente().getId();
+        for (Map.Entry<Long, Long> e : quantidades.entrySet()) {
+            contadores.registrarItem(idPaciente, e.getKey(), e.getValue());
+            itensColunares.registrarInclusao(idReceita, idPaciente, e.getKey(), e.getValue());
+        }
+        versoes.registrarAlteracao(VersaoTabelas.RECEITA);
+        atualizacaoRelatorio.registrarEscrita();
+        return idsMedicamentos.size();
+    }
+
+    /** Exclui um item (MedicamentoReceitado) pelo seu ID e atualiza os contadores do relatório. */
     public void deleteItem(Long idItem) {
         MedicamentoReceitado managed = em.find(MedicamentoReceitado.class, idItem);
         if (managed != null) {
+            // IDs lidos dos proxies (sem inicializar as associações)
+            Long idReceita = managed.getReceita().getId();
+            Long idMedicamento = managed.getMedicamento().getId();
+            Long idPaciente = managed.getReceita().getPaciente().getId();
             em.remove(managed);
+            em.flush();
+            totaisRepository.decrementar(idReceita, idMedicamento);
+            resumoRepository.atualizarItens(idReceita);
+            contadores.registrarItem(idPaciente, idMedicamento, -1);
+            itensColunares.registrarExclusao(idReceita, idMedicamento);
+            versoes.registrarAlteracao(VersaoTabelas.RECEITA);
+            atualizacaoRelatorio.registrarEscrita();
         }
     }
 
-    /** Lista os itens (MedicamentoReceitado) de uma receita específica. */
+    /**
+     * Cria as partições mensais de medicamento_receitado que faltam, do mês corrente até meses à frente
+     * (função da migração V6, refeita na V9). Um item com data fora das partições existentes vai para a partição
+     * padrão; a função move para a partição nova os itens do mês que estavam nela.
+     * @return quantidade de partições criadas
+     */
+    public int criarParticoesItens(int meses) {
+        Number criadas = (Number) em.createNativeQuery("select criar_particoes_medicamento_receitado(" +
+                "localtimestamp, localtimestamp + make_interval(months => :meses))")
+                .setParameter("meses", meses)
+                .getSingleResult();
+        return criadas.intValue();
+    }
+
+    /** Lista os itens (MedicamentoReceitado) de uma receita específica (lidos só da partição do mês da receita). */
     public List<MedicamentoReceitado> listItensByReceita(Long idReceita) {
         TypedQuery<MedicamentoReceitado> q = em.createQuery(
                 "select i from MedicamentoReceitado i " +
                         "join fetch i.medicamento m " +
                         "join i.receita r " +
-                        "where r.id = :id order by i.id",
+                        "where r.id = :id and i.dataEmissao = r.dataEmissao order by i.id",
                 MedicamentoReceitado.class);
         q.setParameter("id", idReceita);
         return q.getResultList();
     }
 
+    /**
+     * Itens de uma receita arquivada (somente leitura): instâncias não gerenciadas, com o ID do item e o
+     * medicamento (ID e nome), para exibição.
+     */
+    @SuppressWarnings("unchecked")
+    public List<MedicamentoReceitado> listItensArquivados(Long idReceita) {
+        List<Object[]> rows = em.createNativeQuery("select i.id, m.id as id_medicamento, m.nome " +
+                "from medicamento_receitado_arquivo i join medicamento m on m.id = i.id_medicamento " +
+                "where i.id_receita = :id order by i.id")
+                .setParameter("id", idReceita)
+                .getResultList();
+        List<MedicamentoReceitado> itens = new java.util.ArrayList<>(rows.size());
+        for (Object[] r : rows) {
+            Medicamento medicamento = new Medicamento(((Number) r[1]).longValue());
+            medicamento.setNome((String) r[2]);
+            MedicamentoReceitado item = new MedicamentoReceitado(((Number) r[0]).longValue());
+            item.setMedicamento(medicamento);
+            itens.add(item);
+        }
+        return itens;
+    }
+
     /**
      * Consulta paginada de receitas (uma linha por receita) com filtros opcionais por paciente e medicamento.
-     * Retorna projeções (ReceitaResumoDTO) contendo o total de medicamentos por receita.
+     * Lê o modelo de leitura receita_resumo (total de medicamentos já calculado, sem subconsultas por linha).
      * @param first offset
      * @param pageSize limite
-     * @param sortField campo para ordenação (pacienteNome ou receitaId)
+     * @param sortField campo para ordenação (pacienteNome, totalMedicamentos ou receitaId)
      * @param asc ascendente/descendente
      * @param pacienteNome filtro opcional por nome do paciente (contains, case-insensitive)
      * @param medicamentoNome filtro opcional por nome do medicamento (contains, case-insensitive)
+     * @param desde filtro opcional: emitidas a partir desta data (inclusive)
+     * @param ate filtro opcional: emitidas antes desta data (exclusive)
+     * @param arquivadas inclui as receitas arquivadas (consulta mais lenta; ver comentário da classe)
      */
+    @LeituraReplica
+    @SuppressWarnings("unchecked")
     public List<ReceitaResumoDTO> findResumoPage(int first, int pageSize, String sortField, boolean asc,
-                                                 String pacienteNome, String medicamentoNome) {
-        String pLike = normalizeLike(pacienteNome);
-        String mLike = normalizeLike(medicamentoNome);
+                                                 String pacienteNome, String medicamentoNome, Date desde, Date ate,
+                                                 boolean arquivadas) {
+        Query q = consultaResumo(sortField, asc, pacienteNome, medicamentoNome, desde, ate, arquivadas, null, null);
+        q.setFirstResult(first);
+        q.setMaxResults(pageSize);
+        return paraResumo(q.getResultList());
+    }
 
-        StringBuilder jpql = new StringBuilder();
-        jpql.append("select new br.com.teste.dto.ReceitaResumoDTO(")
-            .append(" r.id, p.id, p.nome, ")
-            .append(" (select count(i2.id) from MedicamentoReceitado i2 where i2.receita = r) ")
-            .append(") from Receita r ")
-            .append(" join r.paciente p ")
-            .append(" where 1=1 ");
+    /**
+     * Página da consulta de resumo por keyset (seek), sem OFFSET: as receitas estritamente após a chave
+     * (valor do campo de ordenação + ID da receita) da última linha da página anterior, com os mesmos filtros
+     * e ordenação de {@link #findResumoPage}, sem as receitas arquivadas. Sem chave (idReferencia null) retorna
+     * a primeira página.
+     * @param valorReferencia valor do campo de ordenação na linha de referência (ignorado na ordenação por receitaId)
+     * @param idReferencia ID da receita na linha de referência
+     */
+    @LeituraReplica
+    @SuppressWarnings("unchecked")
+    public List<ReceitaResumoDTO> findResumoPageKeyset(int pageSize, String sortField, boolean asc,
+                                                       String pacienteNome, String medicamentoNome, Date desde, Date ate,
+                                                       Object valorReferencia, Long idReferencia) {
+        Query q = consultaResumo(sortField, asc, pacienteNome, medicamentoNome, desde, ate, false,
+                valorReferencia, idReferencia);
+        q.setMaxResults(pageSize);
+        return paraResumo(q.getResultList());
+    }
 
-        if (pLike != null) {
-            jpql.append(" and lower(p.nome) like :pNome ");
-        }
-        if (mLike != null) {
-            jpql.append(" and exists (select 1 from MedicamentoReceitado ix join ix.medicamento mx ")
-                .append(" where ix.receita = r and lower(mx.nome) like :mNome) ");
+    private static List<ReceitaResumoDTO> paraResumo(List<Object[]> rows) {
+        List<ReceitaResumoDTO> dtos = new java.util.ArrayList<>(rows.size());
+        for (Object[] r : rows) {
+            dtos.add(new ReceitaResumoDTO(((Number) r[0]).longValue(), ((Number) r[1]).longValue(),
+                    (String) r[2], ((Number) r[3]).longValue(), (Date) r[4], r.length > 5 && Boolean.TRUE.equals(r[5])));
         }
+        return dtos;
+    }
 
-        // Ordenação suportada
-        String order = " order by ";
+    /**
+     * Percorre todas as receitas da consulta de resumo (mesmos filtros e ordenação de {@link #findResumoPage})
+     * com um cursor somente-avanço, entregando ao consumidor uma linha por vez:
+     * ID da receita, ID do paciente, nome do paciente, total de medicamentos, data de emissão e, com arquivadas,
+     * se a receita está arquivada. Nada é acumulado em memória.
+     * @return quantidade de linhas entregues
+     */
+    @LeituraReplica
+    public long percorrerResumo(String sortField, boolean asc, String pacienteNome, String medicamentoNome,
+                                Date desde, Date ate, boolean arquivadas, ConsumidorLinha consumidor) throws IOException {
+        return percorrer(consultaResumo(sortField, asc, pacienteNome, medicamentoNome, desde, ate, arquivadas,
+                null, null), consumidor);
+    }
+
+    /**
+     * Consulta nativa do resumo com filtros e ordenação (ID da receita como desempate, coberta pelos índices).
+     * Com idReferencia, só as linhas após a chave (valorReferencia, idReferencia) na ordenação pedida (keyset).
+     */
+    private Query consultaResumo(String sortField, boolean asc, String pacienteNome, String medicamentoNome,
+                                 Date desde, Date ate, boolean arquivadas, Object valorReferencia, Long idReferencia) {
+        String pLike = normalizeLike(pacienteNome);
+        String mLike = normalizeLike(medicamentoNome);
+
+        StringBuilder sql = new StringBuilder();
+        sql.append("select rr.id_receita, rr.id_paciente, rr.paciente_nome, rr.total_medicamentos, rr.data_emissao ")
+           .append(arquivadas ? ", rr.arquivada " : "");
+        appendOrigemResumo(sql, pLike, mLike, desde, ate, arquivadas);
+
+        String coluna;
         if ("pacienteNome".equals(sortField)) {
-            order += " p.nome ";
-        } else if ("receitaId".equals(sortField)) {
-            order += " r.id ";
+            coluna = "rr.paciente_nome";
+        } else if ("totalMedicamentos".equals(sortField)) {
+            coluna = "rr.total_medicamentos";
         } else {
-            // padrão
-            order += " r.id ";
+            // padrão (receitaId)
+            coluna = "rr.id_receita";
+        }
+        boolean desempate = !"rr.id_receita".equals(coluna);
+        if (idReferencia != null) {
+            // Comparação de linha (campo, id): mesma ordem do índice, uma única condição de início da varredura
+            String comparacao = asc ? " > " : " < ";
+            if (desempate) {
+                sql.append(" and (").append(coluna).append(", rr.id_receita)").append(comparacao).append("(:vRef, :idRef) ");
+            } else {
+                sql.append(" and rr.id_receita").append(comparacao).append(":idRef ");
+            }
+        }
+        String direcao = asc ? " asc" : " desc";
+        sql.append(" order by ").append(coluna).append(direcao);
+        if (desempate) {
+            sql.append(", rr.id_receita").append(direcao);
         }
-        order += asc ? " asc" : " desc";
-        jpql.append(order);
 
-        TypedQuery<ReceitaResumoDTO> q = em.createQuery(jpql.toString(), ReceitaResumoDTO.class);
+        Query q = emLeitura().createNativeQuery(sql.toString());
         if (pLike != null) q.setParameter("pNome", pLike);
         if (mLike != null) q.setParameter("mNome", mLike);
-        q.setFirstResult(first);
-        q.setMaxResults(pageSize);
-        return q.getResultList();
+        definirPeriodo(q, desde, ate);
+        if (idReferencia != null) {
+            q.setParameter("idRef", idReferencia);
+            if (desempate) q.setParameter("vRef", valorReferencia);
+        }
+        return q;
     }
 
     /** Conta o total de receitas na consulta de resumo com os mesmos filtros. */
-    public Long countResumo(String pacienteNome, String medicamentoNome) {
+    @LeituraReplica
+    public Long countResumo(String pacienteNome, String medicamentoNome, Date desde, Date ate, boolean arquivadas) {
         String pLike = normalizeLike(pacienteNome);
         String mLike = normalizeLike(medicamentoNome);
 
-        StringBuilder jpql = new StringBuilder();
-        jpql.append("select count(r) from Receita r join r.paciente p where 1=1 ");
+        StringBuilder sql = new StringBuilder("select count(*) ");
+        appendOrigemResumo(sql, pLike, mLike, desde, ate, arquivadas);
+
+        Query q = emLeitura().createNativeQuery(sql.toString());
+        if (pLike != null) q.setParameter("pNome", pLike);
+        if (mLike != null) q.setParameter("mNome", mLike);
+        definirPeriodo(q, desde, ate);
+        return ((Number) q.getSingleResult()).longValue();
+    }
+
+    /** Estimativa do total de receitas (consulta de resumo sem filtros) pelas estatísticas do planner. */
+    @LeituraReplica
+    public long estimateCountResumo() {
+        Number n = (Number) emLeitura().createNativeQuery(
+                "select cast(reltuples as bigint) from pg_class where oid = to_regclass('receita_resumo')")
+                .getSingleResult();
+        return n != null ? n.longValue() : -1L;
+    }
+
+    /**
+     * FROM/WHERE da consulta de resumo (alias rr), terminado de forma que outras condições possam ser acrescentadas.
+     * Com arquivadas, une receita_resumo às receitas arquivadas, filtradas cada uma à sua maneira: no arquivo,
+     * o nome do paciente vem do cadastro e o filtro por medicamento lê os itens arquivados (sem o modelo de leitura).
+     */
+    private void appendOrigemResumo(StringBuilder sql, String pLike, String mLike, Date desde, Date ate,
+                                    boolean arquivadas) {
+        if (!arquivadas) {
+            sql.append(" from receita_resumo rr where 1=1 ");
+            appendFiltrosResumo(sql, pLike, mLike);
+            appendPeriodo(sql, "rr.data_emissao", desde, ate);
+            return;
+        }
+        sql.append(" from (select rr.id_receita, rr.id_paciente, rr.paciente_nome, rr.total_medicamentos, ")
+           .append("rr.data_emissao, false as arquivada from receita_resumo rr where 1=1 ");
+        appendFiltrosResumo(sql, pLike, mLike);
+        appendPeriodo(sql, "rr.data_emissao", desde, ate);
+        sql.append(" union all select a.id, a.id_paciente, p.nome, a.total_medicamentos, a.data_emissao, true ")
+           .append("from receita_arquivo a join paciente p on p.id = a.id_paciente where 1=1 ");
         if (pLike != null) {
-            jpql.append(" and lower(p.nome) like :pNome ");
+            sql.append(" and ").append(nomeSql("p.nome")).append(" like :pNome ");
         }
         if (mLike != null) {
-            jpql.append(" and exists (select 1 from MedicamentoReceitado ix join ix.medicamento mx ")
-                .append(" where ix.receita = r and lower(mx.nome) like :mNome) ");
+            sql.append(" and exists (select 1 from medicamento_receitado_arquivo i ")
+               .append("join medicamento m on m.id = i.id_medicamento where i.id_receita = a.id and ")
+               .append(nomeSql("m.nome")).append(" like :mNome) ");
         }
+        appendPeriodo(sql, "a.data_emissao", desde, ate);
+        sql.append(") rr where 1=1 ");
+    }
 
-        TypedQuery<Long> q = em.createQuery(jpql.toString(), Long.class);
-        if (pLike != null) q.setParameter("pNome", pLike);
-        if (mLike != null) q.setParameter("mNome", mLike);
-        return q.getSingleResult();
+    /**
+     * Filtros do resumo: nome do paciente pela mesma expressão do índice de trigramas; medicamento sobre
+     * medicamento_nomes, gravada já normalizada (ver ReceitaResumoRepository).
+     */
+    private void appendFiltrosResumo(StringBuilder sql, String pLike, String mLike) {
+        if (pLike != null) {
+            sql.append(" and ").append(nomeSql("rr.paciente_nome")).append(" like :pNome ");
+        }
+        if (mLike != null) {
+            sql.append(" and rr.medicamento_nomes like :mNome ");
+        }
+    }
+
+    /** Filtro de período (:desde inclusive, :ate exclusive) sobre a coluna de data de emissão informada. */
+    private static void appendPeriodo(StringBuilder sql, String coluna, Date desde, Date ate) {
+        if (desde != null) {
+            sql.append(" and ").append(coluna).append(" >= :desde ");
+        }
+        if (ate != null) {
+            sql.append(" and ").append(coluna).append(" < :ate ");
+        }
+    }
+
+    private static void definirPeriodo(Query q, Date desde, Date ate) {
+        if (desde != null) q.setParameter("desde", desde, TemporalType.TIMESTAMP);
+        if (ate != null) q.setParameter("ate", ate, TemporalType.TIMESTAMP);
     }
 
+    /** Expressão SQL do nome comparada nos filtros; deve coincidir com a dos índices pg_trgm. */
+    private String nomeSql(String coluna) {
+        return esquemaBusca.isTrigramaDisponivel()
+                ? BuscaTexto.FUNCAO_SEM_ACENTO + "(lower(" + coluna + "))"
+                : "lower(" + coluna + ")";
+    }
+
+    /** Padrão LIKE "contém" do filtro (sem acentos quando a busca por trigramas está disponível). */
     private String normalizeLike(String val) {
         if (val == null) return null;
+        if (esquemaBusca.isTrigramaDisponivel()) {
+            return BuscaTexto.padraoContem(val);
+        }
         String t = val.trim().toLowerCase();
         return t.isEmpty() ? null : ("%" + t + "%");
     }
 
-    /** Retorna os 2 medicamentos mais prescritos (ranking por quantidade de itens nas receitas). */
-    public List<NomeQuantidadeDTO> top2Medicamentos() {
-        String jpql = "select new br.com.teste.dto.NomeQuantidadeDTO(m.nome, count(i.id)) " +
-                " from MedicamentoReceitado i join i.medicamento m " +
-                " group by m.id, m.nome " +
-                " order by count(i.id) desc";
-        TypedQuery<NomeQuantidadeDTO> q = em.createQuery(jpql, NomeQuantidadeDTO.class);
-        q.setMaxResults(2);
+    /**
+     * Retorna os N medicamentos mais prescritos (ranking por quantidade de itens nas receitas).
+     * Lê os contadores agregados (medicamento_total), sem reagregar os itens.
+     */
+    @LeituraReplica
+    public List<NomeQuantidadeDTO> topMedicamentos(int limite) {
+        String jpql = "select new br.com.teste.dto.NomeQuantidadeDTO(m.nome, t.total) " +
+                " from MedicamentoTotal t join t.medicamento m " +
+                " order by t.total desc, m.id asc";
+        TypedQuery<NomeQuantidadeDTO> q = emLeitura().createQuery(jpql, NomeQuantidadeDTO.class);
+        q.setMaxResults(limite);
         return q.getResultList();
     }
 
-    /** Retorna os 2 pacientes com mais medicamentos prescritos (soma de todos os itens em todas as receitas). */
-    public List<NomeQuantidadeDTO> top2Pacientes() {
-        String jpql = "select new br.com.teste.dto.NomeQuantidadeDTO(p.nome, count(i.id)) " +
-                " from MedicamentoReceitado i join i.receita r join r.paciente p " +
-                " group by p.id, p.nome " +
-                " order by count(i.id) desc";
-        TypedQuery<NomeQuantidadeDTO> q = em.createQuery(jpql, NomeQuantidadeDTO.class);
-        q.setMaxResults(2);
+    /**
+     * Os N medicamentos mais prescritos nas receitas emitidas no período. Sem período, o mesmo que
+     * {@link #topMedicamentos(int)}; com período, agrega os itens das partições do período e os itens arquivados
+     * do período (índice BRIN da data de emissão).
+     */
+    @LeituraReplica
+    @SuppressWarnings("unchecked")
+    public List<NomeQuantidadeDTO> topMedicamentos(int limite, Date desde, Date ate) {
+        if (desde == null && ate == null) {
+            return topMedicamentos(limite);
+        }
+        StringBuilder sql = new StringBuilder("select m.nome, x.total from (" +
+                "select i.id_medicamento, count(*) as total from (" +
+                "select i.id_medicamento from medicamento_receitado i where 1=1 ");
+        appendPeriodo(sql, "i.data_emissao", desde, ate);
+        sql.append(" union all select a.id_medicamento from medicamento_receitado_arquivo a where 1=1 ");
+        appendPeriodo(sql, "a.data_emissao", desde, ate);
+        sql.append(") i group by i.id_medicamento) x join medicamento m on m.id = x.id_medicamento " +
+                "order by x.total desc, m.id asc");
+        Query q = emLeitura().createNativeQuery(sql.toString());
+        definirPeriodo(q, desde, ate);
+        q.setMaxResults(limite);
+        return paraRanking(q.getResultList());
+    }
+
+    /**
+     * Retorna os N pacientes com mais medicamentos prescritos (soma de todos os itens em todas as receitas).
+     * Lê os contadores agregados (paciente_total).
+     */
+    @LeituraReplica
+    public List<NomeQuantidadeDTO> topPacientes(int limite) {
+        String jpql = "select new br.com.teste.dto.NomeQuantidadeDTO(p.nome, t.total) " +
+                " from PacienteTotal t join t.paciente p " +
+                " order by t.total desc, p.id asc";
+        TypedQuery<NomeQuantidadeDTO> q = emLeitura().createQuery(jpql, NomeQuantidadeDTO.class);
+        q.setMaxResults(limite);
         return q.getResultList();
     }
 
-    /** Lista todos os pacientes com a quantidade total de medicamentos receitados em todas as receitas. */
+    /**
+     * Os N pacientes com mais medicamentos prescritos nas receitas emitidas no período. Sem período, o mesmo
+     * que {@link #topPacientes(int)}.
+     */
+    @LeituraReplica
+    @SuppressWarnings("unchecked")
+    public List<NomeQuantidadeDTO> topPacientes(int limite, Date desde, Date ate) {
+        if (desde == null && ate == null) {
+            return topPacientes(limite);
+        }
+        StringBuilder sql = new StringBuilder("select p.nome, x.total from (" + totaisPacientesNoPeriodo(desde, ate) +
+                ") x join paciente p on p.id = x.id_paciente order by x.total desc, p.id asc");
+        Query q = emLeitura().createNativeQuery(sql.toString());
+        definirPeriodo(q, desde, ate);
+        q.setMaxResults(limite);
+        return paraRanking(q.getResultList());
+    }
+
+    private static List<NomeQuantidadeDTO> paraRanking(List<Object[]> rows) {
+        List<NomeQuantidadeDTO> dtos = new java.util.ArrayList<>(rows.size());
+        for (Object[] r : rows) {
+            dtos.add(new NomeQuantidadeDTO((String) r[0], ((Number) r[1]).longValue()));
+        }
+        return dtos;
+    }
+
+    /**
+     * Total de itens por paciente nas receitas do período (id_paciente, total), lido das partições do período
+     * e dos itens arquivados do período.
+     */
+    private static String totaisPacientesNoPeriodo(Date desde, Date ate) {
+        StringBuilder sql = new StringBuilder("select x.id_paciente, count(*) as total from (" +
+                "select r.id_paciente from medicamento_receitado i join receita r on r.id = i.id_receita where 1=1 ");
+        appendPeriodo(sql, "i.data_emissao", desde, ate);
+        sql.append(" union all select a.id_paciente from medicamento_receitado_arquivo a where 1=1 ");
+        appendPeriodo(sql, "a.data_emissao", desde, ate);
+        return sql.append(") x group by x.id_paciente").toString();
+    }
+
+    /**
+     * Lista todos os pacientes com a quantidade total de medicamentos receitados em todas as receitas.
+     * O total vem do contador agregado (paciente_total); pacientes sem itens aparecem com zero.
+     */
+    @LeituraReplica
     public List<PacienteTotalDTO> totalMedicamentosPorPaciente() {
-        String jpql = "select p.id, p.nome, (select count(i2.id) from MedicamentoReceitado i2 where i2.receita.paciente = p) " +
-                " from Paciente p order by p.nome asc";
-        TypedQuery<Object[]> q = em.createQuery(jpql, Object[].class);
+        String jpql = "select p.id, p.nome, coalesce(t.total, 0) " +
+                " from Paciente p left join PacienteTotal t on t.paciente = p order by p.nome asc";
+        TypedQuery<Object[]> q = emLeitura().createQuery(jpql, Object[].class);
         List<Object[]> rows = q.getResultList();
         List<PacienteTotalDTO> dtos = new java.util.ArrayList<>(rows.size());
         for (Object[] r : rows) {
@@ -187,4 +600,68 @@ public class ReceitaRepository {
         }
         return dtos;
     }
+
+    /**
+     * Percorre todos os pacientes com o total de medicamentos receitados (mesmo conteúdo de
+     * {@link #totalMedicamentosPorPaciente()}, em ordem de nome) com um cursor somente-avanço:
+     * ID, nome e total. Nada é acumulado em memória.
+     * @return quantidade de linhas entregues
+     */
+    @LeituraReplica
+    public long percorrerTotaisPorPaciente(ConsumidorLinha consumidor) throws IOException {
+        return percorrer(emLeitura().createNativeQuery(
+                "select p.id, p.nome, coalesce(t.total, 0) " +
+                        "from paciente p left join paciente_total t on t.id_paciente = p.id order by p.nome, p.id"),
+                consumidor);
+    }
+
+    /**
+     * Como {@link #percorrerTotaisPorPaciente(ConsumidorLinha)}, contando só os itens das receitas emitidas no
+     * período (agregados das partições do período; sem período, lê os contadores).
+     */
+    @LeituraReplica
+    public long percorrerTotaisPorPaciente(Date desde, Date ate, ConsumidorLinha consumidor) throws IOException {
+        if (desde == null && ate == null) {
+            return percorrerTotaisPorPaciente(consumidor);
+        }
+        Query q = emLeitura().createNativeQuery("select p.id, p.nome, coalesce(t.total, 0) " +
+                "from paciente p left join (" + totaisPacientesNoPeriodo(desde, ate) + ") t on t.id_paciente = p.id " +
+                "order by p.nome, p.id");
+        definirPeriodo(q, desde, ate);
+        return percorrer(q, consumidor);
+    }
+
+    /**
+     * Percorre todos os itens de receita, inclusive os arquivados, com um cursor somente-avanço: ID da receita,
+     * do paciente e do medicamento. Lê do primário (carga de {@link ItensColunares}, que não pode perder escritas
+     * já confirmadas). Um único comando: um arquivamento concorrente não faz um item aparecer duas vezes.
+     * @return quantidade de itens entregues
+     */
+    public long percorrerItens(ConsumidorLinha consumidor) throws IOException {
+        return percorrer(em.createNativeQuery(SELECT_ITENS + " union all " + SELECT_ITENS_ARQUIVADOS), consumidor);
+    }
+
+    /** Como {@link #percorrerItens}, somente para os itens das receitas informadas que não estão arquivadas. */
+    public long percorrerItensDasReceitas(Collection<Long> idsReceitas, ConsumidorLinha consumidor) throws IOException {
+        return percorrer(em.createNativeQuery(SELECT_ITENS + " where r.id in (:ids)")
+                .setParameter("ids", idsReceitas), consumidor);
+    }
+
+    /**
+     * Lê a consulta com ScrollableResults somente-avanço: o driver busca {@value #LINHAS_POR_BUSCA} linhas
+     * por vez (cursor no servidor, dentro da transação) e nenhuma entidade entra no contexto de persistência.
+     */
+    private static long percorrer(Query q, ConsumidorLinha consumidor) throws IOException {
+        NativeQuery<?> nativa = q.unwrap(NativeQuery.class);
+        nativa.setFetchSize(LINHAS_POR_BUSCA);
+        nativa.setReadOnly(true);
+        long linhas = 0;
+        try (ScrollableResults rs = nativa.scroll(ScrollMode.FORWARD_ONLY)) {
+            while (rs.next()) {
+                consumidor.aceitar(rs.get());
+                linhas++;
+            }
+        }
+        return linhas;
+    }
 }
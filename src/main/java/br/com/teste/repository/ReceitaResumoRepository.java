@@ -0,0 +1,133 @@
+package br.com.teste.repository;
+
+import br.com.teste.busca.BuscaTexto;
+import br.com.teste.busca.EsquemaBusca;
+import br.com.teste.cache.ConsultaNativa;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+/**
+ * Repositório (EJB Stateless) que mantém o modelo de leitura receita_resumo, usado pela consulta
+ * "Medicamentos por Paciente": uma linha por receita com o paciente (id/nome), a data de emissão, o total de itens,
+ * os IDs dos medicamentos (array) e os nomes normalizados dos medicamentos (texto para busca).
+ *
+ * As atualizações acontecem na mesma transação da escrita em receita/itens/cadastros;
+ * {@link #reconstruir()} recalcula tudo a partir das tabelas de origem (carga inicial e correção de divergências).
+ */
+@Stateless
+public class ReceitaResumoRepository {
+
+    /** Separador entre os nomes de medicamentos na coluna medicamento_nomes */
+    private static final String SEPARADOR_NOMES = " | ";
+
+    /** EntityManager JTA injetado pelo container (WildFly), atrelado ao PU "testePU" */
+    @PersistenceContext(unitName = "testePU")
+    private EntityManager em;
+
+    @Inject
+    private EsquemaBusca esquemaBusca;
+
+    /** Cria/atualiza a linha da receita com os dados do paciente e recalcula os itens. */
+    public void atualizarReceita(Long idReceita) {
+        ConsultaNativa.escrita(em,
+                "insert into receita_resumo (id_receita, id_paciente, paciente_nome, data_emissao) " +
+                        "select r.id, p.id, p.nome, r.data_emissao from receita r join paciente p on p.id = r.id_paciente where r.id = :id " +
+                        "on conflict (id_receita) do update " +
+                        "set id_paciente = excluded.id_paciente, paciente_nome = excluded.paciente_nome",
+                "receita_resumo")
+                .setParameter("id", idReceita)
+                .executeUpdate();
+        atualizarItens(idReceita);
+    }
+
+    /**
+     * Recalcula total, IDs e nomes dos medicamentos da receita.
+     * A linha é bloqueada antes, em comando separado: assim o recálculo (novo snapshot em READ COMMITTED)
+     * enxerga os itens confirmados por uma transação concorrente na mesma receita. A data de emissão restringe
+     * a leitura dos itens à partição do mês da receita.
+     */
+    public void atualizarItens(Long idReceita) {
+        em.createNativeQuery("select id_receita from receita_resumo where id_receita = :id for update")
+                .setParameter("id", idReceita)
+                .getResultList();
+        ConsultaNativa.escrita(em,
+                "update receita_resumo rr set total_medicamentos = x.total, medicamento_ids = x.ids, medicamento_nomes = x.nomes " +
+                        "from (select count(i.id) as total, " +
+                        "             coalesce(array_agg(i.id_medicamento order by i.id), '{}') as ids, " +
+                        "             coalesce(string_agg(" + nomeNormalizado("m.nome") + ", '" + SEPARADOR_NOMES + "' order by i.id), '') as nomes " +
+                        "      from medicamento_receitado i join medicamento m on m.id = i.id_medicamento " +
+                        "      where i.id_receita = :id " +
+                        "        and i.data_emissao = (select r.data_emissao from receita r where r.id = :id)) x " +
+                        "where rr.id_receita = :id",
+                "receita_resumo")
+                .setParameter("id", idReceita)
+                .executeUpdate();
+    }
+
+    /** Propaga a alteração do nome de um paciente para as suas receitas. */
+    public void atualizarNomePaciente(Long idPaciente, String nome) {
+        ConsultaNativa.escrita(em,
+                "update receita_resumo set paciente_nome = :nome where id_paciente = :id and paciente_nome <> :nome",
+                "receita_resumo")
+                .setParameter("id", idPaciente)
+                .setParameter("nome", nome)
+                .executeUpdate();
+    }
+
+    /** Recalcula os nomes de medicamentos das receitas que contêm o medicamento (ex.: após renomeá-lo). */
+    public void atualizarNomeMedicamento(Long idMedicamento) {
+        ConsultaNativa.escrita(em,
+                "update receita_resumo rr set medicamento_nomes = coalesce((" +
+                        " select string_agg(" + nomeNormalizado("m.nome") + ", '" + SEPARADOR_NOMES + "' order by i.id) " +
+                        " from medicamento_receitado i join medicamento m on m.id = i.id_medicamento " +
+                        " where i.id_receita = rr.id_receita and i.data_emissao = rr.data_emissao), '') " +
+                        "where rr.medicamento_ids @> cast(array[:id] as bigint[])",
+                "receita_resumo")
+                .setParameter("id", idMedicamento)
+                .executeUpdate();
+    }
+
+    /**
+     * Recalcula todo o modelo de leitura a partir de receita, paciente e medicamento_receitado.
+     * Receitas e itens ficam bloqueados para escrita (SHARE) até o fim da transação.
+     */
+    public void reconstruir() {
+        ConsultaNativa.escrita(em,
+                "lock table receita, medicamento_receitado in share mode", "receita",
+                "medicamento_receitado").executeUpdate();
+        ConsultaNativa.escrita(em, "delete from receita_resumo", "receita_resumo").executeUpdate();
+        ConsultaNativa.escrita(em,
+                "insert into receita_resumo (id_receita, id_paciente, paciente_nome, data_emissao, total_medicamentos, medicamento_ids, medicamento_nomes) " +
+                        "select r.id, p.id, p.nome, r.data_emissao, count(i.id), " +
+                        "       coalesce(array_agg(i.id_medicamento order by i.id) filter (where i.id is not null), '{}'), " +
+                        "       coalesce(string_agg(" + nomeNormalizado("m.nome") + ", '" + SEPARADOR_NOMES + "' order by i.id), '') " +
+                        "from receita r join paciente p on p.id = r.id_paciente " +
+                        "left join medicamento_receitado i on i.id_receita = r.id and i.data_emissao = r.data_emissao " +
+                        "left join medicamento m on m.id = i.id_medicamento " +
+                        "group by r.id, p.id, p.nome",
+                "receita_resumo")
+                .executeUpdate();
+    }
+
+    /** true quando existem receitas mas o modelo de leitura está vazio (ex.: banco recém-carregado pelo dump). */
+    public boolean precisaCargaInicial() {
+        Object r = em.createNativeQuery(
+                "select case when exists (select 1 from receita) " +
+                        "and not exists (select 1 from receita_resumo) then 1 else 0 end")
+                .getSingleResult();
+        return ((Number) r).intValue() == 1;
+    }
+
+    /**
+     * Nomes de medicamento são gravados já normalizados, na mesma forma do termo pesquisado
+     * (sem acentos quando a busca por trigramas está disponível).
+     */
+    private String nomeNormalizado(String coluna) {
+        return esquemaBusca.isTrigramaDisponivel()
+                ? BuscaTexto.FUNCAO_SEM_ACENTO + "(lower(" + coluna + "))"
+                : "lower(" + coluna + ")";
+    }
+}
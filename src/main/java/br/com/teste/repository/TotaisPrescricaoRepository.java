@@ -0,0 +1,170 @@
+package br.com.teste.repository;
+
+import br.com.teste.cache.ConsultaNativa;
+
+import org.hibernate.Session;
+
+import javax.ejb.Stateless;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.PreparedStatement;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Repositório (EJB Stateless) que mantém os contadores agregados de prescrição
+ * (tabelas medicamento_total e paciente_total).
+ *
+ * Os métodos de incremento/decremento devem ser chamados dentro da transação que inclui/exclui
+ * o item (MedicamentoReceitado), de forma que contador e item sejam confirmados juntos.
+ * {@link #reconstruir()} recalcula tudo a partir de medicamento_receitado (carga inicial e correção de divergências).
+ * Os itens arquivados (medicamento_receitado_arquivo, ver ArquivamentoRepository) continuam contados.
+ */
+@Stateless
+public class TotaisPrescricaoRepository {
+
+    /** EntityManager JTA injetado pelo container (WildFly), atrelado ao PU "testePU" */
+    @PersistenceContext(unitName = "testePU")
+    private EntityManager em;
+
+    /** Soma 1 aos contadores do medicamento e do paciente da receita (upsert). */
+    public void incrementar(Long idReceita, Long idMedicamento) {
+        ConsultaNativa.escrita(em,
+                "insert into medicamento_total (id_medicamento, total) values (?1, 1) " +
+                        "on conflict (id_medicamento) do update set total = medicamento_total.total + 1",
+                "medicamento_total")
+                .setParameter(1, idMedicamento)
+                .executeUpdate();
+        ConsultaNativa.escrita(em,
+                "insert into paciente_total (id_paciente, total) " +
+                        "select r.id_paciente, 1 from receita r where r.id = ?1 " +
+                        "on conflict (id_paciente) do update set total = paciente_total.total + 1",
+                "paciente_total")
+                .setParameter(1, idReceita)
+                .executeUpdate();
+    }
+
+    /**
+     * Soma as quantidades de vários itens de uma mesma receita (inclusão em lote): um upsert em lote
+     * (JDBC batch) para os medicamentos, em ordem de ID para não gerar deadlock entre lotes concorrentes,
+     * e um único upsert para o paciente.
+     */
+    public void incrementar(Long idReceita, SortedMap<Long, Long> quantidadesPorMedicamento) {
+        if (quantidadesPorMedicamento.isEmpty()) return;
+        long total = 0;
+        for (Long qtd : quantidadesPorMedicamento.values()) total += qtd;
+        em.unwrap(Session.class).doWork(con -> {
+            try (PreparedStatement ps = con.prepareStatement(
+                    "insert into medicamento_total (id_medicamento, total) values (?, ?) " +
+                            "on conflict (id_medicamento) do update set total = medicamento_total.total + excluded.total")) {
+                for (Map.Entry<Long, Long> e : quantidadesPorMedicamento.entrySet()) {
+                    ps.setLong(1, e.getKey());
+                    ps.setLong(2, e.getValue());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        });
+        ConsultaNativa.escrita(em,
+                "insert into paciente_total (id_paciente, total) " +
+                        "select r.id_paciente, ?2 from receita r where r.id = ?1 " +
+                        "on conflict (id_paciente) do update set total = paciente_total.total + excluded.total",
+                "paciente_total")
+                .setParameter(1, idReceita)
+                .setParameter(2, total)
+                .executeUpdate();
+    }
+
+    /**
+     * Subtrai 1 dos contadores do medicamento e do paciente da receita.
+     * Contadores zerados são removidos para não impedir a exclusão do medicamento/paciente (FK).
+     */
+    public void decrementar(Long idReceita, Long idMedicamento) {
+        ConsultaNativa.escrita(em,
+                "update medicamento_total set total = total - 1 where id_medicamento = ?1",
+                "medicamento_total")
+                .setParameter(1, idMedicamento)
+                .executeUpdate();
+        ConsultaNativa.escrita(em,
+                "delete from medicamento_total where id_medicamento = ?1 and total <= 0",
+                "medicamento_total")
+                .setParameter(1, idMedicamento)
+                .executeUpdate();
+        ConsultaNativa.escrita(em,
+                "update paciente_total set total = total - 1 " +
+                        "where id_paciente = (select r.id_paciente from receita r where r.id = ?1)",
+                "paciente_total")
+                .setParameter(1, idReceita)
+                .executeUpdate();
+        ConsultaNativa.escrita(em,
+                "delete from paciente_total " +
+                        "where id_paciente = (select r.id_paciente from receita r where r.id = ?1) and total <= 0",
+                "paciente_total")
+                .setParameter(1, idReceita)
+                .executeUpdate();
+    }
+
+    /**
+     * Passa os itens de uma receita trocada de paciente do contador do paciente anterior para o do novo
+     * (o do anterior é removido ao zerar, como em {@link #decrementar(Long, Long)}).
+     */
+    public void moverPaciente(Long idPacienteAnterior, Long idPaciente, long itens) {
+        ConsultaNativa.escrita(em,
+                "update paciente_total set total = total - ?2 where id_paciente = ?1",
+                "paciente_total")
+                .setParameter(1, idPacienteAnterior)
+                .setParameter(2, itens)
+                .executeUpdate();
+        ConsultaNativa.escrita(em,
+                "delete from paciente_total where id_paciente = ?1 and total <= 0",
+                "paciente_total")
+                .setParameter(1, idPacienteAnterior)
+                .executeUpdate();
+        ConsultaNativa.escrita(em,
+                "insert into paciente_total (id_paciente, total) values (?1, ?2) " +
+                        "on conflict (id_paciente) do update set total = paciente_total.total + excluded.total",
+                "paciente_total")
+                .setParameter(1, idPaciente)
+                .setParameter(2, itens)
+                .executeUpdate();
+    }
+
+    /**
+     * Recalcula os contadores a partir de medicamento_receitado e dos itens arquivados.
+     * As tabelas de itens ficam bloqueadas para escrita (SHARE) até o fim da transação,
+     * para que nenhuma inclusão/exclusão ou arquivamento concorrente fique de fora da reconstrução.
+     */
+    public void reconstruir() {
+        ConsultaNativa.escrita(em,
+                "lock table medicamento_receitado, medicamento_receitado_arquivo in share mode",
+                "medicamento_receitado", "medicamento_receitado_arquivo").executeUpdate();
+        ConsultaNativa.escrita(em, "delete from medicamento_total", "medicamento_total").executeUpdate();
+        ConsultaNativa.escrita(em,
+                "insert into medicamento_total (id_medicamento, total) " +
+                        "select x.id_medicamento, count(*) from (" +
+                        "select i.id_medicamento from medicamento_receitado i " +
+                        "union all select a.id_medicamento from medicamento_receitado_arquivo a) x " +
+                        "group by x.id_medicamento",
+                "medicamento_total")
+                .executeUpdate();
+        ConsultaNativa.escrita(em, "delete from paciente_total", "paciente_total").executeUpdate();
+        ConsultaNativa.escrita(em,
+                "insert into paciente_total (id_paciente, total) " +
+                        "select x.id_paciente, count(*) from (" +
+                        "select r.id_paciente from medicamento_receitado i join receita r on r.id = i.id_receita " +
+                        "union all select a.id_paciente from medicamento_receitado_arquivo a) x " +
+                        "group by x.id_paciente",
+                "paciente_total")
+                .executeUpdate();
+    }
+
+    /** true quando existem itens de receita mas os contadores estão vazios (ex.: banco recém-carregado pelo dump). */
+    public boolean precisaCargaInicial() {
+        Object r = em.createNativeQuery(
+                "select case when (exists (select 1 from medicamento_receitado) " +
+                        "or exists (select 1 from medicamento_receitado_arquivo)) " +
+                        "and not exists (select 1 from medicamento_total) then 1 else 0 end")
+                .getSingleResult();
+        return ((Number) r).intValue() == 1;
+    }
+}
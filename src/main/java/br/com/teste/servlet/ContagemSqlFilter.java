@@ -0,0 +1,54 @@
+package br.com.teste.servlet;
+
+import br.com.teste.sql.ContagemSql;
+import br.com.teste.sql.DetectorNmais1;
+import br.com.teste.sql.LimitesSql;
+
+import javax.inject.Inject;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Conta os comandos SQL de cada requisição JSF (GET e postbacks/ajax) quando teste.sql.inspecao=true
+ * (teste e homologação): loga em WARNING as requisições acima do orçamento da tela ({@link LimitesSql}) e os
+ * padrões N+1 ({@link DetectorNmais1}); a contagem de todas as requisições vai para o log em FINE.
+ * Desabilitado, o filtro só repassa a requisição.
+ */
+@WebFilter(urlPatterns = "*.xhtml")
+public class ContagemSqlFilter implements Filter {
+
+    private static final Logger LOG = Logger.getLogger(ContagemSqlFilter.class.getName());
+
+    @Inject
+    private DetectorNmais1 detector;
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (!ContagemSql.isHabilitada() || !(request instanceof HttpServletRequest)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        HttpServletRequest req = (HttpServletRequest) request;
+        String caminho = req.getServletPath();
+        try (ContagemSql.Escopo escopo = ContagemSql.abrir(req.getMethod() + " " + caminho)) {
+            chain.doFilter(request, response);
+            detector.relatar(escopo);
+            int limite = LimitesSql.limite(caminho);
+            if (escopo.getComandos() > limite) {
+                LOG.warning(() -> escopo.getDescricao() + ": " + escopo.getComandos()
+                        + " comandos SQL, acima do limite da tela (" + limite + ")" + escopo.resumoRepetidos());
+            } else if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine(escopo.getDescricao() + ": " + escopo.getComandos() + " comandos SQL");
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package br.com.teste.servlet;
+
+import br.com.teste.replica.EscritaRecente;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+
+/**
+ * Vincula à thread da requisição a marca de escrita recente do usuário (sessão HTTP), usada pela réplica de
+ * leitura para garantir que quem acabou de gravar leia do primário. Sem sessão, a marca vale só para a requisição.
+ */
+@WebFilter(urlPatterns = "/*")
+public class EscritaRecenteFilter implements Filter {
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        EscritaRecente.vincular(marca(request));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            EscritaRecente.vincular(null);
+        }
+    }
+
+    private static EscritaRecente marca(ServletRequest request) {
+        HttpSession sessao = request instanceof HttpServletRequest
+                ? ((HttpServletRequest) request).getSession(false) : null;
+        if (sessao == null) {
+            return new EscritaRecente();
+        }
+        Object marca = sessao.getAttribute(EscritaRecente.ATRIBUTO);
+        if (marca instanceof EscritaRecente) {
+            return (EscritaRecente) marca;
+        }
+        EscritaRecente nova = new EscritaRecente();
+        sessao.setAttribute(EscritaRecente.ATRIBUTO, nova);
+        return nova;
+    }
+}
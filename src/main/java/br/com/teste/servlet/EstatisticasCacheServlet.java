@@ -0,0 +1,80 @@
+package br.com.teste.servlet;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Estatísticas do cache de segundo nível do Hibernate
+ * no formato texto do Prometheus (GET /metricas/cache).
+ *
+ * Os contadores são acumulados desde a subida da aplicação; taxas de acerto são calculadas pelo coletor.
+ */
+@WebServlet(urlPatterns = "/metricas/cache")
+public class EstatisticasCacheServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    @PersistenceUnit(unitName = "testePU")
+    private EntityManagerFactory emf;
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        Statistics stats = emf.unwrap(SessionFactory.class).getStatistics();
+        resp.setContentType("text/plain; version=0.0.4; charset=UTF-8");
+        PrintWriter out = resp.getWriter();
+
+        contador(out, "teste_cache_entidade_acertos_total", "Leituras de entidade atendidas pelo cache de segundo nível",
+                stats.getSecondLevelCacheHitCount());
+        contador(out, "teste_cache_entidade_faltas_total", "Leituras de entidade não encontradas no cache de segundo nível",
+                stats.getSecondLevelCacheMissCount());
+        contador(out, "teste_cache_entidade_insercoes_total", "Entidades colocadas no cache de segundo nível",
+                stats.getSecondLevelCachePutCount());
+
+        String[] regioes = stats.getSecondLevelCacheRegionNames();
+        cabecalho(out, "teste_cache_regiao_acertos_total", "Acertos por região do cache", "counter");
+        for (String regiao : regioes) {
+            CacheRegionStatistics r = stats.getDomainDataRegionStatistics(regiao);
+            if (r != null) linha(out, "teste_cache_regiao_acertos_total", regiao, r.getHitCount());
+        }
+        cabecalho(out, "teste_cache_regiao_faltas_total", "Faltas por região do cache", "counter");
+        for (String regiao : regioes) {
+            CacheRegionStatistics r = stats.getDomainDataRegionStatistics(regiao);
+            if (r != null) linha(out, "teste_cache_regiao_faltas_total", regiao, r.getMissCount());
+        }
+        cabecalho(out, "teste_cache_regiao_entradas", "Entradas em memória por região do cache", "gauge");
+        for (String regiao : regioes) {
+            CacheRegionStatistics r = stats.getDomainDataRegionStatistics(regiao);
+            // Valor negativo: o provedor não informa a quantidade de entradas
+            if (r != null && r.getElementCountInMemory() >= 0) {
+                linha(out, "teste_cache_regiao_entradas", regiao, r.getElementCountInMemory());
+            }
+        }
+        out.flush();
+    }
+
+    private static void contador(PrintWriter out, String nome, String ajuda, long valor) {
+        cabecalho(out, nome, ajuda, "counter");
+        out.print(nome);
+        out.print(' ');
+        out.println(valor);
+    }
+
+    private static void cabecalho(PrintWriter out, String nome, String ajuda, String tipo) {
+        out.println("# HELP " + nome + " " + ajuda);
+        out.println("# TYPE " + nome + " " + tipo);
+    }
+
+    private static void linha(PrintWriter out, String nome, String regiao, long valor) {
+        out.println(nome + "{regiao=\"" + regiao.replace("\\", "\\\\").replace("\"", "\\\"") + "\"} " + valor);
+    }
+}
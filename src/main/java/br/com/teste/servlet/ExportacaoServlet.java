@@ -0,0 +1,111 @@
+package br.com.teste.servlet;
+
+import br.com.teste.exportacao.FormatoExportacao;
+import br.com.teste.exportacao.SaidaTabular;
+import br.com.teste.repository.PeriodoEmissao;
+import br.com.teste.repository.ReceitaRepository;
+
+import javax.inject.Inject;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exportação em CSV ou XLSX, gravada em fluxo direto na resposta a partir de um cursor no banco
+ * (a memória usada não depende da quantidade de linhas):
+ * - GET /exportacao/medicamentos-por-paciente — consulta "Medicamentos por Paciente"; parâmetros opcionais
+ *   pacienteNome, medicamentoNome (mesmos filtros da tela), ordenacao (receitaId, pacienteNome ou
+ *   totalMedicamentos), asc (true/false) e arquivadas=true (inclui as receitas arquivadas, mais lento).
+ * - GET /exportacao/medicamentos-prescritos — total de medicamentos por paciente do relatório.
+ *
+ * Parâmetros comuns: formato (csv ou xlsx, padrão csv), gzip=true (CSV compactado com Content-Encoding gzip,
+ * quando o cliente aceita) e o período de emissão desde/ate (yyyy-MM-dd, inclusive; ver PeriodoEmissao).
+ *
+ * Uma falha no meio da exportação não finaliza a saída (partes finais do XLSX, fim do ZIP ou do GZIP): o arquivo
+ * truncado não pode parecer completo. Se nada foi enviado ainda, a resposta vira um erro 500; senão a exceção
+ * segue para o container, que fecha a conexão sem terminar a resposta e o cliente vê o download incompleto.
+ */
+@WebServlet(urlPatterns = {"/exportacao/medicamentos-por-paciente", "/exportacao/medicamentos-prescritos"})
+public class ExportacaoServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = Logger.getLogger(ExportacaoServlet.class.getName());
+
+    @Inject
+    private ReceitaRepository receitaRepository;
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        boolean consulta = req.getServletPath().endsWith("/medicamentos-por-paciente");
+        Date desde;
+        Date ate;
+        try {
+            desde = PeriodoEmissao.desde(req.getParameter("desde"));
+            ate = PeriodoEmissao.ate(req.getParameter("ate"));
+        } catch (IllegalArgumentException e) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        FormatoExportacao formato = FormatoExportacao.de(req.getParameter("formato"));
+        String nome = (consulta ? "medicamentos-por-paciente-" : "medicamentos-prescritos-")
+                + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + formato.getExtensao();
+
+        resp.setContentType(formato.getContentType());
+        resp.setHeader("Content-Disposition", "attachment; filename=\"" + nome + "\"");
+        // XLSX já é um arquivo ZIP; compactar de novo não reduz o tamanho
+        boolean gzip = formato == FormatoExportacao.CSV && "true".equalsIgnoreCase(req.getParameter("gzip"))
+                && aceitaGzip(req);
+        OutputStream destino = resp.getOutputStream();
+        if (gzip) {
+            resp.setHeader("Content-Encoding", "gzip");
+            destino = new GZIPOutputStream(destino, 1 << 16);
+        }
+
+        long inicio = System.currentTimeMillis();
+        long linhas;
+        SaidaTabular saida = formato.abrir(destino, consulta ? "Medicamentos por Paciente" : "Medicamentos Prescritos");
+        try {
+            if (consulta) {
+                boolean arquivadas = "true".equalsIgnoreCase(req.getParameter("arquivadas"));
+                if (arquivadas) {
+                    saida.cabecalho("ID da Receita", "ID do Paciente", "Paciente", "Total de Medicamentos",
+                            "Data de Emissão", "Arquivada");
+                } else {
+                    saida.cabecalho("ID da Receita", "ID do Paciente", "Paciente", "Total de Medicamentos", "Data de Emissão");
+                }
+                linhas = receitaRepository.percorrerResumo(req.getParameter("ordenacao"),
+                        !"false".equalsIgnoreCase(req.getParameter("asc")),
+                        req.getParameter("pacienteNome"), req.getParameter("medicamentoNome"), desde, ate, arquivadas,
+                        saida::linha);
+            } else {
+                saida.cabecalho("ID", "Paciente", "Total de Medicamentos");
+                linhas = receitaRepository.percorrerTotaisPorPaciente(desde, ate, saida::linha);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Sem saida.close(): o que ficou nos buffers é descartado e o arquivo não é finalizado
+            LOG.log(Level.WARNING, "Exportação " + nome + " interrompida", e);
+            if (!resp.isCommitted()) {
+                resp.reset();
+                resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Falha na exportação");
+                return;
+            }
+            throw e;
+        }
+        saida.close();
+        LOG.fine(() -> "Exportação " + nome + ": " + linhas + " linhas em " + (System.currentTimeMillis() - inicio) + " ms");
+    }
+
+    private static boolean aceitaGzip(HttpServletRequest req) {
+        String aceita = req.getHeader("Accept-Encoding");
+        return aceita != null && aceita.toLowerCase().contains("gzip");
+    }
+}
@@ -0,0 +1,114 @@
+package br.com.teste.servlet;
+
+import br.com.teste.metrica.HistogramaLatencia;
+import br.com.teste.metrica.MetricaMetodo;
+import br.com.teste.metrica.MetricasRepositorio;
+import br.com.teste.replica.ReplicaLeitura;
+
+import javax.inject.Inject;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * Latência, linhas devolvidas e erros por método dos repositórios ({@code @Monitorado}) no formato texto do
+ * Prometheus (GET /metricas/repositorios), com os rótulos classe, metodo e parametros (tipos dos parâmetros,
+ * ex.: "int,Date,Date", que separa as sobrecargas do mesmo método).
+ *
+ * - teste_repositorio_duracao_segundos: histograma (faixas "le" abaixo, _sum e _count); os percentis podem ser
+ *   calculados pelo coletor (histogram_quantile).
+ * - teste_repositorio_duracao_quantil_segundos: percentis 50/90/99/99,9 desde a subida, pelo histograma interno
+ *   (erro máximo de ~3%).
+ * - teste_repositorio_linhas_total e teste_repositorio_erros_total: contadores.
+ * - teste_repositorio_comandos_sql_total: comandos SQL gerados pelo Hibernate dentro das chamadas; só avança com
+ *   teste.sql.inspecao=true (ver ContagemSql).
+ * - teste_repositorio_leituras_replica_total: chamadas @LeituraReplica por rota (replica ou primario).
+ */
+@WebServlet(urlPatterns = "/metricas/repositorios")
+public class MetricasRepositorioServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Limites das faixas exportadas, em segundos */
+    private static final double[] FAIXAS = {
+            0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    private static final double[] QUANTIS = {0.5, 0.9, 0.99, 0.999};
+
+    @Inject
+    private MetricasRepositorio metricas;
+
+    @Inject
+    private ReplicaLeitura replica;
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        List<MetricaMetodo> todas = metricas.todas();
+        HistogramaLatencia.Leitura[] leituras = new HistogramaLatencia.Leitura[todas.size()];
+        for (int i = 0; i < leituras.length; i++) {
+            leituras[i] = todas.get(i).getLatencia().ler();
+        }
+        resp.setContentType("text/plain; version=0.0.4; charset=UTF-8");
+        PrintWriter out = resp.getWriter();
+
+        String duracao = "teste_repositorio_duracao_segundos";
+        cabecalho(out, duracao, "Duração das chamadas aos repositórios", "histogram");
+        for (int i = 0; i < leituras.length; i++) {
+            String rotulos = rotulos(todas.get(i));
+            for (double faixa : FAIXAS) {
+                out.println(duracao + "_bucket{" + rotulos + ",le=\"" + faixa + "\"} "
+                        + leituras[i].ate((long) (faixa * 1e9)));
+            }
+            out.println(duracao + "_bucket{" + rotulos + ",le=\"+Inf\"} " + leituras[i].getTotal());
+            out.println(duracao + "_sum{" + rotulos + "} " + leituras[i].getSomaNanos() / 1e9);
+            out.println(duracao + "_count{" + rotulos + "} " + leituras[i].getTotal());
+        }
+
+        String quantil = "teste_repositorio_duracao_quantil_segundos";
+        cabecalho(out, quantil, "Percentis da duração das chamadas desde a subida da aplicação", "gauge");
+        for (int i = 0; i < leituras.length; i++) {
+            String rotulos = rotulos(todas.get(i));
+            for (double q : QUANTIS) {
+                out.println(quantil + "{" + rotulos + ",quantil=\"" + q + "\"} " + leituras[i].quantil(q) / 1e9);
+            }
+        }
+
+        String linhas = "teste_repositorio_linhas_total";
+        cabecalho(out, linhas, "Linhas (entidades/DTOs) devolvidas pelos repositórios", "counter");
+        for (MetricaMetodo m : todas) {
+            out.println(linhas + "{" + rotulos(m) + "} " + m.getLinhas());
+        }
+
+        String erros = "teste_repositorio_erros_total";
+        cabecalho(out, erros, "Chamadas aos repositórios que terminaram em exceção", "counter");
+        for (MetricaMetodo m : todas) {
+            out.println(erros + "{" + rotulos(m) + "} " + m.getErros());
+        }
+
+        String comandos = "teste_repositorio_comandos_sql_total";
+        cabecalho(out, comandos, "Comandos SQL executados pelas chamadas aos repositórios", "counter");
+        for (MetricaMetodo m : todas) {
+            out.println(comandos + "{" + rotulos(m) + "} " + m.getComandos());
+        }
+
+        String rotas = "teste_repositorio_leituras_replica_total";
+        cabecalho(out, rotas, "Chamadas que podem ir à réplica de leitura, pela rota usada", "counter");
+        out.println(rotas + "{rota=\"replica\"} " + replica.getLeiturasReplica());
+        out.println(rotas + "{rota=\"primario\"} " + replica.getLeiturasPrimario());
+        out.flush();
+    }
+
+    private static void cabecalho(PrintWriter out, String nome, String ajuda, String tipo) {
+        out.println("# HELP " + nome + " " + ajuda);
+        out.println("# TYPE " + nome + " " + tipo);
+    }
+
+    private static String rotulos(MetricaMetodo m) {
+        return "classe=\"" + m.getClasse() + "\",metodo=\"" + m.getMetodo() + "\",parametros=\"" + m.getParametros() + "\"";
+    }
+}
@@ -0,0 +1,173 @@
+package br.com.teste.sql;
+
+import br.com.teste.config.Configuracao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Contagem dos comandos SQL gerados pelo Hibernate em um trecho de código (requisição JSF, chamada de repositório,
+ * caso de uso em teste). Os escopos são abertos na thread e podem ser aninhados: cada comando conta no escopo
+ * corrente e em todos os que o contêm. Os comandos chegam pelo {@link InspetorSql}.
+ *
+ * Uso em testes e verificações:
+ * <pre>
+ * List&lt;ReceitaResumoDTO&gt; pagina = ContagemSql.noMaximo(1, "primeira página do resumo",
+ *         () -&gt; repository.findResumoPage(0, 10, "receitaId", false, pacienteNome, medicamentoNome,
+ *                 desde, ate, arquivadas));
+ * </pre>
+ *
+ * SELECTs idênticos repetidos no mesmo escopo (mesmo texto, parâmetros diferentes) indicam carga uma a uma de
+ * uma associação (N+1); ver {@link #suspeitasNmais1} e {@link DetectorNmais1}.
+ */
+public final class ContagemSql {
+
+    /** Habilita a contagem por requisição JSF e por chamada de repositório (teste e homologação; padrão false). */
+    public static final String PROP_HABILITADA = "teste.sql.inspecao";
+
+    /** Repetições de um mesmo SELECT no escopo a partir das quais ele é relatado como N+1 (padrão 3). */
+    public static final String PROP_LIMIAR_NMAIS1 = "teste.sql.nmais1.limiar";
+
+    /** Textos distintos guardados por escopo; além disso só o total é contado */
+    private static final int MAX_DISTINTOS = 256;
+
+    private static final ThreadLocal<Escopo> ATUAL = new ThreadLocal<>();
+
+    private ContagemSql() {
+    }
+
+    /** Se a contagem automática (requisições e repositórios) está habilitada; lida a cada chamada. */
+    public static boolean isHabilitada() {
+        return Configuracao.getBoolean(PROP_HABILITADA, false);
+    }
+
+    /** Repetições de um SELECT que caracterizam N+1. */
+    public static int limiarNmais1() {
+        return Math.max(2, Configuracao.getInt(PROP_LIMIAR_NMAIS1, 3));
+    }
+
+    /** Abre um escopo de contagem na thread; deve ser fechado (try-with-resources) na mesma thread. */
+    public static Escopo abrir(String descricao) {
+        Escopo escopo = new Escopo(descricao, ATUAL.get());
+        ATUAL.set(escopo);
+        return escopo;
+    }
+
+    /** Escopo mais interno aberto na thread, ou null. */
+    public static Escopo atual() {
+        return ATUAL.get();
+    }
+
+    /**
+     * Executa a ação e verifica que ela gerou no máximo {@code limite} comandos SQL.
+     * @throws AssertionError se o limite foi ultrapassado, com os comandos mais repetidos na mensagem
+     */
+    public static <T> T noMaximo(int limite, String caso, Callable<T> acao) throws Exception {
+        try (Escopo escopo = abrir(caso)) {
+            T resultado = acao.call();
+            escopo.verificarNoMaximo(limite);
+            return resultado;
+        }
+    }
+
+    /** Chamado pelo InspetorSql para cada comando preparado. */
+    static void registrar(String sql) {
+        for (Escopo e = ATUAL.get(); e != null; e = e.pai) {
+            e.registrar(sql);
+        }
+    }
+
+    /** Comandos SQL contados entre a abertura e o fechamento de um trecho de código. */
+    public static final class Escopo implements AutoCloseable {
+
+        private final String descricao;
+        private final Escopo pai;
+        /** SELECTs já relatados como N+1 por algum escopo da cadeia (compartilhado com o escopo externo) */
+        private final Set<String> relatados;
+        private final Map<String, Integer> porComando = new LinkedHashMap<>();
+        private int comandos;
+
+        private Escopo(String descricao, Escopo pai) {
+            this.descricao = descricao;
+            this.pai = pai;
+            this.relatados = pai != null ? pai.relatados : new HashSet<>();
+        }
+
+        private void registrar(String sql) {
+            comandos++;
+            Integer n = porComando.get(sql);
+            if (n != null) {
+                porComando.put(sql, n + 1);
+            } else if (porComando.size() < MAX_DISTINTOS) {
+                porComando.put(sql, 1);
+            }
+        }
+
+        public String getDescricao() {
+            return descricao;
+        }
+
+        /** Total de comandos SQL até o momento (incluindo os dos escopos internos). */
+        public int getComandos() {
+            return comandos;
+        }
+
+        /** Execuções por texto de comando, na ordem da primeira execução. */
+        public Map<String, Integer> getPorComando() {
+            return Collections.unmodifiableMap(porComando);
+        }
+
+        /**
+         * SELECTs repetidos ao menos {@link #limiarNmais1()} vezes que nenhum escopo interno já relatou
+         * (e que passam a contar como relatados), com o número de execuções.
+         */
+        public Map<String, Integer> suspeitasNmais1() {
+            int limiar = limiarNmais1();
+            Map<String, Integer> suspeitas = new LinkedHashMap<>();
+            for (Map.Entry<String, Integer> e : porComando.entrySet()) {
+                if (e.getValue() >= limiar && isSelect(e.getKey()) && relatados.add(e.getKey())) {
+                    suspeitas.put(e.getKey(), e.getValue());
+                }
+            }
+            return suspeitas;
+        }
+
+        /** @throws AssertionError se o escopo passou de {@code limite} comandos */
+        public void verificarNoMaximo(int limite) {
+            if (comandos > limite) {
+                throw new AssertionError(descricao + ": " + comandos + " comandos SQL, limite " + limite
+                        + resumoRepetidos());
+            }
+        }
+
+        /** Os comandos mais executados, para mensagens de erro e log. */
+        public String resumoRepetidos() {
+            List<Map.Entry<String, Integer>> ordenados = new ArrayList<>(porComando.entrySet());
+            ordenados.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < Math.min(5, ordenados.size()); i++) {
+                sb.append("\n  ").append(ordenados.get(i).getValue()).append("x ").append(ordenados.get(i).getKey());
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public void close() {
+            if (pai != null) {
+                ATUAL.set(pai);
+            } else {
+                ATUAL.remove();
+            }
+        }
+
+        private static boolean isSelect(String sql) {
+            return sql.regionMatches(true, 0, "select", 0, 6) || sql.regionMatches(true, 0, "with", 0, 4);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package br.com.teste.sql;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.persister.collection.AbstractCollectionPersister;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Relata no log os padrões N+1 de um escopo de contagem: o SELECT repetido e a associação que provavelmente
+ * o gerou (ex.: Receita.paciente lido em um laço sobre receitas sem join fetch).
+ *
+ * A associação é deduzida do mapeamento do Hibernate: uma carga "from tabela t where t.coluna=?" pela chave
+ * primária aponta para as associações *-para-um que referenciam a entidade da tabela; pela chave estrangeira de
+ * uma coleção, aponta para a coleção.
+ */
+@ApplicationScoped
+public class DetectorNmais1 {
+
+    private static final Logger LOG = Logger.getLogger(DetectorNmais1.class.getName());
+
+    /** Carga por uma única coluna, como o Hibernate gera para proxies e coleções */
+    private static final Pattern CARGA = Pattern.compile(
+            "\\bfrom\\s+(\\w+)\\s+(\\w+)\\s+where\\s+\\2\\.(\\w+)\\s*=\\s*\\?", Pattern.CASE_INSENSITIVE);
+
+    @PersistenceUnit(unitName = "testePU")
+    private EntityManagerFactory emf;
+
+    /** "tabela.coluna" -> associações carregadas por essa coluna; montado no primeiro relato */
+    private volatile Map<String, List<String>> associacoes;
+
+    /** Loga (WARNING) as suspeitas de N+1 do escopo que ainda não foram relatadas por um escopo interno. */
+    public void relatar(ContagemSql.Escopo escopo) {
+        for (Map.Entry<String, Integer> e : escopo.suspeitasNmais1().entrySet()) {
+            LOG.warning(() -> "Possível N+1 em " + escopo.getDescricao() + ": " + e.getValue()
+                    + " execuções do mesmo SELECT (" + associacao(e.getKey()) + "): " + e.getKey());
+        }
+    }
+
+    /** Descrição da associação provável para o SELECT repetido. */
+    String associacao(String sql) {
+        Matcher m = CARGA.matcher(sql);
+        if (!m.find()) {
+            return "associação não identificada";
+        }
+        String tabela = m.group(1).toLowerCase();
+        String coluna = m.group(3).toLowerCase();
+        List<String> candidatas = associacoes().get(tabela + "." + coluna);
+        return candidatas != null
+                ? "associação " + String.join(" ou ", candidatas)
+                : "carga de " + tabela + " por " + coluna;
+    }
+
+    private Map<String, List<String>> associacoes() {
+        Map<String, List<String>> mapa = associacoes;
+        if (mapa == null) {
+            mapa = mapear(emf.unwrap(SessionFactoryImplementor.class).getMetamodel());
+            associacoes = mapa;
+        }
+        return mapa;
+    }
+
+    private static Map<String, List<String>> mapear(MetamodelImplementor metamodelo) {
+        Map<String, List<String>> mapa = new HashMap<>();
+        for (EntityPersister persister : metamodelo.entityPersisters().values()) {
+            if (!(persister instanceof AbstractEntityPersister)) continue;
+            AbstractEntityPersister origem = (AbstractEntityPersister) persister;
+            String[] nomes = origem.getPropertyNames();
+            Type[] tipos = origem.getPropertyTypes();
+            for (int i = 0; i < tipos.length; i++) {
+                if (!tipos[i].isEntityType() || tipos[i].isCollectionType()) continue;
+                EntityPersister alvo = metamodelo.entityPersister(((EntityType) tipos[i]).getAssociatedEntityName());
+                if (!(alvo instanceof AbstractEntityPersister)) continue;
+                AbstractEntityPersister destino = (AbstractEntityPersister) alvo;
+                adicionar(mapa, destino.getTableName(), destino.getIdentifierColumnNames()[0],
+                        simples(origem.getEntityName()) + "." + nomes[i]);
+            }
+        }
+        for (CollectionPersister persister : metamodelo.collectionPersisters().values()) {
+            if (!(persister instanceof AbstractCollectionPersister)) continue;
+            AbstractCollectionPersister colecao = (AbstractCollectionPersister) persister;
+            String dono = colecao.getOwnerEntityPersister().getEntityName();
+            adicionar(mapa, colecao.getTableName(), colecao.getKeyColumnNames()[0],
+                    simples(dono) + colecao.getRole().substring(dono.length()));
+        }
+        return mapa;
+    }
+
+    private static void adicionar(Map<String, List<String>> mapa, String tabela, String coluna, String associacao) {
+        List<String> lista = mapa.computeIfAbsent((tabela + "." + coluna).toLowerCase(), k -> new ArrayList<>());
+        lista.add(associacao);
+        Collections.sort(lista);
+    }
+
+    /** "br.com.teste.model.Receita" -> "Receita" */
+    private static String simples(String entidade) {
+        return entidade.substring(entidade.lastIndexOf('.') + 1);
+    }
+}
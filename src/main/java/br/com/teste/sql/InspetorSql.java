@@ -0,0 +1,21 @@
+package br.com.teste.sql;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Recebe do Hibernate cada comando SQL antes de ser preparado (hibernate.session_factory.statement_inspector no
+ * persistence.xml) e o repassa aos escopos de contagem abertos na thread ({@link ContagemSql}).
+ * Sem escopo aberto o custo é uma leitura de ThreadLocal. O SQL é devolvido sem alteração.
+ *
+ * Comandos executados direto na conexão JDBC (Session.doWork, COPY) não passam pelo Hibernate e não são contados.
+ */
+public class InspetorSql implements StatementInspector {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public String inspect(String sql) {
+        ContagemSql.registrar(sql);
+        return sql;
+    }
+}
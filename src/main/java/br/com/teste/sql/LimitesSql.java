@@ -0,0 +1,56 @@
+package br.com.teste.sql;
+
+import br.com.teste.config.Configuracao;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Orçamento de comandos SQL por requisição de cada tela, verificado pelo ContagemSqlFilter quando a contagem está
+ * habilitada ({@link ContagemSql#PROP_HABILITADA}). Vale para o GET e para os postbacks/ajax da tela (paginação,
+ * filtros, gravação), com folga para o caso mais caro de cada uma; um N+1 numa listagem estoura o limite já com
+ * uma página.
+ *
+ * Cada limite pode ser trocado pela propriedade teste.sql.limite.&lt;caminho&gt; (ex.: teste.sql.limite.paciente.lista);
+ * telas sem limite próprio usam teste.sql.limite.padrao.
+ */
+public final class LimitesSql {
+
+    public static final String PROP_PREFIXO = "teste.sql.limite.";
+
+    public static final String PROP_PADRAO = PROP_PREFIXO + "padrao";
+
+    private static final int PADRAO = 20;
+
+    private static final Map<String, Integer> TELAS = new HashMap<>();
+
+    static {
+        // Página inicial: só links
+        TELAS.put("/index.xhtml", 0);
+        // Listagens paginadas: página + COUNT (reaproveitado entre páginas); gravação: find/merge + versão
+        TELAS.put("/paciente/lista.xhtml", 4);
+        TELAS.put("/medicamento/lista.xhtml", 4);
+        // Resumo paginado com filtros + itens da receita selecionada (join fetch do medicamento)
+        TELAS.put("/consulta/medicamentos-por-paciente.xhtml", 4);
+        // Ranking em memória (ContadoresPrescricao) + totais por paciente
+        TELAS.put("/relatorio/medicamentos-prescritos.xhtml", 3);
+        // Criar receita (paciente + insert), salvar rascunho (receita, inserts em lote, totais, resumo) e itens
+        TELAS.put("/receita/cadastro.xhtml", 10);
+    }
+
+    private LimitesSql() {
+    }
+
+    /** Limite de comandos por requisição para o caminho da tela (servletPath, ex.: /paciente/lista.xhtml). */
+    public static int limite(String caminho) {
+        Integer padrao = TELAS.get(caminho);
+        int limite = padrao != null ? padrao : Configuracao.getInt(PROP_PADRAO, PADRAO);
+        return Configuracao.getInt(PROP_PREFIXO + propriedade(caminho), limite);
+    }
+
+    /** "/paciente/lista.xhtml" -> "paciente.lista" */
+    static String propriedade(String caminho) {
+        String semExtensao = caminho.endsWith(".xhtml") ? caminho.substring(0, caminho.length() - 6) : caminho;
+        return (semExtensao.startsWith("/") ? semExtensao.substring(1) : semExtensao).replace('/', '.');
+    }
+}
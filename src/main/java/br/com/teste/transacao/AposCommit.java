@@ -0,0 +1,39 @@
+package br.com.teste.transacao;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * Agenda ações para depois do commit da transação JTA corrente.
+ * Usado por estruturas em memória que espelham o banco (versões de tabelas, contadores),
+ * que só devem refletir escritas efetivamente confirmadas.
+ */
+public final class AposCommit {
+
+    private AposCommit() {
+    }
+
+    /**
+     * Executa a ação após o commit da transação ativa; se ela terminar em rollback a ação é descartada.
+     * Sem transação ativa, executa imediatamente.
+     */
+    public static void executar(TransactionSynchronizationRegistry registry, Runnable acao) {
+        if (registry != null && registry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            registry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == Status.STATUS_COMMITTED) {
+                        acao.run();
+                    }
+                }
+            });
+        } else {
+            acao.run();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+-- Arquivamento de um mês sem partição de itens: desde a V9 os itens dele ficam na partição padrão
+-- (medicamento_receitado_padrao). A função da V7 só esvaziava a partição do mês, então esses itens eram copiados
+-- para o arquivo mas continuavam em medicamento_receitado e a exclusão das receitas violava fk_item_receita.
+-- Mesma função, removendo-os da partição padrão quando o mês não tem partição.
+CREATE OR REPLACE FUNCTION arquivar_receitas_mes(mes TIMESTAMP)
+RETURNS INTEGER LANGUAGE plpgsql AS $$
+DECLARE
+    inicio TIMESTAMP := date_trunc('month', mes);
+    fim TIMESTAMP := date_trunc('month', mes) + interval '1 month';
+    particao TEXT := 'medicamento_receitado_p' || to_char(date_trunc('month', mes), 'YYYY_MM');
+    movidas INTEGER;
+BEGIN
+    IF to_regclass(particao) IS NOT NULL THEN
+        EXECUTE format('LOCK TABLE %I IN ACCESS EXCLUSIVE MODE', particao);
+    END IF;
+    -- Uma alteração concorrente da receita (troca de paciente) espera o arquivamento e não a encontra mais
+    PERFORM 1 FROM receita r WHERE r.data_emissao >= inicio AND r.data_emissao < fim FOR UPDATE;
+
+    INSERT INTO receita_arquivo (id, id_paciente, data_emissao, total_medicamentos)
+    SELECT r.id, r.id_paciente, r.data_emissao, coalesce(i.total, 0)
+    FROM receita r
+    LEFT JOIN (SELECT id_receita, count(*) AS total FROM medicamento_receitado
+               WHERE data_emissao >= inicio AND data_emissao < fim GROUP BY id_receita) i ON i.id_receita = r.id
+    WHERE r.data_emissao >= inicio AND r.data_emissao < fim;
+    GET DIAGNOSTICS movidas = ROW_COUNT;
+
+    INSERT INTO medicamento_receitado_arquivo (id, id_receita, id_paciente, id_medicamento, data_emissao)
+    SELECT i.id, i.id_receita, r.id_paciente, i.id_medicamento, i.data_emissao
+    FROM medicamento_receitado i JOIN receita_arquivo r ON r.id = i.id_receita
+    WHERE i.data_emissao >= inicio AND i.data_emissao < fim;
+
+    IF to_regclass(particao) IS NOT NULL THEN
+        EXECUTE format('TRUNCATE %I', particao);
+    ELSE
+        DELETE FROM medicamento_receitado_padrao WHERE data_emissao >= inicio AND data_emissao < fim;
+    END IF;
+    DELETE FROM receita r WHERE r.data_emissao >= inicio AND r.data_emissao < fim;
+    RETURN movidas;
+END
+$$;
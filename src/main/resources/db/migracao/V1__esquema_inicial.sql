@@ -0,0 +1,42 @@
+-- Esquema inicial (antes criado pelo hbm2ddl/dump). "if not exists" permite adotar bancos já existentes.
+
+CREATE TABLE IF NOT EXISTS paciente (
+    id BIGSERIAL PRIMARY KEY,
+    nome VARCHAR(150) NOT NULL,
+    cpf  VARCHAR(14)  NOT NULL,
+    CONSTRAINT uk_paciente_cpf UNIQUE (cpf)
+);
+
+CREATE TABLE IF NOT EXISTS medicamento (
+    id BIGSERIAL PRIMARY KEY,
+    nome VARCHAR(150) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS receita (
+    id BIGSERIAL PRIMARY KEY,
+    id_paciente BIGINT NOT NULL,
+    CONSTRAINT fk_receita_paciente FOREIGN KEY (id_paciente) REFERENCES paciente(id)
+);
+
+CREATE TABLE IF NOT EXISTS medicamento_receitado (
+    id BIGSERIAL PRIMARY KEY,
+    id_receita BIGINT NOT NULL,
+    id_medicamento BIGINT NOT NULL,
+    CONSTRAINT fk_item_receita FOREIGN KEY (id_receita) REFERENCES receita(id),
+    CONSTRAINT fk_item_medicamento FOREIGN KEY (id_medicamento) REFERENCES medicamento(id)
+);
+
+-- Contadores agregados para o relatório (mantidos pela aplicação a cada item incluído/excluído)
+CREATE TABLE IF NOT EXISTS medicamento_total (
+    id_medicamento BIGINT PRIMARY KEY,
+    total BIGINT NOT NULL,
+    CONSTRAINT fk_medicamento_total_medicamento FOREIGN KEY (id_medicamento) REFERENCES medicamento(id)
+);
+CREATE INDEX IF NOT EXISTS ix_medicamento_total_total ON medicamento_total (total DESC);
+
+CREATE TABLE IF NOT EXISTS paciente_total (
+    id_paciente BIGINT PRIMARY KEY,
+    total BIGINT NOT NULL,
+    CONSTRAINT fk_paciente_total_paciente FOREIGN KEY (id_paciente) REFERENCES paciente(id)
+);
+CREATE INDEX IF NOT EXISTS ix_paciente_total_total ON paciente_total (total DESC);
@@ -0,0 +1,15 @@
+-- Índices das chaves estrangeiras e das ordenações usadas pelos repositórios.
+
+-- Receitas de um paciente (join receita -> paciente, exclusão de paciente, carga de paciente_total)
+CREATE INDEX IF NOT EXISTS ix_receita_paciente ON receita (id_paciente, id);
+
+-- Itens de uma receita em ordem de inclusão (listItensByReceita, recálculo do receita_resumo);
+-- id_medicamento incluído para atender o join com medicamento sem visitar a tabela
+CREATE INDEX IF NOT EXISTS ix_medicamento_receitado_receita ON medicamento_receitado (id_receita, id) INCLUDE (id_medicamento);
+
+-- Itens por medicamento (exclusão de medicamento, reconstrução de medicamento_total)
+CREATE INDEX IF NOT EXISTS ix_medicamento_receitado_medicamento ON medicamento_receitado (id_medicamento);
+
+-- Paginação keyset/ordenada por nome (nome + ID como desempate)
+CREATE INDEX IF NOT EXISTS ix_paciente_nome_id ON paciente (nome, id);
+CREATE INDEX IF NOT EXISTS ix_medicamento_nome_id ON medicamento (nome, id);
@@ -0,0 +1,20 @@
+-- Modelo de leitura da consulta "Medicamentos por Paciente" (mantido por ReceitaResumoRepository).
+-- Os índices de trigramas dependem das extensões opcionais e são criados por EsquemaBusca.
+
+CREATE TABLE IF NOT EXISTS receita_resumo (
+    id_receita BIGINT PRIMARY KEY,
+    id_paciente BIGINT NOT NULL,
+    paciente_nome VARCHAR(150) NOT NULL,
+    total_medicamentos BIGINT NOT NULL DEFAULT 0,
+    medicamento_ids BIGINT[] NOT NULL DEFAULT '{}',
+    medicamento_nomes TEXT NOT NULL DEFAULT '',
+    CONSTRAINT fk_receita_resumo_receita FOREIGN KEY (id_receita) REFERENCES receita(id) ON DELETE CASCADE
+);
+
+-- Ordenações da consulta (com o ID como desempate) e manutenção por paciente
+CREATE INDEX IF NOT EXISTS ix_receita_resumo_paciente_nome ON receita_resumo (paciente_nome, id_receita);
+CREATE INDEX IF NOT EXISTS ix_receita_resumo_total ON receita_resumo (total_medicamentos, id_receita);
+CREATE INDEX IF NOT EXISTS ix_receita_resumo_paciente ON receita_resumo (id_paciente);
+
+-- Receitas que contêm um medicamento (medicamento_ids @> array[id])
+CREATE INDEX IF NOT EXISTS ix_receita_resumo_medicamento_ids ON receita_resumo USING gin (medicamento_ids);
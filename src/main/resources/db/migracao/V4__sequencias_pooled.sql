@@ -0,0 +1,10 @@
+-- IDs por sequência com otimizador pooled (allocationSize = 50 nas entidades): cada nextval reserva
+-- um bloco de 50 IDs para a aplicação, que deixa de precisar de um INSERT imediato por entidade
+-- (IDENTITY) e pode agrupar as inserções em lotes JDBC.
+-- As sequências continuam sendo o DEFAULT das colunas BIGSERIAL: inserções feitas por SQL direto
+-- (ex.: dump) recebem o valor do topo de um bloco que nenhum nó reservou.
+
+ALTER SEQUENCE paciente_id_seq INCREMENT BY 50;
+ALTER SEQUENCE medicamento_id_seq INCREMENT BY 50;
+ALTER SEQUENCE receita_id_seq INCREMENT BY 50;
+ALTER SEQUENCE medicamento_receitado_id_seq INCREMENT BY 50;
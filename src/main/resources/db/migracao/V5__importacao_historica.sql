@@ -0,0 +1,35 @@
+-- Importação histórica (arquivos CSV carregados via COPY, ver ImportacaoHistorico).
+-- importacao_etapa guarda o ponto de retomada de cada etapa; as tabelas de preparação recebem as linhas
+-- validadas e ficam vazias fora de uma importação em andamento. Sem índices: são gravadas por COPY e
+-- lidas inteiras pelas junções da resolução de chaves.
+
+CREATE TABLE IF NOT EXISTS importacao_etapa (
+    etapa VARCHAR(40) PRIMARY KEY,
+    tamanho_arquivo BIGINT,
+    linha BIGINT NOT NULL DEFAULT 0,
+    registros BIGINT NOT NULL DEFAULT 0,
+    rejeitados BIGINT NOT NULL DEFAULT 0,
+    concluida BOOLEAN NOT NULL DEFAULT FALSE,
+    atualizado_em TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE TABLE IF NOT EXISTS importacao_paciente (
+    linha BIGINT NOT NULL,
+    id BIGINT NOT NULL,
+    cpf VARCHAR(11) NOT NULL,
+    nome VARCHAR(150) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS importacao_receita (
+    linha BIGINT NOT NULL,
+    id BIGINT NOT NULL,
+    codigo VARCHAR(60) NOT NULL,
+    cpf VARCHAR(11) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS importacao_item (
+    linha BIGINT NOT NULL,
+    id BIGINT NOT NULL,
+    codigo_receita VARCHAR(60) NOT NULL,
+    medicamento VARCHAR(150) NOT NULL
+);
@@ -0,0 +1,70 @@
+-- Data de emissão da receita, repetida nos itens, e medicamento_receitado particionada por mês (RANGE em
+-- data_emissao): consultas com período leem só as partições do período (partition pruning).
+-- Requer PostgreSQL 11+ (chave estrangeira e INCLUDE em tabela particionada).
+
+-- Receitas já existentes recebem a data desta migração (o esquema anterior não guardava a emissão)
+ALTER TABLE receita ADD COLUMN IF NOT EXISTS data_emissao TIMESTAMP NOT NULL DEFAULT now();
+
+-- now() é o mesmo em toda a transação: as linhas existentes recebem a mesma data das suas receitas.
+-- Depois o valor vem sempre da receita (ReceitaResumoRepository), sem padrão.
+ALTER TABLE receita_resumo ADD COLUMN IF NOT EXISTS data_emissao TIMESTAMP NOT NULL DEFAULT now();
+ALTER TABLE receita_resumo ALTER COLUMN data_emissao DROP DEFAULT;
+CREATE INDEX IF NOT EXISTS ix_receita_resumo_data_emissao ON receita_resumo (data_emissao, id_receita);
+
+-- Cria as partições mensais (medicamento_receitado_pAAAA_MM) que faltam de inicio a fim, inclusive.
+-- Chamada por esta migração e diariamente por ParticoesItensJob; a trava serializa nós concorrentes.
+CREATE OR REPLACE FUNCTION criar_particoes_medicamento_receitado(inicio TIMESTAMP, fim TIMESTAMP)
+RETURNS INTEGER LANGUAGE plpgsql AS $$
+DECLARE
+    mes TIMESTAMP := date_trunc('month', inicio);
+    nome TEXT;
+    criadas INTEGER := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(4201024);
+    WHILE mes <= fim LOOP
+        nome := 'medicamento_receitado_p' || to_char(mes, 'YYYY_MM');
+        IF to_regclass(nome) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I PARTITION OF medicamento_receitado FOR VALUES FROM (%L) TO (%L)',
+                    nome, mes, mes + interval '1 month');
+            criadas := criadas + 1;
+        END IF;
+        mes := mes + interval '1 month';
+    END LOOP;
+    RETURN criadas;
+END
+$$;
+
+-- Troca da tabela: a antiga é renomeada (com a chave primária; os índices saem para liberar os nomes),
+-- a nova herda a sequência dos IDs e recebe as linhas com a data da receita.
+ALTER TABLE medicamento_receitado RENAME TO medicamento_receitado_v5;
+ALTER INDEX IF EXISTS medicamento_receitado_pkey RENAME TO medicamento_receitado_v5_pkey;
+DROP INDEX IF EXISTS ix_medicamento_receitado_receita;
+DROP INDEX IF EXISTS ix_medicamento_receitado_medicamento;
+
+-- A chave de partição faz parte da chave primária (exigência do PostgreSQL); o ID continua único pela sequência
+CREATE TABLE medicamento_receitado (
+    id BIGINT NOT NULL DEFAULT nextval('medicamento_receitado_id_seq'),
+    id_receita BIGINT NOT NULL,
+    id_medicamento BIGINT NOT NULL,
+    data_emissao TIMESTAMP NOT NULL,
+    CONSTRAINT medicamento_receitado_pkey PRIMARY KEY (id, data_emissao),
+    CONSTRAINT fk_item_receita FOREIGN KEY (id_receita) REFERENCES receita(id),
+    CONSTRAINT fk_item_medicamento FOREIGN KEY (id_medicamento) REFERENCES medicamento(id)
+) PARTITION BY RANGE (data_emissao);
+
+ALTER SEQUENCE medicamento_receitado_id_seq OWNED BY medicamento_receitado.id;
+
+-- Mesmos índices da V2, criados em cada partição
+CREATE INDEX ix_medicamento_receitado_receita ON medicamento_receitado (id_receita, id) INCLUDE (id_medicamento);
+CREATE INDEX ix_medicamento_receitado_medicamento ON medicamento_receitado (id_medicamento);
+
+-- Sem partição DEFAULT: os meses seguintes são criados com antecedência (teste.particoes.mesesAdiante)
+SELECT criar_particoes_medicamento_receitado(
+        coalesce((SELECT min(data_emissao) FROM receita), localtimestamp),
+        localtimestamp + interval '3 months');
+
+INSERT INTO medicamento_receitado (id, id_receita, id_medicamento, data_emissao)
+SELECT i.id, i.id_receita, i.id_medicamento, r.data_emissao
+FROM medicamento_receitado_v5 i JOIN receita r ON r.id = i.id_receita;
+
+DROP TABLE medicamento_receitado_v5;
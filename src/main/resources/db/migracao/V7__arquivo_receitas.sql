@@ -0,0 +1,74 @@
+-- Arquivo das receitas antigas: ArquivamentoJob move as receitas (e os itens) emitidas antes da idade
+-- configurada de receita, medicamento_receitado e receita_resumo para as tabelas abaixo, um mês por vez.
+-- As tabelas quentes guardam só os meses recentes; os contadores agregados continuam contando os itens arquivados.
+
+-- Receitas de um mês (arquivamento) e a receita mais antiga (próximo mês a arquivar)
+CREATE INDEX IF NOT EXISTS ix_receita_data_emissao ON receita (data_emissao);
+
+-- Somente leitura depois de arquivada: o total de itens é gravado no arquivamento.
+-- O nome do paciente não é copiado (lido do cadastro na consulta, sempre atual).
+CREATE TABLE IF NOT EXISTS receita_arquivo (
+    id BIGINT PRIMARY KEY,
+    id_paciente BIGINT NOT NULL,
+    data_emissao TIMESTAMP NOT NULL,
+    total_medicamentos BIGINT NOT NULL,
+    arquivada_em TIMESTAMP NOT NULL DEFAULT now(),
+    CONSTRAINT fk_receita_arquivo_paciente FOREIGN KEY (id_paciente) REFERENCES paciente(id)
+);
+CREATE INDEX IF NOT EXISTS ix_receita_arquivo_paciente ON receita_arquivo (id_paciente);
+-- BRIN: as linhas chegam em ordem de emissão (mês a mês); o índice ocupa poucas páginas
+CREATE INDEX IF NOT EXISTS ix_receita_arquivo_data_emissao ON receita_arquivo USING brin (data_emissao);
+
+-- O paciente é repetido no item: totais por paciente do arquivo sem junção com receita_arquivo
+CREATE TABLE IF NOT EXISTS medicamento_receitado_arquivo (
+    id BIGINT PRIMARY KEY,
+    id_receita BIGINT NOT NULL,
+    id_paciente BIGINT NOT NULL,
+    id_medicamento BIGINT NOT NULL,
+    data_emissao TIMESTAMP NOT NULL,
+    CONSTRAINT fk_item_arquivo_receita FOREIGN KEY (id_receita) REFERENCES receita_arquivo(id),
+    CONSTRAINT fk_item_arquivo_medicamento FOREIGN KEY (id_medicamento) REFERENCES medicamento(id)
+);
+CREATE INDEX IF NOT EXISTS ix_medicamento_receitado_arquivo_receita ON medicamento_receitado_arquivo (id_receita, id);
+CREATE INDEX IF NOT EXISTS ix_medicamento_receitado_arquivo_medicamento ON medicamento_receitado_arquivo (id_medicamento);
+CREATE INDEX IF NOT EXISTS ix_medicamento_receitado_arquivo_data_emissao
+    ON medicamento_receitado_arquivo USING brin (data_emissao);
+
+-- Move as receitas emitidas no mês (e os itens, da partição do mês) para o arquivo, em uma transação.
+-- A partição fica bloqueada até o commit (nenhum item do mês é incluído ou excluído durante a cópia) e é
+-- esvaziada com TRUNCATE, sem deixar linhas mortas; o resumo sai junto com a receita (ON DELETE CASCADE).
+-- A partição vazia é removida depois, em outra transação (ArquivamentoRepository).
+CREATE OR REPLACE FUNCTION arquivar_receitas_mes(mes TIMESTAMP)
+RETURNS INTEGER LANGUAGE plpgsql AS $$
+DECLARE
+    inicio TIMESTAMP := date_trunc('month', mes);
+    fim TIMESTAMP := date_trunc('month', mes) + interval '1 month';
+    particao TEXT := 'medicamento_receitado_p' || to_char(date_trunc('month', mes), 'YYYY_MM');
+    movidas INTEGER;
+BEGIN
+    IF to_regclass(particao) IS NOT NULL THEN
+        EXECUTE format('LOCK TABLE %I IN ACCESS EXCLUSIVE MODE', particao);
+    END IF;
+    -- Uma alteração concorrente da receita (troca de paciente) espera o arquivamento e não a encontra mais
+    PERFORM 1 FROM receita r WHERE r.data_emissao >= inicio AND r.data_emissao < fim FOR UPDATE;
+
+    INSERT INTO receita_arquivo (id, id_paciente, data_emissao, total_medicamentos)
+    SELECT r.id, r.id_paciente, r.data_emissao, coalesce(i.total, 0)
+    FROM receita r
+    LEFT JOIN (SELECT id_receita, count(*) AS total FROM medicamento_receitado
+               WHERE data_emissao >= inicio AND data_emissao < fim GROUP BY id_receita) i ON i.id_receita = r.id
+    WHERE r.data_emissao >= inicio AND r.data_emissao < fim;
+    GET DIAGNOSTICS movidas = ROW_COUNT;
+
+    INSERT INTO medicamento_receitado_arquivo (id, id_receita, id_paciente, id_medicamento, data_emissao)
+    SELECT i.id, i.id_receita, r.id_paciente, i.id_medicamento, i.data_emissao
+    FROM medicamento_receitado i JOIN receita_arquivo r ON r.id = i.id_receita
+    WHERE i.data_emissao >= inicio AND i.data_emissao < fim;
+
+    IF to_regclass(particao) IS NOT NULL THEN
+        EXECUTE format('TRUNCATE %I', particao);
+    END IF;
+    DELETE FROM receita r WHERE r.data_emissao >= inicio AND r.data_emissao < fim;
+    RETURN movidas;
+END
+$$;
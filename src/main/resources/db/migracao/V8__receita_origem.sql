@@ -0,0 +1,8 @@
+-- Código das receitas importadas no sistema de origem (ver ImportacaoHistorico): uma nova importação do mesmo
+-- arquivo não duplica as receitas, e os itens são ligados à receita pelo código mesmo em importações separadas.
+-- Sem chave estrangeira: a linha continua após o arquivamento ou a exclusão da receita, e o código não é
+-- importado de novo. Receitas importadas antes desta migração não têm o código registrado.
+CREATE TABLE IF NOT EXISTS receita_origem (
+    codigo VARCHAR(60) PRIMARY KEY,
+    id_receita BIGINT NOT NULL
+);
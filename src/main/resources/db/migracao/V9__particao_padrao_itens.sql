@@ -0,0 +1,38 @@
+-- Partição DEFAULT de medicamento_receitado: um item com data fora das partições mensais (job parado, data
+-- importada muito antiga ou futura) é gravado em medicamento_receitado_padrao em vez de recusado. A subida avisa
+-- no log quando ela tem linhas (MigracaoEsquema); as consultas com período a leem só fora dos meses criados.
+CREATE TABLE IF NOT EXISTS medicamento_receitado_padrao PARTITION OF medicamento_receitado DEFAULT;
+
+-- Com a partição DEFAULT, CREATE TABLE ... PARTITION OF recusa um mês que já tem linhas nela: a partição do mês
+-- é criada fora da tabela, recebe as linhas movidas da DEFAULT e só então é anexada. Mesma assinatura da V6.
+CREATE OR REPLACE FUNCTION criar_particoes_medicamento_receitado(inicio TIMESTAMP, fim TIMESTAMP)
+RETURNS INTEGER LANGUAGE plpgsql AS $$
+DECLARE
+    mes TIMESTAMP := date_trunc('month', inicio);
+    nome TEXT;
+    criadas INTEGER := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(4201024);
+    WHILE mes <= fim LOOP
+        nome := 'medicamento_receitado_p' || to_char(mes, 'YYYY_MM');
+        IF to_regclass(nome) IS NULL THEN
+            IF EXISTS (SELECT 1 FROM medicamento_receitado_padrao
+                       WHERE data_emissao >= mes AND data_emissao < mes + interval '1 month') THEN
+                EXECUTE format('CREATE TABLE %I (LIKE medicamento_receitado INCLUDING DEFAULTS)', nome);
+                EXECUTE format('WITH movidos AS (DELETE FROM medicamento_receitado_padrao ' ||
+                        'WHERE data_emissao >= %L AND data_emissao < %L RETURNING id, id_receita, id_medicamento, data_emissao) ' ||
+                        'INSERT INTO %I (id, id_receita, id_medicamento, data_emissao) SELECT * FROM movidos',
+                        mes, mes + interval '1 month', nome);
+                EXECUTE format('ALTER TABLE medicamento_receitado ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                        nome, mes, mes + interval '1 month');
+            ELSE
+                EXECUTE format('CREATE TABLE %I PARTITION OF medicamento_receitado FOR VALUES FROM (%L) TO (%L)',
+                        nome, mes, mes + interval '1 month');
+            END IF;
+            criadas := criadas + 1;
+        END IF;
+        mes := mes + interval '1 month';
+    END LOOP;
+    RETURN criadas;
+END
+$$;
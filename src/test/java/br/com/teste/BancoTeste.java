@@ -0,0 +1,194 @@
+package br.com.teste;
+
+import br.com.teste.analitico.ItensColunares;
+import br.com.teste.busca.EsquemaBusca;
+import br.com.teste.cache.VersaoTabelas;
+import br.com.teste.estatistica.ContadoresPrescricao;
+import br.com.teste.job.AtualizacaoRelatorio;
+import br.com.teste.migracao.MigracaoEsquema;
+import br.com.teste.model.Medicamento;
+import br.com.teste.model.MedicamentoReceitado;
+import br.com.teste.model.MedicamentoTotal;
+import br.com.teste.model.Paciente;
+import br.com.teste.model.PacienteTotal;
+import br.com.teste.model.Receita;
+import br.com.teste.repository.ReceitaRepository;
+import br.com.teste.repository.ReceitaResumoRepository;
+import br.com.teste.repository.TotaisPrescricaoRepository;
+import br.com.teste.sql.InspetorSql;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.postgresql.ds.PGSimpleDataSource;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * PostgreSQL dos testes que precisam de banco, configurado por propriedades de sistema:
+ * teste.banco.url (ex.: jdbc:postgresql://localhost:5432/teste_unitario), teste.banco.usuario e teste.banco.senha.
+ * Sem a URL esses testes são ignorados (mvn test continua rodando só os testes sem banco).
+ *
+ * Use um banco exclusivo: as migrações da aplicação são aplicadas e os testes gravam dados.
+ *
+ * Os testes da réplica de leitura pedem também teste.banco.replica.url (mesmo usuário e senha): um segundo banco,
+ * migrado como o primeiro, que nunca recebe as escritas (uma réplica sempre atrasada).
+ */
+public final class BancoTeste {
+
+    public static final String PROP_URL = "teste.banco.url";
+    public static final String PROP_USUARIO = "teste.banco.usuario";
+    public static final String PROP_SENHA = "teste.banco.senha";
+    public static final String PROP_REPLICA_URL = "teste.banco.replica.url";
+
+    /** Busca por nome preparada no banco (criada na primeira chamada de {@link #migrado()}) */
+    private static EsquemaBusca esquemaBusca;
+
+    /** Se o banco da réplica já foi migrado nesta execução */
+    private static boolean replicaMigrada;
+
+    private BancoTeste() {
+    }
+
+    /** DataSource do banco informado; sem -Dteste.banco.url o teste é ignorado (assumption). */
+    public static PGSimpleDataSource dataSource() {
+        return dataSource(PROP_URL);
+    }
+
+    private static PGSimpleDataSource dataSource(String propriedadeUrl) {
+        String url = System.getProperty(propriedadeUrl);
+        assumeTrue(url != null, "-D" + propriedadeUrl + " não informado: teste de banco ignorado");
+        PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setUrl(url);
+        dataSource.setUser(System.getProperty(PROP_USUARIO, "postgres"));
+        dataSource.setPassword(System.getProperty(PROP_SENHA, ""));
+        return dataSource;
+    }
+
+    /** DataSource do banco com as migrações aplicadas e a busca por nome preparada (uma vez por execução). */
+    public static synchronized PGSimpleDataSource migrado() {
+        PGSimpleDataSource dataSource = dataSource();
+        if (esquemaBusca == null) {
+            migrar(dataSource);
+            EsquemaBusca busca = new EsquemaBusca();
+            injetar(busca, "dataSource", dataSource);
+            busca.init();
+            esquemaBusca = busca;
+        }
+        return dataSource;
+    }
+
+    /**
+     * DataSource do banco da réplica (-Dteste.banco.replica.url), com as migrações aplicadas e a busca por nome
+     * preparada (uma vez por execução);
+     * sem a URL, ou sem a do primário, o teste é ignorado.
+     */
+    public static synchronized PGSimpleDataSource replica() {
+        migrado();
+        PGSimpleDataSource dataSource = dataSource(PROP_REPLICA_URL);
+        if (!replicaMigrada) {
+            migrar(dataSource);
+            EsquemaBusca busca = new EsquemaBusca();
+            injetar(busca, "dataSource", dataSource);
+            busca.init();
+            replicaMigrada = true;
+        }
+        return dataSource;
+    }
+
+    /** Busca por nome do banco migrado (trigramas quando a extensão estiver disponível). */
+    public static synchronized EsquemaBusca esquemaBusca() {
+        migrado();
+        return esquemaBusca;
+    }
+
+    /**
+     * SessionFactory (também EntityManagerFactory) do banco migrado, com o mapeamento, os lotes JDBC e o InspetorSql
+     * do testePU; sem cache de segundo nível, a menos que as propriedades o habilitem.
+     */
+    public static SessionFactory sessionFactory(Map<String, Object> propriedades) {
+        return sessionFactory(migrado(), propriedades);
+    }
+
+    /** Como {@link #sessionFactory(Map)}, sobre outro banco já migrado (ex.: {@link #replica()}). */
+    public static SessionFactory sessionFactory(PGSimpleDataSource dataSource, Map<String, Object> propriedades) {
+        StandardServiceRegistry registro = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.DIALECT, PostgreSQLDialect.class.getName())
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "none")
+                .applySetting(AvailableSettings.URL, dataSource.getUrl())
+                .applySetting(AvailableSettings.USER, dataSource.getUser())
+                .applySetting(AvailableSettings.PASS, dataSource.getPassword())
+                .applySetting(AvailableSettings.POOL_SIZE, 4)
+                .applySetting(AvailableSettings.USE_SECOND_LEVEL_CACHE, false)
+                .applySetting(AvailableSettings.USE_QUERY_CACHE, false)
+                .applySetting(AvailableSettings.STATEMENT_INSPECTOR, InspetorSql.class.getName())
+                .applySetting(AvailableSettings.STATEMENT_BATCH_SIZE, 50)
+                .applySetting(AvailableSettings.ORDER_INSERTS, true)
+                .applySetting(AvailableSettings.ORDER_UPDATES, true)
+                .applySettings(propriedades)
+                .build();
+        MetadataSources fontes = new MetadataSources(registro);
+        for (Class<?> entidade : new Class<?>[]{Paciente.class, Medicamento.class, Receita.class,
+                MedicamentoReceitado.class, MedicamentoTotal.class, PacienteTotal.class}) {
+            fontes.addAnnotatedClass(entidade);
+        }
+        return fontes.buildMetadata().buildSessionFactory();
+    }
+
+    /**
+     * Injeta no ReceitaRepository (ou subclasse) o que as escritas de receitas e itens atualizam, como o container:
+     * resumo e contadores agregados no banco, contadores e itens em colunas na memória (vazios; sem transação JTA
+     * as alterações são aplicadas na hora). A atualização do relatório fica inerte: nenhuma geração é agendada.
+     */
+    public static <R extends ReceitaRepository> R receitaRepository(R repository, EntityManager em, VersaoTabelas versoes) {
+        injetar(repository, "em", em);
+        injetar(repository, "versoes", versoes);
+        injetar(repository, "esquemaBusca", esquemaBusca());
+        TotaisPrescricaoRepository totais = new TotaisPrescricaoRepository();
+        injetar(totais, "em", em);
+        injetar(repository, "totaisRepository", totais);
+        ReceitaResumoRepository resumo = new ReceitaResumoRepository();
+        injetar(resumo, "em", em);
+        injetar(resumo, "esquemaBusca", esquemaBusca());
+        injetar(repository, "resumoRepository", resumo);
+        injetar(repository, "contadores", new ContadoresPrescricao());
+        injetar(repository, "itensColunares", new ItensColunares());
+        AtualizacaoRelatorio atualizacao = new AtualizacaoRelatorio();
+        // Geração "já agendada": registrarEscrita não chega ao executor (ausente fora do servidor)
+        injetar(atualizacao, "agendada", new AtomicBoolean(true));
+        injetar(repository, "atualizacaoRelatorio", atualizacao);
+        return repository;
+    }
+
+    /** Aplica as migrações pendentes, como na subida da aplicação. */
+    public static void migrar(DataSource dataSource) {
+        MigracaoEsquema migracao = new MigracaoEsquema();
+        injetar(migracao, "dataSource", dataSource);
+        migracao.init();
+    }
+
+    /** Atribui o valor ao campo (declarado na classe do alvo ou em uma superclasse), como faz a injeção do container. */
+    public static void injetar(Object alvo, String campo, Object valor) {
+        for (Class<?> c = alvo.getClass(); c != null; c = c.getSuperclass()) {
+            try {
+                Field f = c.getDeclaredField(campo);
+                f.setAccessible(true);
+                f.set(alvo, valor);
+                return;
+            } catch (NoSuchFieldException e) {
+                // procura na superclasse
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Campo " + campo + " inacessível em " + c.getName(), e);
+            }
+        }
+        throw new IllegalArgumentException("Campo " + campo + " não existe em " + alvo.getClass().getName());
+    }
+}
@@ -0,0 +1,101 @@
+package br.com.teste.analitico;
+
+import br.com.teste.analitico.ColunasItens.Coluna;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Escritas por receita (inclusão, exclusão de item, troca de paciente, remoção de receitas) em sequência sorteada,
+ * comparadas a uma lista simples de itens. As exclusões passam do limite de compactação várias vezes, então o
+ * encadeamento por receita é refeito com as linhas renumeradas.
+ */
+class ColunasItensTest {
+
+    private static final int OPERACOES = 60_000;
+    private static final int RECEITAS = 100;
+    private static final int PACIENTES = 30;
+    private static final int MEDICAMENTOS = 8;
+
+    @Test
+    void escritasPorReceitaIguaisAUmaListaDeItens() {
+        ColunasItens colunas = new ColunasItens(16);
+        List<long[]> itens = new ArrayList<>();
+        Random aleatorio = new Random(7);
+        for (int i = 1; i <= OPERACOES; i++) {
+            long receita = 1 + aleatorio.nextInt(RECEITAS);
+            long paciente = 1 + aleatorio.nextInt(PACIENTES);
+            long medicamento = 1 + aleatorio.nextInt(MEDICAMENTOS);
+            int operacao = aleatorio.nextInt(100);
+            if (operacao < 40) {
+                // O paciente de uma receita é o mesmo em todos os itens dela
+                long doPaciente = pacienteDaReceita(itens, receita, paciente);
+                int quantidade = 1 + aleatorio.nextInt(2);
+                colunas.incluir(receita, doPaciente, medicamento, quantidade);
+                for (int q = 0; q < quantidade; q++) {
+                    itens.add(new long[]{receita, doPaciente, medicamento});
+                }
+            } else if (operacao < 95) {
+                assertEquals(excluir(itens, receita, medicamento), colunas.excluir(receita, medicamento),
+                        "exclusão do medicamento " + medicamento + " da receita " + receita);
+            } else if (operacao < 99 || aleatorio.nextInt(50) > 0) {
+                colunas.trocarPaciente(receita, paciente);
+                itens.stream().filter(item -> item[0] == receita).forEach(item -> item[1] = paciente);
+            } else {
+                // Rara (a remoção também compacta as colunas e zeraria as exclusões acumuladas)
+                colunas.removerReceitas(Collections.singleton(receita));
+                itens.removeIf(item -> item[0] == receita);
+            }
+            if (i % 5_000 == 0) {
+                verificar(colunas, itens);
+            }
+        }
+    }
+
+    private static long pacienteDaReceita(List<long[]> itens, long receita, long padrao) {
+        for (long[] item : itens) {
+            if (item[0] == receita) {
+                return item[1];
+            }
+        }
+        return padrao;
+    }
+
+    /** Remove o item mais recente da receita com o medicamento. */
+    private static boolean excluir(List<long[]> itens, long receita, long medicamento) {
+        for (int i = itens.size() - 1; i >= 0; i--) {
+            if (itens.get(i)[0] == receita && itens.get(i)[2] == medicamento) {
+                itens.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void verificar(ColunasItens colunas, List<long[]> itens) {
+        assertEquals(itens.size(), colunas.linhas());
+        Map<Long, Long> porPaciente = new HashMap<>();
+        itens.forEach(item -> porPaciente.merge(item[1], 1L, Long::sum));
+        ConsultaItens.Contagem pacientes = colunas.consulta().contarPor(Coluna.PACIENTE);
+        for (long p = 1; p <= PACIENTES; p++) {
+            assertEquals(porPaciente.getOrDefault(p, 0L).longValue(), pacientes.total(p), "itens do paciente " + p);
+        }
+        for (long r = 1; r <= RECEITAS; r++) {
+            long receita = r;
+            Map<Long, Long> porMedicamento = new HashMap<>();
+            itens.stream().filter(item -> item[0] == receita).forEach(item -> porMedicamento.merge(item[2], 1L, Long::sum));
+            ConsultaItens.Contagem medicamentos = colunas.consulta().daReceita(receita).contarPor(Coluna.MEDICAMENTO);
+            for (long m = 1; m <= MEDICAMENTOS; m++) {
+                assertEquals(porMedicamento.getOrDefault(m, 0L).longValue(), medicamentos.total(m),
+                        "itens do medicamento " + m + " na receita " + r);
+            }
+        }
+    }
+}
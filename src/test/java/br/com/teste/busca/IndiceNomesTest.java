@@ -0,0 +1,133 @@
+package br.com.teste.busca;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IndiceNomesTest {
+
+    /**
+     * Os sufixos "silva" dos sobrenomes vêm antes de "silvana ..." no array de sufixos; com o limite atingido
+     * por eles, os nomes que começam pelo termo não podem ficar de fora.
+     */
+    @Test
+    void nomesIniciadosPeloTermoNaoSaoCortadosPeloLimite() {
+        List<String> nomes = new ArrayList<>();
+        for (char c = 'A'; c <= 'T'; c++) {
+            nomes.add(c + "na Silva");
+        }
+        nomes.add("Silvana Costa");
+        nomes.add("Sílvio Ramos");
+        IndiceNomes indice = indice(nomes);
+
+        assertEquals(Arrays.asList("Silvana Costa", "Sílvio Ramos", "Ana Silva", "Bna Silva", "Cna Silva"),
+                nomes(indice.buscar("silv", 5)));
+    }
+
+    @Test
+    void inclusaoPendenteEntraNaOrdemEAlteracaoSubstituiABase() {
+        IndiceNomes indice = indice(Arrays.asList("Diego Silva", "Maria Silva", "Silvia Souza"));
+        indice.registrar(10, "Silas Prado");
+        indice.registrar(2, "Maria Santos");
+
+        assertEquals(Arrays.asList("Silas Prado", "Silvia Souza", "Diego Silva"), nomes(indice.buscar("si", 3)));
+        assertEquals(Arrays.asList("Silas Prado", "Silvia Souza"), nomes(indice.buscar("si", 2)));
+        assertEquals(Arrays.asList("Maria Santos"), nomes(indice.buscar("maria", 5)));
+    }
+
+    @Test
+    void nomeComDuasPalavrasIniciadasPeloTermoApareceUmaVez() {
+        IndiceNomes indice = indice(Arrays.asList("Silva da Silva", "Ana Silveira"));
+        assertEquals(Arrays.asList("Silva da Silva", "Ana Silveira"), nomes(indice.buscar("silv", 10)));
+        indice.remover(1);
+        assertEquals(Arrays.asList("Ana Silveira"), nomes(indice.buscar("silv", 10)));
+    }
+
+    /** Mesmo resultado de uma busca ingênua (todos os nomes, ordenados e cortados) para termos e limites variados. */
+    @Test
+    void mesmoResultadoDaBuscaCompleta() {
+        String[] palavras = {"Ana", "Antônio", "Maria", "Mariana", "Silva", "Silveira", "Souza", "Santos", "Sá", "da"};
+        Random aleatorio = new Random(7);
+        Map<Long, String> atuais = new HashMap<>();
+        List<String> nomes = new ArrayList<>();
+        for (int i = 0; i < 3_000; i++) {
+            StringBuilder nome = new StringBuilder();
+            for (int k = 1 + aleatorio.nextInt(4); k > 0; k--) {
+                nome.append(palavras[aleatorio.nextInt(palavras.length)]).append(k > 1 ? " " : "");
+            }
+            nomes.add(nome.toString());
+            atuais.put((long) i + 1, nome.toString());
+        }
+        IndiceNomes indice = indice(nomes);
+        // Alterações pendentes (delta): renomeados, excluídos e incluídos
+        for (int i = 0; i < 200; i++) {
+            long id = 1 + aleatorio.nextInt(3_100);
+            if (aleatorio.nextInt(3) == 0) {
+                indice.remover(id);
+                atuais.remove(id);
+            } else {
+                String nome = palavras[aleatorio.nextInt(palavras.length)] + " " + palavras[aleatorio.nextInt(palavras.length)];
+                indice.registrar(id, nome);
+                atuais.put(id, nome);
+            }
+        }
+        for (String termo : new String[]{"a", "an", "ma", "mari", "s", "si", "silv", "sa", "da", "maria s", "x"}) {
+            for (int limite : new int[]{1, 5, 15, 5_000}) {
+                assertEquals(ingenua(atuais, termo, limite), ids(indice.buscar(termo, limite)), termo + " / " + limite);
+            }
+        }
+    }
+
+    private static List<Long> ingenua(Map<Long, String> nomes, String termo, int limite) {
+        String t = BuscaTexto.normalizar(termo);
+        List<Long> ids = new ArrayList<>();
+        for (Map.Entry<Long, String> e : nomes.entrySet()) {
+            String chave = BuscaTexto.normalizar(e.getValue());
+            if (chave.startsWith(t) || chave.contains(" " + t)) {
+                ids.add(e.getKey());
+            }
+        }
+        ids.sort((x, y) -> {
+            String cx = BuscaTexto.normalizar(nomes.get(x)), cy = BuscaTexto.normalizar(nomes.get(y));
+            boolean px = cx.startsWith(t), py = cy.startsWith(t);
+            if (px != py) return px ? -1 : 1;
+            int c = cx.compareTo(cy);
+            return c != 0 ? c : Long.compare(x, y);
+        });
+        return ids.size() > limite ? ids.subList(0, limite) : ids;
+    }
+
+    private static List<Long> ids(List<IndiceNomes.Resultado> resultados) {
+        List<Long> ids = new ArrayList<>();
+        for (IndiceNomes.Resultado r : resultados) {
+            ids.add(r.getId());
+        }
+        return ids;
+    }
+
+    /** IDs 1..n na ordem da lista */
+    private static IndiceNomes indice(List<String> nomes) {
+        long[] ids = new long[nomes.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i + 1;
+        }
+        IndiceNomes indice = new IndiceNomes(100);
+        indice.carregar(ids, nomes.toArray(new String[0]), indice.marca());
+        return indice;
+    }
+
+    private static List<String> nomes(List<IndiceNomes.Resultado> resultados) {
+        List<String> nomes = new ArrayList<>();
+        for (IndiceNomes.Resultado r : resultados) {
+            nomes.add(r.getNome());
+        }
+        return nomes;
+    }
+}
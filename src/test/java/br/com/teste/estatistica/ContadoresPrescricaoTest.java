@@ -0,0 +1,124 @@
+package br.com.teste.estatistica;
+
+import br.com.teste.dto.NomeQuantidadeDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contadores de prescrição sob inclusões e exclusões concorrentes de itens.
+ * Sem transação JTA (registry nulo) cada variação é aplicada na hora, como no commit de cada escrita.
+ */
+class ContadoresPrescricaoTest {
+
+    private static final int THREADS = 8;
+    private static final int ITENS_POR_THREAD = 50_000;
+    private static final int MEDICAMENTOS = 40;
+    private static final int PACIENTES = 200;
+
+    @Test
+    void contagensExatasComInclusoesEExclusoesConcorrentes() throws Exception {
+        ContadoresPrescricao contadores = new ContadoresPrescricao();
+        for (long id = 1; id <= MEDICAMENTOS; id++) {
+            contadores.registrarNomeMedicamento(id, "m" + id);
+        }
+        for (long id = 1; id <= PACIENTES; id++) {
+            contadores.registrarNomePaciente(id, "p" + id);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        CountDownLatch largada = new CountDownLatch(1);
+        try {
+            List<Future<long[][]>> escritas = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                long semente = t;
+                escritas.add(executor.submit(() -> escrever(contadores, largada, semente)));
+            }
+            // Leituras do ranking durante as escritas (a tela do relatório aberta)
+            Future<?> leituras = executor.submit((Callable<Void>) () -> {
+                largada.await();
+                for (int i = 0; i < 2_000; i++) {
+                    contadores.topMedicamentos(10);
+                    contadores.topPacientes(10);
+                }
+                return null;
+            });
+            largada.countDown();
+
+            long[] esperadoMedicamentos = new long[MEDICAMENTOS + 1];
+            long[] esperadoPacientes = new long[PACIENTES + 1];
+            for (Future<long[][]> f : escritas) {
+                long[][] parcial = f.get(2, TimeUnit.MINUTES);
+                somar(esperadoMedicamentos, parcial[0]);
+                somar(esperadoPacientes, parcial[1]);
+            }
+            leituras.get(2, TimeUnit.MINUTES);
+
+            verificar(contadores.topMedicamentos(MEDICAMENTOS + 1), esperadoMedicamentos, "m");
+            verificar(contadores.topPacientes(PACIENTES + 1), esperadoPacientes, "p");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Inclusões e exclusões (uma a cada quatro) sorteadas; retorna a variação líquida por medicamento e paciente. */
+    private static long[][] escrever(ContadoresPrescricao contadores, CountDownLatch largada, long semente)
+            throws InterruptedException {
+        long[] medicamentos = new long[MEDICAMENTOS + 1];
+        long[] pacientes = new long[PACIENTES + 1];
+        Random aleatorio = new Random(semente);
+        largada.await();
+        for (int i = 0; i < ITENS_POR_THREAD; i++) {
+            // Poucos medicamentos: muitas threads disputam o mesmo contador
+            int medicamento = 1 + aleatorio.nextInt(MEDICAMENTOS);
+            int paciente = 1 + aleatorio.nextInt(PACIENTES);
+            long delta = aleatorio.nextInt(4) == 0 ? -1 : 1;
+            contadores.registrarItem((long) paciente, (long) medicamento, delta);
+            medicamentos[medicamento] += delta;
+            pacientes[paciente] += delta;
+        }
+        return new long[][]{medicamentos, pacientes};
+    }
+
+    private static void somar(long[] total, long[] parcial) {
+        for (int i = 0; i < total.length; i++) {
+            total[i] += parcial[i];
+        }
+    }
+
+    /** Cada ID com total positivo aparece uma única vez, com o total exato, em ordem decrescente. */
+    private static void verificar(List<NomeQuantidadeDTO> ranking, long[] esperado, String prefixo) {
+        Map<String, Long> porNome = new HashMap<>();
+        Set<String> vistos = new HashSet<>();
+        long anterior = Long.MAX_VALUE;
+        for (NomeQuantidadeDTO dto : ranking) {
+            assertTrue(vistos.add(dto.getNome()), "ID repetido no ranking: " + dto.getNome());
+            assertTrue(dto.getQuantidade() <= anterior, "ranking fora de ordem em " + dto.getNome());
+            anterior = dto.getQuantidade();
+            porNome.put(dto.getNome(), dto.getQuantidade());
+        }
+        for (int id = 1; id < esperado.length; id++) {
+            if (esperado[id] > 0) {
+                assertEquals(Long.valueOf(esperado[id]), porNome.get(prefixo + id), "total de " + prefixo + id);
+            } else {
+                assertFalse(porNome.containsKey(prefixo + id), prefixo + id + " sem total positivo no ranking");
+            }
+        }
+    }
+}
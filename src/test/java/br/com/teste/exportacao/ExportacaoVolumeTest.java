@@ -0,0 +1,83 @@
+package br.com.teste.exportacao;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exportação de milhões de linhas com heap pequeno: a memória das saídas não pode depender da quantidade de
+ * linhas. {@link #main} grava {@value #LINHAS} linhas em CSV (com GZIP, como com gzip=true) e em XLSX (três
+ * abas) em um stream que só conta os bytes; o teste o executa em outra JVM com -Xmx{@value #HEAP}.
+ */
+class ExportacaoVolumeTest {
+
+    private static final int LINHAS = 3_000_000;
+    private static final String HEAP = "16m";
+
+    @Test
+    void milhoesDeLinhasComHeapPequeno() throws Exception {
+        File saida = File.createTempFile("exportacao-volume", ".log");
+        try {
+            Process jvm = new ProcessBuilder(
+                    new File(System.getProperty("java.home"), "bin/java").getPath(),
+                    "-Xmx" + HEAP, "-cp", System.getProperty("java.class.path"), ExportacaoVolumeTest.class.getName())
+                    .redirectErrorStream(true)
+                    .redirectOutput(saida)
+                    .start();
+            assertTrue(jvm.waitFor(5, TimeUnit.MINUTES), "exportação não terminou em 5 minutos");
+            String log = new String(Files.readAllBytes(saida.toPath()), StandardCharsets.UTF_8);
+            assertEquals(0, jvm.exitValue(), log);
+            assertTrue(log.contains("XLSX: 3 abas"), log);
+        } finally {
+            Files.deleteIfExists(saida.toPath());
+        }
+    }
+
+    /** Executado na JVM com heap limitado; termina com erro (OutOfMemoryError) se as saídas acumularem linhas. */
+    public static void main(String[] args) throws IOException {
+        ContagemBytes csv = new ContagemBytes();
+        SaidaTabular saida = new SaidaCsv(new GZIPOutputStream(csv, 1 << 16));
+        gravar(saida);
+        saida.close();
+        System.out.println("CSV com GZIP: " + csv.bytes + " bytes");
+
+        ContagemBytes xlsx = new ContagemBytes();
+        SaidaXlsx planilha = new SaidaXlsx(xlsx, "Medicamentos por Paciente");
+        gravar(planilha);
+        planilha.close();
+        System.out.println("XLSX: " + planilha.getAbas() + " abas, " + xlsx.bytes + " bytes");
+    }
+
+    /** Linhas no formato da consulta "Medicamentos por Paciente" */
+    private static void gravar(SaidaTabular saida) throws IOException {
+        saida.cabecalho("ID da Receita", "ID do Paciente", "Paciente", "Total de Medicamentos", "Data de Emissão");
+        for (int i = 1; i <= LINHAS; i++) {
+            saida.linha(new Object[]{(long) i, (long) (i % 100_000), "Paciente " + (i % 100_000) + " da Silva",
+                    (long) (i % 12), "2026-10-" + (10 + i % 20)});
+        }
+    }
+
+    /** Destino que descarta os bytes e só os conta */
+    private static final class ContagemBytes extends OutputStream {
+        long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+}
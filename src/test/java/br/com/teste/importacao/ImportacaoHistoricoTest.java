@@ -0,0 +1,162 @@
+package br.com.teste.importacao;
+
+import br.com.teste.BancoTeste;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Importação histórica contra o banco de teste ({@link BancoTeste}), repetida com os mesmos arquivos: as receitas
+ * são reconhecidas pelo código de origem e nada é incluído duas vezes. Os dados derivados (resumo, contadores)
+ * não são recalculados aqui: sem os repositórios injetados, a importação só registra o aviso.
+ */
+class ImportacaoHistoricoTest {
+
+    private static DataSource dataSource;
+
+    /** Sufixo dos códigos, CPFs e nomes desta execução (o banco de teste guarda as execuções anteriores) */
+    private static String execucao;
+
+    @BeforeAll
+    static void preparar() {
+        dataSource = BancoTeste.migrado();
+        execucao = String.format("%08d", ThreadLocalRandom.current().nextInt(100_000_000));
+    }
+
+    /** CPF (somente dígitos) de um paciente */
+    private static final String PACIENTE_POR_CPF = "select id from paciente where regexp_replace(cpf, '[^0-9]', '', 'g') = ?";
+
+    @Test
+    void reimportacaoNaoDuplicaReceitasNemItens(@TempDir Path pasta) throws Exception {
+        long dipirona = medicamento("Dipirona  Sódica " + execucao);
+        String cpf1 = "111" + execucao;
+        String cpf2 = "222" + execucao;
+        String[] pacientes = {"cpf;nome", cpf1 + ";Paciente Um", cpf2 + ";Paciente Dois"};
+        String[] receitas = {"codigo;cpf_paciente", "A-" + execucao + ";" + cpf1, "B-" + execucao + ";" + cpf2};
+        // Nome do medicamento com espaços e maiúsculas diferentes do cadastro
+        String[] itens = {"codigo_receita;medicamento",
+                "A-" + execucao + ";  DIPIRONA sódica   " + execucao,
+                "A-" + execucao + ";dipirona sódica " + execucao,
+                "B-" + execucao + ";Dipirona Sódica " + execucao};
+
+        String codigos = "%-" + execucao;
+        File primeira = importar(pasta.resolve("primeira"), pacientes, receitas, itens);
+        assertEquals(2, consultar("select count(*) from receita_origem where codigo like ?", codigos));
+        assertEquals(3, consultar("select count(*) from medicamento_receitado i join receita_origem o on o.id_receita = i.id_receita " +
+                "where o.codigo like ? and i.id_medicamento = ?", codigos, dipirona));
+        assertTrue(rejeitados(primeira, "pacientes").isEmpty());
+        assertTrue(rejeitados(primeira, "receitas").isEmpty());
+        assertTrue(rejeitados(primeira, "itens").isEmpty());
+
+        // Mesmos arquivos, mais uma receita nova com um item
+        String[] receitas2 = Arrays.copyOf(receitas, receitas.length + 1);
+        receitas2[receitas.length] = "C-" + execucao + ";" + cpf1;
+        String[] itens2 = Arrays.copyOf(itens, itens.length + 1);
+        itens2[itens.length] = "C-" + execucao + ";Dipirona Sódica " + execucao;
+        File segunda = importar(pasta.resolve("segunda"), pacientes, receitas2, itens2);
+
+        assertEquals(3, consultar("select count(*) from receita_origem where codigo like ?", codigos));
+        assertEquals(4, consultar("select count(*) from medicamento_receitado i join receita_origem o on o.id_receita = i.id_receita " +
+                "where o.codigo like ?", codigos));
+        assertEquals(2, consultar("select count(*) from receita where id_paciente = (" + PACIENTE_POR_CPF + ")", cpf1));
+        assertMotivos(rejeitados(segunda, "pacientes"), 2, "paciente já cadastrado");
+        assertMotivos(rejeitados(segunda, "receitas"), 2, "receita já importada");
+        assertMotivos(rejeitados(segunda, "itens"), 3, "receita importada anteriormente");
+    }
+
+    @Test
+    void linhaInvalidaNaoConsomeIdDaSequencia(@TempDir Path pasta) throws Exception {
+        String[] pacientes = {"cpf;nome", "123;CPF curto", "333" + execucao + ";Paciente Três"};
+        long teto = proximoId();
+        importar(pasta, pacientes, null, null);
+        // O primeiro bloco reservado termina no nextval seguinte; a única linha válida recebe o primeiro ID dele
+        assertEquals(teto - AlocadorIds.BLOCO + 1, consultar(PACIENTE_POR_CPF, "333" + execucao), "linha rejeitada consumiu ID");
+    }
+
+    /** Grava os arquivos (os nulos ficam ausentes) e o marcador na pasta e importa. */
+    private static File importar(Path pasta, String[] pacientes, String[] receitas, String[] itens) throws IOException {
+        Files.createDirectories(pasta);
+        escrever(pasta, "pacientes.csv", pacientes);
+        escrever(pasta, "receitas.csv", receitas);
+        escrever(pasta, "itens.csv", itens);
+        Files.createFile(pasta.resolve(ImportacaoHistorico.MARCADOR));
+        ImportacaoHistorico importacao = new ImportacaoHistorico();
+        BancoTeste.injetar(importacao, "dataSource", dataSource);
+        assertTrue(importacao.importar(pasta.toFile()));
+        return pasta.toFile();
+    }
+
+    private static void escrever(Path pasta, String nome, String[] linhas) throws IOException {
+        if (linhas != null) {
+            Files.write(pasta.resolve(nome), Arrays.asList(linhas), StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Linhas do arquivo de rejeitados (arquivado com sufixo) sem o cabeçalho; vazio se não houver. */
+    private static List<String> rejeitados(File pasta, String arquivo) throws IOException {
+        File[] arquivados = pasta.listFiles((d, n) -> n.startsWith(arquivo + ".rejeitados.csv"));
+        if (arquivados == null || arquivados.length == 0) return List.of();
+        List<String> linhas = Files.readAllLines(arquivados[0].toPath(), StandardCharsets.UTF_8);
+        return linhas.subList(1, linhas.size());
+    }
+
+    private static void assertMotivos(List<String> linhas, int quantidade, String motivo) {
+        assertEquals(quantidade, linhas.size(), String.join("\n", linhas));
+        assertTrue(linhas.stream().allMatch(l -> l.contains(motivo)),
+                linhas.stream().collect(Collectors.joining("\n")));
+    }
+
+    private static long medicamento(String nome) throws SQLException {
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement ps = con.prepareStatement("insert into medicamento (nome) values (?) returning id")) {
+            ps.setString(1, nome);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    /** Valor numérico da primeira coluna da consulta com os parâmetros. */
+    private static long consultar(String sql, Object... parametros) throws SQLException {
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement ps = con.prepareStatement(sql)) {
+            for (int i = 0; i < parametros.length; i++) {
+                ps.setObject(i + 1, parametros[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    /** Valor que o próximo nextval de paciente_id_seq devolveria (sem consumir). */
+    private static long proximoId() throws SQLException {
+        try (Connection con = dataSource.getConnection();
+             Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("select last_value + case when is_called then 50 else 0 end from paciente_id_seq")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package br.com.teste.metrica;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/** Sobrecargas de um método monitorado têm métricas (e rótulos) separadas. */
+class MetricasRepositorioTest {
+
+    /** Mesmas sobrecargas do ReceitaRepository */
+    @SuppressWarnings("unused")
+    static class Repositorio {
+        List<Object> topMedicamentos(int limite) {
+            return null;
+        }
+
+        List<Object> topMedicamentos(int limite, Date desde, Date ate) {
+            return null;
+        }
+    }
+
+    @Test
+    void sobrecargasSeparadasPelosParametros() throws Exception {
+        MetricasRepositorio metricas = new MetricasRepositorio();
+        MetricaMetodo completo = metricas.de(Repositorio.class.getDeclaredMethod("topMedicamentos", int.class, Date.class, Date.class));
+        MetricaMetodo simples = metricas.de(Repositorio.class.getDeclaredMethod("topMedicamentos", int.class));
+
+        assertNotSame(simples, completo);
+        assertSame(simples, metricas.de(Repositorio.class.getDeclaredMethod("topMedicamentos", int.class)));
+        assertEquals("int", simples.getParametros());
+        assertEquals("Repositorio.topMedicamentos(int,Date,Date)", completo.getAssinatura());
+        assertEquals(List.of(simples, completo), metricas.todas());
+    }
+}
@@ -0,0 +1,224 @@
+package br.com.teste.migracao;
+
+import br.com.teste.BancoTeste;
+import org.junit.jupiter.api.Test;
+import org.postgresql.ds.PGSimpleDataSource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Migrações contra o PostgreSQL dos testes ({@link BancoTeste}; ignorado sem -Dteste.banco.url).
+ */
+class MigracaoEsquemaTest {
+
+    /** Itens de receita do dump de exemplo */
+    private static final int DUMP_ITENS = 329;
+
+    /** As consultas representativas dos repositórios usam os índices criados pelas migrações. */
+    @Test
+    void consultasUsamOsIndicesDasMigracoes() throws Exception {
+        PGSimpleDataSource dataSource = BancoTeste.migrado();
+        try (Connection con = dataSource.getConnection()) {
+            assertEquals(Collections.emptyList(), new MigracaoEsquema().indicesNaoUsados(con));
+        }
+    }
+
+    /** As consultas com período do mês corrente leem só a partição do mês (nem as demais, nem a padrão). */
+    @Test
+    void consultasComPeriodoLeemSoAParticaoDoMes() throws Exception {
+        PGSimpleDataSource dataSource = BancoTeste.migrado();
+        try (Connection con = dataSource.getConnection()) {
+            assertEquals(Collections.emptyList(), new MigracaoEsquema().particoesForaDoPeriodo(con));
+        }
+    }
+
+    /** Os índices das partições aparecem no plano com o nome da partição como prefixo e não contam como partição. */
+    @Test
+    void particoesLidasIgnoraOsIndicesDasParticoes() {
+        String plano = "HashAggregate  (cost=20.81..22.81 rows=200 width=16)\n" +
+                "  ->  Bitmap Heap Scan on medicamento_receitado_p2026_10 i  (cost=4.26..20.78 rows=9 width=8)\n" +
+                "        ->  Bitmap Index Scan on medicamento_receitado_p2026_10_id_medicamento_idx  (cost=0.00..4.26)\n" +
+                "  ->  Seq Scan on medicamento_receitado_p2026_11 i_1  (cost=0.00..1.01 rows=1 width=8)\n";
+        assertEquals(new TreeSet<>(Arrays.asList("medicamento_receitado_p2026_10", "medicamento_receitado_p2026_11")),
+                MigracaoEsquema.particoesLidas(plano, "medicamento_receitado"));
+    }
+
+    /**
+     * Item de um mês sem partição vai para a partição padrão; criar a partição do mês move o item para ela.
+     * Tudo em uma transação desfeita no fim (o mês fica sem partição no banco de teste).
+     */
+    @Test
+    void particaoDoMesRecebeOsItensDaPadrao() throws Exception {
+        PGSimpleDataSource dataSource = BancoTeste.migrado();
+        try (Connection con = dataSource.getConnection(); Statement st = con.createStatement()) {
+            con.setAutoCommit(false);
+            try {
+                st.execute("insert into paciente (id, nome, cpf) values (nextval('paciente_id_seq'), " +
+                        "'Paciente Partição Padrão', '99999999999')");
+                st.execute("insert into receita (id, id_paciente, data_emissao) values (nextval('receita_id_seq'), " +
+                        "currval('paciente_id_seq'), timestamp '2099-01-15')");
+                st.execute("insert into medicamento (id, nome) values (nextval('medicamento_id_seq'), " +
+                        "'Medicamento Partição Padrão')");
+                st.execute("insert into medicamento_receitado (id_receita, id_medicamento, data_emissao) values " +
+                        "(currval('receita_id_seq'), currval('medicamento_id_seq'), timestamp '2099-01-15')");
+                assertEquals("medicamento_receitado_padrao", particaoDoItem(st));
+
+                try (ResultSet rs = st.executeQuery("select criar_particoes_medicamento_receitado(" +
+                        "timestamp '2099-01-01', timestamp '2099-01-01')")) {
+                    rs.next();
+                    assertEquals(1, rs.getInt(1));
+                }
+                assertEquals("medicamento_receitado_p2099_01", particaoDoItem(st));
+            } finally {
+                con.rollback();
+            }
+        }
+    }
+
+    /**
+     * Arquivamento de um mês sem partição: os itens estão na partição padrão, vão para o arquivo e saem dela antes
+     * da exclusão das receitas. Em uma transação desfeita no fim.
+     */
+    @Test
+    void arquivaMesComItensNaParticaoPadrao() throws Exception {
+        PGSimpleDataSource dataSource = BancoTeste.migrado();
+        try (Connection con = dataSource.getConnection(); Statement st = con.createStatement()) {
+            con.setAutoCommit(false);
+            try {
+                st.execute("insert into paciente (id, nome, cpf) values (nextval('paciente_id_seq'), " +
+                        "'Paciente Arquivo Padrão', '99999999998')");
+                st.execute("insert into receita (id, id_paciente, data_emissao) values (nextval('receita_id_seq'), " +
+                        "currval('paciente_id_seq'), timestamp '2001-01-15')");
+                st.execute("insert into medicamento (id, nome) values (nextval('medicamento_id_seq'), " +
+                        "'Medicamento Arquivo Padrão')");
+                for (int i = 0; i < 2; i++) {
+                    st.execute("insert into medicamento_receitado (id_receita, id_medicamento, data_emissao) values " +
+                            "(currval('receita_id_seq'), currval('medicamento_id_seq'), timestamp '2001-01-15')");
+                }
+                assertEquals("medicamento_receitado_padrao", particaoDoItem(st));
+
+                try (ResultSet rs = st.executeQuery("select arquivar_receitas_mes(timestamp '2001-01-01')")) {
+                    rs.next();
+                    assertEquals(1, rs.getInt(1));
+                }
+                try (ResultSet rs = st.executeQuery("select (select count(*) from medicamento_receitado " +
+                        "where id_receita = currval('receita_id_seq')), (select count(*) from " +
+                        "medicamento_receitado_arquivo where id_receita = currval('receita_id_seq')), " +
+                        "(select total_medicamentos from receita_arquivo where id = currval('receita_id_seq'))")) {
+                    rs.next();
+                    assertEquals(0, rs.getInt(1));
+                    assertEquals(2, rs.getInt(2));
+                    assertEquals(2, rs.getInt(3));
+                }
+            } finally {
+                con.rollback();
+            }
+        }
+    }
+
+    /** Partição do item mais recente de medicamento_receitado. */
+    private static String particaoDoItem(Statement st) throws SQLException {
+        try (ResultSet rs = st.executeQuery("select tableoid::regclass::text from medicamento_receitado " +
+                "where id = currval('medicamento_receitado_id_seq')")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    /** Dois nós subindo ao mesmo tempo em um banco vazio: um migra, o outro espera a trava e não reaplica nada. */
+    @Test
+    void subidasSimultaneasEmBancoNovo() throws Exception {
+        emBancoNovo(novo -> {
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                CyclicBarrier largada = new CyclicBarrier(2);
+                List<Future<?>> subidas = new ArrayList<>();
+                for (int i = 0; i < 2; i++) {
+                    subidas.add(executor.submit(() -> {
+                        largada.await();
+                        BancoTeste.migrar(novo);
+                        return null;
+                    }));
+                }
+                for (Future<?> f : subidas) {
+                    f.get(2, TimeUnit.MINUTES);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            assertEquals(MigracaoEsquema.MIGRACOES.length, contar(novo, "select count(*) from esquema_versao"));
+        });
+    }
+
+    /**
+     * O dump de exemplo (db-dump-random-postgres.sql, documentado no README) carrega no esquema da última migração,
+     * duas vezes seguidas (o TRUNCATE do início alcança todas as tabelas que referenciam as do dump).
+     */
+    @Test
+    void dumpDeExemploCarregaNoEsquemaMigrado() throws Exception {
+        String dump = new String(Files.readAllBytes(Paths.get("db-dump-random-postgres.sql")), StandardCharsets.UTF_8);
+        emBancoNovo(novo -> {
+            BancoTeste.migrar(novo);
+            for (int carga = 0; carga < 2; carga++) {
+                try (Connection con = novo.getConnection(); Statement st = con.createStatement()) {
+                    for (String comando : ScriptSql.dividir(dump)) {
+                        st.execute(comando);
+                    }
+                }
+            }
+            assertEquals(30, contar(novo, "select count(*) from paciente"));
+            assertEquals(60, contar(novo, "select count(*) from receita"));
+            assertEquals(DUMP_ITENS, contar(novo, "select count(*) from medicamento_receitado i " +
+                    "join receita r on r.id = i.id_receita and r.data_emissao = i.data_emissao"));
+            assertEquals(DUMP_ITENS, contar(novo, "select sum(total) from paciente_total"));
+        });
+    }
+
+    /** Executa a ação em um banco criado vazio para o teste e removido no fim. */
+    private static void emBancoNovo(AcaoBanco acao) throws Exception {
+        PGSimpleDataSource principal = BancoTeste.dataSource();
+        String nome = "teste_migracao_" + System.nanoTime();
+        try (Connection con = principal.getConnection(); Statement st = con.createStatement()) {
+            st.execute("create database " + nome);
+        }
+        try {
+            PGSimpleDataSource novo = BancoTeste.dataSource();
+            novo.setDatabaseName(nome);
+            acao.executar(novo);
+        } finally {
+            try (Connection con = principal.getConnection(); Statement st = con.createStatement()) {
+                st.execute("drop database if exists " + nome + " with (force)");
+            }
+        }
+    }
+
+    private static long contar(PGSimpleDataSource dataSource, String consulta) throws SQLException {
+        try (Connection con = dataSource.getConnection(); Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery(consulta)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private interface AcaoBanco {
+        void executar(PGSimpleDataSource dataSource) throws Exception;
+    }
+}
@@ -0,0 +1,267 @@
+package br.com.teste.replica;
+
+import br.com.teste.BancoTeste;
+import br.com.teste.bean.ConsultaMedicamentosBean;
+import br.com.teste.cache.VersaoTabelas;
+import br.com.teste.datamodel.ReceitaResumoLazyDataModel;
+import br.com.teste.dto.ReceitaResumoDTO;
+import br.com.teste.model.Medicamento;
+import br.com.teste.model.Paciente;
+import br.com.teste.model.Receita;
+import br.com.teste.repository.ReceitaRepository;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.primefaces.model.SortOrder;
+
+import javax.interceptor.InvocationContext;
+import javax.persistence.EntityManager;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Leituras roteadas para a réplica com dois bancos ({@link BancoTeste}; ignorado sem -Dteste.banco.url e
+ * -Dteste.banco.replica.url): as escritas vão ao primário e o banco da réplica nunca as recebe, como uma réplica
+ * sempre atrasada. As chamadas passam pelo LeituraReplicaInterceptor como no container; o usuário da requisição
+ * é a marca EscritaRecente vinculada à thread (o papel do EscritaRecenteFilter).
+ */
+class LeituraReplicaTest {
+
+    /** teste.replica.janelaEscrita dos testes (ms) */
+    private static final long JANELA = 1_000L;
+
+    private SessionFactory primario;
+    private ReplicaLeitura replica;
+    private LeituraReplicaInterceptor interceptor;
+    private EntityManager em;
+    private VersaoTabelas versoes;
+    private ReceitaRepositoryRoteado receitas;
+
+    private String nomePaciente;
+    private Paciente paciente;
+    private Long idMedicamento;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        replica = new ReplicaLeitura();
+        BancoTeste.injetar(replica, "emf", BancoTeste.sessionFactory(BancoTeste.replica(), Collections.emptyMap()));
+        System.setProperty(ReplicaLeitura.PROP_HABILITADA, "true");
+        System.setProperty(ReplicaLeitura.PROP_JANELA_ESCRITA, Long.toString(JANELA));
+        interceptor = new LeituraReplicaInterceptor();
+        BancoTeste.injetar(interceptor, "replica", replica);
+
+        primario = BancoTeste.sessionFactory(Collections.emptyMap());
+        em = primario.createEntityManager();
+        versoes = new VersaoTabelas();
+        receitas = BancoTeste.receitaRepository(new ReceitaRepositoryRoteado(), em, versoes);
+
+        nomePaciente = String.format("Paciente Réplica %08d", ThreadLocalRandom.current().nextInt(100_000_000));
+        paciente = new Paciente();
+        paciente.setNome(nomePaciente);
+        paciente.setCpf(String.valueOf(70_000_000_000L + ThreadLocalRandom.current().nextLong(10_000_000_000L)));
+        Medicamento medicamento = new Medicamento();
+        medicamento.setNome("Medicamento de " + nomePaciente);
+        emTransacao(() -> {
+            receitas.criarParticoesItens(1);
+            em.persist(paciente);
+            em.persist(medicamento);
+            return null;
+        });
+        idMedicamento = medicamento.getId();
+    }
+
+    @AfterEach
+    void encerrar() {
+        System.clearProperty(ReplicaLeitura.PROP_HABILITADA);
+        System.clearProperty(ReplicaLeitura.PROP_JANELA_ESCRITA);
+        if (em != null) {
+            em.close();
+        }
+        if (primario != null) {
+            primario.close();
+        }
+        if (replica != null) {
+            replica.fechar();
+        }
+    }
+
+    @Test
+    void quemGravouLeDoPrimarioDuranteAJanela() throws Exception {
+        EscritaRecente autor = new EscritaRecente();
+        EscritaRecente outro = new EscritaRecente();
+        gravarReceita(autor);
+
+        assertEquals(1L, contar(autor), "o autor não viu a própria receita");
+        assertEquals(0L, contar(outro), "a leitura de outro usuário não foi à réplica");
+        assertEquals(1L, replica.getLeiturasPrimario());
+        assertEquals(1L, replica.getLeiturasReplica());
+
+        Thread.sleep(JANELA + 100);
+        assertEquals(0L, contar(autor), "após a janela as leituras do autor também vão à réplica");
+    }
+
+    @Test
+    void contagemDaReplicaNaoFicaGuardadaDuranteAJanela() throws Exception {
+        ConsultaMedicamentosBean filtros = new ConsultaMedicamentosBean();
+        filtros.setPacienteNomeFiltro(nomePaciente);
+        ReceitaResumoLazyDataModel model = new ReceitaResumoLazyDataModel();
+        BancoTeste.injetar(model, "repository", receitas);
+        BancoTeste.injetar(model, "filtrosBean", filtros);
+        BancoTeste.injetar(model, "versoes", versoes);
+        BancoTeste.injetar(model, "replica", replica);
+
+        // Usuário sem escritas: página e contagem na réplica
+        carregar(model);
+        carregar(model);
+        assertEquals(1, receitas.contagens, "contagem não reaproveitada sem escritas");
+
+        gravarReceita(new EscritaRecente());
+        carregar(model);
+        assertEquals(0, model.getRowCount(), "a réplica não recebe as escritas");
+        carregar(model);
+        assertEquals(3, receitas.contagens, "contagem da réplica guardada durante a janela");
+
+        // Passada a janela a réplica já deveria ter a escrita: a contagem volta a ser guardada
+        Thread.sleep(JANELA + 100);
+        carregar(model);
+        carregar(model);
+        assertEquals(4, receitas.contagens);
+    }
+
+    /** Grava uma receita com um item no primário em nome do usuário (marca vinculada à thread). */
+    private void gravarReceita(EscritaRecente usuario) throws Exception {
+        EscritaRecente.vincular(usuario);
+        try {
+            emTransacao(() -> {
+                Receita r = new Receita();
+                r.setPaciente(paciente);
+                Long idReceita = receitas.save(r).getId();
+                return receitas.addMedicamentos(idReceita, Collections.singletonList(idMedicamento));
+            });
+        } finally {
+            EscritaRecente.vincular(null);
+            em.clear();
+        }
+    }
+
+    /** Receitas do paciente contadas em nome do usuário. */
+    private long contar(EscritaRecente usuario) {
+        EscritaRecente.vincular(usuario);
+        try {
+            return receitas.countResumo(nomePaciente, null, null, null, false);
+        } finally {
+            EscritaRecente.vincular(null);
+        }
+    }
+
+    private static void carregar(ReceitaResumoLazyDataModel model) {
+        model.load(0, 10, "receitaId", SortOrder.DESCENDING, Collections.emptyMap());
+    }
+
+    /** Executa a ação em uma transação local (o container faria o mesmo na chamada ao EJB). */
+    private <T> T emTransacao(Callable<T> acao) throws Exception {
+        em.getTransaction().begin();
+        try {
+            T resultado = acao.call();
+            em.getTransaction().commit();
+            return resultado;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+        }
+    }
+
+    /** Chamada de método {@link LeituraReplica} pelo interceptor, como no container. */
+    @SuppressWarnings("unchecked")
+    private <T> T rotear(Callable<T> leitura) {
+        try {
+            return (T) interceptor.rotear(new Chamada(leitura));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** ReceitaRepository com a página e a contagem do resumo interceptadas; conta as contagens executadas. */
+    private final class ReceitaRepositoryRoteado extends ReceitaRepository {
+
+        int contagens;
+
+        @Override
+        public List<ReceitaResumoDTO> findResumoPage(int first, int pageSize, String sortField, boolean asc,
+                                                     String pacienteNome, String medicamentoNome, Date desde, Date ate,
+                                                     boolean arquivadas) {
+            return rotear(() -> super.findResumoPage(first, pageSize, sortField, asc, pacienteNome, medicamentoNome,
+                    desde, ate, arquivadas));
+        }
+
+        @Override
+        public Long countResumo(String pacienteNome, String medicamentoNome, Date desde, Date ate, boolean arquivadas) {
+            contagens++;
+            return rotear(() -> super.countResumo(pacienteNome, medicamentoNome, desde, ate, arquivadas));
+        }
+    }
+
+    /** Contexto de invocação mínimo: o interceptor só decide a rota e prossegue. */
+    private static final class Chamada implements InvocationContext {
+
+        private final Callable<?> leitura;
+        private final Map<String, Object> dados = new HashMap<>();
+
+        Chamada(Callable<?> leitura) {
+            this.leitura = leitura;
+        }
+
+        @Override
+        public Object proceed() throws Exception {
+            return leitura.call();
+        }
+
+        @Override
+        public Map<String, Object> getContextData() {
+            return dados;
+        }
+
+        @Override
+        public Object getTarget() {
+            return null;
+        }
+
+        @Override
+        public Object getTimer() {
+            return null;
+        }
+
+        @Override
+        public Method getMethod() {
+            return null;
+        }
+
+        @Override
+        public Constructor<?> getConstructor() {
+            return null;
+        }
+
+        @Override
+        public Object[] getParameters() {
+            return new Object[0];
+        }
+
+        @Override
+        public void setParameters(Object[] parametros) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package br.com.teste.repository;
+
+import br.com.teste.BancoTeste;
+import br.com.teste.bean.ConsultaMedicamentosBean;
+import br.com.teste.cache.VersaoTabelas;
+import br.com.teste.datamodel.PacienteLazyDataModel;
+import br.com.teste.datamodel.ReceitaResumoLazyDataModel;
+import br.com.teste.dto.ReceitaResumoDTO;
+import br.com.teste.model.Medicamento;
+import br.com.teste.model.MedicamentoReceitado;
+import br.com.teste.model.Paciente;
+import br.com.teste.model.Receita;
+import br.com.teste.replica.ReplicaLeitura;
+import br.com.teste.sql.ContagemSql;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.primefaces.model.SortOrder;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comandos SQL por caso de uso das telas contra o PostgreSQL dos testes ({@link BancoTeste}; ignorado sem
+ * -Dteste.banco.url), com os mesmos limites da verificação do CarregamentoPaginaBenchmark: página + COUNT nas
+ * listagens, uma consulta nos itens da receita (nomes dos medicamentos no join fetch) e uma no relatório.
+ * Uma associação carregada uma a uma (N+1) estoura o limite assim que há mais de uma linha na página.
+ */
+class ComandosSqlTest {
+
+    private static final int RECEITAS = 3;
+    private static final int ITENS_POR_RECEITA = 4;
+
+    private SessionFactory sessionFactory;
+    private EntityManager em;
+    private ReceitaRepository receitas;
+
+    /** Sufixo dos nomes desta execução (o banco de teste guarda as execuções anteriores) */
+    private String execucao;
+    private final List<Long> idsReceitas = new ArrayList<>();
+
+    @BeforeEach
+    void preparar() throws Exception {
+        sessionFactory = BancoTeste.sessionFactory(Collections.emptyMap());
+        em = sessionFactory.createEntityManager();
+        receitas = BancoTeste.receitaRepository(new ReceitaRepository(), em, new VersaoTabelas());
+        execucao = String.format("%08d", ThreadLocalRandom.current().nextInt(100_000_000));
+
+        Paciente paciente = new Paciente();
+        paciente.setNome("Paciente Contagem " + execucao);
+        paciente.setCpf(String.valueOf(80_000_000_000L + ThreadLocalRandom.current().nextLong(10_000_000_000L)));
+        List<Long> idsMedicamentos = new ArrayList<>();
+        emTransacao(() -> {
+            receitas.criarParticoesItens(1);
+            em.persist(paciente);
+            for (int i = 0; i < ITENS_POR_RECEITA; i++) {
+                Medicamento m = new Medicamento();
+                m.setNome("Medicamento Contagem " + i + " " + execucao);
+                em.persist(m);
+                idsMedicamentos.add(m.getId());
+            }
+            for (int i = 0; i < RECEITAS; i++) {
+                Receita r = new Receita();
+                r.setPaciente(paciente);
+                idsReceitas.add(receitas.save(r).getId());
+            }
+            return null;
+        });
+        for (Long idReceita : idsReceitas) {
+            emTransacao(() -> receitas.addMedicamentos(idReceita, idsMedicamentos));
+        }
+        em.clear();
+    }
+
+    @AfterEach
+    void encerrar() {
+        if (em != null) {
+            em.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    @Test
+    void listagensEmPaginaMaisContagem() throws Exception {
+        PacienteLazyDataModel pacientes = new PacienteLazyDataModel();
+        BancoTeste.injetar(pacientes, "repository", pacienteRepository(em));
+        BancoTeste.injetar(pacientes, "versoes", new VersaoTabelas());
+        ContagemSql.noMaximo(2, "paciente/lista: primeira página",
+                () -> pacientes.load(0, 10, "nome", SortOrder.ASCENDING, Collections.emptyMap()));
+
+        ConsultaMedicamentosBean filtros = new ConsultaMedicamentosBean();
+        filtros.setPacienteNomeFiltro("contagem " + execucao);
+        ReceitaResumoLazyDataModel resumo = new ReceitaResumoLazyDataModel();
+        BancoTeste.injetar(resumo, "repository", receitas);
+        BancoTeste.injetar(resumo, "filtrosBean", filtros);
+        BancoTeste.injetar(resumo, "versoes", new VersaoTabelas());
+        BancoTeste.injetar(resumo, "replica", new ReplicaLeitura());
+        List<ReceitaResumoDTO> pagina = ContagemSql.noMaximo(2, "consulta: resumo com filtros",
+                () -> resumo.load(0, 10, "receitaId", SortOrder.DESCENDING, Collections.emptyMap()));
+        assertEquals(RECEITAS, pagina.size());
+        assertEquals(RECEITAS, resumo.getRowCount());
+    }
+
+    @Test
+    void itensDaReceitaComNomesDosMedicamentos() throws Exception {
+        Long idReceita = idsReceitas.get(0);
+        List<MedicamentoReceitado> itens = ContagemSql.noMaximo(1, "consulta: itens da receita",
+                () -> receitas.listItensByReceita(idReceita));
+        assertEquals(ITENS_POR_RECEITA, itens.size());
+        // Lidos pela tela (consulta e cadastro de receita): já vêm no join fetch
+        ContagemSql.noMaximo(0, "consulta: nomes dos medicamentos dos itens", () -> {
+            itens.forEach(i -> assertTrue(i.getMedicamento().getNome().endsWith(execucao)));
+            return itens;
+        });
+    }
+
+    @Test
+    void relatorioTotaisPorPacienteEmUmaConsulta() throws Exception {
+        try (ContagemSql.Escopo escopo = ContagemSql.abrir("relatorio: totais por paciente")) {
+            assertTrue(receitas.totalMedicamentosPorPaciente().stream()
+                    .anyMatch(t -> t.getPacienteNome().endsWith(execucao) && t.getTotal() == RECEITAS * ITENS_POR_RECEITA));
+            escopo.verificarNoMaximo(1);
+            assertEquals(Map.of(), escopo.suspeitasNmais1());
+        }
+    }
+
+    /** Executa a ação em uma transação local (o container faria o mesmo na chamada ao EJB). */
+    private <T> T emTransacao(Callable<T> acao) throws Exception {
+        em.getTransaction().begin();
+        try {
+            T resultado = acao.call();
+            em.getTransaction().commit();
+            return resultado;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+        }
+    }
+
+    private static PacienteRepository pacienteRepository(EntityManager em) {
+        PacienteRepository repository = new PacienteRepository();
+        BancoTeste.injetar(repository, "em", em);
+        BancoTeste.injetar(repository, "versoes", new VersaoTabelas());
+        BancoTeste.injetar(repository, "esquemaBusca", BancoTeste.esquemaBusca());
+        return repository;
+    }
+}
@@ -0,0 +1,149 @@
+package br.com.teste.repository;
+
+import br.com.teste.BancoTeste;
+import br.com.teste.analitico.ItensColunares;
+import br.com.teste.busca.IndiceAutocomplete;
+import br.com.teste.cache.ConsultaNativa;
+import br.com.teste.cache.VersaoTabelas;
+import br.com.teste.estatistica.ContadoresPrescricao;
+import br.com.teste.model.Paciente;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.SharedCacheMode;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Cache de segundo nível de Paciente (READ_WRITE, como no testePU) diante das escritas da aplicação, contra o
+ * PostgreSQL dos testes ({@link BancoTeste}; ignorado sem -Dteste.banco.url). O servidor usa o Infinispan do
+ * WildFly; aqui o provedor é o Ehcache (JCache), com a mesma estratégia de concorrência.
+ */
+class PacienteCacheTest {
+
+    private SessionFactory sessionFactory;
+    private Long id;
+
+    @BeforeEach
+    void preparar() {
+        Map<String, Object> propriedades = new HashMap<>();
+        propriedades.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+        propriedades.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+        propriedades.put("hibernate.javax.cache.provider", "org.ehcache.jsr107.EhcacheCachingProvider");
+        propriedades.put("hibernate.javax.cache.missing_cache_strategy", "create");
+        propriedades.put(AvailableSettings.JPA_SHARED_CACHE_MODE, SharedCacheMode.ENABLE_SELECTIVE);
+        propriedades.put(AvailableSettings.GENERATE_STATISTICS, true);
+        sessionFactory = BancoTeste.sessionFactory(propriedades);
+
+        Paciente p = new Paciente();
+        p.setNome("Cache Antes");
+        p.setCpf(String.valueOf(90_000_000_000L + System.nanoTime() % 10_000_000_000L));
+        emTransacao(em -> repository(em).save(p));
+        id = p.getId();
+    }
+
+    @AfterEach
+    void encerrar() {
+        if (sessionFactory != null) {
+            if (id != null) {
+                emTransacao(em -> repository(em).delete(id));
+            }
+            sessionFactory.close();
+        }
+    }
+
+    @Test
+    void leituraAposSalvarNaoDevolveValorAntigo() {
+        assertEquals("Cache Antes", nome());
+        assertEmCache();
+
+        Paciente alterado = new Paciente();
+        alterado.setId(id);
+        alterado.setNome("Cache Depois");
+        alterado.setCpf(nomeECpf()[1]);
+        EntityManager escrita = sessionFactory.createEntityManager();
+        try {
+            escrita.getTransaction().begin();
+            repository(escrita).save(alterado);
+            // Antes do commit as demais leituras veem o valor confirmado, nunca o da transação em andamento
+            assertEquals("Cache Antes", nome());
+            escrita.getTransaction().commit();
+        } finally {
+            escrita.close();
+        }
+
+        assertEquals("Cache Depois", nome());
+        assertEmCache();
+    }
+
+    @Test
+    void leituraAposComandoNativoNaoDevolveValorAntigo() {
+        assertEquals("Cache Antes", nome());
+        assertEmCache();
+
+        emTransacao(em -> ConsultaNativa.escrita(em, "update paciente set nome = 'Cache Nativo' where id = :id",
+                "paciente").setParameter("id", id).executeUpdate());
+
+        assertEquals("Cache Nativo", nome());
+    }
+
+    /** Nome lido por um EntityManager novo (contexto de persistência vazio: vem do cache ou do banco). */
+    private String nome() {
+        return nomeECpf()[0];
+    }
+
+    private String[] nomeECpf() {
+        EntityManager em = sessionFactory.createEntityManager();
+        try {
+            Paciente p = em.find(Paciente.class, id);
+            return new String[]{p.getNome(), p.getCpf()};
+        } finally {
+            em.close();
+        }
+    }
+
+    /** Uma nova leitura é atendida pelo cache (o cache está de fato em uso no teste). */
+    private void assertEmCache() {
+        Statistics estatisticas = sessionFactory.getStatistics();
+        long acertos = estatisticas.getSecondLevelCacheHitCount();
+        nome();
+        assertEquals(acertos + 1, estatisticas.getSecondLevelCacheHitCount(), "leitura não veio do cache");
+    }
+
+    private void emTransacao(Consumer<EntityManager> acao) {
+        EntityManager em = sessionFactory.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            acao.accept(em);
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    private static PacienteRepository repository(EntityManager em) {
+        PacienteRepository repository = new PacienteRepository();
+        BancoTeste.injetar(repository, "em", em);
+        BancoTeste.injetar(repository, "versoes", new VersaoTabelas());
+        BancoTeste.injetar(repository, "esquemaBusca", BancoTeste.esquemaBusca());
+        BancoTeste.injetar(repository, "contadores", new ContadoresPrescricao());
+        BancoTeste.injetar(repository, "indiceAutocomplete", new IndiceAutocomplete());
+        BancoTeste.injetar(repository, "itensColunares", new ItensColunares());
+        ReceitaResumoRepository resumo = new ReceitaResumoRepository();
+        BancoTeste.injetar(resumo, "em", em);
+        BancoTeste.injetar(resumo, "esquemaBusca", BancoTeste.esquemaBusca());
+        BancoTeste.injetar(repository, "resumoRepository", resumo);
+        return repository;
+    }
+}
@@ -0,0 +1,170 @@
+package br.com.teste.repository;
+
+import br.com.teste.BancoTeste;
+import br.com.teste.cache.VersaoTabelas;
+import br.com.teste.dto.NomeQuantidadeDTO;
+import br.com.teste.estatistica.ContadoresPrescricao;
+import br.com.teste.job.AtualizacaoRelatorio;
+import br.com.teste.model.Medicamento;
+import br.com.teste.model.Paciente;
+import br.com.teste.model.Receita;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Receita passada a outro paciente contra o PostgreSQL dos testes ({@link BancoTeste}; ignorado sem
+ * -Dteste.banco.url): os itens dela saem dos totais do paciente anterior e entram nos do novo, no banco
+ * (paciente_total) e na memória (ContadoresPrescricao), e o relatório é avisado da escrita.
+ */
+class TrocaPacienteReceitaTest {
+
+    private static final int ITENS = 3;
+
+    private SessionFactory sessionFactory;
+    private EntityManager em;
+    private ReceitaRepository receitas;
+    private ContadoresPrescricao contadores;
+    private int escritas;
+
+    private Paciente anterior;
+    private Paciente novo;
+    private Long idReceita;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        sessionFactory = BancoTeste.sessionFactory(Collections.emptyMap());
+        em = sessionFactory.createEntityManager();
+        receitas = BancoTeste.receitaRepository(new ReceitaRepository(), em, new VersaoTabelas());
+        contadores = new ContadoresPrescricao();
+        BancoTeste.injetar(receitas, "contadores", contadores);
+        BancoTeste.injetar(receitas, "atualizacaoRelatorio", new AtualizacaoRelatorio() {
+            @Override
+            public void registrarEscrita() {
+                escritas++;
+            }
+        });
+
+        String execucao = String.format("%08d", ThreadLocalRandom.current().nextInt(100_000_000));
+        anterior = paciente("Paciente Anterior " + execucao);
+        novo = paciente("Paciente Novo " + execucao);
+        Medicamento medicamento = new Medicamento();
+        medicamento.setNome("Medicamento Troca " + execucao);
+        idReceita = emTransacao(() -> {
+            receitas.criarParticoesItens(1);
+            em.persist(anterior);
+            em.persist(novo);
+            em.persist(medicamento);
+            Receita r = new Receita();
+            r.setPaciente(anterior);
+            return receitas.save(r).getId();
+        });
+        emTransacao(() -> receitas.addMedicamentos(idReceita,
+                Collections.nCopies(ITENS, medicamento.getId())));
+        contadores.registrarNomePaciente(anterior.getId(), anterior.getNome());
+        contadores.registrarNomePaciente(novo.getId(), novo.getNome());
+        em.clear();
+        escritas = 0;
+    }
+
+    @AfterEach
+    void encerrar() {
+        if (em != null) {
+            em.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    /** Receita desanexada (a tela edita uma cópia e a grava com merge). */
+    @Test
+    void receitaDesanexadaLevaOsItensAoNovoPaciente() throws Exception {
+        Receita r = emTransacao(() -> em.find(Receita.class, idReceita));
+        em.clear();
+        r.setPaciente(novo);
+        emTransacao(() -> receitas.save(r));
+        verificarTotais(null, (long) ITENS);
+        assertEquals(1, escritas);
+    }
+
+    /** Receita já no contexto de persistência e alterada antes do save: o paciente anterior vem do banco. */
+    @Test
+    void receitaGerenciadaLevaOsItensAoNovoPaciente() throws Exception {
+        emTransacao(() -> {
+            Receita r = em.find(Receita.class, idReceita);
+            r.setPaciente(em.find(Paciente.class, novo.getId()));
+            return receitas.save(r);
+        });
+        verificarTotais(null, (long) ITENS);
+        assertEquals(1, escritas);
+
+        // Volta ao primeiro paciente; gravar de novo sem trocar não move nada
+        emTransacao(() -> {
+            Receita r = em.find(Receita.class, idReceita);
+            r.setPaciente(em.find(Paciente.class, anterior.getId()));
+            return receitas.save(r);
+        });
+        emTransacao(() -> receitas.save(em.find(Receita.class, idReceita)));
+        verificarTotais((long) ITENS, null);
+        assertEquals(2, escritas);
+    }
+
+    /** Totais do paciente anterior e do novo (null: sem contador) em paciente_total e na memória. */
+    private void verificarTotais(Long doAnterior, Long doNovo) {
+        em.clear();
+        assertEquals(doAnterior, totalNoBanco(anterior), "paciente_total do paciente anterior");
+        assertEquals(doNovo, totalNoBanco(novo), "paciente_total do paciente novo");
+        Map<String, Long> naMemoria = new HashMap<>();
+        for (NomeQuantidadeDTO dto : contadores.topPacientes(10)) {
+            naMemoria.put(dto.getNome(), dto.getQuantidade());
+        }
+        Map<String, Long> esperado = new HashMap<>();
+        for (Object[] paciente : Arrays.asList(new Object[]{anterior, doAnterior}, new Object[]{novo, doNovo})) {
+            if (paciente[1] != null) {
+                esperado.put(((Paciente) paciente[0]).getNome(), (Long) paciente[1]);
+            }
+        }
+        assertEquals(esperado, naMemoria, "contadores em memória por paciente");
+    }
+
+    private Long totalNoBanco(Paciente paciente) {
+        List<?> total = em.createNativeQuery("select total from paciente_total where id_paciente = ?1")
+                .setParameter(1, paciente.getId())
+                .getResultList();
+        return total.isEmpty() ? null : ((Number) total.get(0)).longValue();
+    }
+
+    private static Paciente paciente(String nome) {
+        Paciente p = new Paciente();
+        p.setNome(nome);
+        p.setCpf(String.valueOf(60_000_000_000L + ThreadLocalRandom.current().nextLong(10_000_000_000L)));
+        return p;
+    }
+
+    /** Executa a ação em uma transação local (o container faria o mesmo na chamada ao EJB). */
+    private <T> T emTransacao(Callable<T> acao) throws Exception {
+        em.getTransaction().begin();
+        try {
+            T resultado = acao.call();
+            em.getTransaction().commit();
+            return resultado;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+        }
+    }
+}